@@ -0,0 +1,115 @@
+package org.example.collectfocep.entities;
+
+import jakarta.persistence.*;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Insertion de mouvements : IDENTITY (un aller-retour par ligne) contre générateur par table
+ * pooled (inserts regroupés par hibernate.jdbc.batch_size, un accès au générateur tous les 50 IDs).
+ *
+ * Une opération = une ligne ; chaque invocation insère un lot de 1 000 mouvements dans une transaction.
+ *
+ * Lancement : mvn -Pjmh test-compile exec:exec -Djmh.args="MouvementInsert"
+ * H2 en mémoire par défaut ; pour mesurer l'effet réseau, viser une base MySQL :
+ *   -Djmh.args="MouvementInsert -jvmArgsAppend -Dbenchmark.jdbc.url=jdbc:mysql://localhost:3306/bench?rewriteBatchedStatements=true"
+ *   (+ -Dbenchmark.jdbc.user=... -Dbenchmark.jdbc.password=...)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g", "-Dlogback.configurationFile=logback-jmh.xml"})
+@State(Scope.Benchmark)
+public class MouvementInsertBenchmark {
+
+    private static final int MOUVEMENTS_PAR_TRANSACTION = 1_000;
+    private static final int BATCH_SIZE = 25;
+
+    @Param({"IDENTITY", "TABLE_POOLED"})
+    public String generateur;
+
+    private SessionFactory sessionFactory;
+    private Supplier<? extends MouvementBench> fabrique;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+                .applySetting("hibernate.connection.url",
+                        System.getProperty("benchmark.jdbc.url", "jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1;MODE=MySQL"))
+                .applySetting("hibernate.connection.username", System.getProperty("benchmark.jdbc.user", "sa"))
+                .applySetting("hibernate.connection.password", System.getProperty("benchmark.jdbc.password", ""))
+                .applySetting("hibernate.hbm2ddl.auto", "create-drop")
+                .applySetting("hibernate.jdbc.batch_size", String.valueOf(BATCH_SIZE))
+                .applySetting("hibernate.order_inserts", "true")
+                .build();
+        sessionFactory = new MetadataSources(registry)
+                .addAnnotatedClass(MouvementIdentity.class)
+                .addAnnotatedClass(MouvementPooled.class)
+                .buildMetadata()
+                .buildSessionFactory();
+        fabrique = "IDENTITY".equals(generateur) ? MouvementIdentity::new : MouvementPooled::new;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MOUVEMENTS_PAR_TRANSACTION)
+    public void insererLot() {
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            for (int i = 0; i < MOUVEMENTS_PAR_TRANSACTION; i++) {
+                MouvementBench mouvement = fabrique.get();
+                mouvement.montant = 1_000 + i;
+                mouvement.libelle = "Epargne client benchmark";
+                mouvement.sens = "epargne";
+                mouvement.dateOperation = LocalDateTime.now();
+                session.persist(mouvement);
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    session.flush();
+                    session.clear();
+                }
+            }
+            session.getTransaction().commit();
+        }
+    }
+
+    @MappedSuperclass
+    static abstract class MouvementBench {
+        double montant;
+        String libelle;
+        String sens;
+        LocalDateTime dateOperation;
+    }
+
+    @Entity
+    @Table(name = "bench_mouvements_identity")
+    @Access(AccessType.FIELD)
+    static class MouvementIdentity extends MouvementBench {
+        @Id
+        @GeneratedValue(strategy = GenerationType.IDENTITY)
+        Long id;
+    }
+
+    @Entity
+    @Table(name = "bench_mouvements_pooled")
+    @Access(AccessType.FIELD)
+    static class MouvementPooled extends MouvementBench {
+        @Id
+        @GeneratedValue(strategy = GenerationType.TABLE, generator = "bench_mouvement_id_gen")
+        @TableGenerator(name = "bench_mouvement_id_gen", table = "bench_id_generators", pkColumnName = "sequence_name",
+                valueColumnName = "next_val", pkColumnValue = "bench_mouvements", allocationSize = 50)
+        Long id;
+    }
+}
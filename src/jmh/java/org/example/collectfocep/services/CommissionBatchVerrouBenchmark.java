@@ -0,0 +1,105 @@
+package org.example.collectfocep.services;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Durée d'un lot de commission selon le verrouillage des comptes d'agence (CompteLockManager réel) :
+ * - PARTAGE : chaque transaction collecteur verrouille C.P.C.C / C.P.T jusqu'à son commit
+ * - DIFFERE : la transaction collecteur ne verrouille que ses propres comptes ; les comptes
+ *   d'agence sont mis à jour une fois en fin de lot (CommissionBatchJob#appliquerComptesAgences)
+ *
+ * Le travail base de données d'une transaction collecteur est simulé par une attente de
+ * {@code travailMs} : le benchmark mesure l'effet de la sérialisation, pas MySQL.
+ *
+ * Lancement : mvn -Pjmh test-compile exec:exec -Djmh.args="CommissionBatchVerrou"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Dlogback.configurationFile=logback-jmh.xml"})
+@State(Scope.Benchmark)
+public class CommissionBatchVerrouBenchmark {
+
+    private static final long COMPTE_PCCC = 1L;
+    private static final long COMPTE_PT = 2L;
+
+    @Param({"PARTAGE", "DIFFERE"})
+    public String mode;
+
+    @Param({"32"})
+    public int collecteurs;
+
+    /** app.commission.batch.workers */
+    @Param({"8"})
+    public int workers;
+
+    @Param({"5"})
+    public int travailMs;
+
+    private CompteLockManager lockManager;
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        lockManager = new CompteLockManager(60_000);
+        executor = Executors.newFixedThreadPool(workers);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public void lot() throws Exception {
+        boolean partage = "PARTAGE".equals(mode);
+        List<Future<?>> taches = new ArrayList<>(collecteurs);
+        for (int i = 0; i < collecteurs; i++) {
+            long compteCollecteur = 1_000L + i;
+            taches.add(executor.submit(() -> transaction(() -> {
+                if (partage) {
+                    lockManager.verrouiller(COMPTE_PCCC, COMPTE_PT, compteCollecteur);
+                } else {
+                    lockManager.verrouiller(compteCollecteur);
+                }
+                attendre(travailMs);
+            })));
+        }
+        for (Future<?> tache : taches) {
+            tache.get();
+        }
+        if (!partage) {
+            // Étape finale courte : un UPDATE par compte d'agence
+            transaction(() -> {
+                lockManager.verrouiller(COMPTE_PCCC, COMPTE_PT);
+                attendre(1);
+            });
+        }
+    }
+
+    private void transaction(Runnable corps) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            corps.run();
+        } finally {
+            List<TransactionSynchronization> synchronisations = TransactionSynchronizationManager.getSynchronizations();
+            TransactionSynchronizationManager.clearSynchronization();
+            synchronisations.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        }
+    }
+
+    private static void attendre(int ms) {
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(ms));
+    }
+}
@@ -0,0 +1,67 @@
+package org.example.collectfocep.services;
+
+import org.example.collectfocep.entities.CommissionParameter;
+import org.example.collectfocep.entities.CommissionTier;
+import org.example.collectfocep.entities.CommissionType;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calcul unitaire de la commission "x" ({@link CommissionCalculatorService#calculateCommission})
+ * pour chaque type de paramètre. Le paramètre est recompilé à chaque appel, comme dans le
+ * chemin unitaire ; les traitements de masse sont mesurés par {@link CommissionMasseBenchmark}.
+ *
+ * Lancement : mvn -Pjmh test-compile exec:exec -Djmh.args="CommissionCalculator -prof gc"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-jmh.xml")
+@State(Scope.Thread)
+public class CommissionCalculatorBenchmark {
+
+    private static final int NOMBRE_MONTANTS = 1 << 12;
+
+    @Param({"FIXED", "PERCENTAGE", "TIER"})
+    public CommissionType type;
+
+    private final CommissionCalculatorService calculator = new CommissionCalculatorService();
+    private CommissionParameter parametre;
+    private BigDecimal[] montants;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        parametre = switch (type) {
+            case FIXED -> CommissionParameter.builder().type(type).valeur(new BigDecimal("1000")).build();
+            case PERCENTAGE -> CommissionParameter.builder().type(type).valeur(new BigDecimal("3.5")).build();
+            case TIER -> CommissionParameter.builder().type(type).tiers(paliersFocep()).build();
+        };
+
+        // Montants répartis sur tous les paliers, parcourus en boucle
+        SplittableRandom random = new SplittableRandom(42);
+        montants = new BigDecimal[NOMBRE_MONTANTS];
+        for (int i = 0; i < NOMBRE_MONTANTS; i++) {
+            montants[i] = BigDecimal.valueOf(random.nextLong(1_000, 2_000_000));
+        }
+    }
+
+    @Benchmark
+    public BigDecimal calculateCommission() {
+        BigDecimal montant = montants[index++ & (NOMBRE_MONTANTS - 1)];
+        return calculator.calculateCommission(montant, parametre);
+    }
+
+    static List<CommissionTier> paliersFocep() {
+        return new ArrayList<>(List.of(
+                CommissionTier.builder().montantMin(0.0).montantMax(100_000.0).taux(5.0).build(),
+                CommissionTier.builder().montantMin(100_001.0).montantMax(500_000.0).taux(4.0).build(),
+                CommissionTier.builder().montantMin(500_001.0).montantMax(Double.MAX_VALUE).taux(3.0).build()));
+    }
+}
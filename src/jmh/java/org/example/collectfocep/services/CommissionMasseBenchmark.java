@@ -0,0 +1,118 @@
+package org.example.collectfocep.services;
+
+import org.example.collectfocep.dto.CommissionCalculation;
+import org.example.collectfocep.dto.CommissionRules;
+import org.example.collectfocep.dto.CommissionTotals;
+import org.example.collectfocep.entities.Agence;
+import org.example.collectfocep.entities.Client;
+import org.example.collectfocep.entities.Collecteur;
+import org.example.collectfocep.entities.CommissionParameter;
+import org.example.collectfocep.entities.CommissionType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Étapes en mémoire d'un calcul de commission sur un portefeuille synthétique :
+ * - {@link CommissionOrchestrator#calculerCommissionsClients} : règles compilées + TVA par client
+ * - {@link CommissionDistributionEngine#calculateTotals} : totaux et part EMF
+ *
+ * Une opération traite tout le portefeuille. Répartition des règles : 5 % des clients avec un
+ * paramètre FIXED propre, 5 % en paliers, les autres au pourcentage de l'agence ; 10 % sans
+ * épargne sur la période.
+ *
+ * Lancement : mvn -Pjmh test-compile exec:exec -Djmh.args="CommissionMasse -p taille=100000 -prof gc"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-Dlogback.configurationFile=logback-jmh.xml"})
+@State(Scope.Benchmark)
+public class CommissionMasseBenchmark {
+
+    private static final long AGENCE_ID = 1L;
+    private static final long COLLECTEUR_ID = 7L;
+
+    @Param({"10000", "100000", "1000000"})
+    public int taille;
+
+    private List<Client> clients;
+    private Map<Long, BigDecimal> epargnesParClient;
+    private TableReglesCommission regles;
+    private List<CommissionCalculation> calculations;
+    private final CommissionRules rules = CommissionRules.defaultRules();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        List<CommissionParameter> parametres = new ArrayList<>();
+
+        CommissionParameter agence = CommissionParameter.builder()
+                .type(CommissionType.PERCENTAGE).valeur(new BigDecimal("3"))
+                .agence(Agence.builder().id(AGENCE_ID).build())
+                .build();
+        parametres.add(agence);
+
+        // Autres collecteurs de l'agence : la recherche côté collecteur échoue pour COLLECTEUR_ID
+        for (long collecteurId = 100; collecteurId < 150; collecteurId++) {
+            parametres.add(CommissionParameter.builder()
+                    .type(CommissionType.PERCENTAGE).valeur(new BigDecimal("4"))
+                    .collecteur(Collecteur.builder().id(collecteurId).build())
+                    .build());
+        }
+
+        clients = new ArrayList<>(taille);
+        epargnesParClient = new HashMap<>(taille * 2);
+        calculations = new ArrayList<>(taille);
+        for (long id = 1; id <= taille; id++) {
+            Client client = Client.builder().id(id).nom("Client " + id).build();
+            clients.add(client);
+
+            int tirage = random.nextInt(100);
+            if (tirage < 5) {
+                parametres.add(CommissionParameter.builder()
+                        .type(CommissionType.FIXED).valeur(new BigDecimal("1500"))
+                        .client(client).validFrom(LocalDate.of(2025, 1, 1))
+                        .build());
+            } else if (tirage < 10) {
+                parametres.add(CommissionParameter.builder()
+                        .type(CommissionType.TIER).tiers(CommissionCalculatorBenchmark.paliersFocep())
+                        .client(client).validFrom(LocalDate.of(2025, 1, 1))
+                        .build());
+            }
+
+            if (random.nextInt(10) > 0) {
+                long montant = random.nextLong(5_000, 1_500_000);
+                epargnesParClient.put(id, BigDecimal.valueOf(montant));
+
+                BigDecimal commission = BigDecimal.valueOf(montant * 3 / 100);
+                BigDecimal tva = BigDecimal.valueOf(montant * 3 / 100 * 1925 / 10_000);
+                calculations.add(CommissionCalculation.create(id, client.getNom(), null,
+                        BigDecimal.valueOf(montant), commission, tva, "PERCENTAGE", 1L));
+            }
+        }
+
+        regles = TableReglesCommission.compiler(AGENCE_ID, parametres);
+    }
+
+    // Le code généré par JMH est dans un autre paquetage : le résultat (type paquetage) passe par le Blackhole
+    @Benchmark
+    public void etapeEnMemoireOrchestrateur(Blackhole blackhole) {
+        blackhole.consume(CommissionOrchestrator.calculerCommissionsClients(
+                clients, epargnesParClient, regles, COLLECTEUR_ID));
+    }
+
+    @Benchmark
+    public CommissionTotals totauxDistribution() {
+        return CommissionDistributionEngine.calculateTotals(calculations, rules);
+    }
+}
@@ -0,0 +1,57 @@
+package org.example.collectfocep.services;
+
+import org.example.collectfocep.entities.RubriqueRemuneration;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Valeur Vi d'une rubrique de rémunération ({@link RubriqueRemuneration#calculateVi}) sur des
+ * S variés. La rubrique a un délai : le contrôle de validité (date du jour) fait partie de la mesure.
+ *
+ * Lancement : mvn -Pjmh test-compile exec:exec -Djmh.args="RubriqueRemuneration -prof gc"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-jmh.xml")
+@State(Scope.Thread)
+public class RubriqueRemunerationBenchmark {
+
+    private static final int NOMBRE_MONTANTS = 1 << 12;
+
+    @Param({"CONSTANT", "PERCENTAGE"})
+    public RubriqueRemuneration.TypeRubrique type;
+
+    private RubriqueRemuneration rubrique;
+    private BigDecimal[] sommes;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        rubrique = RubriqueRemuneration.builder()
+                .nom("Rubrique benchmark")
+                .type(type)
+                .valeur(type == RubriqueRemuneration.TypeRubrique.CONSTANT
+                        ? new BigDecimal("25000.00") : new BigDecimal("12.50"))
+                .dateApplication(LocalDate.now().minusMonths(1))
+                .delaiJours(365)
+                .active(true)
+                .build();
+
+        SplittableRandom random = new SplittableRandom(42);
+        sommes = new BigDecimal[NOMBRE_MONTANTS];
+        for (int i = 0; i < NOMBRE_MONTANTS; i++) {
+            sommes[i] = BigDecimal.valueOf(random.nextLong(10_000, 5_000_000));
+        }
+    }
+
+    @Benchmark
+    public BigDecimal calculateVi() {
+        return rubrique.calculateVi(sommes[index++ & (NOMBRE_MONTANTS - 1)]);
+    }
+}
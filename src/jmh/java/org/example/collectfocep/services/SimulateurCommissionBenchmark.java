@@ -0,0 +1,132 @@
+package org.example.collectfocep.services;
+
+import org.example.collectfocep.dto.CommissionTierDTO;
+import org.example.collectfocep.dto.SimulationGrillesRequest;
+import org.example.collectfocep.dto.SimulationGrillesRequest.GrilleCandidate;
+import org.example.collectfocep.dto.SimulationGrillesResponse;
+import org.example.collectfocep.entities.Agence;
+import org.example.collectfocep.entities.Client;
+import org.example.collectfocep.entities.Collecteur;
+import org.example.collectfocep.entities.CommissionParameter;
+import org.example.collectfocep.entities.CommissionType;
+import org.example.collectfocep.repositories.CommissionParameterRepository;
+import org.example.collectfocep.repositories.MouvementRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * {@link SimulateurCommissionService#simuler} sur une agence synthétique (objectif : moins de
+ * 200 ms pour 50 000 clients) :
+ * - volumesEnCache : volumes déjà chargés, cas d'une série de simulations sur la même période
+ * - volumesRecharges : volumes oubliés avant chaque appel, la conversion des lignes de la requête
+ *   groupée en tableaux est mesurée, pas la requête elle-même (dépôts simulés)
+ *
+ * Règles en vigueur : pourcentage de l'agence, 40 collecteurs dont 10 avec un pourcentage propre,
+ * 5 % des clients en FIXED. Grilles candidates en rotation PERCENTAGE / FIXED / TIER.
+ *
+ * Lancement : mvn -Pjmh test-compile exec:exec -Djmh.args="SimulateurCommission -p grilles=1,10,50"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "-Dlogback.configurationFile=logback-jmh.xml"})
+@State(Scope.Benchmark)
+public class SimulateurCommissionBenchmark {
+
+    private static final long AGENCE_ID = 1L;
+    private static final int COLLECTEURS = 40;
+
+    @Param({"50000"})
+    public int clients;
+
+    @Param({"1", "10", "50"})
+    public int grilles;
+
+    private SimulateurCommissionService simulateur;
+    private SimulationGrillesRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        List<CommissionParameter> parametres = new ArrayList<>();
+        parametres.add(CommissionParameter.builder()
+                .type(CommissionType.PERCENTAGE).valeur(new BigDecimal("3"))
+                .agence(Agence.builder().id(AGENCE_ID).build())
+                .build());
+        for (long collecteurId = 1; collecteurId <= 10; collecteurId++) {
+            parametres.add(CommissionParameter.builder()
+                    .type(CommissionType.PERCENTAGE).valeur(new BigDecimal("4"))
+                    .collecteur(Collecteur.builder().id(collecteurId).build())
+                    .build());
+        }
+
+        // Lignes de sumEpargneParClientByAgence : (client, collecteur, épargne), triées par client
+        List<Object[]> lignes = new ArrayList<>(clients);
+        for (long id = 1; id <= clients; id++) {
+            if (random.nextInt(100) < 5) {
+                parametres.add(CommissionParameter.builder()
+                        .type(CommissionType.FIXED).valeur(new BigDecimal("1500"))
+                        .client(Client.builder().id(id).build()).validFrom(LocalDate.of(2025, 1, 1))
+                        .build());
+            }
+            lignes.add(new Object[]{id, 1L + random.nextInt(COLLECTEURS), random.nextLong(5_000, 1_500_000)});
+        }
+
+        // Sans enregistrement des appels : les mocks sont sollicités à chaque opération de volumesRecharges
+        MouvementRepository mouvementRepository = mock(MouvementRepository.class, withSettings().stubOnly());
+        when(mouvementRepository.sumEpargneParClientByAgence(eq(AGENCE_ID), any(), any())).thenReturn(lignes);
+        CommissionParameterRepository parameterRepository = mock(CommissionParameterRepository.class,
+                withSettings().stubOnly());
+        when(parameterRepository.findActifsByAgenceIdWithTiers(AGENCE_ID)).thenReturn(parametres);
+
+        simulateur = new SimulateurCommissionService(mouvementRepository,
+                new ReglesCommissionCache(parameterRepository, 30), 15);
+
+        List<GrilleCandidate> candidates = new ArrayList<>(grilles);
+        for (int g = 0; g < grilles; g++) {
+            candidates.add(switch (g % 3) {
+                case 0 -> GrilleCandidate.builder().type(CommissionType.PERCENTAGE)
+                        .valeur(BigDecimal.valueOf(2 + g % 5)).build();
+                case 1 -> GrilleCandidate.builder().type(CommissionType.FIXED)
+                        .valeur(BigDecimal.valueOf(1_000 + 100L * g)).build();
+                default -> GrilleCandidate.builder().type(CommissionType.TIER).paliers(paliers()).build();
+            });
+        }
+        request = SimulationGrillesRequest.builder()
+                .dateDebut(LocalDate.of(2025, 9, 1))
+                .dateFin(LocalDate.of(2025, 9, 30))
+                .grilles(candidates)
+                .build();
+    }
+
+    @Benchmark
+    public SimulationGrillesResponse volumesEnCache() {
+        return simulateur.simuler(AGENCE_ID, request);
+    }
+
+    @Benchmark
+    public SimulationGrillesResponse volumesRecharges() {
+        simulateur.invaliderVolumes(AGENCE_ID);
+        return simulateur.simuler(AGENCE_ID, request);
+    }
+
+    private static List<CommissionTierDTO> paliers() {
+        return List.of(
+                CommissionTierDTO.builder().montantMin(0.0).montantMax(100_000.0).taux(5.0).build(),
+                CommissionTierDTO.builder().montantMin(100_001.0).montantMax(500_000.0).taux(4.0).build(),
+                CommissionTierDTO.builder().montantMin(500_001.0).montantMax(10_000_000.0).taux(3.0).build());
+    }
+}
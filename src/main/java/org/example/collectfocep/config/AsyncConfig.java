@@ -3,6 +3,7 @@ package org.example.collectfocep.config;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
 import org.springframework.aop.interceptor.SimpleAsyncUncaughtExceptionHandler;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
@@ -10,6 +11,7 @@ import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 @EnableAsync
@@ -49,6 +51,80 @@ public class AsyncConfig {
         return executor;
     }
 
+    /**
+     * ✅ THREAD POOL DES JOBS DE LA FILE DE RAPPORTS (ReportJobQueue)
+     * Un thread par job en cours : la file persistante ne soumet jamais plus de jobs que de threads,
+     * l'attente se fait en base et non dans la queue du pool. Les jobs interrompus par l'arrêt
+     * sont repris depuis report_jobs, inutile de les attendre.
+     */
+    @Bean(name = "reportJobExecutor")
+    public ThreadPoolTaskExecutor reportJobExecutor(
+            @Value("${app.reports.max-concurrent-generations:5}") int maxJobs) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxJobs);
+        executor.setMaxPoolSize(maxJobs);
+        // Marge pour le job suivant soumis pendant que le thread du précédent se termine
+        executor.setQueueCapacity(maxJobs);
+        executor.setThreadNamePrefix("ReportJob-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+
+        executor.initialize();
+
+        log.info("✅ Thread pool file de rapports configuré: jobs simultanés={}", maxJobs);
+
+        return executor;
+    }
+
+    /**
+     * ✅ THREAD POOL BORNÉ POUR LES TRAITEMENTS DE COMMISSION PAR AGENCE
+     * Un collecteur = une tâche = une transaction. Queue pleine → exécution par l'appelant (pas de rejet).
+     */
+    @Bean(name = "commissionTaskExecutor")
+    public ThreadPoolTaskExecutor commissionTaskExecutor(
+            @Value("${app.commission.batch.workers:8}") int workers,
+            @Value("${app.commission.batch.queue-capacity:500}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("Commission-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(120);
+
+        executor.initialize();
+
+        log.info("✅ Thread pool commissions configuré: workers={}, queue={}", workers, queueCapacity);
+
+        return executor;
+    }
+
+    /**
+     * ✅ THREAD POOL DÉDIÉ AUX MOIS DES RAPPORTS MULTI-MOIS (RapportPeriodePlanner)
+     * core = max : un ThreadPoolExecutor ne crée de threads au-delà du core que queue pleine ;
+     * avec core 2 / queue 100 les 12 mois d'un annuel passaient 2 par 2.
+     * Les lectures de mois tiennent chacune une connexion : workers à garder sous le pool Hikari.
+     */
+    @Bean(name = "rapportMoisExecutor")
+    public ThreadPoolTaskExecutor rapportMoisExecutor(
+            @Value("${app.reports.mois.workers:6}") int workers,
+            @Value("${app.reports.mois.queue-capacity:500}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("RapportMois-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+
+        executor.initialize();
+
+        log.info("✅ Thread pool mois de rapports configuré: workers={}, queue={}", workers, queueCapacity);
+
+        return executor;
+    }
+
     /**
      * ✅ CONFIGURATION THREAD POOL POUR LES TÂCHES GÉNÉRALES
      */
@@ -0,0 +1,39 @@
+package org.example.collectfocep.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Aperçu des commissions du mois en cours d'un collecteur, lu depuis les accruals journaliers
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ApercuCommissionDTO {
+
+    private Long collecteurId;
+    private LocalDate debutMois;
+    private LocalDate dateArrete; // dernier jour accru inclus
+    private Integer nombreClients;
+    private BigDecimal montantEpargneTotal;
+    private BigDecimal commissionProvisoireTotal;
+    private List<Ligne> clients;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Ligne {
+        private Long clientId;
+        private LocalDate dernierJourEpargne;
+        private BigDecimal cumulMois;
+        private BigDecimal commissionProvisoire;
+    }
+}
@@ -0,0 +1,10 @@
+package org.example.collectfocep.dto;
+
+/**
+ * Totaux cumulés de collecteur_daily_totals sur une période (montants en francs entiers)
+ */
+public interface CollecteurTotauxProjection {
+    Long getTotalEpargne();
+    Long getTotalRetrait();
+    Long getNombreMouvements();
+}
@@ -0,0 +1,66 @@
+package org.example.collectfocep.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * État et résultat consolidé d'un traitement commission + rémunération sur une ou plusieurs agences
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CommissionBatchJobDTO {
+
+    private String jobId;
+    private List<Long> agenceIds;
+    private LocalDate dateDebut;
+    private LocalDate dateFin;
+    private String statut; // EN_COURS, TERMINE, TERMINE_AVEC_ERREURS
+
+    // Progression
+    private Integer nombreCollecteurs;
+    private Integer nombreTraites;
+    private Integer nombreSucces;
+    private Integer nombreEchecs;
+    private Integer nombreIgnores;
+    private Double progression; // 0 → 100
+
+    // Totaux des collecteurs traités avec succès
+    private BigDecimal montantSTotal;
+    private BigDecimal totalTVA;
+    private BigDecimal totalRubriquesVi;
+    private BigDecimal totalEMF;
+
+    private LocalDateTime dateDebutTraitement;
+    private LocalDateTime dateFinTraitement;
+    private Long dureeMs;
+
+    private List<CollecteurResultat> resultats;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CollecteurResultat {
+        private Long collecteurId;
+        private Long agenceId;
+        private String statut; // SUCCES, ECHEC, IGNORE
+        private boolean reprise; // commission déjà calculée, seule la rémunération a été faite
+        private BigDecimal montantS;
+        private BigDecimal totalTVA;
+        private BigDecimal totalRubriquesVi;
+        private BigDecimal montantEMF;
+        private Long historiqueCalculId;
+        private Long historiqueRemunerationId;
+        private String message;
+        private Long dureeMs;
+    }
+}
@@ -0,0 +1,29 @@
+package org.example.collectfocep.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Lot d'épargnes collectées hors ligne et remontées en fin de tournée
+ * pour un seul collecteur.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EpargneBatchRequest {
+
+    @NotNull(message = "L'ID du collecteur est obligatoire")
+    private Long collecteurId;
+
+    @NotEmpty(message = "Le lot doit contenir au moins une opération")
+    @Size(max = 500, message = "Un lot ne peut pas dépasser 500 opérations")
+    @Valid
+    private List<EpargneRequest> operations;
+}
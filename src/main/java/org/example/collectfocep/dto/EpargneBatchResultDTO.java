@@ -0,0 +1,42 @@
+package org.example.collectfocep.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EpargneBatchResultDTO {
+
+    private Long collecteurId;
+    private Long journalId;
+
+    // Synthèse du lot
+    private Integer nombreOperations;
+    private Integer nombreSucces;
+    private Integer nombreEchecs;
+    private Double montantTotal;
+
+    // Résultat par opération, dans l'ordre de la requête
+    private List<EpargneItemResultDTO> resultats;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class EpargneItemResultDTO {
+        private Integer index;
+        private Long clientId;
+        private Double montant;
+        private Boolean success;
+        private Long mouvementId;
+        private MouvementCommissionDTO mouvement;
+        private String errorCode;
+        private String message;
+    }
+}
@@ -0,0 +1,38 @@
+package org.example.collectfocep.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Résultat d'une rémunération groupée de tous les collecteurs d'une agence pour une période
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RemunerationAgenceDTO {
+
+    private Long agenceId;
+    private LocalDate dateDebut;
+    private LocalDate dateFin;
+
+    private Integer nombreCollecteurs;
+    private Integer nombreRemuneres;
+    private Integer nombreIgnores;
+    private Integer nombreEchecs;
+    private Integer nombreMouvements;
+
+    private BigDecimal montantSTotal;
+    private BigDecimal totalTVA;
+    private BigDecimal totalRubriquesVi;
+    private BigDecimal totalEMF;
+    private Long dureeMs;
+
+    private List<CommissionBatchJobDTO.CollecteurResultat> resultats;
+}
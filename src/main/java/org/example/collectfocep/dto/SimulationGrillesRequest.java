@@ -0,0 +1,56 @@
+package org.example.collectfocep.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.example.collectfocep.entities.CommissionType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Grilles de commission candidates à évaluer sur les volumes réels d'une agence.
+ * Sans période, le mois précédent est utilisé.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SimulationGrillesRequest {
+
+    private LocalDate dateDebut;
+    private LocalDate dateFin;
+
+    @NotEmpty(message = "Au moins une grille candidate est requise")
+    @Size(max = 50, message = "50 grilles maximum par simulation")
+    @Valid
+    private List<GrilleCandidate> grilles;
+
+    /**
+     * Nombre d'écarts clients retournés par grille (les plus forts en valeur absolue)
+     */
+    @Builder.Default
+    private Integer nombreMaxEcarts = 100;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class GrilleCandidate {
+        private String nom;
+
+        @NotNull(message = "Le type de commission est requis")
+        private CommissionType type;
+
+        private BigDecimal valeur; // FIXED : FCFA, PERCENTAGE : %
+
+        @Valid
+        private List<CommissionTierDTO> paliers; // TIER
+    }
+}
@@ -0,0 +1,58 @@
+package org.example.collectfocep.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Résultat d'une simulation de grilles : totaux par grille et écarts par client
+ * par rapport aux règles actuellement en vigueur
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SimulationGrillesResponse {
+
+    private Long agenceId;
+    private LocalDate dateDebut;
+    private LocalDate dateFin;
+    private Integer nombreClients;
+    private BigDecimal volumeTotal;
+    private BigDecimal commissionActuelleTotale;
+    private BigDecimal tvaActuelleTotale;
+    private Long dureeMs;
+    private List<ResultatGrille> grilles;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ResultatGrille {
+        private String nom;
+        private BigDecimal commissionTotale;
+        private BigDecimal tvaTotale;
+        private BigDecimal ecartTotal;
+        private Integer nombreHausses;
+        private Integer nombreBaisses;
+        private List<EcartClient> ecarts;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class EcartClient {
+        private Long clientId;
+        private Long collecteurId;
+        private BigDecimal volume;
+        private BigDecimal commissionActuelle;
+        private BigDecimal commissionSimulee;
+        private BigDecimal ecart;
+    }
+}
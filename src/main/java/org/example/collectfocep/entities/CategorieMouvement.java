@@ -0,0 +1,74 @@
+package org.example.collectfocep.entities;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Catégorie typée d'un mouvement, calculée à l'écriture (Mouvement @PrePersist / @PreUpdate)
+ * et indexée : les requêtes de commission filtrent sur cette colonne au lieu du libellé.
+ *
+ * Les règles de {@link #classer} sont reprises telles quelles par la migration V008 pour l'historique.
+ */
+public enum CategorieMouvement {
+    EPARGNE,
+    RETRAIT,
+    VERSEMENT,     // versement collecteur en agence, excédent / manquant
+    TRANSFERT,
+    COMMISSION,    // commissions, TVA
+    AUTRE;
+
+    /**
+     * Priorité : type de mouvement, puis sens, puis libellé (sans accents ni casse)
+     */
+    public static CategorieMouvement classer(String typeMouvement, String sens, String libelle) {
+        if (typeMouvement != null) {
+            switch (typeMouvement.toUpperCase(Locale.ROOT)) {
+                case "EPARGNE", "DEPOT_EPARGNE", "VERSEMENT_EPARGNE":
+                    return EPARGNE;
+                case "RETRAIT":
+                    return RETRAIT;
+                case "VERSEMENT_NORMAL", "VERSEMENT_EXCEDENT", "VERSEMENT_MANQUANT",
+                        "EXCEDENT_AJUSTEMENT", "MANQUANT_DETTE":
+                    return VERSEMENT;
+                default:
+                    break;
+            }
+        }
+
+        if (sens != null) {
+            String s = sens.toLowerCase(Locale.ROOT);
+            if (s.equals("epargne")) {
+                return EPARGNE;
+            }
+            if (s.equals("retrait")) {
+                return RETRAIT;
+            }
+            if (s.equals("transfert")) {
+                return TRANSFERT;
+            }
+            if (s.startsWith("versement") || s.startsWith("ajustement")) {
+                return VERSEMENT;
+            }
+        }
+
+        if (libelle != null) {
+            String l = sansAccents(libelle);
+            if (l.contains("commission") || l.contains("tva")) {
+                return COMMISSION;
+            }
+            if (l.contains("epargne") || l.contains("versement") || l.contains("depot")) {
+                return EPARGNE;
+            }
+            if (l.contains("retrait")) {
+                return RETRAIT;
+            }
+        }
+        return AUTRE;
+    }
+
+    private static String sansAccents(String texte) {
+        return Normalizer.normalize(texte, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+    }
+}
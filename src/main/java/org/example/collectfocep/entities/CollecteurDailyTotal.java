@@ -0,0 +1,65 @@
+package org.example.collectfocep.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.example.collectfocep.util.Money;
+import org.example.collectfocep.util.MoneyConverter;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Totaux journaliers d'un collecteur, maintenus dans la même transaction que chaque
+ * mouvement. Une ligne par (collecteur, jour) : la validation des retraits et le
+ * dashboard lisent ces lignes au lieu d'agréger la table mouvements.
+ */
+@Entity
+@Table(name = "collecteur_daily_totals",
+        uniqueConstraints = @UniqueConstraint(name = "uk_collecteur_daily_totals", columnNames = {"collecteur_id", "date_jour"}))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CollecteurDailyTotal {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "collecteur_id", nullable = false)
+    private Long collecteurId;
+
+    @Column(name = "date_jour", nullable = false)
+    private LocalDate dateJour;
+
+    @Column(name = "total_epargne", nullable = false)
+    @Convert(converter = MoneyConverter.class)
+    @Builder.Default
+    private Money totalEpargne = Money.ZERO;
+
+    @Column(name = "total_retrait", nullable = false)
+    @Convert(converter = MoneyConverter.class)
+    @Builder.Default
+    private Money totalRetrait = Money.ZERO;
+
+    @Column(name = "nombre_epargnes", nullable = false)
+    @Builder.Default
+    private Long nombreEpargnes = 0L;
+
+    @Column(name = "nombre_retraits", nullable = false)
+    @Builder.Default
+    private Long nombreRetraits = 0L;
+
+    // Tous les mouvements rattachés au collecteur (épargnes, retraits et autres)
+    @Column(name = "nombre_mouvements", nullable = false)
+    @Builder.Default
+    private Long nombreMouvements = 0L;
+
+    @Column(name = "derniere_maj")
+    private LocalDateTime derniereMaj;
+
+    public double getSoldeJournalier() {
+        return Money.soustraire(totalEpargne.francs(), totalRetrait.francs());
+    }
+}
@@ -0,0 +1,54 @@
+package org.example.collectfocep.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.example.collectfocep.util.Money;
+import org.example.collectfocep.util.MoneyConverter;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Accrual journalier des commissions, alimenté chaque nuit par CommissionAccrualService.
+ * Une ligne par (client, jour) ayant de l'épargne : le montant du jour, le cumul du mois
+ * à date et la commission provisoire sur ce cumul. Le calcul de fin de mois et les
+ * aperçus en cours de mois lisent ces lignes au lieu d'agréger la table mouvements.
+ */
+@Entity
+@Table(name = "commission_accruals",
+        uniqueConstraints = @UniqueConstraint(name = "uk_commission_accruals", columnNames = {"client_id", "date_jour"}))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CommissionAccrual {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "client_id", nullable = false)
+    private Long clientId;
+
+    @Column(name = "date_jour", nullable = false)
+    private LocalDate dateJour;
+
+    @Column(name = "montant_epargne", nullable = false)
+    @Convert(converter = MoneyConverter.class)
+    @Builder.Default
+    private Money montantEpargne = Money.ZERO;
+
+    @Column(name = "cumul_mois", nullable = false)
+    @Convert(converter = MoneyConverter.class)
+    @Builder.Default
+    private Money cumulMois = Money.ZERO;
+
+    @Column(name = "commission_provisoire", nullable = false)
+    @Convert(converter = MoneyConverter.class)
+    @Builder.Default
+    private Money commissionProvisoire = Money.ZERO;
+
+    @Column(name = "derniere_maj")
+    private LocalDateTime derniereMaj;
+}
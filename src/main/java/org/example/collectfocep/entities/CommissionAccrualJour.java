@@ -0,0 +1,32 @@
+package org.example.collectfocep.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Jour entièrement accru : seuls les jours présents ici sont lus depuis commission_accruals,
+ * les autres sont agrégés depuis les mouvements
+ */
+@Entity
+@Table(name = "commission_accrual_jours")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CommissionAccrualJour {
+
+    @Id
+    @Column(name = "date_jour", nullable = false)
+    private LocalDate dateJour;
+
+    @Column(name = "nombre_clients", nullable = false)
+    @Builder.Default
+    private Integer nombreClients = 0;
+
+    @Column(name = "date_execution", nullable = false)
+    private LocalDateTime dateExecution;
+}
@@ -0,0 +1,38 @@
+package org.example.collectfocep.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Variation de solde d'un compte partagé de l'agence (C.P.C.C, C.P.T, C.C.C, C.P.C, C.T)
+ * enregistrée dans la transaction d'un collecteur et appliquée après son commit par
+ * EcrituresDiffereesService. Les mouvements correspondants sont déjà dans la table
+ * mouvements : seule la mise à jour du solde est différée, pour que la transaction
+ * du collecteur ne verrouille pas les comptes communs à toute l'agence.
+ */
+@Entity
+@Table(name = "ecritures_comptes_differees",
+        indexes = @Index(name = "idx_ecritures_differees_compte", columnList = "compte_id, id"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EcritureCompteDifferee {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "compte_id", nullable = false)
+    private Long compteId;
+
+    // Variation en francs entiers (négative pour un débit)
+    @Column(name = "montant", nullable = false)
+    private long montant;
+
+    @Column(name = "date_creation", nullable = false)
+    private LocalDateTime dateCreation;
+}
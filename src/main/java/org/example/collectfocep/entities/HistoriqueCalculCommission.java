@@ -32,7 +32,9 @@ import java.time.LocalDateTime;
 public class HistoriqueCalculCommission {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "historique_calcul_commission_id_gen")
+    @TableGenerator(name = "historique_calcul_commission_id_gen", table = "id_generators", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "historique_calcul_commission", allocationSize = 50)
     private Long id;
 
     /**
@@ -87,7 +89,7 @@ public class HistoriqueCalculCommission {
     /**
      * Détails du calcul (JSON stockant les commissions par client)
      */
-    @Column(name = "details_calcul", columnDefinition = "TEXT")
+    @Column(name = "details_calcul", columnDefinition = "LONGTEXT")
     private String detailsCalcul;
 
     /**
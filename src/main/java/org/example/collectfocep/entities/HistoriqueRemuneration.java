@@ -26,7 +26,9 @@ import java.time.LocalDate;
 public class HistoriqueRemuneration {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "historique_remuneration_id_gen")
+    @TableGenerator(name = "historique_remuneration_id_gen", table = "id_generators", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "historique_remuneration", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
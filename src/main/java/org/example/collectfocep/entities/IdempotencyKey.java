@@ -0,0 +1,68 @@
+package org.example.collectfocep.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Trace d'une opération d'épargne/retrait déjà exécutée pour une clé
+ * Idempotency-Key donnée. La contrainte d'unicité (portée, clé) garantit qu'une
+ * même clé ne peut produire qu'un seul mouvement par utilisateur, même entre
+ * plusieurs instances.
+ */
+@Entity
+@Table(name = "idempotency_keys",
+        uniqueConstraints = @UniqueConstraint(name = "uk_idempotency_scope_key",
+                columnNames = {"scope", "idempotency_key"}),
+        indexes = @Index(name = "idx_idempotency_date_creation", columnList = "date_creation"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdempotencyKey {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Utilisateur authentifié ayant émis la clé
+    @Column(name = "scope", nullable = false, length = 100)
+    private String scope;
+
+    @Column(name = "idempotency_key", nullable = false, length = 100)
+    private String idempotencyKey;
+
+    // SHA-256 du contenu de la requête (null pour les clés antérieures à V011)
+    @Column(name = "request_hash", length = 64)
+    private String requestHash;
+
+    @Column(name = "operation", nullable = false, length = 20)
+    private String operation; // "EPARGNE" ou "RETRAIT"
+
+    @Column(name = "mouvement_id", nullable = false)
+    private Long mouvementId;
+
+    // Réponse d'origine, rejouée telle quelle pour un doublon
+    @Column(name = "type_operation")
+    private String typeOperation;
+
+    @Column(name = "montant", nullable = false)
+    private double montant;
+
+    @Column(name = "compte_source")
+    private String compteSource;
+
+    @Column(name = "compte_destination")
+    private String compteDestination;
+
+    @Column(name = "libelle")
+    private String libelle;
+
+    @Column(name = "date_operation")
+    private LocalDateTime dateOperation;
+
+    @Column(name = "date_creation", nullable = false)
+    private LocalDateTime dateCreation;
+}
@@ -10,6 +10,7 @@ import java.util.List;
 
 @Entity
 @Table(name = "journaux")
+@EntityListeners(JournalDuJourListener.class)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -21,7 +21,9 @@ import java.time.LocalDateTime;
 public class JournalActivite {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "journal_activite_id_gen")
+    @TableGenerator(name = "journal_activite_id_gen", table = "id_generators", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "journal_activite", allocationSize = 50)
     private Long id;
 
     @Column(name = "user_id", nullable = false)
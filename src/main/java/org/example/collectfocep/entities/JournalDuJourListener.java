@@ -0,0 +1,25 @@
+package org.example.collectfocep.entities;
+
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.example.collectfocep.services.JournalDuJourRegistry;
+
+/**
+ * Invalide le registre du journal du jour dès qu'un Journal est modifié (clôture,
+ * réouverture) ou supprimé, quel que soit le service à l'origine de l'écriture.
+ * Instancié par Hibernate via le conteneur de beans Spring.
+ */
+public class JournalDuJourListener {
+
+    private final JournalDuJourRegistry journalDuJourRegistry;
+
+    public JournalDuJourListener(JournalDuJourRegistry journalDuJourRegistry) {
+        this.journalDuJourRegistry = journalDuJourRegistry;
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void invaliderJournal(Journal journal) {
+        journalDuJourRegistry.invalider(journal.getId());
+    }
+}
@@ -8,7 +8,10 @@ import lombok.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "mouvements")
+@Table(name = "mouvements", indexes = {
+        @Index(name = "idx_mouvement_dest_date_categorie",
+                columnList = "compte_destination, date_operation, categorie, montant")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -18,7 +21,9 @@ import java.time.LocalDateTime;
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class Mouvement {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "mouvement_id_gen")
+    @TableGenerator(name = "mouvement_id_gen", table = "id_generators", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "mouvements", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -38,6 +43,11 @@ public class Mouvement {
     @Column(name = "type_mouvement")
     private String typeMouvement; // "EPARGNE" ou "RETRAIT"
 
+    // Catégorie typée, recalculée à chaque écriture (voir CategorieMouvement)
+    @Enumerated(EnumType.STRING)
+    @Column(name = "categorie", length = 20)
+    private CategorieMouvement categorie;
+
     // RELATIONS
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "client_id")
@@ -94,6 +104,7 @@ public class Mouvement {
         if (this.dateOperation == null) {
             this.dateOperation = LocalDateTime.now();
         }
+        this.categorie = CategorieMouvement.classer(this.typeMouvement, this.sens, this.libelle);
     }
 
     public String getTypeMouvementCalcule() {
@@ -101,14 +112,12 @@ public class Mouvement {
             return this.typeMouvement;
         }
 
-        // Fallback basé sur le sens et le libellé
-        if (this.libelle != null) {
-            if (this.libelle.toLowerCase().contains("épargne") ||
-                    this.libelle.toLowerCase().contains("depot")) {
-                return "EPARGNE";
-            } else if (this.libelle.toLowerCase().contains("retrait")) {
-                return "RETRAIT";
-            }
+        // Fallback basé sur la catégorie (calculée à l'écriture, sinon à la volée)
+        CategorieMouvement cat = this.categorie != null
+                ? this.categorie
+                : CategorieMouvement.classer(null, this.sens, this.libelle);
+        if (cat == CategorieMouvement.EPARGNE || cat == CategorieMouvement.RETRAIT) {
+            return cat.name();
         }
 
         return this.sens != null ? this.sens.toUpperCase() : "INCONNU";
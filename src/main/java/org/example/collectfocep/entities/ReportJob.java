@@ -0,0 +1,122 @@
+package org.example.collectfocep.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Demande de génération de rapport mise en file (ReportJobQueue).
+ *
+ * La ligne survit au redémarrage : un job PROCESSING dont le battement de cœur n'est plus
+ * rafraîchi est remis en attente, un job PENDING est repris par le prochain passage du répartiteur.
+ */
+@Entity
+@Table(name = "report_jobs",
+        uniqueConstraints = @UniqueConstraint(name = "uk_report_jobs_tracking", columnNames = "tracking_id"),
+        indexes = {
+                @Index(name = "idx_report_jobs_file", columnList = "statut, priorite, date_creation"),
+                @Index(name = "idx_report_jobs_agence", columnList = "agence_id, statut")
+        })
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReportJob {
+
+    public enum TypeJob {
+        MENSUEL,
+        ANNUEL,
+        PERIODE,
+        EXPORT_EXCEL
+    }
+
+    /**
+     * Classe de priorité ; stockée par son rang, l'ordre des constantes EST l'ordre de passage
+     */
+    public enum Priorite {
+        INTERACTIF,  // rapports demandés par un collecteur ou un admin, attendus à l'écran
+        MASSE        // exports SuperAdmin
+    }
+
+    public enum Statut {
+        PENDING,
+        PROCESSING,
+        COMPLETED,
+        FAILED,
+        CANCELLED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "tracking_id", nullable = false, length = 36)
+    private String trackingId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", nullable = false, length = 20)
+    private TypeJob type;
+
+    @Enumerated(EnumType.ORDINAL)
+    @Column(name = "priorite", nullable = false)
+    private Priorite priorite;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "statut", nullable = false, length = 20)
+    @Builder.Default
+    private Statut statut = Statut.PENDING;
+
+    // Agence de rattachement, clé de l'équité entre agences (null : export toutes agences)
+    @Column(name = "agence_id")
+    private Long agenceId;
+
+    @Column(name = "collecteur_id")
+    private Long collecteurId;
+
+    @Column(name = "periode_debut")
+    private LocalDateTime periodeDebut;
+
+    @Column(name = "periode_fin")
+    private LocalDateTime periodeFin;
+
+    // Limite d'enregistrements des exports
+    @Column(name = "limite")
+    private Integer limite;
+
+    @Column(name = "progression", nullable = false)
+    @Builder.Default
+    private int progression = 0;
+
+    @Column(name = "message", length = 500)
+    private String message;
+
+    // Chemin du fichier produit, relatif à app.reports.output-directory
+    @Column(name = "resultat", length = 500)
+    private String resultat;
+
+    @Column(name = "tentatives", nullable = false)
+    @Builder.Default
+    private int tentatives = 0;
+
+    @Column(name = "demande_par", length = 100)
+    private String demandePar;
+
+    @Column(name = "date_creation", nullable = false)
+    private LocalDateTime dateCreation;
+
+    @Column(name = "date_debut")
+    private LocalDateTime dateDebut;
+
+    @Column(name = "date_fin")
+    private LocalDateTime dateFin;
+
+    // Rafraîchi par l'instance qui exécute le job ; un battement trop ancien signale un job orphelin
+    @Column(name = "date_heartbeat")
+    private LocalDateTime dateHeartbeat;
+
+    public boolean estTermine() {
+        return statut == Statut.COMPLETED || statut == Statut.FAILED || statut == Statut.CANCELLED;
+    }
+}
@@ -37,6 +37,21 @@ public interface CommissionParameterMapper {
     @Mapping(expression = "java(bigDecimalToDouble(entity.getValeur()))", target = "valeur")
     CommissionParameterDTO toDTO(CommissionParameter entity);
 
+    /**
+     * Entity vers DTO sans les noms des titulaires : pour un paramètre détaché
+     * (ReglesCommissionCache#resoudre), seuls les identifiants des relations sont lisibles
+     */
+    @Named("sansNoms")
+    @Mapping(source = "client.id", target = "clientId")
+    @Mapping(source = "collecteur.id", target = "collecteurId")
+    @Mapping(source = "agence.id", target = "agenceId")
+    @Mapping(target = "clientNom", ignore = true)
+    @Mapping(target = "collecteurNom", ignore = true)
+    @Mapping(target = "agenceNom", ignore = true)
+    @Mapping(source = "tiers", target = "paliersCommission")
+    @Mapping(expression = "java(bigDecimalToDouble(entity.getValeur()))", target = "valeur")
+    CommissionParameterDTO toDTOSansNoms(CommissionParameter entity);
+
     /**
      * DTO vers Entity - TOUTES LES PROPRIÉTÉS BUILDER IGNORÉES
      */
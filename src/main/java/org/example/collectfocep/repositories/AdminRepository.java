@@ -79,6 +79,15 @@ public interface AdminRepository extends JpaRepository<Admin, Long> {
     @Query("SELECT a FROM Admin a WHERE a.agence.id = :agenceId")
     List<Admin> findByAgenceId(@Param("agenceId") Long agenceId);
 
+    /**
+     * Admins avec leur agence en une requête (agence EAGER : sinon une requête par agence)
+     */
+    @Query("SELECT a FROM Admin a LEFT JOIN FETCH a.agence")
+    List<Admin> findAllWithAgence();
+
+    @Query("SELECT a FROM Admin a JOIN FETCH a.agence WHERE a.agence.id = :agenceId")
+    List<Admin> findByAgenceIdWithAgence(@Param("agenceId") Long agenceId);
+
     /**
      * Vérifie si un admin est le seul admin de son agence
      */
@@ -708,6 +708,28 @@ public interface ClientRepository extends JpaRepository<Client, Long> {
            "JOIN cc.client c WHERE c.collecteur.id = :collecteurId AND c.valide = true")
     Double sumSoldesByCollecteurId(@Param("collecteurId") Long collecteurId);
 
+    /**
+     * 📊 Export : [agenceId, nb clients, somme des soldes des clients actifs] par agence
+     */
+    @Query("SELECT c.agence.id, COUNT(c), " +
+           "COALESCE(SUM(CASE WHEN c.valide = true THEN cc.solde ELSE 0.0 END), 0.0) " +
+           "FROM Client c LEFT JOIN c.compteClient cc " +
+           "WHERE (:agenceId IS NULL OR c.agence.id = :agenceId) " +
+           "GROUP BY c.agence.id")
+    List<Object[]> statsExportParAgence(@Param("agenceId") Long agenceId);
+
+    /**
+     * 📊 Export : [collecteurId, nb clients, nb clients actifs, somme des soldes des clients actifs]
+     * par collecteur
+     */
+    @Query("SELECT c.collecteur.id, COUNT(c), " +
+           "SUM(CASE WHEN c.valide = true THEN 1 ELSE 0 END), " +
+           "COALESCE(SUM(CASE WHEN c.valide = true THEN cc.solde ELSE 0.0 END), 0.0) " +
+           "FROM Client c LEFT JOIN c.compteClient cc " +
+           "WHERE c.collecteur IS NOT NULL AND (:agenceId IS NULL OR c.agence.id = :agenceId) " +
+           "GROUP BY c.collecteur.id")
+    List<Object[]> statsExportParCollecteur(@Param("agenceId") Long agenceId);
+
     // =====================================
     // 💰 MÉTHODES ENRICHIES POUR SUPERADMIN (AVEC DONNÉES COMPLÈTES)
     // =====================================
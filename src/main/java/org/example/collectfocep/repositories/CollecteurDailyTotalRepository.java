@@ -0,0 +1,60 @@
+package org.example.collectfocep.repositories;
+
+import org.example.collectfocep.dto.CollecteurTotauxProjection;
+import org.example.collectfocep.entities.CollecteurDailyTotal;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface CollecteurDailyTotalRepository extends JpaRepository<CollecteurDailyTotal, Long> {
+
+    Optional<CollecteurDailyTotal> findByCollecteurIdAndDateJour(Long collecteurId, LocalDate dateJour);
+
+    /**
+     * Cumul atomique (upsert) : crée la ligne du jour ou y ajoute les deltas
+     */
+    @Modifying
+    @Query(value = "INSERT INTO collecteur_daily_totals " +
+            "(collecteur_id, date_jour, total_epargne, total_retrait, nombre_epargnes, nombre_retraits, nombre_mouvements, derniere_maj) " +
+            "VALUES (:collecteurId, :dateJour, :epargne, :retrait, :nombreEpargnes, :nombreRetraits, :nombreMouvements, :maintenant) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "total_epargne = total_epargne + VALUES(total_epargne), " +
+            "total_retrait = total_retrait + VALUES(total_retrait), " +
+            "nombre_epargnes = nombre_epargnes + VALUES(nombre_epargnes), " +
+            "nombre_retraits = nombre_retraits + VALUES(nombre_retraits), " +
+            "nombre_mouvements = nombre_mouvements + VALUES(nombre_mouvements), " +
+            "derniere_maj = VALUES(derniere_maj)",
+            nativeQuery = true)
+    int cumuler(@Param("collecteurId") Long collecteurId,
+                @Param("dateJour") LocalDate dateJour,
+                @Param("epargne") long epargne,
+                @Param("retrait") long retrait,
+                @Param("nombreEpargnes") long nombreEpargnes,
+                @Param("nombreRetraits") long nombreRetraits,
+                @Param("nombreMouvements") long nombreMouvements,
+                @Param("maintenant") LocalDateTime maintenant);
+
+    @Query(value = "SELECT CAST(COALESCE(SUM(t.total_epargne), 0) AS SIGNED) AS totalEpargne, " +
+            "CAST(COALESCE(SUM(t.total_retrait), 0) AS SIGNED) AS totalRetrait, " +
+            "CAST(COALESCE(SUM(t.nombre_mouvements), 0) AS SIGNED) AS nombreMouvements " +
+            "FROM collecteur_daily_totals t " +
+            "WHERE t.collecteur_id = :collecteurId AND t.date_jour BETWEEN :dateDebut AND :dateFin",
+            nativeQuery = true)
+    CollecteurTotauxProjection sumByCollecteurAndPeriode(@Param("collecteurId") Long collecteurId,
+                                                         @Param("dateDebut") LocalDate dateDebut,
+                                                         @Param("dateFin") LocalDate dateFin);
+
+    @Query(value = "SELECT CAST(COALESCE(SUM(t.total_epargne), 0) AS SIGNED) AS totalEpargne, " +
+            "CAST(COALESCE(SUM(t.total_retrait), 0) AS SIGNED) AS totalRetrait, " +
+            "CAST(COALESCE(SUM(t.nombre_mouvements), 0) AS SIGNED) AS nombreMouvements " +
+            "FROM collecteur_daily_totals t WHERE t.collecteur_id = :collecteurId",
+            nativeQuery = true)
+    CollecteurTotauxProjection sumByCollecteur(@Param("collecteurId") Long collecteurId);
+}
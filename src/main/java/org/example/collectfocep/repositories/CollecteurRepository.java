@@ -258,6 +258,14 @@ public interface CollecteurRepository extends JpaRepository<Collecteur, Long> {
     @Query("SELECT COUNT(c) FROM Collecteur c JOIN Admin a ON c.agenceId = a.agence.id WHERE a.id = :adminId")
     Long countByAdminId(@Param("adminId") Long adminId);
 
+    /**
+     * 📊 Export : [agenceId, nb collecteurs, nb collecteurs actifs] par agence
+     */
+    @Query("SELECT c.agenceId, COUNT(c), SUM(CASE WHEN c.active = true THEN 1 ELSE 0 END) " +
+           "FROM Collecteur c WHERE (:agenceId IS NULL OR c.agenceId = :agenceId) " +
+           "GROUP BY c.agenceId")
+    List<Object[]> statsExportParAgence(@Param("agenceId") Long agenceId);
+
     // =====================================
     // ENTITY GRAPHS POUR DONNÉES ENRICHIES
     // =====================================
@@ -0,0 +1,21 @@
+package org.example.collectfocep.repositories;
+
+import org.example.collectfocep.entities.CommissionAccrualJour;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CommissionAccrualJourRepository extends JpaRepository<CommissionAccrualJour, LocalDate> {
+
+    @Query("SELECT MAX(j.dateJour) FROM CommissionAccrualJour j")
+    Optional<LocalDate> findDernierJour();
+
+    @Query("SELECT j.dateJour FROM CommissionAccrualJour j WHERE j.dateJour BETWEEN :dateDebut AND :dateFin ORDER BY j.dateJour")
+    List<LocalDate> findJoursBetween(@Param("dateDebut") LocalDate dateDebut, @Param("dateFin") LocalDate dateFin);
+}
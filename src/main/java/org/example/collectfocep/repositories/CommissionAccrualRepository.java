@@ -0,0 +1,87 @@
+package org.example.collectfocep.repositories;
+
+import org.example.collectfocep.entities.CommissionAccrual;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface CommissionAccrualRepository extends JpaRepository<CommissionAccrual, Long> {
+
+    @Modifying
+    @Query(value = "DELETE FROM commission_accruals WHERE date_jour = :jour", nativeQuery = true)
+    int supprimerJour(@Param("jour") LocalDate jour);
+
+    /**
+     * Épargne du jour par client (même définition que sumAmountByClientsAndPeriod), en francs
+     */
+    @Modifying
+    @Query(value = "INSERT INTO commission_accruals " +
+            "(client_id, date_jour, montant_epargne, cumul_mois, commission_provisoire, derniere_maj) " +
+            "SELECT m.client_id, :jour, CAST(ROUND(SUM(m.montant)) AS SIGNED), 0, 0, :maintenant " +
+            "FROM mouvements m " +
+            "WHERE m.client_id IS NOT NULL " +
+            "AND m.date_operation BETWEEN :debut AND :fin " +
+            "AND m.categorie = 'EPARGNE' " +
+            "GROUP BY m.client_id " +
+            "HAVING SUM(m.montant) > 0",
+            nativeQuery = true)
+    int insererJour(@Param("jour") LocalDate jour,
+                    @Param("debut") LocalDateTime debut,
+                    @Param("fin") LocalDateTime fin,
+                    @Param("maintenant") LocalDateTime maintenant);
+
+    /**
+     * Cumul du mois à date pour les lignes du jour
+     */
+    @Modifying
+    @Query(value = "UPDATE commission_accruals a " +
+            "JOIN (SELECT client_id, SUM(montant_epargne) AS cumul FROM commission_accruals " +
+            "      WHERE date_jour BETWEEN :debutMois AND :jour GROUP BY client_id) t " +
+            "ON t.client_id = a.client_id " +
+            "SET a.cumul_mois = t.cumul " +
+            "WHERE a.date_jour = :jour",
+            nativeQuery = true)
+    int calculerCumulMois(@Param("jour") LocalDate jour, @Param("debutMois") LocalDate debutMois);
+
+    /**
+     * [clientId, collecteurId, agenceId, cumulMois] des lignes du jour
+     */
+    @Query(value = "SELECT a.client_id, c.id_collecteur, c.id_agence, a.cumul_mois " +
+            "FROM commission_accruals a JOIN clients c ON c.id = a.client_id " +
+            "WHERE a.date_jour = :jour",
+            nativeQuery = true)
+    List<Object[]> findLignesJour(@Param("jour") LocalDate jour);
+
+    /**
+     * [clientId, épargne] sur une période, en francs
+     */
+    @Query(value = "SELECT a.client_id, CAST(SUM(a.montant_epargne) AS SIGNED) " +
+            "FROM commission_accruals a " +
+            "WHERE a.client_id IN :clientIds AND a.date_jour BETWEEN :dateDebut AND :dateFin " +
+            "GROUP BY a.client_id",
+            nativeQuery = true)
+    List<Object[]> sumEpargneByClients(@Param("clientIds") Collection<Long> clientIds,
+                                       @Param("dateDebut") LocalDate dateDebut,
+                                       @Param("dateFin") LocalDate dateFin);
+
+    /**
+     * Dernière ligne du mois pour chaque client du collecteur : cumul et commission provisoire à date
+     */
+    @Query(value = "SELECT a.* FROM commission_accruals a " +
+            "JOIN clients c ON c.id = a.client_id " +
+            "WHERE c.id_collecteur = :collecteurId " +
+            "AND a.date_jour = (SELECT MAX(a2.date_jour) FROM commission_accruals a2 " +
+            "                   WHERE a2.client_id = a.client_id AND a2.date_jour BETWEEN :debutMois AND :jour)",
+            nativeQuery = true)
+    List<CommissionAccrual> findDerniersDuMoisByCollecteur(@Param("collecteurId") Long collecteurId,
+                                                           @Param("debutMois") LocalDate debutMois,
+                                                           @Param("jour") LocalDate jour);
+}
@@ -93,6 +93,22 @@ public interface CommissionParameterRepository extends JpaRepository<CommissionP
         """)
     List<CommissionParameter> findByClientIdIn(@Param("clientIds") List<Long> clientIds);
 
+    /**
+     * Paramètres actifs d'une agence (agence, ses collecteurs et leurs clients) avec paliers,
+     * pour la compilation de TableReglesCommission
+     */
+    @Query("""
+        SELECT DISTINCT cp FROM CommissionParameter cp
+        LEFT JOIN FETCH cp.tiers
+        LEFT JOIN cp.collecteur co
+        LEFT JOIN cp.client cl
+        LEFT JOIN cl.collecteur clc
+        WHERE cp.active = true
+        AND (cp.validTo IS NULL OR cp.validTo >= CURRENT_DATE)
+        AND (cp.agence.id = :agenceId OR co.agence.id = :agenceId OR clc.agence.id = :agenceId)
+        """)
+    List<CommissionParameter> findActifsByAgenceIdWithTiers(@Param("agenceId") Long agenceId);
+
     // Méthodes de compatibilité pour CommissionOrchestrator
     default Optional<CommissionParameter> findByClientId(Long clientId) {
         return findActiveCommissionParameter(clientId);
@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,4 +18,13 @@ public interface CompteClientRepository extends JpaRepository<CompteClient, Long
     
     @Query("SELECT cc FROM CompteClient cc LEFT JOIN FETCH cc.client WHERE cc.client.id IN :clientIds")
     List<CompteClient> findByClientIdIn(@Param("clientIds") List<Long> clientIds);
+
+    @Query("SELECT cc.id FROM CompteClient cc WHERE cc.client.id IN :clientIds")
+    List<Long> findIdsByClientIdIn(@Param("clientIds") List<Long> clientIds);
+
+    /**
+     * Couples [clientId, compteClientId] en une requête
+     */
+    @Query("SELECT cc.client.id, cc.id FROM CompteClient cc WHERE cc.client.id IN :clientIds")
+    List<Object[]> findClientIdEtCompteIdByClientIdIn(@Param("clientIds") Collection<Long> clientIds);
 }
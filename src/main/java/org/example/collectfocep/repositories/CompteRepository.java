@@ -1,12 +1,15 @@
 package org.example.collectfocep.repositories;
 
 import org.example.collectfocep.entities.Compte;
+import org.example.collectfocep.entities.CompteSalaireCollecteur;
 import org.example.collectfocep.entities.CompteSysteme;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -32,6 +35,29 @@ public interface CompteRepository extends JpaRepository<Compte, Long> {
     @Query("SELECT c FROM CompteSysteme c WHERE c.typeCompte = :typeCompte")
     Optional<CompteSysteme> findSystemCompteByTypeCompte(@Param("typeCompte") String typeCompte);
 
+    /**
+     * Applique un delta cumulé au solde en une seule écriture (incrémente la version
+     * pour que les écritures concurrentes via l'entité échouent en verrouillage optimiste).
+     * Requête native : en JPQL, l'héritage JOINED fait passer Hibernate par une table
+     * temporaire (création, insertion, mise à jour, suppression) à chaque appel.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE comptes SET solde = solde + :delta, version = version + 1 WHERE id = :compteId",
+            nativeQuery = true)
+    int incrementerSolde(@Param("compteId") Long compteId, @Param("delta") long delta);
+
+    /**
+     * Couples [compteId, solde] sans charger les entités
+     */
+    @Query("SELECT c.id, c.solde FROM Compte c WHERE c.id IN :compteIds")
+    List<Object[]> findSoldesByIdIn(@Param("compteIds") Collection<Long> compteIds);
+
+    /**
+     * C.S.C existants d'un ensemble de collecteurs
+     */
+    @Query("SELECT csc FROM CompteSalaireCollecteur csc WHERE csc.collecteur.id IN :collecteurIds")
+    List<CompteSalaireCollecteur> findSalairesByCollecteurIdIn(@Param("collecteurIds") Collection<Long> collecteurIds);
+
     /**
      * Vérifie si un compte avec le numéro donné existe
      */
@@ -3,6 +3,8 @@ package org.example.collectfocep.repositories;
 import org.example.collectfocep.entities.Collecteur;
 import org.example.collectfocep.entities.CompteServiceEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -11,6 +13,10 @@ import java.util.Optional;
 @Repository
 public interface CompteServiceRepository extends JpaRepository<CompteServiceEntity, Long> {
     Optional<CompteServiceEntity> findFirstByCollecteur(Collecteur collecteur);
+
+    @Query("SELECT c.id FROM CompteServiceEntity c WHERE c.collecteur.id = :collecteurId ORDER BY c.id")
+    List<Long> findIdsByCollecteurId(@Param("collecteurId") Long collecteurId);
+
     List<CompteServiceEntity> findAllByCollecteur(Collecteur collecteur);
     boolean existsByCollecteur(Collecteur collecteur);
 }
\ No newline at end of file
@@ -0,0 +1,32 @@
+package org.example.collectfocep.repositories;
+
+import org.example.collectfocep.entities.EcritureCompteDifferee;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface EcritureCompteDiffereeRepository extends JpaRepository<EcritureCompteDifferee, Long> {
+
+    /**
+     * Lignes [compteId, somme des variations, plus grand id] des écritures en attente
+     */
+    @Query("SELECT e.compteId, SUM(e.montant), MAX(e.id) FROM EcritureCompteDifferee e " +
+            "WHERE e.compteId IN :compteIds GROUP BY e.compteId")
+    List<Object[]> sommerParCompte(@Param("compteIds") Collection<Long> compteIds);
+
+    @Query("SELECT DISTINCT e.compteId FROM EcritureCompteDifferee e")
+    List<Long> findComptesEnAttente();
+
+    /**
+     * Supprime les écritures appliquées (id &lt;= dernier id lu) d'un compte
+     */
+    @Modifying
+    @Query("DELETE FROM EcritureCompteDifferee e WHERE e.compteId = :compteId AND e.id <= :dernierId")
+    int supprimerAppliquees(@Param("compteId") Long compteId, @Param("dernierId") Long dernierId);
+}
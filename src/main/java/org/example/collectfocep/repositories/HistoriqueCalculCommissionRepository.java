@@ -4,10 +4,12 @@ import org.example.collectfocep.entities.HistoriqueCalculCommission;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
@@ -125,6 +127,22 @@ public interface HistoriqueCalculCommissionRepository extends JpaRepository<Hist
                                                            @Param("dateDebut") java.time.LocalDateTime dateDebut,
                                                            @Param("dateFin") java.time.LocalDateTime dateFin);
 
+    /**
+     * Calculs terminés et non rémunérés des collecteurs d'une agence pour une période exacte
+     */
+    @Query("""
+        SELECT h FROM HistoriqueCalculCommission h
+        WHERE h.agenceId = :agenceId
+        AND h.dateDebut = :dateDebut
+        AND h.dateFin = :dateFin
+        AND h.statut = 'CALCULE'
+        AND (h.remunere = false OR h.remunere IS NULL)
+        ORDER BY h.collecteur.id
+        """)
+    List<HistoriqueCalculCommission> findNonRemuneresByAgenceAndPeriod(@Param("agenceId") Long agenceId,
+                                                                       @Param("dateDebut") LocalDate dateDebut,
+                                                                       @Param("dateFin") LocalDate dateFin);
+
     /**
      * Somme des commissions par agence sur une période
      */
@@ -169,4 +187,35 @@ public interface HistoriqueCalculCommissionRepository extends JpaRepository<Hist
         WHERE h.remunerationId = :remunerationId
         """)
     List<HistoriqueCalculCommission> findByRemunerationId(@Param("remunerationId") Long remunerationId);
-}
\ No newline at end of file
+
+    // =====================================
+    // CALCUL EN FLUX
+    // =====================================
+
+    /**
+     * Ajoute un fragment JSON aux détails sans charger la colonne
+     */
+    @Modifying
+    @Query(value = """
+        UPDATE historique_calcul_commission
+        SET details_calcul = CONCAT(COALESCE(details_calcul, ''), :fragment)
+        WHERE id = :id
+        """, nativeQuery = true)
+    int ajouterDetails(@Param("id") Long id, @Param("fragment") String fragment);
+
+    /**
+     * Totaux et statut final d'un calcul en flux
+     */
+    @Modifying
+    @Query("""
+        UPDATE HistoriqueCalculCommission h
+        SET h.montantCommissionTotal = :montantCommissionTotal, h.montantTvaTotal = :montantTvaTotal,
+            h.nombreClients = :nombreClients, h.statut = :statut, h.version = h.version + 1
+        WHERE h.id = :id
+        """)
+    int finaliserCalcul(@Param("id") Long id,
+                        @Param("montantCommissionTotal") BigDecimal montantCommissionTotal,
+                        @Param("montantTvaTotal") BigDecimal montantTvaTotal,
+                        @Param("nombreClients") Integer nombreClients,
+                        @Param("statut") HistoriqueCalculCommission.StatutCalcul statut);
+}
@@ -7,6 +7,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -46,4 +47,16 @@ public interface HistoriqueRemunerationRepository extends JpaRepository<Historiq
         @Param("dateDebut") LocalDate dateDebut,
         @Param("dateFin") LocalDate dateFin
     );
-}
\ No newline at end of file
+
+    /**
+     * Collecteurs ayant déjà une rémunération qui chevauche la période (contrôle groupé)
+     */
+    @Query("SELECT DISTINCT hr.collecteur.id FROM HistoriqueRemuneration hr WHERE " +
+           "hr.collecteur.id IN :collecteurIds AND " +
+           "hr.dateDebutPeriode <= :dateFin AND hr.dateFinPeriode >= :dateDebut")
+    List<Long> findCollecteurIdsWithOverlappingPeriod(
+        @Param("collecteurIds") Collection<Long> collecteurIds,
+        @Param("dateDebut") LocalDate dateDebut,
+        @Param("dateFin") LocalDate dateFin
+    );
+}
@@ -0,0 +1,24 @@
+package org.example.collectfocep.repositories;
+
+import org.example.collectfocep.entities.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, Long> {
+
+    Optional<IdempotencyKey> findByScopeAndIdempotencyKey(String scope, String idempotencyKey);
+
+    /**
+     * Purge des clés expirées
+     */
+    @Modifying
+    @Query("DELETE FROM IdempotencyKey k WHERE k.dateCreation < :before")
+    int deleteByDateCreationBefore(@Param("before") LocalDateTime before);
+}
@@ -312,6 +312,31 @@ public interface MouvementRepository extends JpaRepository<Mouvement, Long> {
     // MÉTHODES PAR COLLECTEUR ET DATES - CORRIGÉES
     // =====================================
 
+    /**
+     * 📊 Filigrane des mouvements d'un collecteur sur une période :
+     * [nombre, id max, somme des versions, somme des montants].
+     * Change dès qu'un mouvement de la période est créé, modifié ou supprimé
+     */
+    @Query("SELECT COUNT(m), COALESCE(MAX(m.id), 0), COALESCE(SUM(m.version), 0), COALESCE(SUM(m.montant), 0.0) " +
+            "FROM Mouvement m " +
+            "WHERE m.collecteur.id = :collecteurId " +
+            "AND m.dateOperation BETWEEN :debut AND :fin")
+    List<Object[]> filigraneCollecteurPeriode(@Param("collecteurId") Long collecteurId,
+                                              @Param("debut") LocalDateTime debut,
+                                              @Param("fin") LocalDateTime fin);
+
+    /**
+     * 📊 Totaux d'un collecteur sur une période : [clientId, catégorie, somme, nombre] par client et catégorie
+     */
+    @Query("SELECT m.client.id, m.categorie, COALESCE(SUM(m.montant), 0.0), COUNT(m) " +
+            "FROM Mouvement m " +
+            "WHERE m.collecteur.id = :collecteurId " +
+            "AND m.dateOperation BETWEEN :debut AND :fin " +
+            "GROUP BY m.client.id, m.categorie")
+    List<Object[]> totauxParClientEtCategorie(@Param("collecteurId") Long collecteurId,
+                                              @Param("debut") LocalDateTime debut,
+                                              @Param("fin") LocalDateTime fin);
+
     /**
      * Mouvements par collecteur et période
      */
@@ -656,14 +681,12 @@ public interface MouvementRepository extends JpaRepository<Mouvement, Long> {
                                        @Param("dateLimit") LocalDateTime dateLimit);
 
     /**
-     * Somme épargne par client et période (CORRIGÉ - était 'CREDIT' au lieu de 'epargne')
-     * ⚠️ CRITIQUE: Cette requête était défectueuse et cherchait 'CREDIT' qui n'existe pas
-     * ✅ CORRIGÉE: Maintenant cherche 'epargne' qui correspond aux données réelles
+     * Somme épargne par client et période (catégorie EPARGNE, voir CategorieMouvement)
      */
     @Query("SELECT COALESCE(SUM(m.montant), 0) FROM Mouvement m " +
             "WHERE m.client.id = :clientId " +
             "AND m.dateOperation BETWEEN :startDate AND :endDate " +
-            "AND LOWER(m.sens) = 'epargne'")
+            "AND m.categorie = org.example.collectfocep.entities.CategorieMouvement.EPARGNE")
     double sumAmountByClientAndPeriod(@Param("clientId") Long clientId,
                                       @Param("startDate") LocalDateTime startDate,
                                       @Param("endDate") LocalDateTime endDate);
@@ -674,12 +697,28 @@ public interface MouvementRepository extends JpaRepository<Mouvement, Long> {
     @Query("SELECT m.client.id, COALESCE(SUM(m.montant), 0) FROM Mouvement m " +
             "WHERE m.client.id IN :clientIds " +
             "AND m.dateOperation BETWEEN :startDate AND :endDate " +
-            "AND LOWER(m.sens) = 'epargne' " +
+            "AND m.categorie = org.example.collectfocep.entities.CategorieMouvement.EPARGNE " +
             "GROUP BY m.client.id")
     List<Object[]> sumAmountByClientsAndPeriod(@Param("clientIds") List<Long> clientIds,
                                                @Param("startDate") LocalDateTime startDate,
                                                @Param("endDate") LocalDateTime endDate);
 
+    /**
+     * [clientId, collecteurId, épargne en francs] des clients d'une agence ayant épargné sur la période, triés par client
+     */
+    @Query(value = "SELECT c.id, c.id_collecteur, CAST(ROUND(SUM(m.montant)) AS SIGNED) " +
+            "FROM clients c JOIN mouvements m ON m.client_id = c.id " +
+            "WHERE c.id_agence = :agenceId " +
+            "AND m.date_operation BETWEEN :startDate AND :endDate " +
+            "AND m.categorie = 'EPARGNE' " +
+            "GROUP BY c.id, c.id_collecteur " +
+            "HAVING SUM(m.montant) > 0 " +
+            "ORDER BY c.id",
+            nativeQuery = true)
+    List<Object[]> sumEpargneParClientByAgence(@Param("agenceId") Long agenceId,
+                                               @Param("startDate") LocalDateTime startDate,
+                                               @Param("endDate") LocalDateTime endDate);
+
     // =====================================
     // MÉTHODES POUR TRANSFERTS
     // =====================================
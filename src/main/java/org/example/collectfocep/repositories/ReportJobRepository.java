@@ -0,0 +1,123 @@
+package org.example.collectfocep.repositories;
+
+import org.example.collectfocep.entities.ReportJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ReportJobRepository extends JpaRepository<ReportJob, Long> {
+
+    Optional<ReportJob> findByTrackingId(String trackingId);
+
+    /**
+     * Tête de file de chaque (priorité, agence) : le plus ancien job en attente de chaque groupe.
+     * Le répartiteur choisit parmi ces têtes, une agence qui empile des demandes ne masque donc
+     * jamais celles des autres
+     */
+    @Query("SELECT j FROM ReportJob j WHERE j.id IN (" +
+            "SELECT MIN(k.id) FROM ReportJob k WHERE k.statut = :statut GROUP BY k.priorite, k.agenceId)")
+    List<ReportJob> findTetesDeFile(@Param("statut") ReportJob.Statut statut);
+
+    /**
+     * Jobs en cours par agence, toutes instances confondues : [agenceId, nombre]
+     */
+    @Query("SELECT j.agenceId, COUNT(j) FROM ReportJob j WHERE j.statut = :statut GROUP BY j.agenceId")
+    List<Object[]> compterParAgence(@Param("statut") ReportJob.Statut statut);
+
+    /**
+     * Réservation conditionnelle : 1 si cette instance a pris le job, 0 si une autre l'a déjà pris
+     * ou s'il a été annulé entre-temps
+     */
+    @Modifying
+    @Query("UPDATE ReportJob j SET j.statut = :enCours, j.dateDebut = :maintenant, j.dateHeartbeat = :maintenant, " +
+            "j.tentatives = j.tentatives + 1, j.progression = 0, j.message = NULL " +
+            "WHERE j.id = :id AND j.statut = :enAttente")
+    int reserver(@Param("id") Long id,
+                 @Param("enAttente") ReportJob.Statut enAttente,
+                 @Param("enCours") ReportJob.Statut enCours,
+                 @Param("maintenant") LocalDateTime maintenant);
+
+    @Modifying
+    @Query("UPDATE ReportJob j SET j.progression = :progression " +
+            "WHERE j.id = :id AND j.statut = :enCours AND j.progression < :progression")
+    int progresser(@Param("id") Long id,
+                   @Param("enCours") ReportJob.Statut enCours,
+                   @Param("progression") int progression);
+
+    /**
+     * Fin d'exécution ; sans effet sur un job annulé ou repris par une autre instance entre-temps
+     */
+    @Modifying
+    @Query("UPDATE ReportJob j SET j.statut = :statut, j.progression = :progression, j.resultat = :resultat, " +
+            "j.message = :message, j.dateFin = :maintenant " +
+            "WHERE j.id = :id AND j.statut = :enCours")
+    int terminer(@Param("id") Long id,
+                 @Param("enCours") ReportJob.Statut enCours,
+                 @Param("statut") ReportJob.Statut statut,
+                 @Param("progression") int progression,
+                 @Param("resultat") String resultat,
+                 @Param("message") String message,
+                 @Param("maintenant") LocalDateTime maintenant);
+
+    /**
+     * Job refusé par le pool avant d'avoir démarré : retour en attente sans consommer de tentative
+     */
+    @Modifying
+    @Query("UPDATE ReportJob j SET j.statut = :enAttente, j.tentatives = j.tentatives - 1, j.progression = 0, " +
+            "j.message = :message WHERE j.id = :id AND j.statut = :enCours")
+    int remettreEnFile(@Param("id") Long id,
+                       @Param("enCours") ReportJob.Statut enCours,
+                       @Param("enAttente") ReportJob.Statut enAttente,
+                       @Param("message") String message);
+
+    @Modifying
+    @Query("UPDATE ReportJob j SET j.statut = :annule, j.message = :message, j.dateFin = :maintenant " +
+            "WHERE j.trackingId = :trackingId AND j.statut IN :actifs")
+    int annuler(@Param("trackingId") String trackingId,
+                @Param("actifs") Collection<ReportJob.Statut> actifs,
+                @Param("annule") ReportJob.Statut annule,
+                @Param("message") String message,
+                @Param("maintenant") LocalDateTime maintenant);
+
+    /**
+     * Battement de cœur des jobs exécutés par cette instance
+     */
+    @Modifying
+    @Query("UPDATE ReportJob j SET j.dateHeartbeat = :maintenant WHERE j.id IN :ids AND j.statut = :enCours")
+    int battre(@Param("ids") Collection<Long> ids,
+               @Param("enCours") ReportJob.Statut enCours,
+               @Param("maintenant") LocalDateTime maintenant);
+
+    @Query("SELECT j.id FROM ReportJob j WHERE j.id IN :ids AND j.statut = :annule")
+    List<Long> findIdsAnnules(@Param("ids") Collection<Long> ids, @Param("annule") ReportJob.Statut annule);
+
+    /**
+     * Jobs orphelins (instance arrêtée ou tombée) remis en attente tant qu'il reste des tentatives
+     */
+    @Modifying
+    @Query("UPDATE ReportJob j SET j.statut = :enAttente, j.progression = 0, j.message = :message " +
+            "WHERE j.statut = :enCours AND j.dateHeartbeat < :limite AND j.tentatives < :maxTentatives")
+    int reprendreOrphelins(@Param("enCours") ReportJob.Statut enCours,
+                           @Param("enAttente") ReportJob.Statut enAttente,
+                           @Param("limite") LocalDateTime limite,
+                           @Param("maxTentatives") int maxTentatives,
+                           @Param("message") String message);
+
+    @Modifying
+    @Query("UPDATE ReportJob j SET j.statut = :echec, j.message = :message, j.dateFin = :maintenant " +
+            "WHERE j.statut = :enCours AND j.dateHeartbeat < :limite AND j.tentatives >= :maxTentatives")
+    int abandonnerOrphelins(@Param("enCours") ReportJob.Statut enCours,
+                            @Param("echec") ReportJob.Statut echec,
+                            @Param("limite") LocalDateTime limite,
+                            @Param("maxTentatives") int maxTentatives,
+                            @Param("message") String message,
+                            @Param("maintenant") LocalDateTime maintenant);
+}
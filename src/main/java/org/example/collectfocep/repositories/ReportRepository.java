@@ -66,5 +66,15 @@ public interface ReportRepository extends JpaRepository<Report, Long> {
                                        @Param("type") String type,
                                        Pageable pageable);
 
+    /**
+     * Artefact stocké d'un rapport collecteur pour une période (au plus un par type et période)
+     */
+    @Query("SELECT r FROM Report r WHERE r.type = :type AND r.collecteur.id = :collecteurId " +
+            "AND r.dateDebut = :dateDebut AND r.dateFin = :dateFin ORDER BY r.dateCreation DESC")
+    List<Report> findArtefactsCollecteur(@Param("type") String type,
+                                         @Param("collecteurId") Long collecteurId,
+                                         @Param("dateDebut") LocalDateTime dateDebut,
+                                         @Param("dateFin") LocalDateTime dateFin);
+
 
 }
@@ -26,6 +26,16 @@ public interface RubriqueRemunerationRepository extends JpaRepository<RubriqueRe
             @Param("collecteurId") Long collecteurId,
             @Param("currentDate") LocalDate currentDate);
 
+    /**
+     * Rubriques actives à une date avec leurs collecteurs, en une requête (rémunération par agence)
+     */
+    @Query("SELECT DISTINCT r FROM RubriqueRemuneration r " +
+           "LEFT JOIN FETCH r.collecteurIds " +
+           "WHERE r.active = true " +
+           "AND r.dateApplication <= :currentDate " +
+           "ORDER BY r.dateApplication ASC")
+    List<RubriqueRemuneration> findActiveRubriquesWithCollecteurs(@Param("currentDate") LocalDate currentDate);
+
     /**
      * Récupère toutes les rubriques actives
      */
@@ -0,0 +1,103 @@
+package org.example.collectfocep.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.collectfocep.dto.CollecteurTotauxProjection;
+import org.example.collectfocep.entities.CollecteurDailyTotal;
+import org.example.collectfocep.entities.Mouvement;
+import org.example.collectfocep.repositories.CollecteurDailyTotalRepository;
+import org.example.collectfocep.util.Money;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maintien et lecture des totaux journaliers par collecteur (table collecteur_daily_totals).
+ *
+ * Les cumuls sont écrits dans la transaction du mouvement (propagation MANDATORY) :
+ * un mouvement annulé par rollback n'est jamais compté.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CollecteurDailyTotalsService {
+
+    private final CollecteurDailyTotalRepository dailyTotalRepository;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enregistrer(Mouvement mouvement) {
+        enregistrer(List.of(mouvement));
+    }
+
+    /**
+     * Cumule un lot de mouvements : une seule écriture par (collecteur, jour)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enregistrer(Collection<Mouvement> mouvements) {
+        Map<CleJour, Cumul> cumuls = new LinkedHashMap<>();
+        for (Mouvement mouvement : mouvements) {
+            if (mouvement.getCollecteur() == null || mouvement.getDateOperation() == null) {
+                continue;
+            }
+            CleJour cle = new CleJour(mouvement.getCollecteur().getId(), mouvement.getDateOperation().toLocalDate());
+            cumuls.computeIfAbsent(cle, k -> new Cumul()).ajouter(mouvement);
+        }
+
+        LocalDateTime maintenant = LocalDateTime.now();
+        cumuls.forEach((cle, cumul) -> {
+            dailyTotalRepository.cumuler(cle.collecteurId(), cle.jour(),
+                    cumul.epargne, cumul.retrait, cumul.nombreEpargnes, cumul.nombreRetraits,
+                    cumul.nombreMouvements, maintenant);
+            log.debug("Totaux journaliers cumulés: collecteur={}, jour={}, épargne=+{}, retrait=+{}",
+                    cle.collecteurId(), cle.jour(), cumul.epargne, cumul.retrait);
+        });
+    }
+
+    @Transactional(readOnly = true)
+    public CollecteurDailyTotal getTotauxJour(Long collecteurId, LocalDate jour) {
+        return dailyTotalRepository.findByCollecteurIdAndDateJour(collecteurId, jour)
+                .orElseGet(() -> CollecteurDailyTotal.builder()
+                        .collecteurId(collecteurId)
+                        .dateJour(jour)
+                        .build());
+    }
+
+    @Transactional(readOnly = true)
+    public CollecteurTotauxProjection getTotauxPeriode(Long collecteurId, LocalDate dateDebut, LocalDate dateFin) {
+        return dailyTotalRepository.sumByCollecteurAndPeriode(collecteurId, dateDebut, dateFin);
+    }
+
+    @Transactional(readOnly = true)
+    public CollecteurTotauxProjection getTotauxGlobaux(Long collecteurId) {
+        return dailyTotalRepository.sumByCollecteur(collecteurId);
+    }
+
+    private record CleJour(Long collecteurId, LocalDate jour) {
+    }
+
+    private static final class Cumul {
+        private long epargne;
+        private long retrait;
+        private long nombreEpargnes;
+        private long nombreRetraits;
+        private long nombreMouvements;
+
+        private void ajouter(Mouvement mouvement) {
+            nombreMouvements++;
+            if ("epargne".equalsIgnoreCase(mouvement.getSens())) {
+                epargne = Money.ajouter(epargne, Money.arrondir(mouvement.getMontant()));
+                nombreEpargnes++;
+            } else if ("retrait".equalsIgnoreCase(mouvement.getSens())) {
+                retrait = Money.ajouter(retrait, Money.arrondir(mouvement.getMontant()));
+                nombreRetraits++;
+            }
+        }
+    }
+}
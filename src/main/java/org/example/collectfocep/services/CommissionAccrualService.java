@@ -0,0 +1,244 @@
+package org.example.collectfocep.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.collectfocep.dto.ApercuCommissionDTO;
+import org.example.collectfocep.entities.CommissionAccrual;
+import org.example.collectfocep.entities.CommissionAccrualJour;
+import org.example.collectfocep.repositories.CommissionAccrualJourRepository;
+import org.example.collectfocep.repositories.CommissionAccrualRepository;
+import org.example.collectfocep.repositories.MouvementRepository;
+import org.example.collectfocep.util.Money;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Accrual journalier des commissions.
+ *
+ * Chaque nuit, l'épargne de la veille est agrégée une fois par client dans commission_accruals
+ * avec le cumul du mois et la commission provisoire sur ce cumul (règles de ReglesCommissionCache).
+ * Le calcul de fin de mois lit alors les jours accrus au lieu de parcourir les mouvements,
+ * et l'aperçu en cours de mois est une simple lecture.
+ *
+ * Les derniers jours (app.commission.accrual.jours-recalcul) sont recalculés à chaque passage
+ * pour absorber les saisies tardives ; une correction plus ancienne se rejoue avec {@link #accruerJour}.
+ */
+@Service
+@Slf4j
+public class CommissionAccrualService {
+
+    private static final String SQL_COMMISSION_PROVISOIRE =
+            "UPDATE commission_accruals SET commission_provisoire = ? WHERE client_id = ? AND date_jour = ?";
+
+    private final CommissionAccrualRepository accrualRepository;
+    private final CommissionAccrualJourRepository jourRepository;
+    private final MouvementRepository mouvementRepository;
+    private final ReglesCommissionCache reglesCommissionCache;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionJour;
+    private final int joursRecalcul;
+    private final AtomicBoolean enCours = new AtomicBoolean(false);
+
+    public CommissionAccrualService(CommissionAccrualRepository accrualRepository,
+                                    CommissionAccrualJourRepository jourRepository,
+                                    MouvementRepository mouvementRepository,
+                                    ReglesCommissionCache reglesCommissionCache,
+                                    JdbcTemplate jdbcTemplate,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${app.commission.accrual.jours-recalcul:3}") int joursRecalcul) {
+        this.accrualRepository = accrualRepository;
+        this.jourRepository = jourRepository;
+        this.mouvementRepository = mouvementRepository;
+        this.reglesCommissionCache = reglesCommissionCache;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionJour = new TransactionTemplate(transactionManager);
+        this.transactionJour.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.joursRecalcul = Math.max(1, joursRecalcul);
+    }
+
+    /**
+     * Accrue les jours non encore traités jusqu'à la veille, plus la fenêtre de recalcul.
+     * Au premier passage, l'historique repart du début du mois précédent.
+     */
+    @Scheduled(cron = "${app.commission.accrual.cron:0 15 1 * * ?}") // Tous les jours à 1h15 du matin
+    public void accruerJoursManquants() {
+        LocalDate hier = LocalDate.now().minusDays(1);
+        LocalDate debut = jourRepository.findDernierJour()
+                .map(dernier -> {
+                    LocalDate fenetre = hier.minusDays(joursRecalcul - 1L);
+                    return dernier.plusDays(1).isBefore(fenetre) ? dernier.plusDays(1) : fenetre;
+                })
+                .orElse(hier.minusMonths(1).withDayOfMonth(1));
+        accruerPeriode(debut, hier);
+    }
+
+    /**
+     * (Ré)accrue chaque jour de la période, dans l'ordre, un jour par transaction
+     */
+    public void accruerPeriode(LocalDate dateDebut, LocalDate dateFin) {
+        if (!enCours.compareAndSet(false, true)) {
+            log.warn("⚠️ Accrual des commissions déjà en cours, passage ignoré");
+            return;
+        }
+        try {
+            long debut = System.currentTimeMillis();
+            int jours = 0;
+            for (LocalDate jour = dateDebut; !jour.isAfter(dateFin); jour = jour.plusDays(1)) {
+                accruerJour(jour);
+                jours++;
+            }
+            if (jours > 0) {
+                log.info("📅 Accrual commissions {} → {}: {} jour(s) en {}ms",
+                        dateDebut, dateFin, jours, System.currentTimeMillis() - debut);
+            }
+        } finally {
+            enCours.set(false);
+        }
+    }
+
+    /**
+     * Recalcule un jour : épargne par client, cumul du mois et commission provisoire
+     */
+    public int accruerJour(LocalDate jour) {
+        Integer nombreClients = transactionJour.execute(status -> {
+            LocalDateTime maintenant = LocalDateTime.now();
+            accrualRepository.supprimerJour(jour);
+            int lignes = accrualRepository.insererJour(jour, jour.atStartOfDay(), jour.atTime(23, 59, 59), maintenant);
+            if (lignes > 0) {
+                accrualRepository.calculerCumulMois(jour, jour.withDayOfMonth(1));
+                calculerCommissionsProvisoires(jour);
+            }
+            jourRepository.save(CommissionAccrualJour.builder()
+                    .dateJour(jour)
+                    .nombreClients(lignes)
+                    .dateExecution(maintenant)
+                    .build());
+            return lignes;
+        });
+        log.debug("Accrual {}: {} client(s)", jour, nombreClients);
+        return nombreClients != null ? nombreClients : 0;
+    }
+
+    private void calculerCommissionsProvisoires(LocalDate jour) {
+        Date dateJour = Date.valueOf(jour);
+        List<Object[]> parametres = new ArrayList<>();
+        int sansRattachement = 0;
+        for (Object[] ligne : accrualRepository.findLignesJour(jour)) {
+            if (ligne[1] == null || ligne[2] == null) {
+                // Client sans collecteur ou sans agence : pas de règles applicables, commission provisoire à 0
+                sansRattachement++;
+                log.debug("Accrual {}: client {} sans collecteur/agence ignoré", jour, ligne[0]);
+                continue;
+            }
+            long clientId = ((Number) ligne[0]).longValue();
+            long collecteurId = ((Number) ligne[1]).longValue();
+            long agenceId = ((Number) ligne[2]).longValue();
+            long cumul = ((Number) ligne[3]).longValue();
+            long commission = reglesCommissionCache.getTable(agenceId).commission(clientId, collecteurId, cumul);
+            parametres.add(new Object[]{commission, clientId, dateJour});
+        }
+        if (sansRattachement > 0) {
+            log.warn("⚠️ Accrual {}: {} client(s) sans collecteur ou agence, commission provisoire non calculée",
+                    jour, sansRattachement);
+        }
+        jdbcTemplate.batchUpdate(SQL_COMMISSION_PROVISOIRE, parametres);
+    }
+
+    /**
+     * Épargne par client sur la période : jours accrus contigus depuis dateDebut lus dans
+     * commission_accruals, reste de la période agrégé depuis les mouvements
+     */
+    public Map<Long, BigDecimal> sommesEpargne(List<Long> clientIds, LocalDate dateDebut, LocalDate dateFin) {
+        Map<Long, BigDecimal> sommes = new HashMap<>();
+        clientIds.forEach(id -> sommes.put(id, BigDecimal.ZERO));
+        if (clientIds.isEmpty()) {
+            return sommes;
+        }
+
+        LocalDate dernierAccru = dernierJourContigu(dateDebut, dateFin);
+        if (dernierAccru != null) {
+            for (Object[] ligne : accrualRepository.sumEpargneByClients(clientIds, dateDebut, dernierAccru)) {
+                sommes.merge(((Number) ligne[0]).longValue(),
+                        Money.versBigDecimal(((Number) ligne[1]).longValue()), BigDecimal::add);
+            }
+        }
+
+        LocalDate debutMouvements = dernierAccru != null ? dernierAccru.plusDays(1) : dateDebut;
+        if (!debutMouvements.isAfter(dateFin)) {
+            for (Object[] ligne : mouvementRepository.sumAmountByClientsAndPeriod(
+                    clientIds, debutMouvements.atStartOfDay(), dateFin.atTime(23, 59, 59))) {
+                Double montant = (Double) ligne[1];
+                sommes.merge((Long) ligne[0], BigDecimal.valueOf(montant != null ? montant : 0.0), BigDecimal::add);
+            }
+        }
+
+        log.debug("Épargne {} → {}: accruals jusqu'au {}, mouvements depuis {}",
+                dateDebut, dateFin, dernierAccru, debutMouvements);
+        return sommes;
+    }
+
+    /**
+     * Aperçu du mois en cours d'un collecteur à partir des accruals déjà calculés
+     */
+    public ApercuCommissionDTO apercuMoisEnCours(Long collecteurId) {
+        LocalDate hier = LocalDate.now().minusDays(1);
+        LocalDate debutMois = LocalDate.now().withDayOfMonth(1);
+        LocalDate dateArrete = hier.isBefore(debutMois) ? null : dernierJourContigu(debutMois, hier);
+
+        List<ApercuCommissionDTO.Ligne> lignes = new ArrayList<>();
+        long epargneTotale = 0L;
+        long commissionTotale = 0L;
+        if (dateArrete != null) {
+            for (CommissionAccrual accrual : accrualRepository.findDerniersDuMoisByCollecteur(collecteurId, debutMois, dateArrete)) {
+                epargneTotale = Money.ajouter(epargneTotale, accrual.getCumulMois().francs());
+                commissionTotale = Money.ajouter(commissionTotale, accrual.getCommissionProvisoire().francs());
+                lignes.add(ApercuCommissionDTO.Ligne.builder()
+                        .clientId(accrual.getClientId())
+                        .dernierJourEpargne(accrual.getDateJour())
+                        .cumulMois(accrual.getCumulMois().toBigDecimal())
+                        .commissionProvisoire(accrual.getCommissionProvisoire().toBigDecimal())
+                        .build());
+            }
+            lignes.sort(Comparator.comparing(ApercuCommissionDTO.Ligne::getClientId));
+        }
+
+        return ApercuCommissionDTO.builder()
+                .collecteurId(collecteurId)
+                .debutMois(debutMois)
+                .dateArrete(dateArrete)
+                .nombreClients(lignes.size())
+                .montantEpargneTotal(Money.versBigDecimal(epargneTotale))
+                .commissionProvisoireTotal(Money.versBigDecimal(commissionTotale))
+                .clients(lignes)
+                .build();
+    }
+
+    /**
+     * Dernier jour d'une suite ininterrompue de jours accrus commençant à dateDebut ; null si dateDebut n'est pas accru
+     */
+    private LocalDate dernierJourContigu(LocalDate dateDebut, LocalDate dateFin) {
+        Set<LocalDate> jours = new HashSet<>(jourRepository.findJoursBetween(dateDebut, dateFin));
+        LocalDate dernier = null;
+        for (LocalDate jour = dateDebut; !jour.isAfter(dateFin) && jours.contains(jour); jour = jour.plusDays(1)) {
+            dernier = jour;
+        }
+        return dernier;
+    }
+}
@@ -0,0 +1,364 @@
+package org.example.collectfocep.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.example.collectfocep.dto.CommissionBatchJobDTO;
+import org.example.collectfocep.dto.CommissionBatchJobDTO.CollecteurResultat;
+import org.example.collectfocep.entities.HistoriqueCalculCommission;
+import org.example.collectfocep.repositories.CollecteurRepository;
+import org.example.collectfocep.repositories.HistoriqueCalculCommissionRepository;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Traitement de fin de mois commission + rémunération pour tous les collecteurs d'une ou plusieurs agences.
+ *
+ * - Pool borné (commissionTaskExecutor) : un collecteur par tâche, dans sa propre transaction.
+ *   Un échec ne touche que son collecteur (rollback complet commission + rémunération).
+ * - Reprise : relancer le même job après un arrêt suffit. HistoriqueCalculCommission indique
+ *   pour chaque collecteur si la période est déjà rémunérée (ignoré) ou seulement calculée
+ *   (seule la rémunération est rejouée).
+ * - Progression et résultat consolidé consultables via {@link #getEtat(String)}.
+ *
+ * Les comptes partagés de l'agence (C.P.C.C, C.P.T, C.C.C, C.P.C, C.T) ne sont pas verrouillés
+ * dans la transaction d'un collecteur : leurs variations sont différées (EcrituresDiffereesService)
+ * et appliquées en une transaction courte par agence, après celles de tous les collecteurs.
+ * Les transactions collecteur ne partagent donc aucun verrou et s'exécutent en parallèle.
+ */
+@Service
+@Slf4j
+public class CommissionBatchJob {
+
+    private final CommissionOrchestrator commissionOrchestrator;
+    private final RemunerationProcessor remunerationProcessor;
+    private final CompteSpecialiseService compteSpecialiseService;
+    private final EcrituresDiffereesService ecrituresDiffereesService;
+    private final CollecteurRepository collecteurRepository;
+    private final HistoriqueCalculCommissionRepository historiqueRepository;
+    private final Executor executor;
+    private final TransactionTemplate transactionCollecteur;
+
+    private final Cache<String, JobCommission> jobs = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofHours(24))
+            .maximumSize(200)
+            .build();
+
+    public CommissionBatchJob(CommissionOrchestrator commissionOrchestrator,
+                              RemunerationProcessor remunerationProcessor,
+                              CompteSpecialiseService compteSpecialiseService,
+                              EcrituresDiffereesService ecrituresDiffereesService,
+                              CollecteurRepository collecteurRepository,
+                              HistoriqueCalculCommissionRepository historiqueRepository,
+                              @Qualifier("commissionTaskExecutor") Executor executor,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${app.commission.batch.timeout-seconds:300}") int timeoutSeconds) {
+        this.commissionOrchestrator = commissionOrchestrator;
+        this.remunerationProcessor = remunerationProcessor;
+        this.compteSpecialiseService = compteSpecialiseService;
+        this.ecrituresDiffereesService = ecrituresDiffereesService;
+        this.collecteurRepository = collecteurRepository;
+        this.historiqueRepository = historiqueRepository;
+        this.executor = executor;
+        this.transactionCollecteur = new TransactionTemplate(transactionManager);
+        this.transactionCollecteur.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.transactionCollecteur.setTimeout(timeoutSeconds);
+    }
+
+    /**
+     * Lance le traitement en arrière-plan et retourne immédiatement l'état initial.
+     * Un job identique (mêmes agences, même période) déjà en cours est retourné tel quel.
+     */
+    public CommissionBatchJobDTO demarrer(List<Long> agenceIds, LocalDate dateDebut, LocalDate dateFin, String effectuePar) {
+        List<Long> agences = agenceIds.stream().distinct().sorted().toList();
+
+        Optional<JobCommission> enCours = jobs.asMap().values().stream()
+                .filter(job -> !job.termine() && job.agenceIds.equals(agences)
+                        && job.dateDebut.equals(dateDebut) && job.dateFin.equals(dateFin))
+                .findFirst();
+        if (enCours.isPresent()) {
+            log.info("🔁 Job commission déjà en cours pour agences {} ({} → {}): {}",
+                    agences, dateDebut, dateFin, enCours.get().jobId);
+            return enCours.get().toDTO();
+        }
+
+        // Comptes d'agence créés avant le parallélisme pour éviter les créations concurrentes
+        List<Long> collecteurIds = new ArrayList<>();
+        List<Long> comptesAgences = new ArrayList<>();
+        for (Long agenceId : agences) {
+            comptesAgences.addAll(preparerComptesAgence(agenceId));
+            collecteurIds.addAll(collecteurRepository.findIdsByAgenceId(agenceId));
+        }
+
+        JobCommission job = new JobCommission(UUID.randomUUID().toString(), agences, dateDebut, dateFin, collecteurIds.size());
+        jobs.put(job.jobId, job);
+        log.info("🚀 Job commission {} démarré: {} agence(s), {} collecteur(s), période {} → {}",
+                job.jobId, agences.size(), collecteurIds.size(), dateDebut, dateFin);
+
+        CompletableFuture<?>[] taches = collecteurIds.stream()
+                .map(collecteurId -> CompletableFuture
+                        .supplyAsync(() -> traiterCollecteur(collecteurId, dateDebut, dateFin, effectuePar), executor)
+                        .thenAccept(job::enregistrer))
+                .toArray(CompletableFuture[]::new);
+
+        CompletableFuture.allOf(taches).whenComplete((ignore, erreur) -> {
+            appliquerComptesAgences(job, comptesAgences);
+            job.terminer();
+            log.info("🏁 Job commission {} terminé en {}ms: {} succès, {} échecs, {} ignorés",
+                    job.jobId, job.dureeMs(), job.succes.get(), job.echecs.get(), job.ignores.get());
+        });
+
+        return job.toDTO();
+    }
+
+    /**
+     * Variante bloquante (planificateur, scripts) : attend la fin et retourne le résultat consolidé
+     */
+    public CommissionBatchJobDTO executer(List<Long> agenceIds, LocalDate dateDebut, LocalDate dateFin, String effectuePar) {
+        String jobId = demarrer(agenceIds, dateDebut, dateFin, effectuePar).getJobId();
+        JobCommission job = jobs.getIfPresent(jobId);
+        if (job != null) {
+            job.fin.join();
+        }
+        return getEtat(jobId).orElseThrow();
+    }
+
+    public Optional<CommissionBatchJobDTO> getEtat(String jobId) {
+        return Optional.ofNullable(jobs.getIfPresent(jobId)).map(JobCommission::toDTO);
+    }
+
+    private List<Long> preparerComptesAgence(Long agenceId) {
+        return List.of(
+                compteSpecialiseService.getOrCreateCPCC(agenceId).getId(),
+                compteSpecialiseService.getOrCreateCPT(agenceId).getId(),
+                compteSpecialiseService.getOrCreateCCC(agenceId).getId(),
+                compteSpecialiseService.getOrCreateCPC(agenceId).getId(),
+                compteSpecialiseService.getOrCreateCT(agenceId).getId());
+    }
+
+    /**
+     * Dernière étape : crédits et débits des comptes partagés de toutes les agences du job,
+     * en une transaction courte. En cas d'échec les variations restent en attente et sont
+     * reprises par le balayage d'EcrituresDiffereesService.
+     */
+    private void appliquerComptesAgences(JobCommission job, List<Long> comptesAgences) {
+        long debut = System.nanoTime();
+        try {
+            int comptes = ecrituresDiffereesService.appliquer(comptesAgences);
+            log.info("Job commission {} - comptes d'agence mis à jour: {} compte(s) en {}ms",
+                    job.jobId, comptes, (System.nanoTime() - debut) / 1_000_000);
+        } catch (Exception e) {
+            log.error("❌ Job commission {} - comptes d'agence non mis à jour, reprise au prochain balayage: {}",
+                    job.jobId, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Commission + rémunération d'un collecteur dans une transaction dédiée
+     */
+    CollecteurResultat traiterCollecteur(Long collecteurId, LocalDate dateDebut, LocalDate dateFin, String effectuePar) {
+        long debut = System.nanoTime();
+        try {
+            // Variations des comptes d'agence appliquées par appliquerComptesAgences, pas à chaque commit
+            CollecteurResultat resultat = ecrituresDiffereesService.grouperApplication(() -> transactionCollecteur.execute(status -> {
+                Optional<HistoriqueCalculCommission> existant =
+                        historiqueRepository.findByCollecteurAndPeriod(collecteurId, dateDebut, dateFin);
+
+                if (existant.isPresent() && Boolean.TRUE.equals(existant.get().getRemunere())) {
+                    return ignore(collecteurId, existant.get().getAgenceId(), "Période déjà calculée et rémunérée");
+                }
+                if (remunerationProcessor.remunerationExistsPourPeriode(collecteurId, dateDebut, dateFin)) {
+                    return ignore(collecteurId, existant.map(HistoriqueCalculCommission::getAgenceId).orElse(null),
+                            "Rémunération déjà enregistrée sur la période");
+                }
+
+                // 1. Commission (ou reprise d'un calcul déjà enregistré)
+                BigDecimal montantS;
+                BigDecimal tva;
+                Long agenceId;
+                Long historiqueCalculId;
+                if (existant.isPresent()) {
+                    HistoriqueCalculCommission calcul = existant.get();
+                    montantS = calcul.getMontantCommissionTotal();
+                    tva = calcul.getMontantTvaTotal();
+                    agenceId = calcul.getAgenceId();
+                    historiqueCalculId = calcul.getId();
+                } else {
+                    CommissionOrchestrator.CommissionResult commission =
+                            commissionOrchestrator.processCommissions(collecteurId, dateDebut, dateFin);
+                    if (!commission.isSuccess()) {
+                        status.setRollbackOnly();
+                        return echec(collecteurId, commission.getAgenceId(), "Commission: " + commission.getErrorMessage());
+                    }
+                    montantS = commission.getMontantSCollecteur();
+                    tva = commission.getTotalTVA();
+                    agenceId = commission.getAgenceId();
+                    historiqueCalculId = commission.getHistoriqueId();
+                }
+
+                // 2. Rémunération sur S
+                RemunerationProcessor.RemunerationResult remuneration = remunerationProcessor
+                        .processRemunerationWithPeriod(collecteurId, montantS, dateDebut, dateFin, effectuePar);
+                if (!remuneration.isSuccess()) {
+                    status.setRollbackOnly();
+                    return echec(collecteurId, agenceId, "Rémunération: " + remuneration.getErrorMessage());
+                }
+
+                // 3. Marquage pour la reprise
+                if (historiqueCalculId != null) {
+                    historiqueRepository.findById(historiqueCalculId).ifPresent(calcul -> {
+                        calcul.marquerCommeRemunere(remuneration.getHistoriqueRemunerationId());
+                        historiqueRepository.save(calcul);
+                    });
+                }
+
+                return CollecteurResultat.builder()
+                        .collecteurId(collecteurId)
+                        .agenceId(agenceId)
+                        .statut("SUCCES")
+                        .reprise(existant.isPresent())
+                        .montantS(montantS)
+                        .totalTVA(tva)
+                        .totalRubriquesVi(remuneration.getTotalRubriqueVi())
+                        .montantEMF(remuneration.getMontantEMF())
+                        .historiqueCalculId(historiqueCalculId)
+                        .historiqueRemunerationId(remuneration.getHistoriqueRemunerationId())
+                        .build();
+            }));
+            resultat.setDureeMs((System.nanoTime() - debut) / 1_000_000);
+            return resultat;
+        } catch (Exception e) {
+            log.error("❌ Job commission - échec collecteur {}: {}", collecteurId, e.getMessage(), e);
+            CollecteurResultat resultat = echec(collecteurId, null, e.getMessage());
+            resultat.setDureeMs((System.nanoTime() - debut) / 1_000_000);
+            return resultat;
+        }
+    }
+
+    private static CollecteurResultat ignore(Long collecteurId, Long agenceId, String message) {
+        return CollecteurResultat.builder()
+                .collecteurId(collecteurId).agenceId(agenceId).statut("IGNORE").message(message).build();
+    }
+
+    private static CollecteurResultat echec(Long collecteurId, Long agenceId, String message) {
+        return CollecteurResultat.builder()
+                .collecteurId(collecteurId).agenceId(agenceId).statut("ECHEC").message(message).build();
+    }
+
+    /**
+     * État mutable d'un job, partagé entre les workers
+     */
+    private static final class JobCommission {
+        private final String jobId;
+        private final List<Long> agenceIds;
+        private final LocalDate dateDebut;
+        private final LocalDate dateFin;
+        private final int nombreCollecteurs;
+        private final LocalDateTime dateDebutTraitement = LocalDateTime.now();
+        private final long debutNanos = System.nanoTime();
+
+        private final ConcurrentLinkedQueue<CollecteurResultat> resultats = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger succes = new AtomicInteger();
+        private final AtomicInteger echecs = new AtomicInteger();
+        private final AtomicInteger ignores = new AtomicInteger();
+        private final CompletableFuture<Void> fin = new CompletableFuture<>();
+        private volatile LocalDateTime dateFinTraitement;
+        private volatile long dureeNanos = -1;
+
+        private JobCommission(String jobId, List<Long> agenceIds, LocalDate dateDebut, LocalDate dateFin, int nombreCollecteurs) {
+            this.jobId = jobId;
+            this.agenceIds = agenceIds;
+            this.dateDebut = dateDebut;
+            this.dateFin = dateFin;
+            this.nombreCollecteurs = nombreCollecteurs;
+        }
+
+        private void enregistrer(CollecteurResultat resultat) {
+            resultats.add(resultat);
+            switch (resultat.getStatut()) {
+                case "SUCCES" -> succes.incrementAndGet();
+                case "IGNORE" -> ignores.incrementAndGet();
+                default -> echecs.incrementAndGet();
+            }
+        }
+
+        private void terminer() {
+            dureeNanos = System.nanoTime() - debutNanos;
+            dateFinTraitement = LocalDateTime.now();
+            fin.complete(null);
+        }
+
+        private boolean termine() {
+            return fin.isDone();
+        }
+
+        private long dureeMs() {
+            return (dureeNanos >= 0 ? dureeNanos : System.nanoTime() - debutNanos) / 1_000_000;
+        }
+
+        private CommissionBatchJobDTO toDTO() {
+            List<CollecteurResultat> lignes = new ArrayList<>(resultats);
+            lignes.sort(Comparator.comparing(CollecteurResultat::getCollecteurId));
+
+            BigDecimal montantS = BigDecimal.ZERO;
+            BigDecimal tva = BigDecimal.ZERO;
+            BigDecimal vi = BigDecimal.ZERO;
+            BigDecimal emf = BigDecimal.ZERO;
+            for (CollecteurResultat ligne : lignes) {
+                if ("SUCCES".equals(ligne.getStatut())) {
+                    montantS = montantS.add(zeroSiNull(ligne.getMontantS()));
+                    tva = tva.add(zeroSiNull(ligne.getTotalTVA()));
+                    vi = vi.add(zeroSiNull(ligne.getTotalRubriquesVi()));
+                    emf = emf.add(zeroSiNull(ligne.getMontantEMF()));
+                }
+            }
+
+            int traites = lignes.size();
+            String statut = !termine() ? "EN_COURS" : echecs.get() > 0 ? "TERMINE_AVEC_ERREURS" : "TERMINE";
+
+            return CommissionBatchJobDTO.builder()
+                    .jobId(jobId)
+                    .agenceIds(agenceIds)
+                    .dateDebut(dateDebut)
+                    .dateFin(dateFin)
+                    .statut(statut)
+                    .nombreCollecteurs(nombreCollecteurs)
+                    .nombreTraites(traites)
+                    .nombreSucces(succes.get())
+                    .nombreEchecs(echecs.get())
+                    .nombreIgnores(ignores.get())
+                    .progression(nombreCollecteurs == 0 ? 100.0 : traites * 100.0 / nombreCollecteurs)
+                    .montantSTotal(montantS)
+                    .totalTVA(tva)
+                    .totalRubriquesVi(vi)
+                    .totalEMF(emf)
+                    .dateDebutTraitement(dateDebutTraitement)
+                    .dateFinTraitement(dateFinTraitement)
+                    .dureeMs(dureeMs())
+                    .resultats(lignes)
+                    .build();
+        }
+
+        private static BigDecimal zeroSiNull(BigDecimal valeur) {
+            return valeur != null ? valeur : BigDecimal.ZERO;
+        }
+    }
+}
@@ -6,13 +6,12 @@ import org.example.collectfocep.dto.CommissionCalculation;
 import org.example.collectfocep.dto.CommissionContext;
 import org.example.collectfocep.entities.*;
 import org.example.collectfocep.repositories.*;
-import org.springframework.beans.factory.annotation.Value;
+import org.example.collectfocep.util.Money;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDate;
@@ -31,13 +30,6 @@ public class CommissionCalculationEngine {
     private final MouvementRepository mouvementRepository;
     private final ClientRepository clientRepository;
 
-    // Configuration des types de mouvements d'épargne
-    @Value("${commission.epargne.mouvements:EPARGNE,DEPOT_EPARGNE,VERSEMENT_EPARGNE}")
-    private String[] epargneMouvementTypes;
-
-    @Value("${commission.epargne.libelles:épargne,Épargne,EPARGNE,versement,Versement}")
-    private String[] epargneLibelles;
-
     /**
      * Calcule les commissions avec SQL compatible MySQL
      */
@@ -51,29 +43,16 @@ public class CommissionCalculationEngine {
                 c.id as client_id,
                 CONCAT(c.nom, ' ', c.prenom) as client_name,
                 cpt.numero_compte as numero_compte,
-                COALESCE(SUM(CASE 
-                    WHEN m.sens = 'CREDIT' 
-                    AND m.compte_destination = cc.id 
-                    AND (
-                        m.type_mouvement IN ('EPARGNE', 'DEPOT_EPARGNE', 'VERSEMENT_EPARGNE')
-                        OR (m.libelle LIKE '%épargne%' COLLATE utf8mb4_general_ci 
-                            OR m.libelle LIKE '%versement%' COLLATE utf8mb4_general_ci
-                            OR m.libelle LIKE '%Épargne%' COLLATE utf8mb4_general_ci
-                            OR m.libelle LIKE '%Versement%' COLLATE utf8mb4_general_ci
-                            OR m.libelle LIKE '%EPARGNE%' COLLATE utf8mb4_general_ci
-                            OR m.libelle LIKE '%VERSEMENT%' COLLATE utf8mb4_general_ci)
-                    )
-                    THEN m.montant 
-                    ELSE 0 
-                END), 0) as montant_collecte,
+                COALESCE(SUM(m.montant), 0) as montant_collecte,
                 cp.id as param_id,
                 cp.type as param_type,
                 cp.valeur as param_valeur
             FROM clients c
             JOIN compte_client cc ON cc.id_client = c.id
             JOIN comptes cpt ON cpt.id = cc.id
-            LEFT JOIN mouvements m ON m.compte_destination = cc.id 
+            LEFT JOIN mouvements m ON m.compte_destination = cc.id
                 AND m.date_operation BETWEEN ? AND ?
+                AND m.categorie = 'EPARGNE'
             LEFT JOIN commission_parameter cp ON (
                 (cp.client_id = c.id AND cp.client_id IS NOT NULL) OR 
                 (cp.collecteur_id = c.id_collecteur AND cp.client_id IS NULL) OR 
@@ -120,34 +99,23 @@ public class CommissionCalculationEngine {
      */
     @Transactional(readOnly = true)
     public List<CommissionCalculation> calculateBatchFallback(CommissionContext context) {
-        log.info("Calcul batch fallback - utilisation libellés épargne");
-
-        // Construction dynamique des conditions LIKE compatibles MySQL
-        StringBuilder libelleConditions = new StringBuilder();
-        for (int i = 0; i < epargneLibelles.length; i++) {
-            if (i > 0) libelleConditions.append(" OR ");
-            libelleConditions.append("m.libelle LIKE '%").append(epargneLibelles[i])
-                    .append("%' COLLATE utf8mb4_general_ci");
-        }
+        log.info("Calcul batch fallback - sans paramètres de commission");
 
         String sql = """
             SELECT c.id as client_id,
                    CONCAT(c.nom, ' ', c.prenom) as client_name,
                    cpt.numero_compte as numero_compte,
-                   COALESCE(SUM(CASE 
-                       WHEN m.sens = 'CREDIT' 
-                       AND m.compte_destination = cc.id 
-                       AND (%s)
-                       THEN m.montant ELSE 0 END), 0) as montant_collecte
+                   COALESCE(SUM(m.montant), 0) as montant_collecte
             FROM clients c
             JOIN compte_client cc ON cc.id_client = c.id
             JOIN comptes cpt ON cpt.id = cc.id
-            LEFT JOIN mouvements m ON m.compte_destination = cc.id 
+            LEFT JOIN mouvements m ON m.compte_destination = cc.id
                 AND m.date_operation BETWEEN ? AND ?
+                AND m.categorie = 'EPARGNE'
             WHERE c.id_collecteur = ?
             GROUP BY c.id, c.nom, c.prenom, cpt.numero_compte
             ORDER BY c.nom, c.prenom
-            """.formatted(libelleConditions.toString());
+            """;
 
         try {
             return jdbcTemplate.query(sql,
@@ -163,7 +131,7 @@ public class CommissionCalculationEngine {
     }
 
     /**
-     * Mapping avec types BigDecimal + context passé en paramètre
+     * Mapping en francs entiers + context passé en paramètre
      */
     private CommissionCalculation mapRowToCommissionCalculation(ResultSet rs, int rowNum, CommissionContext context)
             throws SQLException {
@@ -171,28 +139,27 @@ public class CommissionCalculationEngine {
         Long clientId = rs.getLong("client_id");
         String clientName = rs.getString("client_name");
         String numeroCompte = rs.getString("numero_compte");
-        BigDecimal montantCollecte = rs.getBigDecimal("montant_collecte");
+        long montantCollecte = Money.arrondir(rs.getDouble("montant_collecte"));
 
         Long paramId = rs.getObject("param_id") != null ? rs.getLong("param_id") : null;
         String paramType = rs.getString("param_type");
         BigDecimal paramValeur = rs.getBigDecimal("param_valeur");
 
-        // Calcul de la commission
-        BigDecimal commissionBase = calculateCommissionAmount(
+        // Calcul de la commission (francs entiers)
+        long commissionBase = calculateCommissionAmount(
                 montantCollecte, paramType, paramValeur, paramId);
 
         // Calcul TVA avec les règles du contexte
-        BigDecimal tva = commissionBase.multiply(context.getRules().getTvaRate())
-                .setScale(2, RoundingMode.HALF_UP);
+        long tva = Money.appliquerTaux(commissionBase, Money.tauxDepuisFraction(context.getRules().getTvaRate()));
 
         return CommissionCalculation.builder()
                 .clientId(clientId)
                 .clientName(clientName)
                 .numeroCompte(numeroCompte)
-                .montantCollecte(montantCollecte)
-                .commissionBase(commissionBase)
-                .tva(tva)
-                .commissionNet(commissionBase.subtract(tva))
+                .montantCollecte(Money.versBigDecimal(montantCollecte))
+                .commissionBase(Money.versBigDecimal(commissionBase))
+                .tva(Money.versBigDecimal(tva))
+                .commissionNet(Money.versBigDecimal(Money.soustraire(commissionBase, tva)))
                 .typeCommission(paramType)
                 .valeurParametre(paramValeur)
                 .calculatedAt(LocalDateTime.now())
@@ -208,18 +175,18 @@ public class CommissionCalculationEngine {
             throws SQLException {
 
         // Version simplifiée sans paramètres avancés
-        BigDecimal montant = rs.getBigDecimal("montant_collecte");
-        BigDecimal commission = montant.multiply(BigDecimal.valueOf(0.05)); // 5% par défaut
-        BigDecimal tva = commission.multiply(context.getRules().getTvaRate());
+        long montant = Money.arrondir(rs.getDouble("montant_collecte"));
+        long commission = Money.appliquerTaux(montant, Money.tauxDepuisPourcentage(5.0)); // 5% par défaut
+        long tva = Money.appliquerTaux(commission, Money.tauxDepuisFraction(context.getRules().getTvaRate()));
 
         return CommissionCalculation.builder()
                 .clientId(rs.getLong("client_id"))
                 .clientName(rs.getString("client_name"))
                 .numeroCompte(rs.getString("numero_compte"))
-                .montantCollecte(montant)
-                .commissionBase(commission)
-                .tva(tva)
-                .commissionNet(commission.subtract(tva))
+                .montantCollecte(Money.versBigDecimal(montant))
+                .commissionBase(Money.versBigDecimal(commission))
+                .tva(Money.versBigDecimal(tva))
+                .commissionNet(Money.versBigDecimal(Money.soustraire(commission, tva)))
                 .typeCommission("PERCENTAGE")
                 .calculatedAt(LocalDateTime.now())
                 .scope("DEFAULT")
@@ -227,61 +194,58 @@ public class CommissionCalculationEngine {
     }
 
     /**
-     * Calcul commission avec BigDecimal
+     * Calcul commission en francs entiers (voir Money)
      */
-    private BigDecimal calculateCommissionAmount(BigDecimal montantCollecte,
-                                                 String paramType,
-                                                 BigDecimal paramValeur,
-                                                 Long paramId) {
-        if (montantCollecte == null || montantCollecte.compareTo(BigDecimal.ZERO) <= 0) {
-            return BigDecimal.ZERO;
+    private long calculateCommissionAmount(long montantCollecte,
+                                           String paramType,
+                                           BigDecimal paramValeur,
+                                           Long paramId) {
+        if (montantCollecte <= 0) {
+            return 0L;
         }
 
         if (paramType == null || paramValeur == null) {
             log.warn("Paramètre de commission manquant pour calcul - type: {}, valeur: {}",
                     paramType, paramValeur);
-            return BigDecimal.ZERO;
+            return 0L;
         }
 
         try {
             return switch (CommissionType.valueOf(paramType)) {
-                case FIXED -> paramValeur.setScale(2, RoundingMode.HALF_UP);
+                case FIXED -> Money.arrondir(paramValeur);
 
-                case PERCENTAGE -> montantCollecte
-                        .multiply(paramValeur)
-                        .divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP);
+                case PERCENTAGE -> Money.appliquerTaux(montantCollecte, Money.tauxDepuisPourcentage(paramValeur));
 
                 case TIER -> calculateTierCommission(montantCollecte, paramId);
             };
         } catch (Exception e) {
             log.error("Erreur calcul commission - type: {}, montant: {}, valeur: {}",
                     paramType, montantCollecte, paramValeur, e);
-            return BigDecimal.ZERO;
+            return 0L;
         }
     }
 
     /**
      * Calcul commission par paliers optimisé
      */
-    private BigDecimal calculateTierCommission(BigDecimal montant, Long paramId) {
-        if (paramId == null) return BigDecimal.ZERO;
+    private long calculateTierCommission(long montant, Long paramId) {
+        if (paramId == null) return 0L;
 
         Optional<CommissionParameter> paramOpt = commissionParameterRepository
                 .findByIdWithTiers(paramId);
 
         if (paramOpt.isEmpty() || paramOpt.get().getTiers() == null) {
             log.warn("Paramètre TIER sans paliers - ID: {}", paramId);
-            return BigDecimal.ZERO;
+            return 0L;
         }
 
-        CommissionTier applicableTier = paramOpt.get().findApplicableTier(montant);
+        CommissionTier applicableTier = paramOpt.get().findApplicableTier(Money.versBigDecimal(montant));
         if (applicableTier == null) {
             log.warn("Aucun palier applicable pour montant {} - paramId: {}", montant, paramId);
-            return BigDecimal.ZERO;
+            return 0L;
         }
 
-        return montant.multiply(BigDecimal.valueOf(applicableTier.getTaux()))
-                .divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP);
+        return Money.appliquerTaux(montant, Money.tauxDepuisPourcentage(applicableTier.getTaux()));
     }
 
     /**
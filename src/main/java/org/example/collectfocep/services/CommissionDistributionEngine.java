@@ -94,7 +94,10 @@ public class CommissionDistributionEngine {
         validateDistributionIntegrity(distribution);
     }
 
-    private CommissionTotals calculateTotals(List<CommissionCalculation> calculations, CommissionRules rules) {
+    /**
+     * Totaux et part EMF, sans accès aux comptes (mesuré par CommissionMasseBenchmark)
+     */
+    static CommissionTotals calculateTotals(List<CommissionCalculation> calculations, CommissionRules rules) {
         BigDecimal totalCommissions = calculations.stream()
                 .map(CommissionCalculation::getCommissionBase)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
@@ -4,19 +4,35 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.collectfocep.entities.*;
 import org.example.collectfocep.repositories.*;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.example.collectfocep.services.CommissionCalculatorService;
 import org.example.collectfocep.services.impl.MouvementServiceImpl;
+import org.example.collectfocep.util.Money;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 
+import javax.sql.DataSource;
 import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
 
 /**
  * Orchestrateur principal du processus de commission selon spécification FOCEP
@@ -35,7 +51,6 @@ public class CommissionOrchestrator {
     private final CommissionCalculatorService calculatorService;
     private final CompteSpecialiseService compteSpecialiseService;
     private final MouvementServiceImpl mouvementService;
-    private final CommissionParameterRepository parameterRepository;
     private final ClientRepository clientRepository;
     private final CollecteurRepository collecteurRepository;
     private final MouvementRepository mouvementRepository;
@@ -44,6 +59,76 @@ public class CommissionOrchestrator {
     // 🔥 NOUVEAU: Repository pour l'historique des calculs
     private final HistoriqueCalculCommissionRepository historiqueRepository;
 
+    private final CompteIdCache compteIdCache;
+    private final ReglesCommissionCache reglesCommissionCache;
+    private final CommissionAccrualService commissionAccrualService;
+
+    // Crédit des C.P.C.C / C.P.T cumulé et appliqué une fois par lot (voir effectuerMouvementsAgreges)
+    @Value("${app.commission.cumul-comptes-passage:true}")
+    private boolean cumulComptesPassage;
+
+    // Comptes clients résolus en une requête et soldes mis à jour par UPDATE … CASE (voir effectuerMouvementsEnsemblistes)
+    @Value("${app.commission.ecriture-ensembliste:true}")
+    private boolean ecritureEnsembliste;
+
+    // Au-delà de ce nombre de clients, le calcul passe en mode flux (0 = désactivé)
+    @Value("${app.commission.flux.seuil-clients:2000}")
+    private long seuilClientsFlux;
+
+    @Value("${app.commission.flux.taille-lot:500}")
+    private int tailleLotFlux;
+
+    // Curseurs du mode flux ouverts en même temps (0 = taille du pool Hikari - workers de commission)
+    @Value("${app.commission.flux.curseurs-max:0}")
+    private int curseursFluxMax;
+
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int taillePoolConnexions;
+
+    @Value("${app.commission.batch.workers:8}")
+    private int workersCommission;
+
+    private final DataSource dataSource;
+
+    private Semaphore curseursFlux;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private static final ObjectMapper DETAILS_MAPPER = new ObjectMapper();
+
+    /**
+     * Un calcul en flux tient deux connexions (transaction + curseur) : 8 workers en flux sur un
+     * pool de 15 en demanderaient 16 et s'attendraient jusqu'au connection-timeout. Le nombre de
+     * curseurs est borné pour que workers + curseurs tiennent dans le pool.
+     */
+    @PostConstruct
+    void initialiserCurseursFlux() {
+        int curseurs = curseursFluxMax > 0 ? curseursFluxMax : Math.max(1, taillePoolConnexions - workersCommission);
+        curseursFlux = new Semaphore(curseurs, true);
+        log.info("Mode flux commissions : {} curseur(s) simultané(s) (pool {}, workers {})",
+                curseurs, taillePoolConnexions, workersCommission);
+    }
+
+    /**
+     * Clients du collecteur avec leur compte et l'épargne de la période (même définition que
+     * sumAmountByClientsAndPeriod), triés par ID de compte pour une lecture en avant seulement :
+     * chaque lot verrouille des comptes d'ID supérieurs à ceux des lots précédents (CompteLockManager)
+     */
+    private static final String SQL_CLIENTS_FLUX = """
+            SELECT c.id AS client_id, c.nom AS client_nom, cc.id AS compte_id, cpt.solde AS solde,
+                   COALESCE(SUM(m.montant), 0) AS montant_epargne
+            FROM clients c
+            LEFT JOIN compte_client cc ON cc.id_client = c.id
+            LEFT JOIN comptes cpt ON cpt.id = cc.id
+            LEFT JOIN mouvements m ON m.client_id = c.id
+                AND m.date_operation BETWEEN ? AND ?
+                AND m.categorie = 'EPARGNE'
+            WHERE c.id_collecteur = ?
+            GROUP BY c.id, c.nom, cc.id, cpt.solde
+            ORDER BY cc.id, c.id
+            """;
+
     /**
      * 🔥 NOUVELLE VERSION: Lance le calcul de commission avec protection anti-doublon
      * 
@@ -77,10 +162,15 @@ public class CommissionOrchestrator {
                     .build();
         }
 
+        boolean enFlux = false;
         try {
             // 1. Récupération des données
             Collecteur collecteur = getCollecteur(collecteurId);
             Long agenceId = collecteur.getAgence().getId();
+            if (seuilClientsFlux > 0 && clientRepository.countByCollecteurId(collecteurId) > seuilClientsFlux) {
+                enFlux = true;
+                return processCommissionsEnFlux(collecteur, agenceId, dateDebut, dateFin);
+            }
             List<Client> clients = clientRepository.findByCollecteurId(collecteurId);
 
             // 2. 🔥 OPTIMISATION N+1: Récupération groupée des données
@@ -89,24 +179,14 @@ public class CommissionOrchestrator {
             // Récupération groupée des montants d'épargne
             Map<Long, BigDecimal> epargnesParClient = getEpargnesGroupees(clientIds, dateDebut, dateFin);
             
-            // Récupération groupée des paramètres de commission
-            Map<Long, CommissionParameter> parametresParClient = getParametresGroupes(clients, collecteurId, agenceId);
+            // Règles précompilées de l'agence (hiérarchie client → collecteur → agence déjà résolue)
+            TableReglesCommission regles = reglesCommissionCache.getTable(agenceId);
 
             // 3. Calcul des commissions par client (optimisé)
-            List<CommissionClientDetail> commissionsClients = new ArrayList<>();
-            BigDecimal totalCommissions = BigDecimal.ZERO;
-            BigDecimal totalTVA = BigDecimal.ZERO;
-
-            for (Client client : clients) {
-                CommissionClientDetail detail = calculateClientCommissionOptimized(
-                    client, epargnesParClient.get(client.getId()), 
-                    parametresParClient.get(client.getId()));
-                if (detail != null && detail.getCommissionX().compareTo(BigDecimal.ZERO) > 0) {
-                    commissionsClients.add(detail);
-                    totalCommissions = totalCommissions.add(detail.getCommissionX());
-                    totalTVA = totalTVA.add(detail.getTva());
-                }
-            }
+            CalculClients calcul = calculerCommissionsClients(clients, epargnesParClient, regles, collecteurId);
+            List<CommissionClientDetail> commissionsClients = calcul.details();
+            BigDecimal totalCommissions = calcul.totalCommissions();
+            BigDecimal totalTVA = calcul.totalTVA();
 
             log.info("Commissions calculées - {} clients, Total: {}, TVA: {}", 
                     commissionsClients.size(), totalCommissions, totalTVA);
@@ -148,10 +228,174 @@ public class CommissionOrchestrator {
         } catch (Exception e) {
             log.error("Erreur lors du calcul de commission pour collecteur {}: {}", 
                     collecteurId, e.getMessage(), e);
+            if (enFlux) {
+                // Des lots ont pu être comptabilisés : aucun calcul partiel ne doit être validé
+                TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            }
             return CommissionResult.failure(collecteurId, e.getMessage());
         }
     }
 
+    /**
+     * Mode flux pour les gros portefeuilles : les clients sont lus par un curseur JDBC en avant
+     * seulement, sur une connexion de lecture dédiée (les écritures restent dans la transaction
+     * courante), obtenue sous le sémaphore {@code curseursFlux}. Chaque lot de {@code tailleLotFlux} clients est calculé, comptabilisé puis
+     * ajouté aux détails de l'historique, et le contexte de persistance est vidé : la mémoire
+     * reste bornée par un lot quelle que soit la taille du portefeuille. Le résultat ne porte
+     * que les totaux, les détails par client sont dans l'historique.
+     */
+    private CommissionResult processCommissionsEnFlux(Collecteur collecteur, Long agenceId,
+                                                      LocalDate dateDebut, LocalDate dateFin) throws Exception {
+        Long collecteurId = collecteur.getId();
+        log.info("🌊 Calcul commission en flux - Collecteur: {}, lots de {}", collecteurId, tailleLotFlux);
+
+        HistoriqueCalculCommission historique = historiqueRepository.saveAndFlush(HistoriqueCalculCommission.builder()
+                .collecteur(collecteur)
+                .dateDebut(dateDebut)
+                .dateFin(dateFin)
+                .statut(HistoriqueCalculCommission.StatutCalcul.EN_COURS)
+                .detailsCalcul("[")
+                .agenceId(agenceId)
+                .remunere(false)
+                .build());
+        Long historiqueId = historique.getId();
+
+        TableReglesCommission regles = reglesCommissionCache.getTable(agenceId);
+        Long comptePCCCId = compteSpecialiseService.getOrCreateCPCC(agenceId).getId();
+        Long comptePTId = compteSpecialiseService.getOrCreateCPT(agenceId).getId();
+
+        List<CommissionClientDetail> lot = new ArrayList<>(tailleLotFlux);
+        Map<Long, Long> comptesLot = new HashMap<>();
+        long totalCommissions = 0L;
+        long totalTVA = 0L;
+        int nombreClients = 0;
+
+        curseursFlux.acquire();
+        try (Connection connexion = dataSource.getConnection();
+             PreparedStatement requete = connexion.prepareStatement(SQL_CLIENTS_FLUX,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            connexion.setReadOnly(true);
+            if ("MySQL".equals(connexion.getMetaData().getDatabaseProductName())) {
+                requete.setFetchSize(Integer.MIN_VALUE); // Connector/J : ligne par ligne, sans tout charger
+            } else {
+                requete.setFetchSize(tailleLotFlux); // Integer.MIN_VALUE est refusé par les autres pilotes
+            }
+            requete.setTimestamp(1, Timestamp.valueOf(dateDebut.atStartOfDay()));
+            requete.setTimestamp(2, Timestamp.valueOf(dateFin.atTime(23, 59, 59)));
+            requete.setLong(3, collecteurId);
+
+            try (ResultSet rs = requete.executeQuery()) {
+                while (rs.next()) {
+                    long clientId = rs.getLong("client_id");
+                    long montantEpargne = Money.arrondir(rs.getDouble("montant_epargne"));
+                    if (montantEpargne <= 0) {
+                        continue;
+                    }
+                    TableReglesCommission.Regle regle = regles.regle(clientId, collecteurId);
+                    if (regle == null) {
+                        log.warn("Aucun paramètre de commission trouvé pour client {}", clientId);
+                        continue;
+                    }
+                    long commissionX = regle.commission(montantEpargne);
+                    if (commissionX <= 0) {
+                        continue;
+                    }
+                    long tva = calculatorService.calculerTVA(commissionX);
+                    BigDecimal ancienSolde = BigDecimal.valueOf(rs.getDouble("solde"));
+                    long soldeNet = Money.soustraire(Money.soustraire(Money.arrondir(ancienSolde), commissionX), tva);
+
+                    lot.add(CommissionClientDetail.builder()
+                            .clientId(clientId)
+                            .clientNom(rs.getString("client_nom"))
+                            .montantEpargne(Money.versBigDecimal(montantEpargne))
+                            .commissionX(Money.versBigDecimal(commissionX))
+                            .tva(Money.versBigDecimal(tva))
+                            .ancienSolde(ancienSolde)
+                            .nouveauSolde(Money.versBigDecimal(soldeNet))
+                            .parameterUsed(regle.getType().name())
+                            .build());
+                    long compteId = rs.getLong("compte_id");
+                    if (!rs.wasNull()) {
+                        comptesLot.put(clientId, compteId);
+                    }
+                    totalCommissions = Money.ajouter(totalCommissions, commissionX);
+                    totalTVA = Money.ajouter(totalTVA, tva);
+
+                    if (lot.size() >= tailleLotFlux) {
+                        posterLotFlux(historiqueId, comptePCCCId, comptePTId, lot, comptesLot, nombreClients == 0);
+                        nombreClients += lot.size();
+                        lot.clear();
+                        comptesLot.clear();
+                    }
+                }
+            }
+        } finally {
+            curseursFlux.release();
+        }
+        if (!lot.isEmpty()) {
+            posterLotFlux(historiqueId, comptePCCCId, comptePTId, lot, comptesLot, nombreClients == 0);
+            nombreClients += lot.size();
+        }
+
+        historiqueRepository.ajouterDetails(historiqueId, "]");
+        historiqueRepository.finaliserCalcul(historiqueId, Money.versBigDecimal(totalCommissions),
+                Money.versBigDecimal(totalTVA), nombreClients, HistoriqueCalculCommission.StatutCalcul.CALCULE);
+        log.info("✅ Calcul en flux terminé - Collecteur: {}, {} clients, Total: {}, TVA: {}, historique {}",
+                collecteurId, nombreClients, totalCommissions, totalTVA, historiqueId);
+
+        return CommissionResult.builder()
+                .collecteurId(collecteurId)
+                .agenceId(agenceId)
+                .periode(String.format("%s → %s", dateDebut, dateFin))
+                .commissionsClients(new ArrayList<>()) // Détails dans l'historique (mode flux)
+                .montantSCollecteur(Money.versBigDecimal(totalCommissions))
+                .totalTVA(Money.versBigDecimal(totalTVA))
+                .dateCalcul(LocalDateTime.now())
+                .success(true)
+                .historiqueId(historiqueId)
+                .message(String.format("Calcul en flux : %d clients, détails dans l'historique %d", nombreClients, historiqueId))
+                .build();
+    }
+
+    /**
+     * Comptabilise un lot du mode flux, ajoute ses détails à l'historique puis détache ce que le lot
+     * a créé (mouvements, références de comptes non chargées). Les entités de l'appelant, dont
+     * l'historique du job de commission, restent gérées.
+     */
+    private void posterLotFlux(Long historiqueId, Long comptePCCCId, Long comptePTId,
+                               List<CommissionClientDetail> lot, Map<Long, Long> comptesLot,
+                               boolean premierLot) throws JsonProcessingException {
+        List<Mouvement> mouvements = executeCommissionMovementsEnsemblistes(
+                entityManager.getReference(Compte.class, comptePCCCId),
+                entityManager.getReference(Compte.class, comptePTId),
+                lot, comptesLot);
+
+        StringBuilder fragment = new StringBuilder();
+        for (CommissionClientDetail detail : lot) {
+            if (!premierLot || fragment.length() > 0) {
+                fragment.append(',');
+            }
+            fragment.append(DETAILS_MAPPER.writeValueAsString(detail));
+        }
+        historiqueRepository.ajouterDetails(historiqueId, fragment.toString());
+
+        entityManager.flush();
+        for (Mouvement mouvement : mouvements) {
+            entityManager.detach(mouvement);
+            detacherReference(mouvement.getCompteSource());
+            detacherReference(mouvement.getCompteDestination());
+        }
+    }
+
+    /**
+     * Une instance déjà chargée par l'appelant n'est pas un proxy non initialisé : elle reste gérée
+     */
+    private void detacherReference(Compte compte) {
+        if (!Hibernate.isInitialized(compte) && entityManager.contains(compte)) {
+            entityManager.detach(compte);
+        }
+    }
+
     /**
      * Calcule la commission "x" d'un client selon la hiérarchie des paramètres
      */
@@ -197,30 +441,12 @@ public class CommissionOrchestrator {
      * 1. Client (priorité haute)
      * 2. Collecteur (priorité moyenne) 
      * 3. Agence (priorité basse)
+     * résolue sur les règles en cache de l'agence, sans requête
      */
     private CommissionParameter getCommissionParameterHierarchy(Client client) {
-        // 1. Paramètres du client
-        CommissionParameter clientParam = parameterRepository.findByClientId(client.getId()).orElse(null);
-        if (clientParam != null) {
-            log.debug("Utilisation paramètres CLIENT pour {}", client.getNom());
-            return clientParam;
-        }
-
-        // 2. Paramètres du collecteur
-        CommissionParameter collecteurParam = parameterRepository.findByCollecteurId(client.getCollecteur().getId()).orElse(null);
-        if (collecteurParam != null) {
-            log.debug("Utilisation paramètres COLLECTEUR pour {}", client.getNom());
-            return collecteurParam;
-        }
-
-        // 3. Paramètres de l'agence
-        CommissionParameter agenceParam = parameterRepository.findByAgenceId(client.getCollecteur().getAgence().getId()).orElse(null);
-        if (agenceParam != null) {
-            log.debug("Utilisation paramètres AGENCE pour {}", client.getNom());
-            return agenceParam;
-        }
-
-        return null;
+        Long agenceId = client.getAgence() != null ? client.getAgence().getId() : null;
+        Long collecteurId = client.getCollecteur() != null ? client.getCollecteur().getId() : null;
+        return reglesCommissionCache.resoudre(agenceId, collecteurId, client.getId()).orElse(null);
     }
 
     /**
@@ -233,6 +459,14 @@ public class CommissionOrchestrator {
         ComptePassageCommissionCollecte comptePCCC = compteSpecialiseService.getOrCreateCPCC(agenceId);
         ComptePassageTaxe comptePT = compteSpecialiseService.getOrCreateCPT(agenceId);
 
+        if (ecritureEnsembliste) {
+            List<Long> clientIds = commissionsClients.stream().map(CommissionClientDetail::getClientId).toList();
+            executeCommissionMovementsEnsemblistes(comptePCCC, comptePT, commissionsClients,
+                    compteIdCache.getComptesClientIds(clientIds));
+            return;
+        }
+
+        List<Mouvement> mouvements = new ArrayList<>();
         for (CommissionClientDetail detail : commissionsClients) {
             // Récupération du compte client
             CompteClient compteClient = getCompteClient(detail.getClientId());
@@ -243,7 +477,7 @@ public class CommissionOrchestrator {
                         compteClient, comptePCCC, detail.getCommissionX(),
                         String.format("Commission collecte - Client %s", detail.getClientNom())
                 );
-                mouvementService.effectuerMouvement(mvtCommission);
+                mouvements.add(mvtCommission);
             }
 
             // Mouvement 2 : Débit Client → Crédit C.P.T (TVA sur "x")
@@ -252,12 +486,53 @@ public class CommissionOrchestrator {
                         compteClient, comptePT, detail.getTva(),
                         String.format("TVA commission (19,25%%) - Client %s", detail.getClientNom())
                 );
-                mouvementService.effectuerMouvement(mvtTVA);
+                mouvements.add(mvtTVA);
             }
 
-            log.debug("Mouvements exécutés - Client: {}, Commission: {}, TVA: {}", 
+            log.debug("Mouvements préparés - Client: {}, Commission: {}, TVA: {}", 
                     detail.getClientNom(), detail.getCommissionX(), detail.getTva());
         }
+
+        if (cumulComptesPassage) {
+            mouvementService.effectuerMouvementsAgreges(mouvements);
+        } else {
+            mouvementService.verrouillerComptesMouvements(mouvements);
+            mouvements.forEach(mouvementService::effectuerMouvement);
+        }
+        log.info("Mouvements comptables exécutés - {} mouvements", mouvements.size());
+    }
+
+    /**
+     * Variante ensembliste : comptes clients résolus par l'appelant (une requête IN ou le curseur du
+     * mode flux) et référencés sans être chargés, insertion des mouvements par lots JDBC, un seul
+     * UPDATE pour les soldes clients, C.P.C.C et C.P.T
+     */
+    private List<Mouvement> executeCommissionMovementsEnsemblistes(Compte comptePCCC, Compte comptePT,
+                                                        List<CommissionClientDetail> commissionsClients,
+                                                        Map<Long, Long> compteParClient) {
+        List<Mouvement> mouvements = new ArrayList<>(commissionsClients.size() * 2);
+        for (CommissionClientDetail detail : commissionsClients) {
+            Long compteClientId = compteParClient.get(detail.getClientId());
+            if (compteClientId == null) {
+                throw new RuntimeException("Compte client non trouvé pour client: " + detail.getClientId());
+            }
+            CompteClient compteClient = compteClientRepository.getReferenceById(compteClientId);
+
+            if (detail.getCommissionX().compareTo(BigDecimal.ZERO) > 0) {
+                mouvements.add(createMouvement(compteClient, comptePCCC, detail.getCommissionX(),
+                        String.format("Commission collecte - Client %s", detail.getClientNom())));
+            }
+            if (detail.getTva().compareTo(BigDecimal.ZERO) > 0) {
+                mouvements.add(createMouvement(compteClient, comptePT, detail.getTva(),
+                        String.format("TVA commission (19,25%%) - Client %s", detail.getClientNom())));
+            }
+        }
+
+        // C.P.C.C et C.P.T sont communs à l'agence : soldes mis à jour après le commit (EcrituresDiffereesService)
+        List<Mouvement> enregistres = mouvementService.effectuerMouvementsEnsemblistes(mouvements,
+                new HashSet<>(List.of(comptePCCC.getId(), comptePT.getId())));
+        log.info("Mouvements comptables exécutés (ensembliste) - {} mouvements", mouvements.size());
+        return enregistres;
     }
 
     private BigDecimal calculateMontantEpargne(Long clientId, LocalDate dateDebut, LocalDate dateFin) {
@@ -316,8 +591,7 @@ public class CommissionOrchestrator {
      */
     private String serializeCommissionDetails(List<CommissionClientDetail> commissionsClients) {
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            return mapper.writeValueAsString(commissionsClients);
+            return DETAILS_MAPPER.writeValueAsString(commissionsClients);
         } catch (Exception e) {
             log.warn("Erreur lors de la sérialisation des détails de commission: {}", e.getMessage());
             return "[]"; // JSON vide en cas d'erreur
@@ -325,99 +599,70 @@ public class CommissionOrchestrator {
     }
 
     /**
-     * Récupère les montants d'épargne pour tous les clients en une seule requête
+     * Récupère les montants d'épargne pour tous les clients : jours accrus lus dans
+     * commission_accruals, jours restants agrégés depuis les mouvements en une requête
      */
     private Map<Long, BigDecimal> getEpargnesGroupees(List<Long> clientIds, LocalDate dateDebut, LocalDate dateFin) {
-        LocalDateTime startDateTime = dateDebut.atStartOfDay();
-        LocalDateTime endDateTime = dateFin.atTime(23, 59, 59);
-        
-        Map<Long, BigDecimal> resultMap = new HashMap<>();
-        
-        // Initialiser avec 0 pour tous les clients
-        clientIds.forEach(id -> resultMap.put(id, BigDecimal.ZERO));
-        
-        // Une seule requête groupée au lieu de N requêtes
-        List<Object[]> results = mouvementRepository.sumAmountByClientsAndPeriod(
-                clientIds, startDateTime, endDateTime);
-        
-        // Mapper les résultats 
-        for (Object[] result : results) {
-            Long clientId = (Long) result[0];
-            Double montant = (Double) result[1];
-            resultMap.put(clientId, BigDecimal.valueOf(montant != null ? montant : 0.0));
-        }
-        
-        return resultMap;
+        return commissionAccrualService.sommesEpargne(clientIds, dateDebut, dateFin);
     }
 
     /**
-     * Récupère les paramètres de commission pour tous les clients selon la hiérarchie
+     * Étape en mémoire du calcul : commission et TVA de chaque client à partir des épargnes
+     * déjà agrégées et des règles compilées, sans requête (mesurée par CommissionMasseBenchmark)
      */
-    private Map<Long, CommissionParameter> getParametresGroupes(List<Client> clients, Long collecteurId, Long agenceId) {
-        Map<Long, CommissionParameter> resultMap = new HashMap<>();
-        
-        // 1. Récupération groupée des paramètres clients
-        List<Long> clientIds = clients.stream().map(Client::getId).toList();
-        List<CommissionParameter> parametresClients = parameterRepository.findByClientIdIn(clientIds);
-        Map<Long, CommissionParameter> parametresClientsMap = parametresClients.stream()
-                .collect(HashMap::new, (map, param) -> {
-                    if (param.getClient() != null) {
-                        map.put(param.getClient().getId(), param);
-                    }
-                }, HashMap::putAll);
-        
-        // 2. Paramètre collecteur (une seule requête)
-        CommissionParameter parametreCollecteur = parameterRepository.findByCollecteurId(collecteurId).orElse(null);
-        
-        // 3. Paramètre agence (une seule requête)
-        CommissionParameter parametreAgence = parameterRepository.findByAgenceId(agenceId).orElse(null);
-        
-        // 4. Application de la hiérarchie pour chaque client
+    static CalculClients calculerCommissionsClients(List<Client> clients, Map<Long, BigDecimal> epargnesParClient,
+                                                    TableReglesCommission regles, Long collecteurId) {
+        List<CommissionClientDetail> commissionsClients = new ArrayList<>();
+        BigDecimal totalCommissions = BigDecimal.ZERO;
+        BigDecimal totalTVA = BigDecimal.ZERO;
+
         for (Client client : clients) {
-            CommissionParameter parametre = parametresClientsMap.get(client.getId());
-            if (parametre == null) {
-                parametre = parametreCollecteur;
-            }
-            if (parametre == null) {
-                parametre = parametreAgence;
+            CommissionClientDetail detail = calculateClientCommissionOptimized(
+                client, epargnesParClient.get(client.getId()),
+                regles.regle(client.getId(), collecteurId));
+            if (detail != null && detail.getCommissionX().compareTo(BigDecimal.ZERO) > 0) {
+                commissionsClients.add(detail);
+                totalCommissions = totalCommissions.add(detail.getCommissionX());
+                totalTVA = totalTVA.add(detail.getTva());
             }
-            resultMap.put(client.getId(), parametre);
         }
-        
-        return resultMap;
+        return new CalculClients(commissionsClients, totalCommissions, totalTVA);
+    }
+
+    record CalculClients(List<CommissionClientDetail> details, BigDecimal totalCommissions, BigDecimal totalTVA) {
     }
 
     /**
      * Version optimisée du calcul de commission (sans requêtes DB)
      */
-    private CommissionClientDetail calculateClientCommissionOptimized(Client client, 
-            BigDecimal montantEpargne, CommissionParameter parameter) {
-        
+    private static CommissionClientDetail calculateClientCommissionOptimized(Client client,
+            BigDecimal montantEpargne, TableReglesCommission.Regle regle) {
+
         if (montantEpargne == null || montantEpargne.compareTo(BigDecimal.ZERO) <= 0) {
             log.debug("Pas d'épargne pour client {}", client.getNom());
             return null;
         }
-        
-        if (parameter == null) {
+
+        if (regle == null) {
             log.warn("Aucun paramètre de commission trouvé pour client {}", client.getNom());
             return null;
         }
 
-        // Calcul de la commission "x"
-        BigDecimal commissionX = calculatorService.calculateCommission(montantEpargne, parameter);
-        BigDecimal tva = calculatorService.calculateTVA(commissionX);
-        BigDecimal soldeNet = calculatorService.calculateSoldeNet(
-                BigDecimal.valueOf(client.getSolde()), commissionX, tva);
+        // Calcul de la commission "x" en francs entiers
+        long commissionX = regle.commission(Money.arrondir(montantEpargne));
+        long tva = commissionX > 0 ? Money.tva(commissionX) : 0L; // = CommissionCalculatorService.calculerTVA
+        BigDecimal ancienSolde = BigDecimal.valueOf(client.getSolde());
+        long soldeNet = Money.soustraire(Money.soustraire(Money.arrondir(ancienSolde), commissionX), tva);
 
         return CommissionClientDetail.builder()
                 .clientId(client.getId())
                 .clientNom(client.getNom())
                 .montantEpargne(montantEpargne)
-                .commissionX(commissionX)
-                .tva(tva)
-                .ancienSolde(BigDecimal.valueOf(client.getSolde()))
-                .nouveauSolde(soldeNet)
-                .parameterUsed(parameter.getType().name())
+                .commissionX(Money.versBigDecimal(commissionX))
+                .tva(Money.versBigDecimal(tva))
+                .ancienSolde(ancienSolde)
+                .nouveauSolde(Money.versBigDecimal(soldeNet))
+                .parameterUsed(regle.getType().name())
                 .build();
     }
 
@@ -0,0 +1,134 @@
+package org.example.collectfocep.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.example.collectfocep.repositories.CompteAttenteRepository;
+import org.example.collectfocep.repositories.CompteClientRepository;
+import org.example.collectfocep.repositories.CompteManquantRepository;
+import org.example.collectfocep.repositories.CompteSalaireCollecteurRepository;
+import org.example.collectfocep.repositories.CompteServiceRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Cache des identifiants de comptes résolus :
+ * - clientId → ID du CompteClient
+ * - collecteurId → IDs des comptes service, manquant, attente et salaire
+ *
+ * Seuls les IDs sont gardés en mémoire (jamais les soldes) : la comptabilisation charge
+ * ensuite uniquement les lignes qu'elle verrouille. Invalidé par la création de comptes
+ * et par les transferts de clients (CompteTransferService).
+ */
+@Component
+@Slf4j
+public class CompteIdCache {
+
+    private final CompteClientRepository compteClientRepository;
+    private final CompteServiceRepository compteServiceRepository;
+    private final CompteManquantRepository compteManquantRepository;
+    private final CompteAttenteRepository compteAttenteRepository;
+    private final CompteSalaireCollecteurRepository compteSalaireCollecteurRepository;
+
+    private final Cache<Long, Long> compteClientParClient;
+    private final Cache<Long, ComptesCollecteur> comptesParCollecteur;
+
+    public CompteIdCache(CompteClientRepository compteClientRepository,
+                         CompteServiceRepository compteServiceRepository,
+                         CompteManquantRepository compteManquantRepository,
+                         CompteAttenteRepository compteAttenteRepository,
+                         CompteSalaireCollecteurRepository compteSalaireCollecteurRepository,
+                         @Value("${app.comptes.id-cache-max-size:50000}") long maxSize) {
+        this.compteClientRepository = compteClientRepository;
+        this.compteServiceRepository = compteServiceRepository;
+        this.compteManquantRepository = compteManquantRepository;
+        this.compteAttenteRepository = compteAttenteRepository;
+        this.compteSalaireCollecteurRepository = compteSalaireCollecteurRepository;
+        this.compteClientParClient = Caffeine.newBuilder().maximumSize(maxSize).build();
+        this.comptesParCollecteur = Caffeine.newBuilder().maximumSize(maxSize).build();
+    }
+
+    /**
+     * ID du compte du client ; vide si le client n'a pas encore de compte (absence non mise en cache)
+     */
+    public Optional<Long> getCompteClientId(Long clientId) {
+        return Optional.ofNullable(compteClientParClient.get(clientId,
+                id -> premier(compteClientRepository.findIdsByClientIdIn(List.of(id)))));
+    }
+
+    /**
+     * IDs des comptes de plusieurs clients : les absents du cache sont résolus en une seule
+     * requête IN. Les clients sans compte n'apparaissent pas dans le résultat.
+     */
+    public Map<Long, Long> getComptesClientIds(Collection<Long> clientIds) {
+        return compteClientParClient.getAll(clientIds, manquants -> {
+            Map<Long, Long> resolus = new HashMap<>();
+            for (Object[] ligne : compteClientRepository.findClientIdEtCompteIdByClientIdIn(List.copyOf(manquants))) {
+                resolus.putIfAbsent((Long) ligne[0], (Long) ligne[1]);
+            }
+            return resolus;
+        });
+    }
+
+    public ComptesCollecteur getComptesCollecteur(Long collecteurId) {
+        return comptesParCollecteur.get(collecteurId, id -> {
+            ComptesCollecteur comptes = new ComptesCollecteur(
+                    premier(compteServiceRepository.findIdsByCollecteurId(id)),
+                    premier(compteManquantRepository.findIdsByCollecteurId(id)),
+                    premier(compteAttenteRepository.findIdsByCollecteurId(id)),
+                    premier(compteSalaireCollecteurRepository.findIdsByCollecteurId(id)));
+            log.debug("Comptes résolus pour collecteur {}: {}", id, comptes);
+            return comptes;
+        });
+    }
+
+    public void invaliderClient(Long clientId) {
+        invaliderClients(List.of(clientId));
+    }
+
+    public void invaliderClients(Collection<Long> clientIds) {
+        apresTransaction(() -> compteClientParClient.invalidateAll(clientIds));
+    }
+
+    public void invaliderCollecteur(Long collecteurId) {
+        apresTransaction(() -> comptesParCollecteur.invalidate(collecteurId));
+    }
+
+    public void vider() {
+        apresTransaction(() -> {
+            compteClientParClient.invalidateAll();
+            comptesParCollecteur.invalidateAll();
+        });
+    }
+
+    /**
+     * Invalidation immédiate, répétée à la fin de la transaction courante : une lecture
+     * concurrente faite avant le commit ne peut pas laisser une entrée périmée
+     */
+    private void apresTransaction(Runnable invalidation) {
+        invalidation.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidation.run();
+                }
+            });
+        }
+    }
+
+    private static Long premier(List<Long> ids) {
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
+    public record ComptesCollecteur(Long serviceId, Long manquantId, Long attenteId, Long salaireId) {
+    }
+}
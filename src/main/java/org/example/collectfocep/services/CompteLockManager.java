@@ -0,0 +1,161 @@
+package org.example.collectfocep.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.collectfocep.exceptions.BusinessException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sérialisation des écritures par compte (un verrou par ID de compte).
+ *
+ * Le compte service d'un collecteur est débité à chaque épargne : sans ordonnancement,
+ * les dépôts concurrents du même collecteur se heurtent au @Version de Compte.
+ * Les écritures sur un même compte passent ici l'une après l'autre, celles sur des
+ * comptes différents restent parallèles : deux transactions ne se bloquent que si elles
+ * touchent réellement un compte commun.
+ *
+ * Les verrous sont liés à la transaction courante et rendus après commit/rollback,
+ * pour que l'écriture suivante relise un solde déjà validé.
+ *
+ * Ordre d'acquisition : les comptes sont pris par ID croissant. Une transaction qui
+ * demande ensuite un compte d'ID inférieur à ceux qu'elle tient déjà ne l'attend pas
+ * (tentative immédiate, COMPTE_VERROUILLE sinon) : aucune attente croisée n'est possible.
+ * Les appelants prennent donc tous les comptes d'une transaction en un seul appel.
+ */
+@Component
+@Slf4j
+public class CompteLockManager {
+
+    private final ConcurrentHashMap<Long, VerrouCompte> verrous = new ConcurrentHashMap<>();
+    private final long timeoutMs;
+
+    public CompteLockManager(@Value("${app.mouvement.lock-timeout-ms:10000}") long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * Verrouille les comptes jusqu'à la fin de la transaction courante.
+     *
+     * @return les IDs nouvellement verrouillés par cette transaction ; les comptes déjà
+     *         tenus n'y figurent pas et n'ont pas besoin d'être relus
+     */
+    public Set<Long> verrouiller(Collection<Long> compteIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Le verrouillage de comptes exige une transaction active");
+        }
+
+        VerrousTransaction tenus = verrousTransaction();
+        TreeSet<Long> nouveaux = new TreeSet<>();
+        for (Long id : compteIds) {
+            if (id != null && !tenus.compteIds.contains(id)) {
+                nouveaux.add(id);
+            }
+        }
+        if (nouveaux.isEmpty()) {
+            return nouveaux;
+        }
+
+        long plusGrandTenu = tenus.compteIds.isEmpty() ? Long.MIN_VALUE : tenus.compteIds.last();
+        List<Long> acquis = new ArrayList<>(nouveaux.size());
+        for (Long id : nouveaux) {
+            // Au-delà des comptes déjà tenus l'ordre global est respecté : attente bornée.
+            // En deçà, attendre pourrait croiser une autre transaction : tentative immédiate.
+            if (!acquerir(id, id > plusGrandTenu ? timeoutMs : 0)) {
+                liberer(acquis);
+                log.warn("Verrou non obtenu pour le compte {} (demandés: {}, tenus: {})", id, nouveaux, tenus.compteIds);
+                throw new BusinessException("Compte occupé, veuillez réessayer", "COMPTE_VERROUILLE");
+            }
+            acquis.add(id);
+        }
+
+        tenus.compteIds.addAll(acquis);
+        log.debug("Comptes verrouillés jusqu'à la fin de transaction: {}", nouveaux);
+        return nouveaux;
+    }
+
+    public Set<Long> verrouiller(Long... compteIds) {
+        return verrouiller(Arrays.asList(compteIds));
+    }
+
+    /**
+     * Nombre de comptes dont le verrou est tenu ou attendu (supervision et tests)
+     */
+    public int nombreComptesVerrouilles() {
+        return verrous.size();
+    }
+
+    private boolean acquerir(Long compteId, long attenteMs) {
+        VerrouCompte verrou = verrous.compute(compteId, (id, existant) -> {
+            VerrouCompte v = existant != null ? existant : new VerrouCompte();
+            v.references++;
+            return v;
+        });
+        boolean obtenu;
+        try {
+            obtenu = attenteMs > 0
+                    ? verrou.lock.tryLock(attenteMs, TimeUnit.MILLISECONDS)
+                    : verrou.lock.tryLock();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            obtenu = false;
+        }
+        if (!obtenu) {
+            relacher(compteId);
+        }
+        return obtenu;
+    }
+
+    private void relacher(Long compteId) {
+        // L'entrée disparaît avec son dernier détenteur ou candidat : la table reste bornée
+        verrous.computeIfPresent(compteId, (id, v) -> --v.references == 0 ? null : v);
+    }
+
+    private VerrousTransaction verrousTransaction() {
+        VerrousTransaction tenus = (VerrousTransaction) TransactionSynchronizationManager.getResource(this);
+        if (tenus == null) {
+            VerrousTransaction nouveaux = new VerrousTransaction();
+            TransactionSynchronizationManager.bindResource(this, nouveaux);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CompteLockManager.this);
+                    liberer(new ArrayList<>(nouveaux.compteIds));
+                    nouveaux.compteIds.clear();
+                }
+            });
+            tenus = nouveaux;
+        }
+        return tenus;
+    }
+
+    private void liberer(List<Long> compteIds) {
+        // Ordre inverse de l'acquisition
+        for (int i = compteIds.size() - 1; i >= 0; i--) {
+            Long compteId = compteIds.get(i);
+            verrous.get(compteId).lock.unlock();
+            relacher(compteId);
+        }
+    }
+
+    private static final class VerrouCompte {
+        private final ReentrantLock lock = new ReentrantLock();
+        // Détenteur + transactions en attente ; modifié uniquement sous compute()
+        private int references;
+    }
+
+    private static final class VerrousTransaction {
+        private final TreeSet<Long> compteIds = new TreeSet<>();
+    }
+}
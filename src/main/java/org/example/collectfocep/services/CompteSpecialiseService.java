@@ -7,6 +7,10 @@ import org.example.collectfocep.repositories.*;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Service de gestion des comptes spécialisés selon la nomenclature FOCEP
  * Gère la création et récupération des comptes C.P.C.C, C.P.T, C.P.C, C.C.C, C.S.C, C.T
@@ -93,6 +97,25 @@ public class CompteSpecialiseService {
                 .orElseGet(() -> createCSC(collecteurId));
     }
 
+    /**
+     * C.S.C de plusieurs collecteurs : une requête pour les comptes existants, création des manquants
+     */
+    @Transactional
+    public Map<Long, CompteSalaireCollecteur> getOrCreateCSCs(Collection<Long> collecteurIds) {
+        Map<Long, CompteSalaireCollecteur> comptes = new HashMap<>();
+        if (collecteurIds.isEmpty()) {
+            return comptes;
+        }
+        for (CompteSalaireCollecteur csc : compteRepository.findSalairesByCollecteurIdIn(collecteurIds)) {
+            comptes.putIfAbsent(csc.getCollecteur().getId(), csc);
+        }
+        for (Long collecteurId : collecteurIds) {
+            comptes.computeIfAbsent(collecteurId, this::createCSC);
+        }
+        log.debug("C.S.C résolus pour {} collecteur(s)", comptes.size());
+        return comptes;
+    }
+
     /**
      * Récupère le C.S.C (Compte Salaire Collecteur) pour un collecteur
      * @deprecated Utiliser getOrCreateCSC à la place
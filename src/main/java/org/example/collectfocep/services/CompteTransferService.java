@@ -31,6 +31,7 @@ public class CompteTransferService {
     private final CompteLiaisonRepository compteLiaisonRepository;
     private final TransfertCompteRepository transfertCompteRepository;
     private final AuditLogRepository auditLogRepository;
+    private final CompteIdCache compteIdCache;
 
     @Autowired
     public CompteTransferService(
@@ -42,7 +43,8 @@ public class CompteTransferService {
             MouvementServiceImpl mouvementServiceImpl,
             CompteLiaisonRepository compteLiaisonRepository,
             TransfertCompteRepository transfertCompteRepository,
-            AuditLogRepository auditLogRepository) {
+            AuditLogRepository auditLogRepository,
+            CompteIdCache compteIdCache) {
         this.compteRepository = compteRepository;
         this.compteClientRepository = compteClientRepository;
         this.clientRepository = clientRepository;
@@ -52,6 +54,7 @@ public class CompteTransferService {
         this.compteLiaisonRepository = compteLiaisonRepository;
         this.transfertCompteRepository = transfertCompteRepository;
         this.auditLogRepository = auditLogRepository;
+        this.compteIdCache = compteIdCache;
     }
 
     /**
@@ -119,6 +122,7 @@ public class CompteTransferService {
         // Créer un enregistrement de transfert pour l'historique
         if (successCount > 0) {
             createTransferRecord(sourceCollecteurId, targetCollecteurId, clientIds, successCount, isSameAgence);
+            compteIdCache.invaliderClients(clientIds);
         }
 
         log.info("Fin du transfert: {} comptes sur {} transférés avec succès",
@@ -255,6 +259,7 @@ public class CompteTransferService {
         // 6. TRANSFERT RÉEL : ENREGISTREMENT SIMPLE
         if (successCount > 0) {
             createSimpleTransferRecord(sourceCollecteurId, targetCollecteurId, clientIds, successCount);
+            compteIdCache.invaliderClients(clientIds);
             log.info("✅ Transfert simple terminé: {} clients transférés", successCount);
         }
         
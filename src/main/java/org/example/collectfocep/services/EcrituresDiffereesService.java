@@ -0,0 +1,157 @@
+package org.example.collectfocep.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.collectfocep.entities.EcritureCompteDifferee;
+import org.example.collectfocep.repositories.CompteRepository;
+import org.example.collectfocep.repositories.EcritureCompteDiffereeRepository;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+/**
+ * Soldes différés des comptes partagés de l'agence (C.P.C.C, C.P.T, C.C.C, C.P.C, C.T).
+ *
+ * Chaque commission ou rémunération de collecteur crédite les mêmes comptes d'agence.
+ * Les verrouiller dans la transaction du collecteur sérialisait tous les collecteurs de
+ * l'agence. La transaction du collecteur insère donc seulement la variation de solde
+ * (ecritures_comptes_differees, insertion sans contention) ; la mise à jour du solde est
+ * faite après son commit dans une transaction courte qui ne verrouille que ces comptes.
+ *
+ * Les variations non appliquées (échec, arrêt entre les deux étapes) sont reprises par
+ * le balayage périodique ou par la dernière étape du job de commission.
+ */
+@Service
+@Slf4j
+public class EcrituresDiffereesService {
+
+    private final EcritureCompteDiffereeRepository ecritureRepository;
+    private final CompteRepository compteRepository;
+    private final CompteLockManager compteLockManager;
+    private final TransactionTemplate transactionCourte;
+    // Traitement par lot : l'application est faite une fois en fin de lot (voir grouperApplication)
+    private final ThreadLocal<Boolean> applicationGroupee = ThreadLocal.withInitial(() -> false);
+
+    public EcrituresDiffereesService(EcritureCompteDiffereeRepository ecritureRepository,
+                                     CompteRepository compteRepository,
+                                     CompteLockManager compteLockManager,
+                                     PlatformTransactionManager transactionManager) {
+        this.ecritureRepository = ecritureRepository;
+        this.compteRepository = compteRepository;
+        this.compteLockManager = compteLockManager;
+        this.transactionCourte = new TransactionTemplate(transactionManager);
+        this.transactionCourte.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.transactionCourte.setTimeout(30);
+    }
+
+    /**
+     * Enregistre les variations dans la transaction courante ; elles sont appliquées après son commit
+     */
+    public void differer(Map<Long, Long> deltasParCompte) {
+        if (deltasParCompte.isEmpty()) {
+            return;
+        }
+        LocalDateTime maintenant = LocalDateTime.now();
+        List<EcritureCompteDifferee> ecritures = new ArrayList<>(deltasParCompte.size());
+        deltasParCompte.forEach((compteId, delta) -> {
+            if (delta != 0) {
+                ecritures.add(EcritureCompteDifferee.builder()
+                        .compteId(compteId).montant(delta).dateCreation(maintenant).build());
+            }
+        });
+        ecritureRepository.saveAll(ecritures);
+
+        if (applicationGroupee.get()) {
+            return;
+        }
+        Set<Long> compteIds = new TreeSet<>(deltasParCompte.keySet());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    appliquerApresCommit(compteIds);
+                }
+            });
+        } else {
+            appliquerApresCommit(compteIds);
+        }
+    }
+
+    /**
+     * Exécute un traitement dont les variations différées ne sont pas appliquées à chaque commit :
+     * l'appelant les applique lui-même en une fois ({@link #appliquer}) à la fin de son lot
+     */
+    public <T> T grouperApplication(Supplier<T> traitement) {
+        boolean precedent = applicationGroupee.get();
+        applicationGroupee.set(true);
+        try {
+            return traitement.get();
+        } finally {
+            applicationGroupee.set(precedent);
+        }
+    }
+
+    /**
+     * Applique les variations en attente des comptes donnés, dans une transaction courte
+     * qui prend tous leurs verrous en un seul appel
+     *
+     * @return le nombre de comptes mis à jour
+     */
+    public int appliquer(Collection<Long> compteIds) {
+        if (compteIds.isEmpty()) {
+            return 0;
+        }
+        Integer misAJour = transactionCourte.execute(status -> {
+            compteLockManager.verrouiller(compteIds);
+            int comptes = 0;
+            for (Object[] ligne : ecritureRepository.sommerParCompte(compteIds)) {
+                Long compteId = (Long) ligne[0];
+                long delta = ((Number) ligne[1]).longValue();
+                Long dernierId = (Long) ligne[2];
+                if (delta != 0) {
+                    compteRepository.incrementerSolde(compteId, delta);
+                }
+                ecritureRepository.supprimerAppliquees(compteId, dernierId);
+                comptes++;
+            }
+            return comptes;
+        });
+        int resultat = misAJour != null ? misAJour : 0;
+        log.debug("Écritures différées appliquées: {} compte(s)", resultat);
+        return resultat;
+    }
+
+    /**
+     * Reprise des variations restées en attente
+     */
+    @Scheduled(fixedDelayString = "${app.comptes-differes.balayage-ms:60000}")
+    public void appliquerEnAttente() {
+        List<Long> compteIds = ecritureRepository.findComptesEnAttente();
+        if (!compteIds.isEmpty()) {
+            log.info("🔁 Reprise des écritures différées de {} compte(s)", compteIds.size());
+            appliquer(compteIds);
+        }
+    }
+
+    private void appliquerApresCommit(Set<Long> compteIds) {
+        try {
+            appliquer(compteIds);
+        } catch (Exception e) {
+            // Les variations restent en table : reprises par appliquerEnAttente
+            log.warn("Écritures différées des comptes {} non appliquées, reprise au prochain balayage: {}",
+                    compteIds, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package org.example.collectfocep.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.example.collectfocep.dto.EpargneRequest;
+import org.example.collectfocep.dto.MouvementCommissionDTO;
+import org.example.collectfocep.entities.*;
+import org.example.collectfocep.exceptions.BusinessException;
+import org.example.collectfocep.exceptions.CompteNotFoundException;
+import org.example.collectfocep.exceptions.ResourceNotFoundException;
+import org.example.collectfocep.exceptions.UnauthorizedAgencyAccessException;
+import org.example.collectfocep.mappers.MouvementMapperV2;
+import org.example.collectfocep.repositories.ClientRepository;
+import org.example.collectfocep.repositories.CollecteurRepository;
+import org.example.collectfocep.repositories.CompteRepository;
+import org.example.collectfocep.repositories.JournalRepository;
+import org.example.collectfocep.repositories.MouvementRepository;
+import org.example.collectfocep.services.impl.ClientAccountInitializationService;
+import org.example.collectfocep.services.interfaces.CompteService;
+import org.example.collectfocep.services.interfaces.DateTimeService;
+import org.example.collectfocep.services.interfaces.JournalService;
+import org.example.collectfocep.util.Money;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Chaîne d'enregistrement d'une épargne dans une seule transaction, en cinq étapes :
+ * autorisation → résolution → validation → écriture → audit.
+ *
+ * Chemin nominal (journal et identifiants de comptes en cache) : 5 allers-retours SQL
+ * - SELECT du client avec collecteur et agence (autorisation)
+ * - SELECT des deux comptes en une requête, après verrouillage (résolution)
+ * - INSERT du mouvement, UPDATE groupé des deux soldes (batch JDBC), upsert des totaux journaliers
+ * L'INSERT de la clé d'idempotence s'y ajoute quand l'en-tête est fourni.
+ *
+ * Chaque étape est chronométrée dans collecte.epargne.etape{etape=...}.
+ */
+@Service
+@Slf4j
+public class EpargnePipeline {
+
+    private static final String OPERATION_EPARGNE = "EPARGNE";
+
+    private final ClientRepository clientRepository;
+    private final CollecteurRepository collecteurRepository;
+    private final CompteRepository compteRepository;
+    private final MouvementRepository mouvementRepository;
+    private final JournalRepository journalRepository;
+    private final JournalService journalService;
+    private final CompteService compteService;
+    private final ClientAccountInitializationService clientAccountInitializationService;
+    private final CompteIdCache compteIdCache;
+    private final CompteLockManager compteLockManager;
+    private final JournalDuJourRegistry journalDuJourRegistry;
+    private final CollecteurDailyTotalsService collecteurDailyTotalsService;
+    private final IdempotencyService idempotencyService;
+    private final MouvementMapperV2 mouvementMapper;
+    private final DateTimeService dateTimeService;
+
+    private final Counter epargneCounter;
+    private final Timer epargneTimer;
+    private final Map<Etape, Timer> timersEtapes;
+
+    public EpargnePipeline(ClientRepository clientRepository,
+                           CollecteurRepository collecteurRepository,
+                           CompteRepository compteRepository,
+                           MouvementRepository mouvementRepository,
+                           JournalRepository journalRepository,
+                           JournalService journalService,
+                           CompteService compteService,
+                           ClientAccountInitializationService clientAccountInitializationService,
+                           CompteIdCache compteIdCache,
+                           CompteLockManager compteLockManager,
+                           JournalDuJourRegistry journalDuJourRegistry,
+                           CollecteurDailyTotalsService collecteurDailyTotalsService,
+                           IdempotencyService idempotencyService,
+                           MouvementMapperV2 mouvementMapper,
+                           DateTimeService dateTimeService,
+                           Counter epargneCounter,
+                           Timer epargneTimer,
+                           MeterRegistry meterRegistry) {
+        this.clientRepository = clientRepository;
+        this.collecteurRepository = collecteurRepository;
+        this.compteRepository = compteRepository;
+        this.mouvementRepository = mouvementRepository;
+        this.journalRepository = journalRepository;
+        this.journalService = journalService;
+        this.compteService = compteService;
+        this.clientAccountInitializationService = clientAccountInitializationService;
+        this.compteIdCache = compteIdCache;
+        this.compteLockManager = compteLockManager;
+        this.journalDuJourRegistry = journalDuJourRegistry;
+        this.collecteurDailyTotalsService = collecteurDailyTotalsService;
+        this.idempotencyService = idempotencyService;
+        this.mouvementMapper = mouvementMapper;
+        this.dateTimeService = dateTimeService;
+        this.epargneCounter = epargneCounter;
+        this.epargneTimer = epargneTimer;
+        this.timersEtapes = new EnumMap<>(Etape.class);
+        for (Etape etape : Etape.values()) {
+            timersEtapes.put(etape, Timer.builder("collecte.epargne.etape")
+                    .description("Durée de chaque étape de l'enregistrement d'une épargne")
+                    .tag("etape", etape.tag)
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Point d'entrée du contrôleur : épargne + enregistrement de la clé d'idempotence
+     * dans la même transaction
+     */
+    @Transactional(
+            propagation = Propagation.REQUIRED,
+            isolation = Isolation.READ_COMMITTED,
+            rollbackFor = Exception.class,
+            timeout = 30
+    )
+    public MouvementCommissionDTO executer(EpargneRequest request, IdempotencyService.Cle cleIdempotence) {
+        return executerEtapes(request.getClientId(), request.getCollecteurId(), true, request.getMontant(),
+                null, cleIdempotence).reponse();
+    }
+
+    /**
+     * Épargne sans idempotence (appels internes, client déjà résolu par l'appelant : pas de contrôle
+     * d'agence). Un journal explicite remplace le journal du jour.
+     */
+    @Transactional(
+            propagation = Propagation.REQUIRED,
+            isolation = Isolation.READ_COMMITTED,
+            rollbackFor = Exception.class,
+            timeout = 30
+    )
+    public Mouvement poster(Long clientId, Long collecteurId, double montant, Journal journal) {
+        return executerEtapes(clientId, collecteurId, false, montant, journal, null).mouvement();
+    }
+
+    private Resultat executerEtapes(Long clientId, Long collecteurId, boolean controleAgence, double montant,
+                                    Journal journal, IdempotencyService.Cle cleIdempotence) {
+        long debut = System.nanoTime();
+
+        Client client = chronometrer(Etape.AUTORISATION, () -> autoriser(clientId, collecteurId, controleAgence));
+        Resolution resolution = chronometrer(Etape.RESOLUTION, () -> resoudre(client, journal));
+        long francs = chronometrer(Etape.VALIDATION, () -> valider(resolution, montant));
+        Mouvement mouvement = chronometrer(Etape.ECRITURE, () -> ecrire(client, resolution, montant, francs));
+        MouvementCommissionDTO reponse = chronometrer(Etape.AUDIT, () -> auditer(mouvement, client, cleIdempotence));
+
+        epargneTimer.record(System.nanoTime() - debut, TimeUnit.NANOSECONDS);
+        return new Resultat(mouvement, reponse);
+    }
+
+    // ===== 1. AUTORISATION =====
+
+    /**
+     * Le contrôle canManageClient est porté par @PreAuthorize ; ici on vérifie l'appartenance
+     * du client à l'agence du collecteur sur le client chargé (collecteur et agence en JOIN FETCH).
+     * Comme SecurityService#isClientInCollecteurAgence, une agence introuvable d'un côté ou de
+     * l'autre (collecteur absent de la requête compris) vaut refus
+     */
+    private Client autoriser(Long clientId, Long collecteurId, boolean controleAgence) {
+        if (controleAgence && collecteurId == null) {
+            throw new UnauthorizedAgencyAccessException("Client n'appartient pas à votre agence");
+        }
+        Client client = clientRepository.findByIdWithAllRelations(clientId)
+                .orElseThrow(() -> new ResourceNotFoundException("Client non trouvé"));
+
+        if (controleAgence) {
+            Long agenceClientId = client.getAgence() != null ? client.getAgence().getId() : null;
+            Collecteur collecteur = client.getCollecteur();
+            Long agenceCollecteurId = collecteur != null && collecteurId.equals(collecteur.getId())
+                    && collecteur.getAgence() != null
+                    ? collecteur.getAgence().getId()
+                    : collecteurRepository.findAgenceIdByCollecteurId(collecteurId);
+            if (agenceClientId == null || !agenceClientId.equals(agenceCollecteurId)) {
+                throw new UnauthorizedAgencyAccessException("Client n'appartient pas à votre agence");
+            }
+        }
+        return client;
+    }
+
+    // ===== 2. RÉSOLUTION =====
+
+    /**
+     * Journal et identifiants de comptes depuis les caches, puis verrouillage des deux comptes
+     * et chargement en une requête. Les comptes ne sont jamais lus avant le verrou : les instances
+     * chargées sont donc à jour sans refresh.
+     */
+    private Resolution resoudre(Client client, Journal journal) {
+        Collecteur collecteur = client.getCollecteur();
+        if (collecteur == null) {
+            throw new BusinessException("Client sans collecteur", "CLIENT_SANS_COLLECTEUR");
+        }
+
+        Journal journalDuJour = journal != null ? journal : getJournalDuJour(collecteur.getId());
+
+        Long compteServiceId = getCompteServiceId(collecteur);
+        Long compteClientId = compteIdCache.getCompteClientId(client.getId())
+                .orElseGet(() -> clientAccountInitializationService.ensureClientAccountExists(client).getId());
+
+        compteLockManager.verrouiller(compteServiceId, compteClientId);
+        Map<Long, Compte> comptes = compteRepository.findAllById(List.of(compteServiceId, compteClientId)).stream()
+                .collect(Collectors.toMap(Compte::getId, Function.identity()));
+
+        return new Resolution(journalDuJour, requireCompte(comptes, compteServiceId), requireCompte(comptes, compteClientId));
+    }
+
+    private Journal getJournalDuJour(Long collecteurId) {
+        LocalDate date = dateTimeService.getCurrentDate();
+        JournalDuJourRegistry.JournalDuJour journalDuJour = journalDuJourRegistry.resoudre(collecteurId, date,
+                () -> journalService.getOrCreateJournalDuJour(collecteurId, date));
+        return journalRepository.getReferenceById(journalDuJour.journalId());
+    }
+
+    private Long getCompteServiceId(Collecteur collecteur) {
+        Long compteServiceId = compteIdCache.getComptesCollecteur(collecteur.getId()).serviceId();
+        if (compteServiceId != null) {
+            return compteServiceId;
+        }
+        compteService.createCollecteurAccounts(collecteur);
+        compteIdCache.invaliderCollecteur(collecteur.getId());
+        return compteService.findServiceAccount(collecteur).getId();
+    }
+
+    private static Compte requireCompte(Map<Long, Compte> comptes, Long compteId) {
+        Compte compte = comptes.get(compteId);
+        if (compte == null) {
+            throw new CompteNotFoundException("Compte non trouvé: " + compteId);
+        }
+        return compte;
+    }
+
+    // ===== 3. VALIDATION =====
+
+    private long valider(Resolution resolution, double montant) {
+        long francs = Money.arrondir(montant);
+        if (francs <= 0) {
+            throw new BusinessException("Le montant de l'épargne doit être positif", "MONTANT_INVALIDE");
+        }
+        if (resolution.compteService().getId().equals(resolution.compteClient().getId())) {
+            throw new BusinessException("Comptes source et destination identiques", "COMPTES_IDENTIQUES");
+        }
+        return francs;
+    }
+
+    // ===== 4. ÉCRITURE =====
+
+    private Mouvement ecrire(Client client, Resolution resolution, double montant, long francs) {
+        Compte compteService = resolution.compteService();
+        Compte compteClient = resolution.compteClient();
+        LocalDateTime maintenant = dateTimeService.getCurrentDateTime();
+
+        Mouvement mouvement = new Mouvement();
+        // Montant enregistré = francs réellement portés aux soldes
+        mouvement.setMontant(francs);
+        mouvement.setLibelle(String.format("Epargne client : %s %s", client.getNom(), client.getPrenom()));
+        mouvement.setSens("epargne");
+        mouvement.setTypeMouvement(OPERATION_EPARGNE);
+        mouvement.setDateOperation(maintenant);
+        mouvement.setCompteSource(compteService);
+        mouvement.setCompteDestination(compteClient);
+        mouvement.setJournal(resolution.journal());
+        mouvement.setCollecteur(client.getCollecteur());
+        mouvement.setClient(client);
+
+        // Épargne : débit du compte service du collecteur, crédit du compte client
+        compteService.setSolde(Money.soustraire(Money.arrondir(compteService.getSolde()), francs));
+        compteClient.setSolde(Money.ajouter(Money.arrondir(compteClient.getSolde()), francs));
+
+        Mouvement enregistre = mouvementRepository.save(mouvement);
+        // L'upsert natif déclenche le flush : INSERT du mouvement et UPDATE des soldes partent ici
+        collecteurDailyTotalsService.enregistrer(enregistre);
+        return enregistre;
+    }
+
+    // ===== 5. AUDIT =====
+
+    private MouvementCommissionDTO auditer(Mouvement mouvement, Client client, IdempotencyService.Cle cleIdempotence) {
+        MouvementCommissionDTO reponse = mouvementMapper.toCommissionDto(mouvement);
+        if (cleIdempotence != null) {
+            idempotencyService.enregistrer(cleIdempotence, OPERATION_EPARGNE, mouvement.getId(), reponse);
+        }
+        epargneCounter.increment();
+        log.info("✅ Épargne enregistrée: ID={}, Journal={}, Client={}, Montant={}",
+                mouvement.getId(), mouvement.getJournal() != null ? mouvement.getJournal().getId() : null,
+                client.getId(), mouvement.getMontant());
+        return reponse;
+    }
+
+    private <T> T chronometrer(Etape etape, Supplier<T> action) {
+        long debut = System.nanoTime();
+        try {
+            return action.get();
+        } finally {
+            timersEtapes.get(etape).record(System.nanoTime() - debut, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private enum Etape {
+        AUTORISATION("autorisation"),
+        RESOLUTION("resolution"),
+        VALIDATION("validation"),
+        ECRITURE("ecriture"),
+        AUDIT("audit");
+
+        private final String tag;
+
+        Etape(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private record Resolution(Journal journal, Compte compteService, Compte compteClient) {
+    }
+
+    private record Resultat(Mouvement mouvement, MouvementCommissionDTO reponse) {
+    }
+}
@@ -3,21 +3,36 @@ package org.example.collectfocep.services;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.example.collectfocep.entities.*;
 import org.example.collectfocep.repositories.*;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.sql.DataSource;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.IntConsumer;
 
 /**
  * 📊 Service d'export Excel pour SuperAdmin
  * Génère des fichiers Excel multi-onglets pour intégration core banking
+ *
+ * En mode flux (app.excel.use-streaming), le classeur SXSSF ne garde en mémoire qu'une fenêtre
+ * de lignes, les onglets Clients et Transactions sont lus par curseur JDBC et le fichier est
+ * écrit directement dans le flux de sortie : la mémoire ne dépend pas de la taille de l'export.
  */
 @Service
 @Slf4j
@@ -28,18 +43,95 @@ public class ExportExcelService {
     private final AdminRepository adminRepository;
     private final CollecteurRepository collecteurRepository;
     private final ClientRepository clientRepository;
-    private final MouvementRepository mouvementRepository;
-    
+    private final DataSource dataSource;
+
+    @Value("${app.excel.use-streaming:true}")
+    private boolean streaming;
+
+    // Lignes gardées en mémoire par onglet en mode flux, les précédentes sont écrites sur disque
+    @Value("${app.excel.fenetre-lignes:200}")
+    private int fenetreLignes;
+
+    private static final int TAILLE_LOT_CURSEUR = 500;
+
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
     private static final DateTimeFormatter FILE_DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd_HHmm");
 
+    // Largeurs de colonnes fixes (en caractères) : autoSizeColumn relit toutes les lignes, impossible en flux
+    private static final int[] LARGEURS_AGENCES = {8, 14, 28, 18, 18, 32, 16, 24, 10, 18, 12, 14, 12, 24};
+    private static final int[] LARGEURS_ADMINS = {8, 20, 20, 16, 30, 16, 28, 18, 26};
+    private static final int[] LARGEURS_COLLECTEURS = {8, 20, 20, 16, 30, 16, 28, 10, 18, 20, 18, 12, 18, 26};
+    private static final int[] LARGEURS_CLIENTS = {8, 20, 20, 16, 16, 30, 28, 10, 18, 16, 16, 20};
+    private static final int[] LARGEURS_TRANSACTIONS = {18, 12, 28, 30, 30, 16, 14};
+    private static final int[] LARGEURS_RESUME = {40, 16, 16, 16};
+
+    /**
+     * Clients avec collecteur, agence et statistiques de leurs mouvements (un seul GROUP BY pour
+     * tout l'onglet), lus en avant seulement ; filtre agence et limite ajoutés selon les filtres
+     */
+    private static final String SQL_CLIENTS_EXPORT = """
+            SELECT c.id, c.nom, c.prenom, c.numero_cni, c.telephone, c.valide, c.date_creation,
+                   u.nom AS collecteur_nom, u.prenom AS collecteur_prenom, a.nom_agence,
+                   COALESCE(s.solde, 0) AS solde, COALESCE(s.nb_transactions, 0) AS nb_transactions,
+                   s.derniere_operation
+            FROM clients c
+            LEFT JOIN utilisateurs u ON u.id = c.id_collecteur
+            LEFT JOIN agence a ON a.id = c.id_agence
+            LEFT JOIN (
+                SELECT m.client_id,
+                       SUM(CASE WHEN m.sens = 'CREDIT' OR m.sens = 'EPARGNE' THEN m.montant ELSE -m.montant END) AS solde,
+                       COUNT(*) AS nb_transactions,
+                       MAX(m.date_operation) AS derniere_operation
+                FROM mouvements m
+                %s
+                GROUP BY m.client_id
+            ) s ON s.client_id = c.id
+            """;
+
+    private static final String MOUVEMENTS_DE_L_AGENCE =
+            "JOIN clients cm ON cm.id = m.client_id WHERE cm.id_agence = ?";
+
+    /**
+     * Mouvements avec agence du client, collecteur du mouvement ou à défaut du client, et client
+     */
+    private static final String SQL_MOUVEMENTS_EXPORT = """
+            SELECT m.date_operation, m.sens, m.montant, a.nom_agence,
+                   um.nom AS mvt_collecteur_nom, um.prenom AS mvt_collecteur_prenom,
+                   uc.nom AS client_collecteur_nom, uc.prenom AS client_collecteur_prenom,
+                   c.nom AS client_nom, c.prenom AS client_prenom
+            FROM mouvements m
+            LEFT JOIN clients c ON c.id = m.client_id
+            LEFT JOIN agence a ON a.id = c.id_agence
+            LEFT JOIN utilisateurs um ON um.id = m.collecteur_id
+            LEFT JOIN utilisateurs uc ON uc.id = c.id_collecteur
+            """;
+
     /**
      * 📊 Export complet multi-onglets pour core banking
      */
     public byte[] exportCompleteData(ExportFilters filters) throws IOException {
-        log.info("🚀 Début export Excel complet avec filtres: {}", filters);
-        
-        try (Workbook workbook = new XSSFWorkbook()) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        exportCompleteData(filters, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * 📊 Export complet écrit directement dans le flux de sortie (réponse HTTP)
+     */
+    public void exportCompleteData(ExportFilters filters, OutputStream outputStream) throws IOException {
+        exportCompleteData(filters, outputStream, pourcentage -> { });
+    }
+
+    /**
+     * 📊 Export complet avec suivi : {@code progression} reçoit un pourcentage après chaque onglet
+     * (export en file, voir ReportJobQueue) ; une exception du suivi interrompt l'export
+     */
+    public void exportCompleteData(ExportFilters filters, OutputStream outputStream,
+                                   IntConsumer progression) throws IOException {
+        log.info("🚀 Début export Excel complet avec filtres: {} (flux: {})", filters, streaming);
+
+        Workbook workbook = streaming ? nouveauClasseurFlux() : new XSSFWorkbook();
+        try {
             // Styles pour les en-têtes et données
             CellStyle headerStyle = createHeaderStyle(workbook);
             CellStyle dataStyle = createDataStyle(workbook);
@@ -48,25 +140,40 @@ public class ExportExcelService {
 
             // Création des onglets
             createAgencesSheet(workbook, headerStyle, dataStyle, dateStyle, filters);
+            progression.accept(5);
             createAdminsSheet(workbook, headerStyle, dataStyle, dateStyle, filters);
+            progression.accept(10);
             createCollecteursSheet(workbook, headerStyle, dataStyle, dateStyle, currencyStyle, filters);
+            progression.accept(20);
             createClientsSheet(workbook, headerStyle, dataStyle, dateStyle, currencyStyle, filters);
+            progression.accept(45);
             createTransactionsSheet(workbook, headerStyle, dataStyle, dateStyle, currencyStyle, filters);
+            progression.accept(85);
             createSummarySheet(workbook, headerStyle, dataStyle, currencyStyle, filters);
+            progression.accept(90);
 
-            // Conversion en bytes
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
             workbook.write(outputStream);
-            
-            log.info("✅ Export Excel terminé - Taille: {} KB", outputStream.size() / 1024);
-            return outputStream.toByteArray();
-            
+            outputStream.flush();
+
+            log.info("✅ Export Excel terminé");
+
         } catch (Exception e) {
             log.error("❌ Erreur lors de l'export Excel: {}", e.getMessage(), e);
             throw new IOException("Erreur lors de la génération du fichier Excel", e);
+        } finally {
+            if (workbook instanceof SXSSFWorkbook classeurFlux) {
+                classeurFlux.dispose(); // fichiers temporaires des lignes déjà écrites
+            }
+            workbook.close();
         }
     }
 
+    private SXSSFWorkbook nouveauClasseurFlux() {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(fenetreLignes);
+        workbook.setCompressTempFiles(true);
+        return workbook;
+    }
+
     /**
      * 🏢 Onglet Agences
      */
@@ -88,11 +195,15 @@ public class ExportExcelService {
             cell.setCellStyle(headerStyle);
         }
 
-        // Données
+        // Données : agrégats chargés en amont, une requête groupée chacun
         List<Agence> agences = getFilteredAgences(filters);
+        Map<Long, Object[]> collecteursParAgence = indexerParId(collecteurRepository.statsExportParAgence(filters.getAgenceId()));
+        Map<Long, Object[]> clientsParAgence = indexerParId(clientRepository.statsExportParAgence(filters.getAgenceId()));
         int rowNum = 1;
         
         for (Agence agence : agences) {
+            Object[] collecteurs = collecteursParAgence.get(agence.getId());
+            Object[] clients = clientsParAgence.get(agence.getId());
             Row row = sheet.createRow(rowNum++);
             int cellNum = 0;
             
@@ -106,16 +217,14 @@ public class ExportExcelService {
             createCell(row, cellNum++, agence.getResponsable(), dataStyle);
             createCell(row, cellNum++, agence.isActive() ? "Actif" : "Inactif", dataStyle);
             createCell(row, cellNum++, agence.getDateCreation(), dateStyle);
-            createCell(row, cellNum++, agence.getNombreCollecteurs(), dataStyle);
-            createCell(row, cellNum++, agence.getNombreCollecteursActifs(), dataStyle);
-            createCell(row, cellNum++, agence.getNombreClients(), dataStyle);
-            createCell(row, cellNum++, calculateTotalEpargnesAgence(agence.getId()), dataStyle);
-        }
-        
-        // Auto-size colonnes
-        for (int i = 0; i < headers.length; i++) {
-            sheet.autoSizeColumn(i);
+            createCell(row, cellNum++, nombre(collecteurs, 1), dataStyle);
+            createCell(row, cellNum++, nombre(collecteurs, 2), dataStyle);
+            createCell(row, cellNum++, nombre(clients, 1), dataStyle);
+            createCell(row, cellNum++, montant(clients, 2), dataStyle);
         }
+
+
+        appliquerLargeurs(sheet, LARGEURS_AGENCES);
     }
 
     /**
@@ -138,8 +247,9 @@ public class ExportExcelService {
             cell.setCellStyle(headerStyle);
         }
 
-        // Données
+        // Données : collecteurs supervisés = collecteurs de l'agence de l'admin
         List<Admin> admins = getFilteredAdmins(filters);
+        Map<Long, Object[]> collecteursParAgence = indexerParId(collecteurRepository.statsExportParAgence(filters.getAgenceId()));
         int rowNum = 1;
         
         for (Admin admin : admins) {
@@ -154,12 +264,11 @@ public class ExportExcelService {
             createCell(row, cellNum++, admin.getTelephone(), dataStyle);
             createCell(row, cellNum++, admin.getAgence() != null ? admin.getAgence().getNomAgence() : "Non assigné", dataStyle);
             createCell(row, cellNum++, admin.getDateCreation(), dateStyle);
-            createCell(row, cellNum++, countCollecteursByAdmin(admin.getId()), dataStyle);
-        }
-        
-        for (int i = 0; i < headers.length; i++) {
-            sheet.autoSizeColumn(i);
+            createCell(row, cellNum++, admin.getAgence() != null ? nombre(collecteursParAgence.get(admin.getAgence().getId()), 1) : 0L, dataStyle);
         }
+
+
+        appliquerLargeurs(sheet, LARGEURS_ADMINS);
     }
 
     /**
@@ -183,11 +292,13 @@ public class ExportExcelService {
             cell.setCellStyle(headerStyle);
         }
 
-        // Données
+        // Données : agence chargée avec le collecteur, statistiques clients en une requête groupée
         List<Collecteur> collecteurs = getFilteredCollecteurs(filters);
+        Map<Long, Object[]> clientsParCollecteur = indexerParId(clientRepository.statsExportParCollecteur(filters.getAgenceId()));
         int rowNum = 1;
         
         for (Collecteur collecteur : collecteurs) {
+            Object[] clients = clientsParCollecteur.get(collecteur.getId());
             Row row = sheet.createRow(rowNum++);
             int cellNum = 0;
             
@@ -202,21 +313,21 @@ public class ExportExcelService {
             createCell(row, cellNum++, collecteur.getAncienneteEnMois(), dataStyle);
             createCell(row, cellNum++, collecteur.getMontantMaxRetrait(), currencyStyle);
             createCell(row, cellNum++, collecteur.getDateCreation(), dateStyle);
-            createCell(row, cellNum++, countClientsByCollecteur(collecteur.getId()), dataStyle);
-            createCell(row, cellNum++, countActiveClientsByCollecteur(collecteur.getId()), dataStyle);
-            createCell(row, cellNum++, calculateTotalEpargnesCollecteur(collecteur.getId()), currencyStyle);
-        }
-        
-        for (int i = 0; i < headers.length; i++) {
-            sheet.autoSizeColumn(i);
+            createCell(row, cellNum++, nombre(clients, 1), dataStyle);
+            createCell(row, cellNum++, nombre(clients, 2), dataStyle);
+            createCell(row, cellNum++, montant(clients, 3), currencyStyle);
         }
+
+
+        appliquerLargeurs(sheet, LARGEURS_COLLECTEURS);
     }
 
     /**
      * 👤 Onglet Clients
      */
     private void createClientsSheet(Workbook workbook, CellStyle headerStyle, CellStyle dataStyle, 
-                                   CellStyle dateStyle, CellStyle currencyStyle, ExportFilters filters) {
+                                   CellStyle dateStyle, CellStyle currencyStyle, ExportFilters filters)
+            throws SQLException {
         Sheet sheet = workbook.createSheet("Clients");
         
         // En-têtes
@@ -232,38 +343,57 @@ public class ExportExcelService {
             cell.setCellStyle(headerStyle);
         }
 
-        // Données (limitées pour performance)
-        List<Client> clients = getFilteredClients(filters);
+        // Données lues par curseur, ligne par ligne, statistiques des mouvements jointes par la requête
+        String sql = SQL_CLIENTS_EXPORT.formatted(filters.getAgenceId() != null ? MOUVEMENTS_DE_L_AGENCE : "")
+                + (filters.getAgenceId() != null ? "WHERE c.id_agence = ?\n" : "")
+                + "ORDER BY c.date_creation DESC"
+                + (filters.getMaxRecords() != null ? " LIMIT ?" : "");
         int rowNum = 1;
-        
-        for (Client client : clients) {
-            Row row = sheet.createRow(rowNum++);
-            int cellNum = 0;
-            
-            createCell(row, cellNum++, client.getId(), dataStyle);
-            createCell(row, cellNum++, client.getNom(), dataStyle);
-            createCell(row, cellNum++, client.getPrenom(), dataStyle);
-            createCell(row, cellNum++, client.getNumeroCni(), dataStyle);
-            createCell(row, cellNum++, client.getTelephone(), dataStyle);
-            createCell(row, cellNum++, client.getCollecteur() != null ? client.getCollecteur().getNom() + " " + client.getCollecteur().getPrenom() : "Non assigné", dataStyle);
-            createCell(row, cellNum++, client.getAgence() != null ? client.getAgence().getNomAgence() : "Non assigné", dataStyle);
-            createCell(row, cellNum++, client.getValide() ? "Actif" : "Inactif", dataStyle);
-            createCell(row, cellNum++, client.getDateCreation(), dateStyle);
-            createCell(row, cellNum++, calculateSoldeClient(client.getId()), currencyStyle);
-            createCell(row, cellNum++, countTransactionsByClient(client.getId()), dataStyle);
-            createCell(row, cellNum++, getLastTransactionDate(client.getId()), dateStyle);
-        }
-        
-        for (int i = 0; i < headers.length; i++) {
-            sheet.autoSizeColumn(i);
+
+        try (Connection connexion = dataSource.getConnection();
+             PreparedStatement requete = ouvrirCurseur(connexion, sql)) {
+            int index = 1;
+            if (filters.getAgenceId() != null) {
+                requete.setLong(index++, filters.getAgenceId()); // agrégat des mouvements
+                requete.setLong(index++, filters.getAgenceId()); // clients
+            }
+            if (filters.getMaxRecords() != null) {
+                requete.setInt(index, filters.getMaxRecords());
+            }
+
+            try (ResultSet rs = requete.executeQuery()) {
+                while (rs.next()) {
+                    long clientId = rs.getLong("id");
+                    Row row = sheet.createRow(rowNum++);
+                    int cellNum = 0;
+
+                    createCell(row, cellNum++, clientId, dataStyle);
+                    createCell(row, cellNum++, rs.getString("nom"), dataStyle);
+                    createCell(row, cellNum++, rs.getString("prenom"), dataStyle);
+                    createCell(row, cellNum++, rs.getString("numero_cni"), dataStyle);
+                    createCell(row, cellNum++, rs.getString("telephone"), dataStyle);
+                    createCell(row, cellNum++, nomComplet(rs.getString("collecteur_nom"), rs.getString("collecteur_prenom"), "Non assigné"), dataStyle);
+                    createCell(row, cellNum++, valeurOu(rs.getString("nom_agence"), "Non assigné"), dataStyle);
+                    createCell(row, cellNum++, rs.getBoolean("valide") ? "Actif" : "Inactif", dataStyle);
+                    createCell(row, cellNum++, dateHeure(rs.getTimestamp("date_creation")), dateStyle);
+                    createCell(row, cellNum++, rs.getDouble("solde"), currencyStyle);
+                    createCell(row, cellNum++, rs.getLong("nb_transactions"), dataStyle);
+                    createCell(row, cellNum++, dateHeure(rs.getTimestamp("derniere_operation")), dateStyle);
+                }
+            }
         }
+        log.debug("Onglet Clients: {} ligne(s)", rowNum - 1);
+
+
+        appliquerLargeurs(sheet, LARGEURS_CLIENTS);
     }
 
     /**
      * 💰 Onglet Transactions (résumé par période)
      */
     private void createTransactionsSheet(Workbook workbook, CellStyle headerStyle, CellStyle dataStyle, 
-                                        CellStyle dateStyle, CellStyle currencyStyle, ExportFilters filters) {
+                                        CellStyle dateStyle, CellStyle currencyStyle, ExportFilters filters)
+            throws SQLException {
         Sheet sheet = workbook.createSheet("Transactions");
         
         // En-têtes
@@ -278,27 +408,50 @@ public class ExportExcelService {
             cell.setCellStyle(headerStyle);
         }
 
-        // Données (limitées aux 1000 dernières transactions pour performance)
-        List<Mouvement> mouvements = getFilteredMouvements(filters);
+        // Données lues par curseur ; sans période, les plus récentes dans la limite demandée
+        boolean periode = filters.getDateDebut() != null && filters.getDateFin() != null;
+        String sql = SQL_MOUVEMENTS_EXPORT
+                + (periode ? "WHERE m.date_operation BETWEEN ? AND ?\n" : "")
+                + "ORDER BY m.date_operation DESC"
+                + (filters.getMaxRecords() != null ? " LIMIT ?" : "");
         int rowNum = 1;
-        
-        for (Mouvement mouvement : mouvements) {
-            Row row = sheet.createRow(rowNum++);
-            int cellNum = 0;
-            
-            createCell(row, cellNum++, mouvement.getDateOperation(), dateStyle);
-            createCell(row, cellNum++, mouvement.getSens(), dataStyle);
-            createCell(row, cellNum++, getAgenceFromMouvement(mouvement), dataStyle);
-            createCell(row, cellNum++, getCollecteurFromMouvement(mouvement), dataStyle);
-            createCell(row, cellNum++, getClientFromMouvement(mouvement), dataStyle);
-            createCell(row, cellNum++, mouvement.getMontant(), currencyStyle);
-            // Note: Solde après non disponible dans le modèle actuel
-            createCell(row, cellNum++, 0.0, currencyStyle);
-        }
-        
-        for (int i = 0; i < headers.length; i++) {
-            sheet.autoSizeColumn(i);
+
+        try (Connection connexion = dataSource.getConnection();
+             PreparedStatement requete = ouvrirCurseur(connexion, sql)) {
+            int index = 1;
+            if (periode) {
+                requete.setTimestamp(index++, Timestamp.valueOf(filters.getDateDebut()));
+                requete.setTimestamp(index++, Timestamp.valueOf(filters.getDateFin()));
+            }
+            if (filters.getMaxRecords() != null) {
+                requete.setInt(index, filters.getMaxRecords());
+            }
+
+            try (ResultSet rs = requete.executeQuery()) {
+                while (rs.next()) {
+                    Row row = sheet.createRow(rowNum++);
+                    int cellNum = 0;
+
+                    // Collecteur du mouvement, sinon celui du client
+                    String collecteur = rs.getString("mvt_collecteur_nom") != null
+                            ? nomComplet(rs.getString("mvt_collecteur_nom"), rs.getString("mvt_collecteur_prenom"), "Non défini")
+                            : nomComplet(rs.getString("client_collecteur_nom"), rs.getString("client_collecteur_prenom"), "Non défini");
+
+                    createCell(row, cellNum++, dateHeure(rs.getTimestamp("date_operation")), dateStyle);
+                    createCell(row, cellNum++, rs.getString("sens"), dataStyle);
+                    createCell(row, cellNum++, valeurOu(rs.getString("nom_agence"), "Non défini"), dataStyle);
+                    createCell(row, cellNum++, collecteur, dataStyle);
+                    createCell(row, cellNum++, nomComplet(rs.getString("client_nom"), rs.getString("client_prenom"), "Non défini"), dataStyle);
+                    createCell(row, cellNum++, rs.getDouble("montant"), currencyStyle);
+                    // Note: Solde après non disponible dans le modèle actuel
+                    createCell(row, cellNum++, 0.0, currencyStyle);
+                }
+            }
         }
+        log.debug("Onglet Transactions: {} ligne(s)", rowNum - 1);
+
+
+        appliquerLargeurs(sheet, LARGEURS_TRANSACTIONS);
     }
 
     /**
@@ -323,10 +476,7 @@ public class ExportExcelService {
         int currentRow = 3;
         createSummarySection(sheet, currentRow, "STATISTIQUES GLOBALES", headerStyle, dataStyle, currencyStyle);
         
-        // Auto-size
-        for (int i = 0; i < 4; i++) {
-            sheet.autoSizeColumn(i);
-        }
+        appliquerLargeurs(sheet, LARGEURS_RESUME);
     }
 
     // ================================
@@ -390,6 +540,39 @@ public class ExportExcelService {
         cell.setCellStyle(style);
     }
 
+    private static void appliquerLargeurs(Sheet sheet, int[] largeurs) {
+        for (int i = 0; i < largeurs.length; i++) {
+            sheet.setColumnWidth(i, largeurs[i] * 256);
+        }
+    }
+
+    /**
+     * Curseur en avant seulement sur une connexion de lecture dédiée
+     */
+    private static PreparedStatement ouvrirCurseur(Connection connexion, String sql) throws SQLException {
+        connexion.setReadOnly(true);
+        PreparedStatement requete = connexion.prepareStatement(sql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        if ("MySQL".equals(connexion.getMetaData().getDatabaseProductName())) {
+            requete.setFetchSize(Integer.MIN_VALUE); // Connector/J : ligne par ligne, sans tout charger
+        } else {
+            requete.setFetchSize(TAILLE_LOT_CURSEUR); // Integer.MIN_VALUE est refusé par les autres pilotes
+        }
+        return requete;
+    }
+
+    private static LocalDateTime dateHeure(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+
+    private static String valeurOu(String valeur, String defaut) {
+        return valeur != null ? valeur : defaut;
+    }
+
+    private static String nomComplet(String nom, String prenom, String defaut) {
+        return nom != null ? nom + " " + prenom : defaut;
+    }
+
     // ================================
     // MÉTHODES DE FILTRAGE DES DONNÉES
     // ================================
@@ -403,93 +586,38 @@ public class ExportExcelService {
 
     private List<Admin> getFilteredAdmins(ExportFilters filters) {
         if (filters.getAgenceId() != null) {
-            return adminRepository.findByAgenceId(filters.getAgenceId());
+            return adminRepository.findByAgenceIdWithAgence(filters.getAgenceId());
         }
-        return adminRepository.findAll();
+        return adminRepository.findAllWithAgence();
     }
 
     private List<Collecteur> getFilteredCollecteurs(ExportFilters filters) {
         if (filters.getAgenceId() != null) {
-            return collecteurRepository.findByAgenceId(filters.getAgenceId());
+            return collecteurRepository.findByAgenceIdWithAgence(filters.getAgenceId());
         }
-        return collecteurRepository.findAll();
-    }
-
-    private List<Client> getFilteredClients(ExportFilters filters) {
-        if (filters.getAgenceId() != null) {
-            return clientRepository.findByAgenceId(filters.getAgenceId());
-        }
-        // Limiter à 5000 clients pour performance
-        return clientRepository.findTop5000ByOrderByDateCreationDesc();
-    }
-
-    private List<Mouvement> getFilteredMouvements(ExportFilters filters) {
-        if (filters.getDateDebut() != null && filters.getDateFin() != null) {
-            return mouvementRepository.findByDateMouvementBetweenOrderByDateMouvementDesc(
-                filters.getDateDebut(), filters.getDateFin());
-        }
-        // Limiter aux 1000 derniers mouvements pour performance
-        return mouvementRepository.findTop1000ByOrderByDateMouvementDesc();
+        return collecteurRepository.findAllWithAgence();
     }
 
     // ================================
     // MÉTHODES DE CALCUL DES STATISTIQUES
     // ================================
 
-    private Double calculateTotalEpargnesAgence(Long agenceId) {
-        return clientRepository.sumSoldesByAgenceId(agenceId);
-    }
-
-    private Double calculateTotalEpargnesCollecteur(Long collecteurId) {
-        return clientRepository.sumSoldesByCollecteurId(collecteurId);
-    }
-
-    private Double calculateSoldeClient(Long clientId) {
-        return mouvementRepository.calculateSoldeByClientId(clientId);
-    }
-
-    private Long countCollecteursByAdmin(Long adminId) {
-        return collecteurRepository.countByAdminId(adminId);
-    }
-
-    private Long countClientsByCollecteur(Long collecteurId) {
-        return clientRepository.countByCollecteurId(collecteurId);
-    }
-
-    private Long countActiveClientsByCollecteur(Long collecteurId) {
-        return clientRepository.countByCollecteurIdAndValideTrue(collecteurId);
-    }
-
-    private Long countTransactionsByClient(Long clientId) {
-        return mouvementRepository.countByClientId(clientId);
-    }
-
-    private LocalDateTime getLastTransactionDate(Long clientId) {
-        return mouvementRepository.findLastTransactionDateByClientId(clientId);
-    }
-
-    private String getAgenceFromMouvement(Mouvement mouvement) {
-        if (mouvement.getClient() != null && mouvement.getClient().getAgence() != null) {
-            return mouvement.getClient().getAgence().getNomAgence();
+    private static Map<Long, Object[]> indexerParId(List<Object[]> lignes) {
+        Map<Long, Object[]> index = new HashMap<>(lignes.size() * 2);
+        for (Object[] ligne : lignes) {
+            if (ligne[0] != null) {
+                index.put(((Number) ligne[0]).longValue(), ligne);
+            }
         }
-        return "Non défini";
+        return index;
     }
 
-    private String getCollecteurFromMouvement(Mouvement mouvement) {
-        if (mouvement.getCollecteur() != null) {
-            return mouvement.getCollecteur().getNom() + " " + mouvement.getCollecteur().getPrenom();
-        } else if (mouvement.getClient() != null && mouvement.getClient().getCollecteur() != null) {
-            Collecteur collecteur = mouvement.getClient().getCollecteur();
-            return collecteur.getNom() + " " + collecteur.getPrenom();
-        }
-        return "Non défini";
+    private static long nombre(Object[] ligne, int colonne) {
+        return ligne != null && ligne[colonne] != null ? ((Number) ligne[colonne]).longValue() : 0L;
     }
 
-    private String getClientFromMouvement(Mouvement mouvement) {
-        if (mouvement.getClient() != null) {
-            return mouvement.getClient().getNom() + " " + mouvement.getClient().getPrenom();
-        }
-        return "Non défini";
+    private static double montant(Object[] ligne, int colonne) {
+        return ligne != null && ligne[colonne] != null ? ((Number) ligne[colonne]).doubleValue() : 0.0;
     }
 
     private void createSummarySection(Sheet sheet, int startRow, String title, 
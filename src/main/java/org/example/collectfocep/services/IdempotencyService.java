@@ -0,0 +1,254 @@
+package org.example.collectfocep.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.example.collectfocep.dto.MouvementCommissionDTO;
+import org.example.collectfocep.entities.IdempotencyKey;
+import org.example.collectfocep.exceptions.DuplicateResourceException;
+import org.example.collectfocep.exceptions.IdempotencyKeyMismatchException;
+import org.example.collectfocep.exceptions.ValidationException;
+import org.example.collectfocep.repositories.IdempotencyKeyRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Détection des doublons d'épargne/retrait rejoués par le mobile (en-tête Idempotency-Key).
+ *
+ * - Portée : une clé n'est unique que pour l'utilisateur authentifié qui l'a émise
+ * - Empreinte : SHA-256 de l'opération, du client, du collecteur et du montant ; une clé réutilisée
+ *   avec une autre requête est refusée (IdempotencyKeyMismatchException) au lieu d'être rejouée
+ * - Cache Caffeine borné et expirant : un rejeu est servi depuis la mémoire, sans transaction
+ * - Table idempotency_keys à clé unique (portée, clé) : non-doublon entre instances et après redémarrage
+ * - Réservation en mémoire : une requête concurrente avec la même clé attend la fin de la première
+ *   puis reçoit sa réponse
+ */
+@Service
+@Slf4j
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    private static final int MAX_KEY_LENGTH = 100;
+    /** Portée des clés enregistrées avant l'introduction des portées (V011), purgées avec la rétention */
+    static final String PORTEE_HERITEE = "";
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final Cache<Cle, Reponse> reponses;
+    private final Map<Cle, CountDownLatch> clesEnCours = new ConcurrentHashMap<>();
+
+    @Value("${app.idempotency.retention-days:7}")
+    private int retentionDays;
+
+    @Value("${app.idempotency.concurrent-wait-ms:10000}")
+    private long attenteConcurrenteMs = 10000;
+
+    public IdempotencyService(
+            IdempotencyKeyRepository idempotencyKeyRepository,
+            @Value("${app.idempotency.cache-max-size:100000}") long cacheMaxSize,
+            @Value("${app.idempotency.cache-ttl-hours:24}") long cacheTtlHours) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.reponses = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofHours(cacheTtlHours))
+                .build();
+    }
+
+    /**
+     * Clé d'idempotence de la requête : null si l'en-tête est absent, erreur s'il est trop long.
+     * La portée est l'utilisateur authentifié, l'empreinte couvre le contenu de la requête.
+     */
+    public Cle cle(String idempotencyKey, String operation, Long clientId, Long collecteurId, double montant) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return null;
+        }
+        String valeur = idempotencyKey.trim();
+        if (valeur.length() > MAX_KEY_LENGTH) {
+            throw new ValidationException("L'en-tête " + HEADER + " ne peut dépasser " + MAX_KEY_LENGTH + " caractères");
+        }
+        return new Cle(portee(), valeur, empreinte(operation, clientId, collecteurId, montant));
+    }
+
+    /**
+     * Réponse d'origine pour une clé déjà traitée : mémoire d'abord, table en cas d'absence.
+     *
+     * @throws IdempotencyKeyMismatchException si la clé a été utilisée pour une autre requête
+     */
+    public Optional<MouvementCommissionDTO> findReponse(Cle cle) {
+        if (cle == null) {
+            return Optional.empty();
+        }
+
+        Reponse reponse = reponses.getIfPresent(cle);
+        if (reponse == null) {
+            reponse = idempotencyKeyRepository.findByScopeAndIdempotencyKey(cle.portee(), cle.valeur())
+                    .or(() -> idempotencyKeyRepository.findByScopeAndIdempotencyKey(PORTEE_HERITEE, cle.valeur()))
+                    .map(record -> new Reponse(record.getRequestHash(), toDto(record)))
+                    .orElse(null);
+            if (reponse == null) {
+                return Optional.empty();
+            }
+            reponses.put(cle, reponse);
+        }
+
+        // Les clés héritées n'ont pas d'empreinte : rejouées sans comparaison
+        if (reponse.empreinte() != null && !reponse.empreinte().equals(cle.empreinte())) {
+            log.warn("Clé d'idempotence {} réutilisée avec une requête différente", cle);
+            throw new IdempotencyKeyMismatchException(
+                    "La clé " + cle.valeur() + " a déjà été utilisée pour une autre requête");
+        }
+        return Optional.of(reponse.dto());
+    }
+
+    /**
+     * Réserve la clé le temps du traitement. Retourne false si une requête avec la même clé est déjà en cours.
+     */
+    public boolean reserver(Cle cle) {
+        return clesEnCours.putIfAbsent(cle, new CountDownLatch(1)) == null;
+    }
+
+    /**
+     * Attend la fin de la requête qui détient la clé (borné par app.idempotency.concurrent-wait-ms).
+     *
+     * @return true si la requête d'origine s'est terminée dans le délai
+     */
+    public boolean attendre(Cle cle) {
+        CountDownLatch enCours = clesEnCours.get(cle);
+        if (enCours == null) {
+            return true;
+        }
+        try {
+            return enCours.await(attenteConcurrenteMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public void liberer(Cle cle) {
+        CountDownLatch enCours = clesEnCours.remove(cle);
+        if (enCours != null) {
+            enCours.countDown();
+        }
+    }
+
+    /**
+     * Enregistre la clé dans la transaction du mouvement. La réponse n'est mise en cache qu'après commit.
+     */
+    public void enregistrer(Cle cle, String operation, Long mouvementId, MouvementCommissionDTO reponse) {
+        IdempotencyKey record = IdempotencyKey.builder()
+                .scope(cle.portee())
+                .idempotencyKey(cle.valeur())
+                .requestHash(cle.empreinte())
+                .operation(operation)
+                .mouvementId(mouvementId)
+                .typeOperation(reponse.getTypeOperation())
+                .montant(reponse.getMontant())
+                .compteSource(reponse.getCompteSource())
+                .compteDestination(reponse.getCompteDestination())
+                .libelle(reponse.getLibelle())
+                .dateOperation(reponse.getDateOperation())
+                .dateCreation(LocalDateTime.now())
+                .build();
+
+        try {
+            idempotencyKeyRepository.saveAndFlush(record);
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Clé d'idempotence déjà utilisée: {}", cle);
+            throw new DuplicateResourceException("Opération déjà traitée pour la clé " + cle.valeur(), e);
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reponses.put(cle, new Reponse(cle.empreinte(), reponse));
+                }
+            });
+        } else {
+            reponses.put(cle, new Reponse(cle.empreinte(), reponse));
+        }
+    }
+
+    /**
+     * Purge des clés plus anciennes que la durée de rétention
+     */
+    @Scheduled(cron = "0 30 2 * * ?") // Tous les jours à 2h30 du matin
+    @Transactional
+    public void purgerClesExpirees() {
+        int supprimees = idempotencyKeyRepository.deleteByDateCreationBefore(
+                LocalDateTime.now().minusDays(retentionDays));
+        log.info("🧹 {} clés d'idempotence expirées supprimées", supprimees);
+    }
+
+    private static String portee() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getName() != null ? authentication.getName() : "anonyme";
+    }
+
+    static String empreinte(String operation, Long clientId, Long collecteurId, double montant) {
+        String contenu = operation + "|" + clientId + "|" + collecteurId + "|"
+                + BigDecimal.valueOf(montant).stripTrailingZeros().toPlainString();
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(contenu.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+
+    private MouvementCommissionDTO toDto(IdempotencyKey record) {
+        return new MouvementCommissionDTO(
+                record.getTypeOperation(),
+                record.getMontant(),
+                record.getCompteSource(),
+                record.getCompteDestination(),
+                record.getLibelle(),
+                record.getDateOperation());
+    }
+
+    /**
+     * Clé d'idempotence d'une requête : portée (utilisateur), valeur de l'en-tête, empreinte du contenu.
+     * L'égalité ne porte que sur la portée et la valeur.
+     */
+    public record Cle(String portee, String valeur, String empreinte) {
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Cle autre && portee.equals(autre.portee) && valeur.equals(autre.valeur);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(portee, valeur);
+        }
+
+        @Override
+        public String toString() {
+            return portee + "/" + valeur;
+        }
+    }
+
+    private record Reponse(String empreinte, MouvementCommissionDTO dto) {
+    }
+}
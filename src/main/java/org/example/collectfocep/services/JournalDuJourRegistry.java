@@ -0,0 +1,84 @@
+package org.example.collectfocep.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.example.collectfocep.entities.Journal;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.function.Supplier;
+
+/**
+ * Registre en mémoire du journal du jour par (collecteur, date).
+ *
+ * - Résolu une seule fois : les opérations suivantes ne rouvrent pas de transaction
+ *   REQUIRES_NEW (getOrCreateJournalDuJour) pour retrouver le journal
+ * - Création sûre en concurrence : Caffeine ne lance qu'un seul chargement par clé,
+ *   les autres appelants attendent son résultat
+ * - Invalidé à chaque modification ou suppression d'un Journal (JournalDuJourListener),
+ *   donc à la clôture ; l'expiration borne la durée de vie entre plusieurs instances
+ */
+@Component
+@Slf4j
+public class JournalDuJourRegistry {
+
+    private final Cache<CleJournal, JournalDuJour> journaux;
+
+    public JournalDuJourRegistry(
+            @Value("${app.journal.registry-max-size:10000}") long maxSize,
+            @Value("${app.journal.registry-ttl-minutes:10}") long ttlMinutes) {
+        this.journaux = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .build();
+    }
+
+    /**
+     * Journal du jour depuis le registre ; en cas d'absence, le chargeur est appelé une seule fois
+     */
+    public JournalDuJour resoudre(Long collecteurId, LocalDate date, Supplier<Journal> chargeur) {
+        return journaux.get(new CleJournal(collecteurId, date), cle -> {
+            Journal journal = chargeur.get();
+            log.debug("📅 Journal du jour enregistré: collecteur={}, date={}, ID={}", collecteurId, date, journal.getId());
+            return new JournalDuJour(journal.getId(), journal.getStatut(), journal.isEstCloture());
+        });
+    }
+
+    /**
+     * Retire le journal du registre immédiatement et à la fin de la transaction courante,
+     * pour qu'aucune lecture faite avant le commit ne reste en mémoire
+     */
+    public void invalider(Long journalId) {
+        if (journalId == null) {
+            return;
+        }
+        retirer(journalId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    retirer(journalId);
+                }
+            });
+        }
+    }
+
+    public void vider() {
+        journaux.invalidateAll();
+    }
+
+    private void retirer(Long journalId) {
+        journaux.asMap().values().removeIf(entree -> journalId.equals(entree.journalId()));
+    }
+
+    public record JournalDuJour(Long journalId, String statut, boolean estCloture) {
+    }
+
+    private record CleJournal(Long collecteurId, LocalDate date) {
+    }
+}
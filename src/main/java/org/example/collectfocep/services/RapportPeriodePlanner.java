@@ -0,0 +1,330 @@
+package org.example.collectfocep.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.example.collectfocep.entities.CategorieMouvement;
+import org.example.collectfocep.entities.Client;
+import org.example.collectfocep.entities.Collecteur;
+import org.example.collectfocep.entities.Report;
+import org.example.collectfocep.exceptions.ResourceNotFoundException;
+import org.example.collectfocep.repositories.ClientRepository;
+import org.example.collectfocep.repositories.CollecteurRepository;
+import org.example.collectfocep.repositories.MouvementRepository;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Rapports multi-mois d'un collecteur (annuel, période personnalisée).
+ *
+ * - Fork : chaque mois est une tâche du rapportMoisExecutor qui lit un agrégat partiel
+ *   (totaux par client et catégorie, une requête groupée).
+ * - Join : une continuation lancée à la fin du dernier mois fusionne les agrégats et écrit le
+ *   classeur consolidé dans le {@link ReportArtifactStore}.
+ *
+ * Le pool a autant de threads actifs que app.reports.mois.workers (6 par défaut) : un annuel lit
+ * 6 mois à la fois, en deux vagues. Aucun thread du pool n'attend un future du même pool : il ne
+ * peut pas se bloquer sur lui-même, et un rapport de 24 mois occupe les threads seulement le
+ * temps des lectures.
+ */
+@Service
+@Slf4j
+public class RapportPeriodePlanner {
+
+    static final String TYPE_ANNUEL = "ANNUEL_COLLECTEUR";
+    static final String TYPE_PERIODE = "PERIODE_COLLECTEUR";
+
+    private static final IntConsumer SANS_SUIVI = pourcentage -> { };
+
+    private static final DateTimeFormatter FORMAT_MOIS = DateTimeFormatter.ofPattern("MMM yyyy", Locale.FRENCH);
+
+    private final MouvementRepository mouvementRepository;
+    private final ClientRepository clientRepository;
+    private final CollecteurRepository collecteurRepository;
+    private final ReportArtifactStore reportArtifactStore;
+    private final Executor executor;
+
+    public RapportPeriodePlanner(MouvementRepository mouvementRepository,
+                                 ClientRepository clientRepository,
+                                 CollecteurRepository collecteurRepository,
+                                 ReportArtifactStore reportArtifactStore,
+                                 @Qualifier("rapportMoisExecutor") Executor executor) {
+        this.mouvementRepository = mouvementRepository;
+        this.clientRepository = clientRepository;
+        this.collecteurRepository = collecteurRepository;
+        this.reportArtifactStore = reportArtifactStore;
+        this.executor = executor;
+    }
+
+    public CompletableFuture<String> rapportAnnuel(Long collecteurId, int annee) {
+        return rapportAnnuel(collecteurId, annee, SANS_SUIVI);
+    }
+
+    public CompletableFuture<String> rapportAnnuel(Long collecteurId, int annee, IntConsumer progression) {
+        return planifier(TYPE_ANNUEL, collecteurId, YearMonth.of(annee, 1), YearMonth.of(annee, 12), progression);
+    }
+
+    public CompletableFuture<String> rapportPeriode(Long collecteurId, YearMonth debut, YearMonth fin) {
+        return rapportPeriode(collecteurId, debut, fin, SANS_SUIVI);
+    }
+
+    public CompletableFuture<String> rapportPeriode(Long collecteurId, YearMonth debut, YearMonth fin,
+                                                    IntConsumer progression) {
+        return planifier(TYPE_PERIODE, collecteurId, debut, fin, progression);
+    }
+
+    /**
+     * Lance les mois en parallèle et retourne immédiatement ; le future se termine avec le
+     * chemin du classeur consolidé dans le stockage des rapports.
+     *
+     * {@code progression} reçoit un pourcentage à la fin de chaque mois puis avant l'écriture du
+     * classeur ; une exception levée par le suivi (annulation) fait échouer le rapport à ce point
+     */
+    CompletableFuture<String> planifier(String type, Long collecteurId, YearMonth debut, YearMonth fin,
+                                        IntConsumer progression) {
+        Collecteur collecteur = collecteurRepository.findById(collecteurId)
+                .orElseThrow(() -> new ResourceNotFoundException("Collecteur non trouvé"));
+        LocalDateTime dateDebut = debut.atDay(1).atStartOfDay();
+        LocalDateTime dateFin = fin.atEndOfMonth().atTime(23, 59, 59);
+
+        // Pris avant toute lecture : un mouvement arrivé pendant le calcul changera la clé suivante
+        String filigrane = reportArtifactStore.filigrane(collecteurId, dateDebut, dateFin);
+
+        List<CompletableFuture<AgregatMensuel>> mois = new ArrayList<>();
+        long nombreMois = ChronoUnit.MONTHS.between(debut, fin) + 1;
+        AtomicInteger termines = new AtomicInteger();
+        for (YearMonth m = debut; !m.isAfter(fin); m = m.plusMonths(1)) {
+            YearMonth courant = m;
+            mois.add(CompletableFuture.supplyAsync(() -> {
+                AgregatMensuel agregat = agregerMois(collecteurId, courant);
+                // Les lectures comptent pour 90 %, l'écriture du classeur pour le reste
+                progression.accept((int) (termines.incrementAndGet() * 90 / nombreMois));
+                return agregat;
+            }, executor));
+        }
+        log.info("🚀 Rapport {} collecteur {}: {} mois lancés en parallèle ({} → {})",
+                type, collecteurId, mois.size(), debut, fin);
+
+        return CompletableFuture.allOf(mois.toArray(CompletableFuture[]::new))
+                .thenApplyAsync(ignore -> {
+                    // Tous les mois sont terminés : join() ne bloque pas
+                    List<AgregatMensuel> agregats = mois.stream().map(CompletableFuture::join).toList();
+                    progression.accept(95);
+                    return consolider(type, collecteur, debut, fin, dateDebut, dateFin, filigrane, agregats);
+                }, executor);
+    }
+
+    AgregatMensuel agregerMois(Long collecteurId, YearMonth mois) {
+        AgregatMensuel agregat = new AgregatMensuel(mois);
+        for (Object[] ligne : mouvementRepository.totauxParClientEtCategorie(collecteurId,
+                mois.atDay(1).atStartOfDay(), mois.atEndOfMonth().atTime(23, 59, 59))) {
+            if (ligne[0] == null) {
+                continue;
+            }
+            agregat.ajouter(((Number) ligne[0]).longValue(), (CategorieMouvement) ligne[1],
+                    ((Number) ligne[2]).doubleValue(), ((Number) ligne[3]).longValue());
+        }
+        log.debug("📊 Mois {} collecteur {}: {} client(s)", mois, collecteurId, agregat.parClient.size());
+        return agregat;
+    }
+
+    private String consolider(String type, Collecteur collecteur, YearMonth debut, YearMonth fin,
+                              LocalDateTime dateDebut, LocalDateTime dateFin, String filigrane,
+                              List<AgregatMensuel> agregats) {
+        String titre = (TYPE_ANNUEL.equals(type) ? "Rapport annuel " + debut.getYear()
+                : "Rapport " + debut + " à " + fin) + " - " + collecteur.getPrenom() + " " + collecteur.getNom();
+        try {
+            Report report = reportArtifactStore.obtenirRapportCollecteur(type, collecteur, dateDebut, dateFin,
+                    filigrane, titre, out -> ecrireClasseur(collecteur, titre, agregats, out));
+            log.info("✅ {} consolidé: {}", titre, report.getFilePath());
+            return report.getFilePath();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erreur écriture du rapport consolidé", e);
+        }
+    }
+
+    // ================================
+    // CLASSEUR CONSOLIDÉ
+    // ================================
+
+    private void ecrireClasseur(Collecteur collecteur, String titre, List<AgregatMensuel> agregats,
+                                OutputStream out) throws IOException {
+        Map<Long, Client> clients = new HashMap<>();
+        for (Client client : clientRepository.findByCollecteurId(collecteur.getId())) {
+            clients.put(client.getId(), client);
+        }
+
+        try (Workbook workbook = new XSSFWorkbook()) {
+            CellStyle entete = createHeaderStyle(workbook);
+            CellStyle montant = workbook.createCellStyle();
+            montant.setDataFormat(workbook.createDataFormat().getFormat("#,##0"));
+
+            ecrireSynthese(workbook.createSheet("Synthèse"), titre, agregats, entete, montant);
+            ecrireClients(workbook.createSheet("Clients"), agregats, clients, entete, montant);
+
+            workbook.write(out);
+        }
+    }
+
+    private void ecrireSynthese(Sheet sheet, String titre, List<AgregatMensuel> agregats,
+                                CellStyle entete, CellStyle montant) {
+        sheet.createRow(0).createCell(0).setCellValue(titre);
+
+        String[] colonnes = {"Mois", "Épargne", "Retraits", "Net", "Nb opérations", "Clients actifs"};
+        Row header = sheet.createRow(2);
+        for (int i = 0; i < colonnes.length; i++) {
+            Cell cell = header.createCell(i);
+            cell.setCellValue(colonnes[i]);
+            cell.setCellStyle(entete);
+        }
+
+        int rowNum = 3;
+        TotauxClient total = new TotauxClient();
+        for (AgregatMensuel agregat : agregats) {
+            TotauxClient mois = agregat.total();
+            total.fusionner(mois);
+            ecrireLigneTotaux(sheet.createRow(rowNum++), agregat.mois.format(FORMAT_MOIS), mois,
+                    agregat.parClient.size(), montant);
+        }
+        ecrireLigneTotaux(sheet.createRow(rowNum), "TOTAL", total, -1, montant);
+
+        for (int i = 0; i < colonnes.length; i++) {
+            sheet.setColumnWidth(i, 16 * 256);
+        }
+    }
+
+    private void ecrireLigneTotaux(Row row, String libelle, TotauxClient totaux, int clientsActifs, CellStyle montant) {
+        row.createCell(0).setCellValue(libelle);
+        cellule(row, 1, totaux.epargne, montant);
+        cellule(row, 2, totaux.retraits, montant);
+        cellule(row, 3, totaux.epargne - totaux.retraits, montant);
+        row.createCell(4).setCellValue(totaux.operations);
+        if (clientsActifs >= 0) {
+            row.createCell(5).setCellValue(clientsActifs);
+        }
+    }
+
+    /**
+     * Une ligne par client : épargne de chaque mois, puis totaux de la période
+     */
+    private void ecrireClients(Sheet sheet, List<AgregatMensuel> agregats, Map<Long, Client> clients,
+                               CellStyle entete, CellStyle montant) {
+        Map<Long, TotauxClient> totaux = new TreeMap<>();
+        for (AgregatMensuel agregat : agregats) {
+            agregat.parClient.forEach((clientId, mois) ->
+                    totaux.computeIfAbsent(clientId, id -> new TotauxClient()).fusionner(mois));
+        }
+
+        Row header = sheet.createRow(0);
+        int col = 0;
+        List<String> colonnes = new ArrayList<>(List.of("N° Client", "Nom et Prénom"));
+        agregats.forEach(agregat -> colonnes.add(agregat.mois.format(FORMAT_MOIS)));
+        colonnes.addAll(List.of("Total Épargne", "Total Retraits", "Net", "Nb opérations"));
+        for (String colonne : colonnes) {
+            Cell cell = header.createCell(col++);
+            cell.setCellValue(colonne);
+            cell.setCellStyle(entete);
+        }
+
+        int rowNum = 1;
+        for (Map.Entry<Long, TotauxClient> entree : totaux.entrySet()) {
+            Long clientId = entree.getKey();
+            TotauxClient total = entree.getValue();
+            Client client = clients.get(clientId);
+
+            Row row = sheet.createRow(rowNum++);
+            col = 0;
+            row.createCell(col++).setCellValue(clientId);
+            row.createCell(col++).setCellValue(client != null
+                    ? client.getNom() + " " + client.getPrenom() : "Client #" + clientId);
+            for (AgregatMensuel agregat : agregats) {
+                TotauxClient mois = agregat.parClient.get(clientId);
+                cellule(row, col++, mois != null ? mois.epargne : 0.0, montant);
+            }
+            cellule(row, col++, total.epargne, montant);
+            cellule(row, col++, total.retraits, montant);
+            cellule(row, col++, total.epargne - total.retraits, montant);
+            row.createCell(col).setCellValue(total.operations);
+        }
+
+        sheet.setColumnWidth(0, 12 * 256);
+        sheet.setColumnWidth(1, 30 * 256);
+        for (int i = 2; i < colonnes.size(); i++) {
+            sheet.setColumnWidth(i, 14 * 256);
+        }
+    }
+
+    private static void cellule(Row row, int colonne, double valeur, CellStyle style) {
+        Cell cell = row.createCell(colonne);
+        cell.setCellValue(valeur);
+        cell.setCellStyle(style);
+    }
+
+    private CellStyle createHeaderStyle(Workbook workbook) {
+        CellStyle style = workbook.createCellStyle();
+        Font font = workbook.createFont();
+        font.setBold(true);
+        style.setFont(font);
+        style.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
+        style.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+        style.setAlignment(HorizontalAlignment.CENTER);
+        return style;
+    }
+
+    // ================================
+    // AGRÉGATS PARTIELS
+    // ================================
+
+    /**
+     * Totaux d'un mois, par client ; produit par une seule tâche, lu après sa fin
+     */
+    static final class AgregatMensuel {
+        final YearMonth mois;
+        final Map<Long, TotauxClient> parClient = new HashMap<>();
+
+        AgregatMensuel(YearMonth mois) {
+            this.mois = mois;
+        }
+
+        void ajouter(long clientId, CategorieMouvement categorie, double somme, long nombre) {
+            TotauxClient totaux = parClient.computeIfAbsent(clientId, id -> new TotauxClient());
+            if (categorie == CategorieMouvement.EPARGNE) {
+                totaux.epargne += somme;
+            } else if (categorie == CategorieMouvement.RETRAIT) {
+                totaux.retraits += somme;
+            }
+            totaux.operations += nombre;
+        }
+
+        TotauxClient total() {
+            TotauxClient total = new TotauxClient();
+            parClient.values().forEach(total::fusionner);
+            return total;
+        }
+    }
+
+    static final class TotauxClient {
+        double epargne;
+        double retraits;
+        long operations;
+
+        void fusionner(TotauxClient autre) {
+            epargne += autre.epargne;
+            retraits += autre.retraits;
+            operations += autre.operations;
+        }
+    }
+}
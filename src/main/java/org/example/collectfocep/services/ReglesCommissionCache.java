@@ -0,0 +1,83 @@
+package org.example.collectfocep.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.example.collectfocep.entities.CommissionParameter;
+import org.example.collectfocep.repositories.CommissionParameterRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Cache des {@link TableReglesCommission} par agence.
+ *
+ * Une table est compilée au premier calcul de l'agence (une requête avec les paliers),
+ * puis réutilisée jusqu'à une modification de paramètre (CommissionParameterService,
+ * contrôleurs de paramétrage) ou l'expiration de sécurité. Elle sert aussi de résolveur de
+ * la hiérarchie client → collecteur → agence pour l'affichage : aucune requête par client.
+ */
+@Component
+@Slf4j
+public class ReglesCommissionCache {
+
+    private final CommissionParameterRepository parameterRepository;
+    private final Cache<Long, TableReglesCommission> tables;
+
+    public ReglesCommissionCache(CommissionParameterRepository parameterRepository,
+                                 @Value("${app.commission.regles-cache-ttl-minutes:30}") long ttlMinutes) {
+        this.parameterRepository = parameterRepository;
+        this.tables = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .maximumSize(1_000)
+                .build();
+    }
+
+    public TableReglesCommission getTable(Long agenceId) {
+        return tables.get(agenceId, id -> TableReglesCommission.compiler(id,
+                parameterRepository.findActifsByAgenceIdWithTiers(id)));
+    }
+
+    /**
+     * Paramètre applicable à un client selon la hiérarchie client → collecteur → agence,
+     * résolu sur la table de l'agence (voir {@link TableReglesCommission.Regle#getParametre()}
+     * pour ce qui est lisible sur le paramètre retourné)
+     */
+    public Optional<CommissionParameter> resoudre(Long agenceId, Long collecteurId, Long clientId) {
+        if (agenceId == null) {
+            return Optional.empty();
+        }
+        TableReglesCommission.Regle regle = getTable(agenceId).regle(
+                clientId != null ? clientId : Long.MIN_VALUE,
+                collecteurId != null ? collecteurId : Long.MIN_VALUE);
+        return regle != null ? Optional.of(regle.getParametre()) : Optional.empty();
+    }
+
+    public void invaliderAgence(Long agenceId) {
+        apresTransaction(() -> tables.invalidate(agenceId));
+    }
+
+    public void invaliderTout() {
+        apresTransaction(tables::invalidateAll);
+    }
+
+    /**
+     * Invalidation immédiate, répétée à la fin de la transaction courante : une compilation
+     * concurrente faite avant le commit ne peut pas laisser une table périmée
+     */
+    private void apresTransaction(Runnable invalidation) {
+        invalidation.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidation.run();
+                }
+            });
+        }
+    }
+}
@@ -3,12 +3,16 @@ package org.example.collectfocep.services;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.collectfocep.dto.CommissionBatchJobDTO.CollecteurResultat;
 import org.example.collectfocep.dto.HistoriqueRemunerationDTO;
+import org.example.collectfocep.dto.RemunerationAgenceDTO;
 import org.example.collectfocep.entities.*;
 import org.example.collectfocep.repositories.CollecteurRepository;
+import org.example.collectfocep.repositories.HistoriqueCalculCommissionRepository;
 import org.example.collectfocep.repositories.HistoriqueRemunerationRepository;
 import org.example.collectfocep.repositories.RubriqueRemunerationRepository;
 import org.example.collectfocep.services.impl.MouvementServiceImpl;
+import org.example.collectfocep.util.Money;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -16,7 +20,12 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 
 /**
  * Processeur de rémunération selon la spécification FOCEP
@@ -32,6 +41,7 @@ public class RemunerationProcessor {
     private final MouvementServiceImpl mouvementService;
     private final HistoriqueRemunerationRepository historiqueRemunerationRepository;
     private final CollecteurRepository collecteurRepository;
+    private final HistoriqueCalculCommissionRepository historiqueCalculRepository;
 
     /**
      * Traite la rémunération complète d'un collecteur avec validation de période
@@ -90,14 +100,15 @@ public class RemunerationProcessor {
         }
 
         Long agenceId = getAgenceIdByCollecteur(collecteurId);
-        BigDecimal restantS = S;
-        BigDecimal totalVi = BigDecimal.ZERO;
-        List<Mouvement> mouvements = new ArrayList<>();
 
-        // 1. Récupération des comptes
-        ComptePassageCommissionCollecte comptePCCC = compteSpecialiseService.getOrCreateCPCC(agenceId);
-        CompteChargeCollecte compteCCC = compteSpecialiseService.getOrCreateCCC(agenceId);
-        CompteSalaireCollecteur compteCSC = compteSpecialiseService.getOrCreateCSC(collecteurId);
+        // 1. Récupération des comptes (C.P.C, C.P.T et C.T seulement s'ils servent)
+        ComptesRemuneration comptes = new ComptesRemuneration(
+                compteSpecialiseService.getOrCreateCPCC(agenceId),
+                compteSpecialiseService.getOrCreateCCC(agenceId),
+                compteSpecialiseService.getOrCreateCSC(collecteurId),
+                () -> compteSpecialiseService.getOrCreateCPC(agenceId),
+                () -> compteSpecialiseService.getOrCreateCPT(agenceId),
+                () -> compteSpecialiseService.getOrCreateCT(agenceId));
 
         // 2. Récupération des rubriques actives pour ce collecteur
         List<RubriqueRemuneration> rubriques = rubriqueRepository.findActiveRubriquesByCollecteur(
@@ -105,12 +116,145 @@ public class RemunerationProcessor {
 
         log.info("Rubriques trouvées: {}", rubriques.size());
 
-        // 3. Traitement de chaque rubrique
+        // 3. Mouvements Vi, EMF et TVA passés ensemble ; seul le C.S.C du collecteur est verrouillé,
+        //    les comptes de l'agence sont mis à jour après le commit (EcrituresDiffereesService)
+        PlanRemuneration plan = planifier(S, rubriques, comptes);
+        mouvementService.effectuerMouvementsEnsemblistes(plan.mouvements(),
+                comptesAgence(plan.mouvements(), comptes.csc()));
+
+        log.info("Rémunération terminée - Total Vi: {}, Surplus EMF: {}", plan.totalVi(), plan.restantS());
+
+        return RemunerationResult.builder()
+                .collecteurId(collecteurId)
+                .montantSInitial(S)
+                .totalRubriqueVi(plan.totalVi())
+                .montantEMF(plan.restantS())
+                .mouvements(plan.mouvements())
+                .success(true)
+                .build();
+    }
+
+    /**
+     * Rémunère en une fois tous les collecteurs d'une agence dont la commission de la période
+     * est calculée et pas encore rémunérée.
+     *
+     * Comptes d'agence résolus une fois, C.S.C et rubriques chargés en une requête chacun,
+     * mouvements de tous les collecteurs passés ensemble (MouvementServiceImpl#effectuerMouvementsEnsemblistes)
+     * et historiques insérés par lots. Une seule transaction : un échec annule toute l'agence.
+     */
+    @Transactional
+    public RemunerationAgenceDTO processRemunerationAgence(Long agenceId, LocalDate dateDebutPeriode,
+                                                           LocalDate dateFinPeriode, String effectuePar) {
+        long debut = System.currentTimeMillis();
+        log.info("Début rémunération agence {} - Période: {} à {}", agenceId, dateDebutPeriode, dateFinPeriode);
+
+        List<HistoriqueCalculCommission> calculs = historiqueCalculRepository
+                .findNonRemuneresByAgenceAndPeriod(agenceId, dateDebutPeriode, dateFinPeriode);
+        List<CollecteurResultat> resultats = new ArrayList<>();
+        if (calculs.isEmpty()) {
+            return resultatAgence(agenceId, dateDebutPeriode, dateFinPeriode, resultats, 0, debut);
+        }
+
+        // 1. Contrôle groupé des doubles rémunérations
+        Set<Long> dejaRemuneres = new HashSet<>(historiqueRemunerationRepository.findCollecteurIdsWithOverlappingPeriod(
+                calculs.stream().map(c -> c.getCollecteur().getId()).toList(), dateDebutPeriode, dateFinPeriode));
+        List<HistoriqueCalculCommission> aRemunerer = new ArrayList<>();
+        for (HistoriqueCalculCommission calcul : calculs) {
+            Long collecteurId = calcul.getCollecteur().getId();
+            if (dejaRemuneres.contains(collecteurId)) {
+                resultats.add(ligne(calcul, "IGNORE").message("Rémunération déjà enregistrée sur la période").build());
+            } else if (calcul.getMontantCommissionTotal() == null || calcul.getMontantCommissionTotal().signum() < 0) {
+                resultats.add(ligne(calcul, "ECHEC").message("S doit être positif ou nul").build());
+            } else {
+                aRemunerer.add(calcul);
+            }
+        }
+        if (aRemunerer.isEmpty()) {
+            return resultatAgence(agenceId, dateDebutPeriode, dateFinPeriode, resultats, 0, debut);
+        }
+
+        // 2. Comptes et rubriques : une résolution pour toute l'agence
+        Compte comptePCCC = compteSpecialiseService.getOrCreateCPCC(agenceId);
+        Compte compteCCC = compteSpecialiseService.getOrCreateCCC(agenceId);
+        Compte compteCPC = compteSpecialiseService.getOrCreateCPC(agenceId);
+        Compte comptePT = compteSpecialiseService.getOrCreateCPT(agenceId);
+        Compte compteTaxe = compteSpecialiseService.getOrCreateCT(agenceId);
+        Map<Long, CompteSalaireCollecteur> comptesCSC = compteSpecialiseService.getOrCreateCSCs(
+                aRemunerer.stream().map(c -> c.getCollecteur().getId()).toList());
+        List<RubriqueRemuneration> rubriques = rubriqueRepository.findActiveRubriquesWithCollecteurs(LocalDate.now());
+
+        // 3. Mouvements et historiques de chaque collecteur, en mémoire
+        List<Mouvement> mouvements = new ArrayList<>();
+        List<HistoriqueRemuneration> historiques = new ArrayList<>(aRemunerer.size());
+        List<PlanRemuneration> plans = new ArrayList<>(aRemunerer.size());
+        LocalDateTime maintenant = LocalDateTime.now();
+        for (HistoriqueCalculCommission calcul : aRemunerer) {
+            Long collecteurId = calcul.getCollecteur().getId();
+            BigDecimal S = calcul.getMontantCommissionTotal();
+            List<RubriqueRemuneration> rubriquesCollecteur = rubriques.stream()
+                    .filter(r -> r.getCollecteurIds() != null && r.getCollecteurIds().contains(collecteurId))
+                    .toList();
+
+            PlanRemuneration plan = planifier(S, rubriquesCollecteur, new ComptesRemuneration(
+                    comptePCCC, compteCCC, comptesCSC.get(collecteurId),
+                    () -> compteCPC, () -> comptePT, () -> compteTaxe));
+            plans.add(plan);
+            mouvements.addAll(plan.mouvements());
+            historiques.add(HistoriqueRemuneration.builder()
+                    .collecteur(calcul.getCollecteur())
+                    .dateDebutPeriode(dateDebutPeriode)
+                    .dateFinPeriode(dateFinPeriode)
+                    .montantSInitial(S)
+                    .totalRubriquesVi(plan.totalVi())
+                    .montantEmf(plan.restantS())
+                    .montantTva(calculateTVA(S))
+                    .dateRemuneration(maintenant)
+                    .effectuePar(effectuePar)
+                    .details(String.format("Rémunération agence période %s - %s, %d mouvements effectués",
+                            dateDebutPeriode, dateFinPeriode, plan.mouvements().size()))
+                    .build());
+        }
+
+        // 4. Écritures groupées ; comptes de l'agence mis à jour après le commit
+        mouvementService.effectuerMouvementsEnsemblistes(mouvements, new HashSet<>(List.of(comptePCCC.getId(),
+                compteCCC.getId(), compteCPC.getId(), comptePT.getId(), compteTaxe.getId())));
+        historiqueRemunerationRepository.saveAll(historiques);
+
+        for (int i = 0; i < aRemunerer.size(); i++) {
+            HistoriqueCalculCommission calcul = aRemunerer.get(i);
+            HistoriqueRemuneration historique = historiques.get(i);
+            PlanRemuneration plan = plans.get(i);
+            calcul.marquerCommeRemunere(historique.getId());
+            resultats.add(ligne(calcul, "SUCCES")
+                    .montantS(historique.getMontantSInitial())
+                    .totalTVA(historique.getMontantTva())
+                    .totalRubriquesVi(plan.totalVi())
+                    .montantEMF(plan.restantS())
+                    .historiqueRemunerationId(historique.getId())
+                    .build());
+        }
+
+        RemunerationAgenceDTO resultat = resultatAgence(agenceId, dateDebutPeriode, dateFinPeriode,
+                resultats, mouvements.size(), debut);
+        log.info("✅ Rémunération agence {} terminée en {}ms: {} collecteur(s) rémunéré(s), {} mouvement(s)",
+                agenceId, resultat.getDureeMs(), resultat.getNombreRemuneres(), mouvements.size());
+        return resultat;
+    }
+
+    /**
+     * Mouvements de rémunération selon la spec FOCEP, sans écriture :
+     * Vi par rubrique (calculé sur S initial), surplus EMF, puis TVA sur S initial
+     */
+    private PlanRemuneration planifier(BigDecimal S, List<RubriqueRemuneration> rubriques, ComptesRemuneration comptes) {
+        BigDecimal restantS = S;
+        BigDecimal totalVi = BigDecimal.ZERO;
+        List<Mouvement> mouvements = new ArrayList<>();
+
         for (RubriqueRemuneration rubrique : rubriques) {
             BigDecimal Vi = rubrique.calculateVi(S); // Vi calculé sur S initial, pas restant
             totalVi = totalVi.add(Vi);
 
-            log.info("Rubrique '{}' - Vi: {}, Restant S: {}", rubrique.getNom(), Vi, restantS);
+            log.debug("Rubrique '{}' - Vi: {}, Restant S: {}", rubrique.getNom(), Vi, restantS);
 
             if (Vi.compareTo(BigDecimal.ZERO) <= 0) {
                 continue; // Pas de mouvement si Vi = 0
@@ -120,91 +264,113 @@ public class RemunerationProcessor {
             if (Vi.compareTo(restantS) <= 0) {
                 // Cas 1: Vi <= S
                 // Débit C.P.C.C → Crédit C.S.C
-                Mouvement mvt = createMouvement(
-                        comptePCCC, compteCSC, Vi,
+                mouvements.add(createMouvement(
+                        comptes.pccc(), comptes.csc(), Vi,
                         String.format("Rémunération - %s (Vi <= S)", rubrique.getNom())
-                );
-                mouvements.add(mvt);
-                mouvementService.effectuerMouvement(mvt);
-
+                ));
                 restantS = restantS.subtract(Vi);
-                log.info("Vi <= S - Débit C.P.C.C: {}, Nouveau restant S: {}", Vi, restantS);
             } else {
-                // Cas 2: Vi > S  
+                // Cas 2: Vi > S
                 // Débit C.P.C.C de restantS + Débit C.C.C de (Vi - restantS)
                 if (restantS.compareTo(BigDecimal.ZERO) > 0) {
-                    Mouvement mvt1 = createMouvement(
-                            comptePCCC, compteCSC, restantS,
+                    mouvements.add(createMouvement(
+                            comptes.pccc(), comptes.csc(), restantS,
                             String.format("Rémunération - %s (part C.P.C.C)", rubrique.getNom())
-                    );
-                    mouvements.add(mvt1);
-                    mouvementService.effectuerMouvement(mvt1);
-                    log.info("Vi > S - Débit C.P.C.C: {}", restantS);
+                    ));
                 }
 
                 BigDecimal deficitVi = Vi.subtract(restantS);
-                Mouvement mvt2 = createMouvement(
-                        compteCCC, compteCSC, deficitVi,
+                mouvements.add(createMouvement(
+                        comptes.ccc(), comptes.csc(), deficitVi,
                         String.format("Rémunération - %s (complément C.C.C)", rubrique.getNom())
-                );
-                mouvements.add(mvt2);
-                mouvementService.effectuerMouvement(mvt2);
-
-                log.info("Vi > S - Débit C.C.C: {}", deficitVi);
+                ));
                 restantS = BigDecimal.ZERO;
                 break; // Plus de S disponible, arrêt du traitement
             }
         }
 
-        // 4. Rémunération EMF si restant S > 0
+        // Rémunération EMF si restant S > 0
         if (restantS.compareTo(BigDecimal.ZERO) > 0) {
-            CompteProduitCollecte compteProduitCollecte = compteSpecialiseService.getOrCreateCPC(agenceId);
-
-            Mouvement mvtEMF = createMouvement(
-                    comptePCCC, compteProduitCollecte, restantS,
+            mouvements.add(createMouvement(
+                    comptes.pccc(), comptes.cpc().get(), restantS,
                     "Rémunération EMF - Surplus commissions"
-            );
-            mouvements.add(mvtEMF);
-            mouvementService.effectuerMouvement(mvtEMF);
-
-            log.info("Rémunération EMF: {}", restantS);
+            ));
         }
 
-        // 5. Traitement des taxes (TVA sur S initial)
-        processTaxes(agenceId, S, mouvements);
-
-        log.info("Rémunération terminée - Total Vi: {}, Surplus EMF: {}", totalVi, restantS);
+        // Traitement des taxes (TVA sur S initial) : même montant que l'historique
+        BigDecimal montantTVA = calculateTVA(S);
+        if (montantTVA.compareTo(BigDecimal.ZERO) > 0) {
+            mouvements.add(createMouvement(
+                    comptes.cpt().get(), comptes.ct().get(), montantTVA,
+                    "TVA sur commission collecteur (19,25%)"
+            ));
+        }
 
-        return RemunerationResult.builder()
-                .collecteurId(collecteurId)
-                .montantSInitial(S)
-                .totalRubriqueVi(totalVi)
-                .montantEMF(restantS)
-                .mouvements(mouvements)
-                .success(true)
-                .build();
+        return new PlanRemuneration(mouvements, totalVi, restantS);
     }
 
     /**
-     * Traite la TVA selon spec : 19,25% de S initial
+     * Comptes des mouvements autres que le C.S.C du collecteur : C.P.C.C, C.C.C, C.P.C, C.P.T, C.T
      */
-    private void processTaxes(Long agenceId, BigDecimal S, List<Mouvement> mouvements) {
-        BigDecimal tauxTVA = BigDecimal.valueOf(0.1925); // 19,25%
-        BigDecimal montantTVA = S.multiply(tauxTVA).setScale(2, java.math.RoundingMode.HALF_UP);
-
-        if (montantTVA.compareTo(BigDecimal.ZERO) > 0) {
-            ComptePassageTaxe comptePT = compteSpecialiseService.getOrCreateCPT(agenceId);
-            CompteTaxe compteTaxe = compteSpecialiseService.getOrCreateCT(agenceId);
+    private static Set<Long> comptesAgence(List<Mouvement> mouvements, Compte csc) {
+        Set<Long> comptes = new HashSet<>();
+        for (Mouvement mouvement : mouvements) {
+            comptes.add(mouvement.getCompteSource().getId());
+            comptes.add(mouvement.getCompteDestination().getId());
+        }
+        comptes.remove(csc.getId());
+        return comptes;
+    }
 
-            Mouvement mvtTaxe = createMouvement(
-                    comptePT, compteTaxe, montantTVA,
-                    "TVA sur commission collecteur (19,25%)"
-            );
-            mouvements.add(mvtTaxe);
-            mouvementService.effectuerMouvement(mvtTaxe);
+    private static CollecteurResultat.CollecteurResultatBuilder ligne(HistoriqueCalculCommission calcul, String statut) {
+        return CollecteurResultat.builder()
+                .collecteurId(calcul.getCollecteur().getId())
+                .agenceId(calcul.getAgenceId())
+                .statut(statut)
+                .reprise(true)
+                .historiqueCalculId(calcul.getId());
+    }
 
-            log.info("TVA traitée - Montant: {} ({}% de {})", montantTVA, 19.25, S);
+    private static RemunerationAgenceDTO resultatAgence(Long agenceId, LocalDate dateDebut, LocalDate dateFin,
+                                                        List<CollecteurResultat> resultats, int nombreMouvements,
+                                                        long debut) {
+        resultats.sort(Comparator.comparing(CollecteurResultat::getCollecteurId));
+        BigDecimal montantS = BigDecimal.ZERO;
+        BigDecimal tva = BigDecimal.ZERO;
+        BigDecimal vi = BigDecimal.ZERO;
+        BigDecimal emf = BigDecimal.ZERO;
+        int remuneres = 0;
+        int ignores = 0;
+        for (CollecteurResultat ligne : resultats) {
+            switch (ligne.getStatut()) {
+                case "SUCCES" -> {
+                    remuneres++;
+                    montantS = montantS.add(ligne.getMontantS());
+                    tva = tva.add(ligne.getTotalTVA());
+                    vi = vi.add(ligne.getTotalRubriquesVi());
+                    emf = emf.add(ligne.getMontantEMF());
+                }
+                case "IGNORE" -> ignores++;
+                default -> { }
+            }
         }
+
+        return RemunerationAgenceDTO.builder()
+                .agenceId(agenceId)
+                .dateDebut(dateDebut)
+                .dateFin(dateFin)
+                .nombreCollecteurs(resultats.size())
+                .nombreRemuneres(remuneres)
+                .nombreIgnores(ignores)
+                .nombreEchecs(resultats.size() - remuneres - ignores)
+                .nombreMouvements(nombreMouvements)
+                .montantSTotal(montantS)
+                .totalTVA(tva)
+                .totalRubriquesVi(vi)
+                .totalEMF(emf)
+                .dureeMs(System.currentTimeMillis() - debut)
+                .resultats(resultats)
+                .build();
     }
 
     private Mouvement createMouvement(Compte source, Compte destination, BigDecimal montant, String libelle) {
@@ -275,8 +441,7 @@ public class RemunerationProcessor {
     }
 
     private BigDecimal calculateTVA(BigDecimal S) {
-        BigDecimal tauxTVA = BigDecimal.valueOf(0.1925); // 19,25%
-        return S.multiply(tauxTVA).setScale(2, java.math.RoundingMode.HALF_UP);
+        return Money.versBigDecimal(Money.tva(Money.arrondir(S))); // 19,25%
     }
 
     private Long getAgenceIdByCollecteur(Long collecteurId) {
@@ -298,6 +463,18 @@ public class RemunerationProcessor {
         return rubriqueRepository.findActiveRubriquesByCollecteur(collecteurId, LocalDate.now());
     }
 
+    /**
+     * Comptes d'une rémunération ; C.P.C, C.P.T et C.T ne sont résolus qu'à l'usage
+     */
+    private record ComptesRemuneration(Compte pccc, Compte ccc, Compte csc,
+                                       Supplier<? extends Compte> cpc,
+                                       Supplier<? extends Compte> cpt,
+                                       Supplier<? extends Compte> ct) {
+    }
+
+    private record PlanRemuneration(List<Mouvement> mouvements, BigDecimal totalVi, BigDecimal restantS) {
+    }
+
     /**
      * Classe pour le résultat de la rémunération
      */
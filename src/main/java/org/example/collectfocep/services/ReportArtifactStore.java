@@ -0,0 +1,267 @@
+package org.example.collectfocep.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.collectfocep.entities.Collecteur;
+import org.example.collectfocep.entities.Report;
+import org.example.collectfocep.repositories.MouvementRepository;
+import org.example.collectfocep.repositories.ReportRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Stockage disque des rapports générés, adressé par leur clé :
+ * (type de rapport, collecteur, période, filigrane des mouvements de la période).
+ *
+ * Le fichier est nommé par l'empreinte SHA-256 de la clé. Tant que les mouvements de la période
+ * ne changent pas, la clé est la même et le fichier existant est resservi tel quel
+ * (copié dans la réponse, sans régénération) ; sinon le rapport est reconstruit et le {@link Report} de la
+ * période pointe vers le nouvel artefact ({@code filePath} relatif à {@code app.reports.output-directory},
+ * {@code fileSize}).
+ *
+ * La génération se fait hors transaction ; seule la mise à jour du {@link Report} passe dans une
+ * transaction courte, et l'artefact remplacé n'est supprimé qu'après son commit.
+ */
+@Service
+@Slf4j
+public class ReportArtifactStore {
+
+    private static final String FORMAT_XLSX = "XLSX";
+    private static final String AUTEUR_SYSTEME = "SYSTEM";
+
+    /**
+     * Écrit le rapport ; appelé seulement quand aucun artefact à jour n'existe
+     */
+    @FunctionalInterface
+    public interface Generateur {
+        void ecrire(OutputStream out) throws IOException;
+    }
+
+    private final ReportRepository reportRepository;
+    private final MouvementRepository mouvementRepository;
+    private final Path racine;
+    private final TransactionTemplate transactionCourte;
+
+    public ReportArtifactStore(ReportRepository reportRepository,
+                               MouvementRepository mouvementRepository,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${app.reports.output-directory:./reports}") String repertoire) {
+        this.reportRepository = reportRepository;
+        this.mouvementRepository = mouvementRepository;
+        this.racine = Path.of(repertoire).toAbsolutePath().normalize();
+        this.transactionCourte = new TransactionTemplate(transactionManager);
+        this.transactionCourte.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Rapport Excel d'un collecteur sur une période : artefact existant si les mouvements de la
+     * période n'ont pas changé, sinon généré, écrit sur disque et enregistré
+     */
+    public Report obtenirRapportCollecteur(String type, Collecteur collecteur, LocalDateTime debut,
+                                           LocalDateTime fin, String titre, Generateur generateur) throws IOException {
+        return obtenirRapportCollecteur(type, collecteur, debut, fin, filigrane(collecteur.getId(), debut, fin),
+                titre, generateur);
+    }
+
+    /**
+     * Variante pour un générateur qui lit ses données avant l'appel : le filigrane doit être pris
+     * avant cette lecture, pour qu'un mouvement arrivé entre-temps provoque une régénération
+     */
+    public Report obtenirRapportCollecteur(String type, Collecteur collecteur, LocalDateTime debut,
+                                           LocalDateTime fin, String filigrane, String titre,
+                                           Generateur generateur) throws IOException {
+        String empreinte = empreinte(type, "collecteur-" + collecteur.getId(), debut, fin, filigrane);
+        String cheminRelatif = type.toLowerCase() + "/" + empreinte.substring(0, 2) + "/" + empreinte + ".xlsx";
+
+        List<Report> existants = reportRepository.findArtefactsCollecteur(type, collecteur.getId(), debut, fin);
+        Report report = existants.isEmpty() ? null : existants.get(0);
+
+        if (report != null && cheminRelatif.equals(report.getFilePath()) && estDisponible(report)) {
+            log.debug("📦 Rapport {} servi depuis le stockage: {}", type, cheminRelatif);
+            return report;
+        }
+
+        log.info("🛠️ Génération du rapport {} pour le collecteur {} ({} → {})", type, collecteur.getId(), debut, fin);
+        Path cible = resoudre(cheminRelatif);
+        ecrireAtomiquement(cible, generateur);
+
+        String ancienChemin = report != null ? report.getFilePath() : null;
+        long taille = Files.size(cible);
+        Report aEnregistrer = report != null ? report : Report.builder()
+                    .type(type)
+                    .title(titre)
+                    .dateDebut(debut)
+                    .dateFin(fin)
+                    .agence(collecteur.getAgence())
+                    .collecteur(collecteur)
+                    .createdBy(AUTEUR_SYSTEME)
+                    .build();
+        return transactionCourte.execute(status -> {
+            aEnregistrer.setStatus(Report.ReportStatus.COMPLETED);
+            aEnregistrer.setFilePath(cheminRelatif);
+            aEnregistrer.setFileSize(taille);
+            aEnregistrer.setFileFormat(FORMAT_XLSX);
+            aEnregistrer.setParametres(String.format("{\"filigrane\":\"%s\"}", filigrane));
+            Report enregistre = reportRepository.save(aEnregistrer);
+
+            // L'artefact remplacé n'est plus référencé une fois le commit fait ; en cas de rollback il reste servi
+            if (ancienChemin != null && !ancienChemin.equals(cheminRelatif)) {
+                supprimerApresCommit(ancienChemin);
+            }
+            return enregistre;
+        });
+    }
+
+    /**
+     * Vrai si le fichier du rapport existe dans le stockage
+     */
+    public boolean estDisponible(Report report) {
+        if (report.getFilePath() == null) {
+            return false;
+        }
+        try {
+            return Files.isRegularFile(resoudre(report.getFilePath()));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Copie le fichier du rapport dans le flux (copie de flux bufferisée : le fichier n'est jamais
+     * chargé en entier, mais ce n'est pas du zéro-copie, la réponse servlet n'exposant pas de canal) ;
+     * renvoie le nombre d'octets écrits
+     */
+    public long transferer(Report report, OutputStream out) throws IOException {
+        return transferer(report.getFilePath(), out);
+    }
+
+    public long transferer(String cheminRelatif, OutputStream out) throws IOException {
+        long ecrits = Files.copy(resoudre(cheminRelatif), out);
+        out.flush();
+        return ecrits;
+    }
+
+    /**
+     * Fichier hors clé (export en file, nommé par son job) : écrit atomiquement sous le chemin
+     * relatif donné ; renvoie sa taille
+     */
+    public long enregistrer(String cheminRelatif, Generateur generateur) throws IOException {
+        Path cible = resoudre(cheminRelatif);
+        ecrireAtomiquement(cible, generateur);
+        return Files.size(cible);
+    }
+
+    /**
+     * Taille du fichier, null s'il n'est pas (ou plus) dans le stockage
+     */
+    public Long taille(String cheminRelatif) {
+        try {
+            Path chemin = resoudre(cheminRelatif);
+            return Files.isRegularFile(chemin) ? Files.size(chemin) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Contenu du rapport, pour les appelants qui attendent un byte[]
+     */
+    public byte[] lire(Report report) throws IOException {
+        return Files.readAllBytes(resoudre(report.getFilePath()));
+    }
+
+    /**
+     * Filigrane des mouvements du collecteur sur la période, partie variable de la clé
+     */
+    public String filigrane(Long collecteurId, LocalDateTime debut, LocalDateTime fin) {
+        List<Object[]> lignes = mouvementRepository.filigraneCollecteurPeriode(collecteurId, debut, fin);
+        Object[] ligne = lignes.isEmpty() ? new Object[]{0L, 0L, 0L, 0.0} : lignes.get(0);
+        return String.format("%d-%d-%d-%s", ((Number) ligne[0]).longValue(), ((Number) ligne[1]).longValue(),
+                ((Number) ligne[2]).longValue(), Double.toString(((Number) ligne[3]).doubleValue()));
+    }
+
+    private static String empreinte(String... parties) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            for (String partie : parties) {
+                sha256.update(partie.getBytes(StandardCharsets.UTF_8));
+                sha256.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(sha256.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+
+    private static String empreinte(String type, String porteur, LocalDateTime debut, LocalDateTime fin,
+                                    String filigrane) {
+        return empreinte(type, porteur, debut.toString(), fin.toString(), filigrane);
+    }
+
+    /**
+     * Écriture dans un fichier temporaire du même répertoire puis renommage : un lecteur ne voit
+     * jamais un fichier partiel, et deux générations concurrentes de la même clé produisent le même contenu
+     */
+    private static void ecrireAtomiquement(Path cible, Generateur generateur) throws IOException {
+        Files.createDirectories(cible.getParent());
+        Path temporaire = Files.createTempFile(cible.getParent(), cible.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temporaire))) {
+                generateur.ecrire(out);
+            }
+            Files.move(temporaire, cible, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporaire);
+            throw e;
+        }
+    }
+
+    private void supprimerApresCommit(String cheminRelatif) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    supprimerFichier(cheminRelatif);
+                }
+            });
+        } else {
+            supprimerFichier(cheminRelatif);
+        }
+    }
+
+    private void supprimerFichier(String cheminRelatif) {
+        try {
+            Files.deleteIfExists(resoudre(cheminRelatif));
+        } catch (IOException e) {
+            log.warn("⚠️ Artefact de rapport non supprimé {}: {}", cheminRelatif, e.getMessage());
+        }
+    }
+
+    /**
+     * Chemin absolu d'un artefact ; refuse tout chemin hors du répertoire des rapports
+     */
+    private Path resoudre(String cheminRelatif) throws IOException {
+        Path chemin = racine.resolve(cheminRelatif).normalize();
+        if (!chemin.startsWith(racine)) {
+            throw new IOException("Chemin de rapport hors du stockage: " + cheminRelatif);
+        }
+        return chemin;
+    }
+}
@@ -7,6 +7,7 @@ import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.example.collectfocep.entities.Client;
 import org.example.collectfocep.entities.Collecteur;
+import org.example.collectfocep.entities.Report;
 import org.example.collectfocep.exceptions.ResourceNotFoundException;
 import org.example.collectfocep.repositories.ClientRepository;
 import org.example.collectfocep.repositories.CollecteurRepository;
@@ -14,7 +15,8 @@ import org.example.collectfocep.repositories.MouvementRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
@@ -29,11 +31,16 @@ public class ReportGenerationService {
     private final MouvementRepository mouvementRepository;
     private final CollecteurRepository collecteurRepository;
     private final ClientRepository clientRepository;
+    private final ReportArtifactStore reportArtifactStore;
+
+    static final String TYPE_COLLECTE_JOURNALIERE = "COLLECTE_JOURNALIERE";
 
     /**
-     * Génère un rapport mensuel pour un collecteur selon le format décrit dans le cahier des charges
+     * Génère un rapport mensuel pour un collecteur selon le format décrit dans le cahier des charges.
+     * Le classeur est conservé dans le stockage des rapports et reconstruit seulement si les
+     * mouvements du mois ont changé.
      */
-    @Transactional(readOnly = true)
+    @Transactional
     public byte[] generateMonthlyReport(Long collecteurId, int year, int month) {
         log.info("Génération du rapport mensuel pour le collecteur {} - {}/{}", collecteurId, month, year);
 
@@ -43,6 +50,23 @@ public class ReportGenerationService {
 
         LocalDate startDate = LocalDate.of(year, month, 1);
         LocalDate endDate = startDate.plusMonths(1).minusDays(1);
+
+        try {
+            Report report = reportArtifactStore.obtenirRapportCollecteur(TYPE_COLLECTE_JOURNALIERE, collecteur,
+                    startDate.atStartOfDay(), endDate.atTime(23, 59, 59),
+                    "Rapport de collecte journalière " + month + "/" + year,
+                    out -> ecrireRapportMensuel(collecteur, startDate, endDate, out));
+            return reportArtifactStore.lire(report);
+        } catch (IOException e) {
+            log.error("Erreur lors de la génération du rapport", e);
+            throw new RuntimeException("Erreur lors de la génération du rapport", e);
+        }
+    }
+
+    private void ecrireRapportMensuel(Collecteur collecteur, LocalDate startDate, LocalDate endDate,
+                                      OutputStream outputStream) throws IOException {
+        int year = startDate.getYear();
+        int month = startDate.getMonthValue();
         int daysInMonth = endDate.getDayOfMonth();
 
         List<Client> clients = clientRepository.findByCollecteur(collecteur);
@@ -94,14 +118,8 @@ public class ReportGenerationService {
             // Ajuster les largeurs de colonnes
             adjustColumnWidths(sheet, daysInMonth);
 
-            // Écrire le workbook dans un stream
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            // Écrire le workbook dans le fichier du stockage
             workbook.write(outputStream);
-            return outputStream.toByteArray();
-
-        } catch (Exception e) {
-            log.error("Erreur lors de la génération du rapport", e);
-            throw new RuntimeException("Erreur lors de la génération du rapport", e);
         }
     }
 
@@ -0,0 +1,428 @@
+package org.example.collectfocep.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.collectfocep.entities.Journal;
+import org.example.collectfocep.entities.ReportJob;
+import org.example.collectfocep.entities.ReportJob.Priorite;
+import org.example.collectfocep.entities.ReportJob.Statut;
+import org.example.collectfocep.entities.ReportJob.TypeJob;
+import org.example.collectfocep.exceptions.ResourceNotFoundException;
+import org.example.collectfocep.repositories.CollecteurRepository;
+import org.example.collectfocep.repositories.ReportJobRepository;
+import org.example.collectfocep.services.interfaces.JournalService;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * File persistante des générations de rapports (table report_jobs).
+ *
+ * - Une demande est d'abord une ligne PENDING : rien n'est refusé faute de place, l'attente se
+ *   fait en base et non dans la queue du reportTaskExecutor.
+ * - Le répartiteur lance au plus {@code app.reports.max-concurrent-generations} jobs par instance,
+ *   sur le reportJobExecutor. Il prend la classe INTERACTIF avant MASSE (exports SuperAdmin), et
+ *   un créneau reste toujours libre pour INTERACTIF. Dans une classe, il sert d'abord l'agence qui
+ *   a le moins de jobs en cours, puis la demande la plus ancienne.
+ * - Réservation conditionnelle (UPDATE ... WHERE statut = PENDING) : plusieurs instances peuvent
+ *   partager la file sans exécuter deux fois le même job.
+ * - Progression persistée par le job lui-même ; l'annulation est vue aux points de progression.
+ * - Reprise : l'instance qui exécute un job rafraîchit son battement de cœur ; un job PROCESSING
+ *   dont le battement dépasse {@code app.reports.jobs.heartbeat-expiration-s} (instance arrêtée)
+ *   est remis en attente. Les rapports étant adressés par clé (ReportArtifactStore), les rejouer est sans risque.
+ * - Saturation : aucun job n'est réservé si le reportJobExecutor n'a plus de place ; un job refusé
+ *   malgré tout retourne en attente sans perdre de tentative, et la répartition reprend au passage suivant.
+ */
+@Service
+@Slf4j
+public class ReportJobQueue {
+
+    private static final String REPERTOIRE_EXPORTS = "exports/";
+
+    private final ReportJobRepository jobRepository;
+    private final CollecteurRepository collecteurRepository;
+    private final JournalService journalService;
+    private final ReportsService reportsService;
+    private final RapportPeriodePlanner rapportPeriodePlanner;
+    private final ExportExcelService exportExcelService;
+    private final ReportArtifactStore reportArtifactStore;
+    private final Executor executor;
+    private final TransactionTemplate transaction;
+    private final int maxJobs;
+    private final long expirationSecondes;
+    private final int maxTentatives;
+
+    // Jobs exécutés par cette instance
+    private final Map<Long, JobEnCours> enCours = new ConcurrentHashMap<>();
+    private volatile boolean arret;
+    // Posé par un refus du pool, levé par entretenir() : pas de nouvel essai avant le passage suivant
+    private volatile boolean sature;
+
+    public ReportJobQueue(ReportJobRepository jobRepository,
+                          CollecteurRepository collecteurRepository,
+                          JournalService journalService,
+                          ReportsService reportsService,
+                          RapportPeriodePlanner rapportPeriodePlanner,
+                          ExportExcelService exportExcelService,
+                          ReportArtifactStore reportArtifactStore,
+                          @Qualifier("reportJobExecutor") Executor executor,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${app.reports.max-concurrent-generations:5}") int maxJobs,
+                          @Value("${app.reports.jobs.heartbeat-expiration-s:120}") long expirationSecondes,
+                          @Value("${app.reports.jobs.max-tentatives:3}") int maxTentatives) {
+        this.jobRepository = jobRepository;
+        this.collecteurRepository = collecteurRepository;
+        this.journalService = journalService;
+        this.reportsService = reportsService;
+        this.rapportPeriodePlanner = rapportPeriodePlanner;
+        this.exportExcelService = exportExcelService;
+        this.reportArtifactStore = reportArtifactStore;
+        this.executor = executor;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.maxJobs = maxJobs;
+        this.expirationSecondes = expirationSecondes;
+        this.maxTentatives = maxTentatives;
+    }
+
+    // ================================
+    // SOUMISSION ET SUIVI
+    // ================================
+
+    /**
+     * Rapport d'un collecteur (MENSUEL, ANNUEL, PERIODE), classe INTERACTIF ; retourne l'ID de suivi
+     */
+    public String soumettreRapportCollecteur(TypeJob type, Long collecteurId, YearMonth debut, YearMonth fin,
+                                             String demandePar) {
+        Long agenceId = collecteurRepository.findAgenceIdByCollecteurId(collecteurId);
+        if (agenceId == null) {
+            throw new ResourceNotFoundException("Collecteur non trouvé");
+        }
+        return soumettre(ReportJob.builder()
+                .type(type)
+                .priorite(Priorite.INTERACTIF)
+                .agenceId(agenceId)
+                .collecteurId(collecteurId)
+                .periodeDebut(debut.atDay(1).atStartOfDay())
+                .periodeFin(fin.atEndOfMonth().atTime(23, 59, 59))
+                .demandePar(demandePar)
+                .build());
+    }
+
+    /**
+     * Export Excel SuperAdmin, classe MASSE ; retourne l'ID de suivi
+     */
+    public String soumettreExport(ExportExcelService.ExportFilters filtres, String demandePar) {
+        return soumettre(ReportJob.builder()
+                .type(TypeJob.EXPORT_EXCEL)
+                .priorite(Priorite.MASSE)
+                .agenceId(filtres.getAgenceId())
+                .periodeDebut(filtres.getDateDebut())
+                .periodeFin(filtres.getDateFin())
+                .limite(filtres.getMaxRecords())
+                .demandePar(demandePar)
+                .build());
+    }
+
+    private String soumettre(ReportJob job) {
+        job.setTrackingId(UUID.randomUUID().toString());
+        job.setStatut(Statut.PENDING);
+        job.setDateCreation(LocalDateTime.now());
+        jobRepository.save(job);
+        log.info("📥 Job {} {} en file (priorité {}, agence {})",
+                job.getTrackingId(), job.getType(), job.getPriorite(), job.getAgenceId());
+
+        distribuer();
+        return job.getTrackingId();
+    }
+
+    public Optional<ReportJob> trouver(String trackingId) {
+        return jobRepository.findByTrackingId(trackingId);
+    }
+
+    /**
+     * Annule un job en attente ou en cours ; faux s'il est déjà terminé.
+     * Un job en cours s'arrête à son prochain point de progression
+     */
+    public boolean annuler(String trackingId) {
+        int annules = ecrire(() -> jobRepository.annuler(trackingId, List.of(Statut.PENDING, Statut.PROCESSING),
+                Statut.CANCELLED, "Annulé à la demande", LocalDateTime.now()));
+        if (annules == 0) {
+            return false;
+        }
+        enCours.values().stream()
+                .filter(suivi -> suivi.trackingId.equals(trackingId))
+                .forEach(suivi -> suivi.annule = true);
+        log.info("🛑 Job {} annulé", trackingId);
+        return true;
+    }
+
+    /**
+     * Taille du fichier produit par un job terminé, null s'il n'existe pas ou plus
+     */
+    public Long tailleResultat(ReportJob job) {
+        return job.getResultat() != null ? reportArtifactStore.taille(job.getResultat()) : null;
+    }
+
+    // ================================
+    // RÉPARTITEUR
+    // ================================
+
+    /**
+     * Battement de cœur, annulations venues d'une autre instance, reprise des orphelins, puis répartition
+     */
+    @Scheduled(fixedDelayString = "${app.reports.jobs.poll-ms:5000}")
+    public void entretenir() {
+        if (arret) {
+            return;
+        }
+        sature = false;
+        try {
+            LocalDateTime maintenant = LocalDateTime.now();
+            if (!enCours.isEmpty()) {
+                Set<Long> ids = Set.copyOf(enCours.keySet());
+                ecrire(() -> jobRepository.battre(ids, Statut.PROCESSING, maintenant));
+                for (Long id : jobRepository.findIdsAnnules(ids, Statut.CANCELLED)) {
+                    JobEnCours suivi = enCours.get(id);
+                    if (suivi != null) {
+                        suivi.annule = true;
+                    }
+                }
+            }
+
+            LocalDateTime limite = maintenant.minusSeconds(expirationSecondes);
+            int repris = ecrire(() -> jobRepository.reprendreOrphelins(Statut.PROCESSING, Statut.PENDING,
+                    limite, maxTentatives, "Repris après interruption"));
+            int abandonnes = ecrire(() -> jobRepository.abandonnerOrphelins(Statut.PROCESSING, Statut.FAILED,
+                    limite, maxTentatives, "Interrompu " + maxTentatives + " fois, abandonné", maintenant));
+            if (repris > 0 || abandonnes > 0) {
+                log.warn("♻️ Jobs de rapport orphelins: {} remis en file, {} abandonnés", repris, abandonnes);
+            }
+        } catch (RuntimeException e) {
+            log.error("❌ Erreur entretien de la file de rapports: {}", e.getMessage(), e);
+        }
+        distribuer();
+    }
+
+    /**
+     * Lance des jobs tant qu'il reste des créneaux libres sur cette instance
+     */
+    public synchronized void distribuer() {
+        if (arret || sature) {
+            return;
+        }
+        try {
+            while (!sature && enCours.size() < maxJobs && capaciteDisponible()) {
+                List<ReportJob> tetes = jobRepository.findTetesDeFile(Statut.PENDING);
+                Optional<ReportJob> choix = choisir(tetes, enCoursParAgence());
+                if (choix.isEmpty()) {
+                    return;
+                }
+                ReportJob job = choix.get();
+                if (ecrire(() -> jobRepository.reserver(job.getId(), Statut.PENDING, Statut.PROCESSING,
+                        LocalDateTime.now())) == 1) {
+                    lancer(job);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("❌ Erreur répartition des jobs de rapport: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Priorité d'abord, puis agence la moins servie, puis ancienneté. Les exports ne prennent
+     * jamais le dernier créneau libre : une demande interactive n'attend pas derrière eux
+     */
+    Optional<ReportJob> choisir(List<ReportJob> tetes, Map<Long, Long> enCoursParAgence) {
+        boolean masseAutorisee = maxJobs == 1 || enCours.size() < maxJobs - 1;
+
+        return tetes.stream()
+                .filter(job -> masseAutorisee || job.getPriorite() != Priorite.MASSE)
+                .min(Comparator.comparing(ReportJob::getPriorite)
+                        .thenComparingLong(job -> enCoursParAgence.getOrDefault(job.getAgenceId(), 0L))
+                        .thenComparing(ReportJob::getId));
+    }
+
+    /**
+     * Vrai si le reportJobExecutor peut encore prendre une tâche : on ne réserve pas un job
+     * (tentative consommée) pour le voir refusé aussitôt
+     */
+    private boolean capaciteDisponible() {
+        if (executor instanceof ThreadPoolTaskExecutor pool) {
+            ThreadPoolExecutor threads = pool.getThreadPoolExecutor();
+            return threads.getActiveCount() < threads.getMaximumPoolSize()
+                    || threads.getQueue().remainingCapacity() > 0;
+        }
+        return true;
+    }
+
+    private Map<Long, Long> enCoursParAgence() {
+        Map<Long, Long> parAgence = new HashMap<>();
+        for (Object[] ligne : jobRepository.compterParAgence(Statut.PROCESSING)) {
+            parAgence.put((Long) ligne[0], ((Number) ligne[1]).longValue());
+        }
+        return parAgence;
+    }
+
+    // ================================
+    // EXÉCUTION
+    // ================================
+
+    private void lancer(ReportJob job) {
+        JobEnCours suivi = new JobEnCours(job);
+        enCours.put(job.getId(), suivi);
+        log.info("🚀 Job {} {} lancé (agence {}, tentative {})",
+                job.getTrackingId(), job.getType(), job.getAgenceId(), job.getTentatives() + 1);
+
+        CompletableFuture<String> execution;
+        try {
+            execution = executer(job, pourcentage -> progresser(suivi, pourcentage));
+        } catch (RuntimeException e) {
+            execution = CompletableFuture.failedFuture(e);
+        }
+        execution.whenComplete((resultat, erreur) -> terminer(suivi, resultat, erreur));
+    }
+
+    /**
+     * Chaque job démarre sur le reportJobExecutor ; les rapports multi-mois y font seulement leur
+     * lancement, les mois tournent sur le rapportMoisExecutor (RapportPeriodePlanner)
+     */
+    private CompletableFuture<String> executer(ReportJob job, IntConsumer progression) {
+        Long collecteurId = job.getCollecteurId();
+        YearMonth debut = job.getPeriodeDebut() != null ? YearMonth.from(job.getPeriodeDebut()) : null;
+        YearMonth fin = job.getPeriodeFin() != null ? YearMonth.from(job.getPeriodeFin()) : null;
+
+        return switch (job.getType()) {
+            case MENSUEL -> CompletableFuture.supplyAsync(() -> {
+                List<Journal> journaux = journalService.getMonthlyEntries(collecteurId, debut);
+                progression.accept(50);
+                return reportsService.generateMonthlyReport(collecteurId, journaux, debut);
+            }, executor);
+            case ANNUEL -> CompletableFuture.supplyAsync(() ->
+                    rapportPeriodePlanner.rapportAnnuel(collecteurId, debut.getYear(), progression), executor)
+                    .thenCompose(rapport -> rapport);
+            case PERIODE -> CompletableFuture.supplyAsync(() ->
+                    rapportPeriodePlanner.rapportPeriode(collecteurId, debut, fin, progression), executor)
+                    .thenCompose(rapport -> rapport);
+            case EXPORT_EXCEL -> CompletableFuture.supplyAsync(() -> exporter(job, progression), executor);
+        };
+    }
+
+    private String exporter(ReportJob job, IntConsumer progression) {
+        ExportExcelService.ExportFilters filtres = new ExportExcelService.ExportFilters();
+        filtres.setAgenceId(job.getAgenceId());
+        filtres.setDateDebut(job.getPeriodeDebut());
+        filtres.setDateFin(job.getPeriodeFin());
+        filtres.setMaxRecords(job.getLimite());
+
+        String chemin = REPERTOIRE_EXPORTS + job.getTrackingId() + ".xlsx";
+        try {
+            reportArtifactStore.enregistrer(chemin, out -> exportExcelService.exportCompleteData(filtres, out, progression));
+            return chemin;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erreur écriture de l'export", e);
+        }
+    }
+
+    /**
+     * Point de progression : lève une CancellationException si le job a été annulé
+     */
+    private void progresser(JobEnCours suivi, int pourcentage) {
+        if (suivi.annule) {
+            throw new CancellationException("Rapport annulé");
+        }
+        int precedent = suivi.progression.getAndAccumulate(pourcentage, Math::max);
+        if (pourcentage > precedent) {
+            ecrire(() -> jobRepository.progresser(suivi.id, Statut.PROCESSING, pourcentage));
+        }
+    }
+
+    private void terminer(JobEnCours suivi, String resultat, Throwable erreur) {
+        enCours.remove(suivi.id);
+        if (arret) {
+            // Laissé PROCESSING : repris au redémarrage
+            return;
+        }
+        Throwable cause = erreur instanceof CompletionException && erreur.getCause() != null ? erreur.getCause() : erreur;
+        LocalDateTime maintenant = LocalDateTime.now();
+        try {
+            if (suivi.annule) {
+                log.info("🛑 Job {} arrêté après annulation", suivi.trackingId);
+            } else if (cause == null) {
+                ecrire(() -> jobRepository.terminer(suivi.id, Statut.PROCESSING, Statut.COMPLETED, 100,
+                        resultat, "Rapport généré", maintenant));
+                log.info("✅ Job {} terminé: {}", suivi.trackingId, resultat);
+            } else if (cause instanceof RejectedExecutionException) {
+                // Pool saturé : le job retourne en file et la répartition attend le prochain passage
+                sature = true;
+                ecrire(() -> jobRepository.remettreEnFile(suivi.id, Statut.PROCESSING, Statut.PENDING,
+                        "Remis en file: génération saturée"));
+                log.warn("⚠️ Job {} remis en file: {}", suivi.trackingId, cause.getMessage());
+                return;
+            } else {
+                ecrire(() -> jobRepository.terminer(suivi.id, Statut.PROCESSING, Statut.FAILED,
+                        suivi.progression.get(), null, tronquer(cause.getMessage()), maintenant));
+                log.error("❌ Job {} en échec: {}", suivi.trackingId, cause.getMessage(), cause);
+            }
+        } catch (RuntimeException e) {
+            log.error("❌ Erreur enregistrement fin du job {}: {}", suivi.trackingId, e.getMessage(), e);
+        }
+        distribuer();
+    }
+
+    @PreDestroy
+    void arreter() {
+        arret = true;
+        if (!enCours.isEmpty()) {
+            log.info("⏸️ Arrêt: {} job(s) de rapport en cours seront repris au redémarrage", enCours.size());
+        }
+    }
+
+    private int ecrire(Supplier<Integer> modification) {
+        Integer lignes = transaction.execute(status -> modification.get());
+        return lignes != null ? lignes : 0;
+    }
+
+    private static String tronquer(String message) {
+        if (message == null) {
+            return "Erreur inconnue";
+        }
+        return message.length() > 500 ? message.substring(0, 500) : message;
+    }
+
+    /**
+     * État local d'un job exécuté par cette instance
+     */
+    private static final class JobEnCours {
+        final Long id;
+        final String trackingId;
+        final AtomicInteger progression = new AtomicInteger();
+        volatile boolean annule;
+
+        JobEnCours(ReportJob job) {
+            this.id = job.getId();
+            this.trackingId = job.getTrackingId();
+        }
+    }
+}
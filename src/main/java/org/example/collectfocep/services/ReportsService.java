@@ -9,14 +9,15 @@ import org.example.collectfocep.entities.*;
 import org.example.collectfocep.exceptions.ResourceNotFoundException;
 import org.example.collectfocep.repositories.*;
 import org.example.collectfocep.security.service.SecurityService;
+import org.example.collectfocep.util.Money;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.YearMonth;
@@ -37,6 +38,10 @@ public class ReportsService {
     private final MouvementRepository mouvementRepository;
     private final JournalRepository journalRepository;
     private final SecurityService securityService;
+    private final ReportArtifactStore reportArtifactStore;
+
+    static final String TYPE_MENSUEL_COLLECTEUR = "MENSUEL_COLLECTEUR";
+    static final String TYPE_MENSUEL_DETAILLE = "MENSUEL_DETAILLE";
 
     /**
      * ✅ RÉCUPÉRER LES RAPPORTS RÉCENTS PAR AGENCE
@@ -95,25 +100,17 @@ public class ReportsService {
             LocalDateTime startOfMonth = month.atDay(1).atStartOfDay();
             LocalDateTime endOfMonth = month.atEndOfMonth().atTime(23, 59, 59);
 
-            // Récupérer tous les mouvements du mois
-            List<Mouvement> mouvements = mouvementRepository.findByCollecteurIdAndDateOperationBetween(
-                    collecteurId, startOfMonth, endOfMonth);
-
-            // Récupérer les clients du collecteur
-            List<Client> clients = clientRepository.findByCollecteurId(collecteurId);
-
-            // Générer le fichier Excel
-            byte[] excelData = generateMonthlyExcelReport(collecteur, clients, mouvements, journalEntries, month);
-
-            // Sauvegarder le fichier (simulation)
-            String fileName = String.format("rapport_mensuel_%d_%s.xlsx", collecteurId, month.toString());
-            String filePath = "/reports/" + fileName;
-
-            // TODO: Sauvegarder physiquement le fichier
-            // Files.write(Paths.get(filePath), excelData);
+            // Fichier existant tant que les mouvements du mois n'ont pas changé, sinon régénéré
+            Report report = reportArtifactStore.obtenirRapportCollecteur(TYPE_MENSUEL_COLLECTEUR, collecteur,
+                    startOfMonth, endOfMonth, "Rapport mensuel " + month, out -> {
+                        List<Mouvement> mouvements = mouvementRepository.findByCollecteurIdAndDateOperationBetween(
+                                collecteurId, startOfMonth, endOfMonth);
+                        List<Client> clients = clientRepository.findByCollecteurId(collecteurId);
+                        generateMonthlyExcelReport(collecteur, clients, mouvements, journalEntries, month, out);
+                    });
 
-            log.info("✅ Rapport mensuel généré: {}", filePath);
-            return filePath;
+            log.info("✅ Rapport mensuel disponible: {}", report.getFilePath());
+            return report.getFilePath();
 
         } catch (Exception e) {
             log.error("❌ Erreur lors de la génération du rapport mensuel", e);
@@ -168,12 +165,28 @@ public class ReportsService {
     public byte[] getReportData(Long reportId) {
         log.info("📥 Récupération des données du rapport: {}", reportId);
 
-        // Pour l'instant, retourner des données fictives
+        Optional<Report> artefact = findArtefact(reportId);
+        if (artefact.isPresent()) {
+            try {
+                return reportArtifactStore.lire(artefact.get());
+            } catch (IOException e) {
+                throw new RuntimeException("Erreur lecture rapport: " + e.getMessage(), e);
+            }
+        }
+
+        // Rapport sans fichier stocké : données fictives
         // TODO: Implémenter la génération réelle du fichier
         String mockData = "Rapport ID: " + reportId + "\nGénéré le: " + LocalDateTime.now();
         return mockData.getBytes();
     }
 
+    /**
+     * Rapport dont le fichier est présent dans le stockage
+     */
+    public Optional<Report> findArtefact(Long reportId) {
+        return reportRepository.findById(reportId).filter(reportArtifactStore::estDisponible);
+    }
+
     /**
      * Obtenir le nom du fichier rapport
      */
@@ -293,7 +306,19 @@ public class ReportsService {
      * Génère un rapport mensuel Excel avec 31 colonnes pour les jours
      */
     public byte[] generateCollecteurMonthlyReport(Long collecteurId, int month, int year) {
-        log.info("📊 Génération rapport Excel collecteur: {} - {}/{}", collecteurId, month, year);
+        try {
+            return reportArtifactStore.lire(rapportMensuelDetaille(collecteurId, month, year));
+        } catch (IOException e) {
+            throw new RuntimeException("Erreur lecture rapport Excel: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Rapport mensuel détaillé stocké sur disque, régénéré seulement si les mouvements du mois
+     * ont changé ; à servir par {@link ReportArtifactStore#transferer}
+     */
+    public Report rapportMensuelDetaille(Long collecteurId, int month, int year) {
+        log.info("📊 Rapport Excel collecteur: {} - {}/{}", collecteurId, month, year);
 
         try {
             // Validation des paramètres
@@ -311,19 +336,22 @@ public class ReportsService {
             LocalDateTime startOfMonth = yearMonth.atDay(1).atStartOfDay();
             LocalDateTime endOfMonth = yearMonth.atEndOfMonth().atTime(23, 59, 59);
 
-            // Récupérer les mouvements du mois
-            List<Mouvement> mouvements = mouvementRepository.findByCollecteurIdAndDateOperationBetween(
-                    collecteurId, startOfMonth, endOfMonth);
+            return reportArtifactStore.obtenirRapportCollecteur(TYPE_MENSUEL_DETAILLE, collecteur,
+                    startOfMonth, endOfMonth, "Rapport mensuel détaillé " + yearMonth, out -> {
+                        // Récupérer les mouvements du mois
+                        List<Mouvement> mouvements = mouvementRepository.findByCollecteurIdAndDateOperationBetween(
+                                collecteurId, startOfMonth, endOfMonth);
 
-            // Récupérer les clients
-            List<Client> clients = clientRepository.findByCollecteurId(collecteurId);
+                        // Récupérer les clients
+                        List<Client> clients = clientRepository.findByCollecteurId(collecteurId);
 
-            // Récupérer les journaux du mois
-            List<Journal> journaux = journalRepository.findByCollecteurIdAndPeriod(
-                    collecteurId, startOfMonth.toLocalDate(), endOfMonth.toLocalDate());
+                        // Récupérer les journaux du mois
+                        List<Journal> journaux = journalRepository.findByCollecteurIdAndPeriod(
+                                collecteurId, startOfMonth.toLocalDate(), endOfMonth.toLocalDate());
 
-            // Générer le fichier Excel
-            return generateDetailedMonthlyExcelReport(collecteur, clients, mouvements, journaux, yearMonth);
+                        // Générer le fichier Excel
+                        generateDetailedMonthlyExcelReport(collecteur, clients, mouvements, journaux, yearMonth, out);
+                    });
 
         } catch (Exception e) {
             log.error("❌ Erreur génération rapport Excel collecteur", e);
@@ -334,11 +362,11 @@ public class ReportsService {
     /**
      * ✅ GÉNÉRATION DU RAPPORT EXCEL MENSUEL DÉTAILLÉ
      */
-    private byte[] generateDetailedMonthlyExcelReport(Collecteur collecteur, List<Client> clients,
-                                                      List<Mouvement> mouvements, List<Journal> journaux,
-                                                      YearMonth yearMonth) throws IOException {
+    private void generateDetailedMonthlyExcelReport(Collecteur collecteur, List<Client> clients,
+                                                    List<Mouvement> mouvements, List<Journal> journaux,
+                                                    YearMonth yearMonth, OutputStream out) throws IOException {
 
-        try (Workbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+        try (Workbook workbook = new XSSFWorkbook()) {
 
             // Feuille principale - Vue d'ensemble
             Sheet overviewSheet = workbook.createSheet("Vue d'ensemble");
@@ -357,7 +385,6 @@ public class ReportsService {
             createClientsSheet(clientsSheet, clients);
 
             workbook.write(out);
-            return out.toByteArray();
         }
     }
 
@@ -392,19 +419,20 @@ public class ReportsService {
 
         // Calculs
         int totalClients = clients.size();
-        double totalEpargne = mouvements.stream()
+        // Totaux en francs entiers (voir Money)
+        long totalEpargne = mouvements.stream()
                 .filter(m -> "EPARGNE".equals(m.getSens()) || "DEPOT".equals(m.getSens()))
-                .mapToDouble(Mouvement::getMontant)
-                .sum();
-        double totalRetraits = mouvements.stream()
+                .mapToLong(m -> Money.arrondir(m.getMontant()))
+                .reduce(0L, Money::ajouter);
+        long totalRetraits = mouvements.stream()
                 .filter(m -> "RETRAIT".equals(m.getSens()))
-                .mapToDouble(Mouvement::getMontant)
-                .sum();
+                .mapToLong(m -> Money.arrondir(m.getMontant()))
+                .reduce(0L, Money::ajouter);
 
         createInfoRow(sheet, rowNum++, "Nombre de clients:", String.valueOf(totalClients));
         createInfoRowWithCurrency(sheet, rowNum++, "Total épargne:", totalEpargne, currencyStyle);
         createInfoRowWithCurrency(sheet, rowNum++, "Total retraits:", totalRetraits, currencyStyle);
-        createInfoRowWithCurrency(sheet, rowNum++, "Solde net:", totalEpargne - totalRetraits, currencyStyle);
+        createInfoRowWithCurrency(sheet, rowNum++, "Solde net:", Money.soustraire(totalEpargne, totalRetraits), currencyStyle);
         createInfoRow(sheet, rowNum++, "Nombre de transactions:", String.valueOf(mouvements.size()));
 
         // Auto-ajuster les colonnes
@@ -614,11 +642,11 @@ public class ReportsService {
     /**
      * ✅ GÉNÉRATION EXCEL SIMPLE POUR AsyncReportService
      */
-    private byte[] generateMonthlyExcelReport(Collecteur collecteur, List<Client> clients,
-                                              List<Mouvement> mouvements, List<Journal> journalEntries,
-                                              YearMonth month) throws IOException {
+    private void generateMonthlyExcelReport(Collecteur collecteur, List<Client> clients,
+                                            List<Mouvement> mouvements, List<Journal> journalEntries,
+                                            YearMonth month, OutputStream out) throws IOException {
 
-        try (Workbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+        try (Workbook workbook = new XSSFWorkbook()) {
 
             Sheet sheet = workbook.createSheet("Rapport Mensuel");
 
@@ -633,7 +661,6 @@ public class ReportsService {
             createInfoRow(sheet, rowNum++, "Nombre de transactions:", String.valueOf(mouvements.size()));
 
             workbook.write(out);
-            return out.toByteArray();
         }
     }
 
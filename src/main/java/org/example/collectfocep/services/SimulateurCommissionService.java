@@ -0,0 +1,248 @@
+package org.example.collectfocep.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.example.collectfocep.dto.CommissionTierDTO;
+import org.example.collectfocep.dto.SimulationGrillesRequest;
+import org.example.collectfocep.dto.SimulationGrillesRequest.GrilleCandidate;
+import org.example.collectfocep.dto.SimulationGrillesResponse;
+import org.example.collectfocep.dto.SimulationGrillesResponse.EcartClient;
+import org.example.collectfocep.dto.SimulationGrillesResponse.ResultatGrille;
+import org.example.collectfocep.entities.CommissionParameter;
+import org.example.collectfocep.entities.CommissionTier;
+import org.example.collectfocep.entities.CommissionType;
+import org.example.collectfocep.repositories.MouvementRepository;
+import org.example.collectfocep.util.Money;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+/**
+ * Simulation "what-if" de grilles de commission sur une agence entière, sans écriture.
+ *
+ * Les volumes d'épargne par client de la période sont chargés une fois (une requête groupée)
+ * dans des tableaux primitifs et gardés en cache ; chaque grille candidate est compilée en
+ * {@link TableReglesCommission.Regle} puis évaluée en parallèle contre les règles en vigueur.
+ */
+@Service
+@Slf4j
+public class SimulateurCommissionService {
+
+    private final MouvementRepository mouvementRepository;
+    private final ReglesCommissionCache reglesCommissionCache;
+    private final Cache<CleVolumes, VolumesAgence> volumes;
+
+    public SimulateurCommissionService(MouvementRepository mouvementRepository,
+                                       ReglesCommissionCache reglesCommissionCache,
+                                       @Value("${app.commission.simulation.volumes-ttl-minutes:15}") long ttlMinutes) {
+        this.mouvementRepository = mouvementRepository;
+        this.reglesCommissionCache = reglesCommissionCache;
+        this.volumes = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .maximumSize(50)
+                .build();
+    }
+
+    public SimulationGrillesResponse simuler(Long agenceId, SimulationGrillesRequest request) {
+        long debut = System.currentTimeMillis();
+        LocalDate dateDebut = request.getDateDebut() != null
+                ? request.getDateDebut()
+                : LocalDate.now().minusMonths(1).withDayOfMonth(1);
+        LocalDate dateFin = request.getDateFin() != null
+                ? request.getDateFin()
+                : dateDebut.withDayOfMonth(dateDebut.lengthOfMonth());
+        if (dateFin.isBefore(dateDebut)) {
+            throw new IllegalArgumentException("La date de fin doit être postérieure à la date de début");
+        }
+
+        List<GrilleCandidate> grilles = request.getGrilles();
+        List<TableReglesCommission.Regle> regles = new ArrayList<>(grilles.size());
+        for (int g = 0; g < grilles.size(); g++) {
+            regles.add(compiler(nom(grilles.get(g), g), grilles.get(g)));
+        }
+
+        VolumesAgence v = volumes.get(new CleVolumes(agenceId, dateDebut, dateFin),
+                cle -> charger(cle.agenceId(), cle.dateDebut(), cle.dateFin()));
+
+        // Règles en vigueur : référence des écarts
+        TableReglesCommission actuelles = reglesCommissionCache.getTable(agenceId);
+        long[] actuel = new long[v.taille()];
+        long commissionActuelle = 0L;
+        long tvaActuelle = 0L;
+        for (int i = 0; i < actuel.length; i++) {
+            actuel[i] = actuelles.commission(v.clientIds[i], v.collecteurIds[i], v.volumes[i]);
+            commissionActuelle = Money.ajouter(commissionActuelle, actuel[i]);
+            tvaActuelle = Money.ajouter(tvaActuelle, Money.tva(actuel[i]));
+        }
+
+        int maxEcarts = request.getNombreMaxEcarts() != null ? Math.max(0, request.getNombreMaxEcarts()) : 100;
+        List<ResultatGrille> resultats = IntStream.range(0, regles.size())
+                .parallel()
+                .mapToObj(g -> evaluer(nom(grilles.get(g), g), regles.get(g), v, actuel, maxEcarts))
+                .toList();
+
+        long duree = System.currentTimeMillis() - debut;
+        log.info("🧪 Simulation commission agence {} ({} → {}): {} client(s), {} grille(s) en {}ms",
+                agenceId, dateDebut, dateFin, v.taille(), grilles.size(), duree);
+
+        return SimulationGrillesResponse.builder()
+                .agenceId(agenceId)
+                .dateDebut(dateDebut)
+                .dateFin(dateFin)
+                .nombreClients(v.taille())
+                .volumeTotal(Money.versBigDecimal(v.volumeTotal))
+                .commissionActuelleTotale(Money.versBigDecimal(commissionActuelle))
+                .tvaActuelleTotale(Money.versBigDecimal(tvaActuelle))
+                .dureeMs(duree)
+                .grilles(resultats)
+                .build();
+    }
+
+    /**
+     * Oublie les volumes chargés d'une agence (après une reprise de mouvements par exemple)
+     */
+    public void invaliderVolumes(Long agenceId) {
+        volumes.asMap().keySet().removeIf(cle -> cle.agenceId().equals(agenceId));
+    }
+
+    private ResultatGrille evaluer(String nom, TableReglesCommission.Regle regle, VolumesAgence v,
+                                   long[] actuel, int maxEcarts) {
+        long[] simule = new long[v.taille()];
+        long total = 0L;
+        long tva = 0L;
+        long ecartTotal = 0L;
+        int hausses = 0;
+        int baisses = 0;
+        // Tas minimum borné : garde les maxEcarts écarts les plus forts en valeur absolue
+        PriorityQueue<Integer> plusForts = new PriorityQueue<>(
+                Comparator.comparingLong(i -> Math.abs(simule[i] - actuel[i])));
+
+        for (int i = 0; i < simule.length; i++) {
+            simule[i] = regle.commission(v.volumes[i]);
+            total = Money.ajouter(total, simule[i]);
+            tva = Money.ajouter(tva, Money.tva(simule[i]));
+            long ecart = simule[i] - actuel[i];
+            ecartTotal = Money.ajouter(ecartTotal, ecart);
+            if (ecart > 0) {
+                hausses++;
+            } else if (ecart < 0) {
+                baisses++;
+            }
+            if (ecart != 0 && maxEcarts > 0) {
+                plusForts.offer(i);
+                if (plusForts.size() > maxEcarts) {
+                    plusForts.poll();
+                }
+            }
+        }
+
+        List<EcartClient> ecarts = new ArrayList<>(plusForts.size());
+        while (!plusForts.isEmpty()) {
+            int i = plusForts.poll();
+            ecarts.add(EcartClient.builder()
+                    .clientId(v.clientIds[i])
+                    .collecteurId(v.collecteurIds[i])
+                    .volume(Money.versBigDecimal(v.volumes[i]))
+                    .commissionActuelle(Money.versBigDecimal(actuel[i]))
+                    .commissionSimulee(Money.versBigDecimal(simule[i]))
+                    .ecart(Money.versBigDecimal(simule[i] - actuel[i]))
+                    .build());
+        }
+        Collections.reverse(ecarts); // plus fort écart en premier
+
+        return ResultatGrille.builder()
+                .nom(nom)
+                .commissionTotale(Money.versBigDecimal(total))
+                .tvaTotale(Money.versBigDecimal(tva))
+                .ecartTotal(Money.versBigDecimal(ecartTotal))
+                .nombreHausses(hausses)
+                .nombreBaisses(baisses)
+                .ecarts(ecarts)
+                .build();
+    }
+
+    private VolumesAgence charger(Long agenceId, LocalDate dateDebut, LocalDate dateFin) {
+        long debut = System.currentTimeMillis();
+        List<Object[]> lignes = mouvementRepository.sumEpargneParClientByAgence(
+                agenceId, dateDebut.atStartOfDay(), dateFin.atTime(23, 59, 59));
+
+        long[] clientIds = new long[lignes.size()];
+        long[] collecteurIds = new long[lignes.size()];
+        long[] montants = new long[lignes.size()];
+        long total = 0L;
+        for (int i = 0; i < lignes.size(); i++) {
+            Object[] ligne = lignes.get(i);
+            clientIds[i] = ((Number) ligne[0]).longValue();
+            collecteurIds[i] = ((Number) ligne[1]).longValue();
+            montants[i] = ((Number) ligne[2]).longValue();
+            total = Money.ajouter(total, montants[i]);
+        }
+
+        log.debug("Volumes agence {} chargés ({} → {}): {} client(s) en {}ms",
+                agenceId, dateDebut, dateFin, lignes.size(), System.currentTimeMillis() - debut);
+        return new VolumesAgence(clientIds, collecteurIds, montants, total);
+    }
+
+    private static TableReglesCommission.Regle compiler(String nom, GrilleCandidate grille) {
+        if (grille.getType() == CommissionType.TIER) {
+            if (grille.getPaliers() == null || grille.getPaliers().isEmpty()) {
+                throw new IllegalArgumentException(nom + " : au moins un palier requis pour le type TIER");
+            }
+        } else if (grille.getValeur() == null || grille.getValeur().signum() < 0) {
+            throw new IllegalArgumentException(nom + " : valeur requise et positive pour le type " + grille.getType());
+        }
+
+        List<CommissionTier> tiers = new ArrayList<>();
+        if (grille.getPaliers() != null) {
+            for (CommissionTierDTO palier : grille.getPaliers()) {
+                tiers.add(CommissionTier.builder()
+                        .montantMin(palier.getMontantMin())
+                        .montantMax(palier.getMontantMax())
+                        .taux(palier.getTaux())
+                        .build());
+            }
+        }
+        return TableReglesCommission.Regle.compiler(CommissionParameter.builder()
+                .type(grille.getType())
+                .valeur(grille.getValeur())
+                .tiers(tiers)
+                .build());
+    }
+
+    private static String nom(GrilleCandidate grille, int index) {
+        return grille.getNom() != null && !grille.getNom().isBlank() ? grille.getNom() : "Grille " + (index + 1);
+    }
+
+    private record CleVolumes(Long agenceId, LocalDate dateDebut, LocalDate dateFin) {
+    }
+
+    /**
+     * Volumes d'épargne par client (francs), alignés par indice et triés par client
+     */
+    private static final class VolumesAgence {
+        private final long[] clientIds;
+        private final long[] collecteurIds;
+        private final long[] volumes;
+        private final long volumeTotal;
+
+        private VolumesAgence(long[] clientIds, long[] collecteurIds, long[] volumes, long volumeTotal) {
+            this.clientIds = clientIds;
+            this.collecteurIds = collecteurIds;
+            this.volumes = volumes;
+            this.volumeTotal = volumeTotal;
+        }
+
+        private int taille() {
+            return clientIds.length;
+        }
+    }
+}
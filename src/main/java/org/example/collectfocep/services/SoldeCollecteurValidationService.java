@@ -4,8 +4,8 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.collectfocep.dto.ValidationResult;
 import org.example.collectfocep.dto.ActivityEvent;
+import org.example.collectfocep.entities.CollecteurDailyTotal;
 import org.example.collectfocep.repositories.CollecteurRepository;
-import org.example.collectfocep.repositories.MouvementRepository;
 import org.example.collectfocep.security.service.SecurityService;
 import org.example.collectfocep.services.impl.AdminNotificationService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,7 +15,6 @@ import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.util.concurrent.CompletableFuture;
 
 @Service
@@ -23,7 +22,7 @@ import java.util.concurrent.CompletableFuture;
 @Slf4j
 public class SoldeCollecteurValidationService {
 
-    private final MouvementRepository mouvementRepository;
+    private final CollecteurDailyTotalsService collecteurDailyTotalsService;
     private final CollecteurRepository collecteurRepository;
 
     @Autowired
@@ -37,11 +36,14 @@ public class SoldeCollecteurValidationService {
         try {
             log.debug("🔍 Validation retrait: collecteur={}, montant={}", collecteurId, montantRetrait);
 
-            // 1. Calcul solde corrigé
-            Double soldeJournalier = calculateSoldeJournalierCollecteur(collecteurId); // ✅ CORRIGÉ NOM
+            // 1. Totaux du jour : une seule ligne indexée de collecteur_daily_totals
+            CollecteurDailyTotal totauxJour = collecteurDailyTotalsService.getTotauxJour(collecteurId, LocalDate.now());
+            Double soldeJournalier = totauxJour.getSoldeJournalier();
+            log.debug("Collecteur {}: épargnes={}, retraits={}, solde={}",
+                    collecteurId, totauxJour.getTotalEpargne(), totauxJour.getTotalRetrait(), soldeJournalier);
 
             // 2. Vérification épargne
-            if (!hasEpargneAujourdhui(collecteurId)) {
+            if (totauxJour.getNombreEpargnes() == 0) {
                 return ValidationResult.error(
                         "AUCUNE_EPARGNE_JOURNEE",
                         "Vous devez effectuer au moins une épargne avant tout retrait"
@@ -100,36 +102,4 @@ public class SoldeCollecteurValidationService {
             return null;
         }
     }
-
-    private Double calculateSoldeJournalierCollecteur(Long collecteurId) {
-        LocalDate today = LocalDate.now();
-        LocalDateTime startOfDay = today.atStartOfDay();
-        LocalDateTime endOfDay = today.atTime(23, 59, 59);
-
-        // Somme des épargnes de la journée
-        Double totalEpargne = mouvementRepository.sumByCollecteurAndSensAndPeriod(
-                collecteurId, "EPARGNE", startOfDay, endOfDay
-        );
-
-        // Somme des retraits de la journée
-        Double totalRetrait = mouvementRepository.sumByCollecteurAndSensAndPeriod(
-                collecteurId, "RETRAIT", startOfDay, endOfDay
-        );
-
-        double solde = (totalEpargne != null ? totalEpargne : 0.0) -
-                (totalRetrait != null ? totalRetrait : 0.0);
-
-        log.debug("Collecteur {}: épargnes={}, retraits={}, solde={}",
-                collecteurId, totalEpargne, totalRetrait, solde);
-
-        return solde;
-    }
-
-    private boolean hasEpargneAujourdhui(Long collecteurId) {
-        LocalDate today = LocalDate.now();
-        Long countEpargne = mouvementRepository.countByCollecteurAndSensAndDate(
-                collecteurId, "EPARGNE", today
-        );
-        return countEpargne != null && countEpargne > 0;
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,258 @@
+package org.example.collectfocep.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.collectfocep.entities.CommissionParameter;
+import org.example.collectfocep.entities.CommissionTier;
+import org.example.collectfocep.entities.CommissionType;
+import org.example.collectfocep.util.Money;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Règles de commission précompilées d'une agence (immuable).
+ *
+ * Chaque CommissionParameter actif est compilé une fois en {@link Regle} : montants et taux
+ * en francs / millionièmes, paliers triés en segments disjoints. La résolution
+ * client → collecteur → agence et le calcul ne font ensuite que des recherches
+ * dichotomiques sur des tableaux primitifs, sans allocation ni requête.
+ */
+@Slf4j
+public final class TableReglesCommission {
+
+    private final Long agenceId;
+    private final long[] clientIds;
+    private final Regle[] reglesClients;
+    private final long[] collecteurIds;
+    private final Regle[] reglesCollecteurs;
+    private final Regle regleAgence;
+
+    private TableReglesCommission(Long agenceId, Map<Long, Regle> parClient, Map<Long, Regle> parCollecteur,
+                                  Regle regleAgence) {
+        this.agenceId = agenceId;
+        this.clientIds = clesTriees(parClient);
+        this.reglesClients = valeurs(clientIds, parClient);
+        this.collecteurIds = clesTriees(parCollecteur);
+        this.reglesCollecteurs = valeurs(collecteurIds, parCollecteur);
+        this.regleAgence = regleAgence;
+    }
+
+    /**
+     * Compile les paramètres actifs d'une agence. Pour un même titulaire, le paramètre
+     * le plus récent (validFrom) l'emporte.
+     */
+    public static TableReglesCommission compiler(Long agenceId, List<CommissionParameter> parametres) {
+        Map<Long, CommissionParameter> parClient = new HashMap<>();
+        Map<Long, CommissionParameter> parCollecteur = new HashMap<>();
+        CommissionParameter agence = null;
+
+        for (CommissionParameter parametre : parametres) {
+            if (parametre.getClient() != null) {
+                parClient.merge(parametre.getClient().getId(), parametre, TableReglesCommission::plusRecent);
+            } else if (parametre.getCollecteur() != null) {
+                parCollecteur.merge(parametre.getCollecteur().getId(), parametre, TableReglesCommission::plusRecent);
+            } else if (parametre.getAgence() != null) {
+                agence = agence == null ? parametre : plusRecent(agence, parametre);
+            }
+        }
+
+        Map<Long, Regle> reglesClients = new HashMap<>();
+        parClient.forEach((id, parametre) -> reglesClients.put(id, Regle.compiler(parametre)));
+        Map<Long, Regle> reglesCollecteurs = new HashMap<>();
+        parCollecteur.forEach((id, parametre) -> reglesCollecteurs.put(id, Regle.compiler(parametre)));
+
+        TableReglesCommission table = new TableReglesCommission(agenceId, reglesClients, reglesCollecteurs,
+                agence != null ? Regle.compiler(agence) : null);
+        log.debug("Règles commission compilées - Agence: {}, {} client(s), {} collecteur(s), agence: {}",
+                agenceId, reglesClients.size(), reglesCollecteurs.size(), agence != null);
+        return table;
+    }
+
+    public Long getAgenceId() {
+        return agenceId;
+    }
+
+    /**
+     * Règle applicable selon la hiérarchie client → collecteur → agence ; null si aucune
+     */
+    public Regle regle(long clientId, long collecteurId) {
+        int i = Arrays.binarySearch(clientIds, clientId);
+        if (i >= 0) {
+            return reglesClients[i];
+        }
+        int j = Arrays.binarySearch(collecteurIds, collecteurId);
+        if (j >= 0) {
+            return reglesCollecteurs[j];
+        }
+        return regleAgence;
+    }
+
+    /**
+     * Commission "x" en francs ; 0 si aucune règle ne s'applique
+     */
+    public long commission(long clientId, long collecteurId, long montant) {
+        Regle regle = regle(clientId, collecteurId);
+        return regle != null ? regle.commission(montant) : 0L;
+    }
+
+    private static CommissionParameter plusRecent(CommissionParameter a, CommissionParameter b) {
+        LocalDate da = a.getValidFrom() != null ? a.getValidFrom() : LocalDate.MIN;
+        LocalDate db = b.getValidFrom() != null ? b.getValidFrom() : LocalDate.MIN;
+        return db.isAfter(da) ? b : a;
+    }
+
+    private static long[] clesTriees(Map<Long, Regle> regles) {
+        return regles.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+    }
+
+    private static Regle[] valeurs(long[] cles, Map<Long, Regle> regles) {
+        Regle[] valeurs = new Regle[cles.length];
+        for (int i = 0; i < cles.length; i++) {
+            valeurs[i] = regles.get(cles[i]);
+        }
+        return valeurs;
+    }
+
+    /**
+     * Un CommissionParameter compilé (mêmes règles que CommissionCalculatorService)
+     */
+    public static final class Regle {
+        private static final long[] AUCUN = new long[0];
+
+        private final CommissionParameter parametre;
+        private final Long parametreId;
+        private final CommissionType type;
+        private final long montantFixe;
+        private final long taux;
+        private final long[] bornesMin;
+        private final long[] bornesMax;
+        private final long[] tauxPaliers;
+
+        private Regle(CommissionParameter parametre, CommissionType type, long montantFixe, long taux,
+                      long[] bornesMin, long[] bornesMax, long[] tauxPaliers) {
+            this.parametre = parametre;
+            this.parametreId = parametre.getId();
+            this.type = type;
+            this.montantFixe = montantFixe;
+            this.taux = taux;
+            this.bornesMin = bornesMin;
+            this.bornesMax = bornesMax;
+            this.tauxPaliers = tauxPaliers;
+        }
+
+        public static Regle compiler(CommissionParameter parametre) {
+            CommissionType type = parametre.getType();
+            BigDecimal valeur = parametre.getValeurPersonnalisee();
+            return switch (type) {
+                case FIXED -> new Regle(parametre, type, montantFixe(valeur), 0L, AUCUN, AUCUN, AUCUN);
+                case PERCENTAGE -> new Regle(parametre, type, 0L, taux(valeur), AUCUN, AUCUN, AUCUN);
+                case TIER -> paliers(parametre);
+            };
+        }
+
+        private static long montantFixe(BigDecimal montantFixe) {
+            if (montantFixe == null || montantFixe.compareTo(BigDecimal.ZERO) < 0) {
+                log.warn("Montant fixe invalide: {}, utilisation de 0", montantFixe);
+                return 0L;
+            }
+            return Money.arrondir(montantFixe);
+        }
+
+        private static long taux(BigDecimal pourcentage) {
+            if (pourcentage == null || pourcentage.compareTo(BigDecimal.ZERO) < 0
+                    || pourcentage.compareTo(BigDecimal.valueOf(100)) > 0) {
+                log.warn("Pourcentage invalide: {}%, utilisation de 0%", pourcentage);
+                return 0L;
+            }
+            return Money.tauxDepuisPourcentage(pourcentage);
+        }
+
+        /**
+         * Les paliers sont triés par montant minimum puis découpés en segments disjoints :
+         * sur un chevauchement, le premier palier dans l'ordre de tri l'emporte, comme dans
+         * le parcours linéaire d'origine. Les bornes double deviennent des francs inclusifs.
+         */
+        private static Regle paliers(CommissionParameter parametre) {
+            List<CommissionTier> tiers = parametre.getTiers();
+            if (tiers == null || tiers.isEmpty()) {
+                log.warn("Aucun palier défini pour le paramètre {}, commission = 0", parametre.getId());
+                return new Regle(parametre, CommissionType.TIER, 0L, 0L, AUCUN, AUCUN, AUCUN);
+            }
+
+            List<CommissionTier> tries = new ArrayList<>(tiers);
+            tries.removeIf(t -> t.getMontantMin() == null || t.getMontantMax() == null || t.getTaux() == null);
+            tries.sort(Comparator.comparingDouble(CommissionTier::getMontantMin));
+
+            long[] min = new long[tries.size()];
+            long[] max = new long[tries.size()];
+            long[] taux = new long[tries.size()];
+            int n = 0;
+            long couvertJusqua = Long.MIN_VALUE;
+            for (CommissionTier tier : tries) {
+                if (couvertJusqua == Long.MAX_VALUE) {
+                    break;
+                }
+                long debut = Math.max((long) Math.ceil(tier.getMontantMin()),
+                        couvertJusqua == Long.MIN_VALUE ? Long.MIN_VALUE : couvertJusqua + 1);
+                long fin = (long) Math.floor(tier.getMontantMax());
+                if (debut <= fin) {
+                    min[n] = debut;
+                    max[n] = fin;
+                    taux[n] = Money.tauxDepuisPourcentage(tier.getTaux());
+                    n++;
+                }
+                couvertJusqua = Math.max(couvertJusqua, fin);
+            }
+
+            return new Regle(parametre, CommissionType.TIER, 0L, 0L,
+                    Arrays.copyOf(min, n), Arrays.copyOf(max, n), Arrays.copyOf(taux, n));
+        }
+
+        /**
+         * Commission "x" en francs pour le montant collecté
+         */
+        public long commission(long montant) {
+            if (montant <= 0) {
+                return 0L;
+            }
+            return switch (type) {
+                case FIXED -> montantFixe;
+                case PERCENTAGE -> Money.appliquerTaux(montant, taux);
+                case TIER -> commissionPalier(montant);
+            };
+        }
+
+        private long commissionPalier(long montant) {
+            int i = Arrays.binarySearch(bornesMin, montant);
+            if (i < 0) {
+                i = -i - 2; // dernier palier dont le minimum est inférieur au montant
+            }
+            if (i < 0 || montant > bornesMax[i]) {
+                return 0L;
+            }
+            return Money.appliquerTaux(montant, tauxPaliers[i]);
+        }
+
+        public Long getParametreId() {
+            return parametreId;
+        }
+
+        /**
+         * Paramètre source, détaché après le chargement de la table : type, valeur, paliers et
+         * identifiants des titulaires sont lisibles, pas leurs autres attributs. Lecture seule.
+         */
+        public CommissionParameter getParametre() {
+            return parametre;
+        }
+
+        public CommissionType getType() {
+            return type;
+        }
+    }
+}
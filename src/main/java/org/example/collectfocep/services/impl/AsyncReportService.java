@@ -3,7 +3,10 @@ package org.example.collectfocep.services.impl;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.collectfocep.entities.Journal;
+import org.example.collectfocep.entities.ReportJob;
 import org.example.collectfocep.services.interfaces.JournalService;
+import org.example.collectfocep.services.RapportPeriodePlanner;
+import org.example.collectfocep.services.ReportJobQueue;
 import org.example.collectfocep.services.ReportsService;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
@@ -19,6 +22,8 @@ public class AsyncReportService {
 
     private final ReportsService reportService;
     private final JournalService journalService;
+    private final RapportPeriodePlanner rapportPeriodePlanner;
+    private final ReportJobQueue reportJobQueue;
 
     /**
      * ✅ GÉNÉRATION ASYNCHRONE DE RAPPORT MENSUEL
@@ -48,35 +53,14 @@ public class AsyncReportService {
 
     /**
      * ✅ GÉNÉRATION ASYNCHRONE DE RAPPORT ANNUEL
-     * Nouvelle fonctionnalité pour générer des rapports annuels
+     * Les 12 mois sont calculés en parallèle puis fusionnés en un classeur consolidé
+     * (voir RapportPeriodePlanner) ; la méthode retourne sans attendre
      */
-    @Async("reportTaskExecutor")  // ✅ UTILISER LE THREAD POOL SPÉCIALISÉ
     public CompletableFuture<String> generateAnnualReport(Long collecteurId, int year) {
         log.info("🚀 Génération rapport annuel pour collecteur: {} - année: {}", collecteurId, year);
 
         try {
-            StringBuilder allReports = new StringBuilder();
-
-            // Générer un rapport pour chaque mois de l'année
-            for (int month = 1; month <= 12; month++) {
-                YearMonth yearMonth = YearMonth.of(year, month);
-
-                try {
-                    String monthlyReport = generateMonthlyReport(collecteurId, yearMonth).get();
-                    allReports.append(monthlyReport).append("\n");
-                    log.info("✅ Rapport mensuel {}/{} traité", month, year);
-
-                } catch (Exception e) {
-                    log.warn("⚠️ Erreur rapport mensuel {}/{}: {}", month, year, e.getMessage());
-                }
-            }
-
-            // Créer le rapport annuel consolidé
-            String annualReportPath = String.format("rapport_annuel_%d_%d.xlsx", collecteurId, year);
-            log.info("✅ Rapport annuel généré: {}", annualReportPath);
-
-            return CompletableFuture.completedFuture(annualReportPath);
-
+            return rapportPeriodePlanner.rapportAnnuel(collecteurId, year);
         } catch (Exception e) {
             log.error("❌ Erreur génération rapport annuel: {}", e.getMessage(), e);
             return CompletableFuture.failedFuture(e);
@@ -84,52 +68,16 @@ public class AsyncReportService {
     }
 
     /**
-     * ✅ GÉNÉRATION ASYNCHRONE DE RAPPORT PERSONNALISÉ - COMPLÉTÉE
-     * Permet de générer des rapports sur mesure avec périodes spécifiques
+     * ✅ GÉNÉRATION ASYNCHRONE DE RAPPORT PERSONNALISÉ
+     * Permet de générer des rapports sur mesure avec périodes spécifiques ; mois en parallèle
+     * comme pour le rapport annuel
      */
-    @Async("reportTaskExecutor")  // ✅ UTILISER LE THREAD POOL SPÉCIALISÉ
     public CompletableFuture<String> generateCustomReport(Long collecteurId, YearMonth startMonth, YearMonth endMonth) {
         log.info("🚀 Génération rapport personnalisé pour collecteur: {} - période: {} à {}",
                 collecteurId, startMonth, endMonth);
 
         try {
-            StringBuilder customReport = new StringBuilder();
-            YearMonth currentMonth = startMonth;
-            int processedMonths = 0;
-            int totalMonths = (int) java.time.temporal.ChronoUnit.MONTHS.between(startMonth, endMonth) + 1;
-
-            log.info("📊 Traitement de {} mois au total", totalMonths);
-
-            while (!currentMonth.isAfter(endMonth)) {
-                try {
-                    log.info("🔄 Traitement du mois: {} ({}/{})", currentMonth, processedMonths + 1, totalMonths);
-
-                    // Générer le rapport mensuel
-                    String monthlyReport = generateMonthlyReport(collecteurId, currentMonth).get();
-                    customReport.append(monthlyReport).append("\n");
-
-                    processedMonths++;
-                    log.info("✅ Rapport mensuel {} traité avec succès ({}/{})",
-                            currentMonth, processedMonths, totalMonths);
-
-                } catch (Exception e) {
-                    log.warn("⚠️ Erreur rapport mensuel {}: {}", currentMonth, e.getMessage());
-                    // Continuer même en cas d'erreur sur un mois
-                }
-
-                // Passer au mois suivant
-                currentMonth = currentMonth.plusMonths(1);
-            }
-
-            // Créer le rapport personnalisé consolidé
-            String customReportPath = String.format("rapport_personnalise_%d_%s_%s.xlsx",
-                    collecteurId, startMonth.toString(), endMonth.toString());
-
-            log.info("✅ Rapport personnalisé généré avec succès: {} ({} mois traités)",
-                    customReportPath, processedMonths);
-
-            return CompletableFuture.completedFuture(customReportPath);
-
+            return rapportPeriodePlanner.rapportPeriode(collecteurId, startMonth, endMonth);
         } catch (Exception e) {
             log.error("❌ Erreur génération rapport personnalisé pour collecteur {}: {}",
                     collecteurId, e.getMessage(), e);
@@ -138,21 +86,21 @@ public class AsyncReportService {
     }
 
     /**
-     * ✅ STATUT DE GÉNÉRATION ASYNCHRONE - CORRIGÉ
-     * Permet de suivre l'état d'avancement des rapports
+     * ✅ STATUT DE GÉNÉRATION ASYNCHRONE
+     * Lu dans la file persistante des rapports (report_jobs) : statut, progression, fichier produit
      */
     public CompletableFuture<AsyncReportStatus> getReportStatus(String reportId) {
         log.info("📊 Vérification statut rapport: {}", reportId);
 
         try {
-            // TODO: Implémenter un système de suivi des rapports en cours
-            // Pour l'instant, retourner un statut simulé
-            AsyncReportStatus status = AsyncReportStatus.builder()
-                    .reportId(reportId)
-                    .status("COMPLETED")
-                    .progress(100)
-                    .message("Rapport généré avec succès")
-                    .build();
+            AsyncReportStatus status = reportJobQueue.trouver(reportId)
+                    .map(this::toStatus)
+                    .orElseGet(() -> AsyncReportStatus.builder()
+                            .reportId(reportId)
+                            .status("NOT_FOUND")
+                            .progress(0)
+                            .message("Aucun rapport pour cet identifiant de suivi")
+                            .build());
 
             return CompletableFuture.completedFuture(status);
 
@@ -170,6 +118,19 @@ public class AsyncReportService {
         }
     }
 
+    AsyncReportStatus toStatus(ReportJob job) {
+        return AsyncReportStatus.builder()
+                .reportId(job.getTrackingId())
+                .status(job.getStatut().name())
+                .progress(job.getProgression())
+                .message(job.getMessage())
+                .filePath(job.getResultat())
+                .fileSize(job.getStatut() == ReportJob.Statut.COMPLETED ? reportJobQueue.tailleResultat(job) : null)
+                .startTime(job.getDateDebut())
+                .endTime(job.getDateFin())
+                .build();
+    }
+
     /**
      * ✅ NETTOYAGE AUTOMATIQUE DES ANCIENS RAPPORTS
      */
@@ -246,7 +207,7 @@ public class AsyncReportService {
     @lombok.AllArgsConstructor
     public static class AsyncReportStatus {
         private String reportId;
-        private String status; // PENDING, PROCESSING, COMPLETED, FAILED
+        private String status; // PENDING, PROCESSING, COMPLETED, FAILED, CANCELLED
         private int progress; // 0-100
         private String message;
         private String filePath;
@@ -6,6 +6,7 @@ import org.example.collectfocep.entities.Client;
 import org.example.collectfocep.entities.CompteClient;
 import org.example.collectfocep.repositories.ClientRepository;
 import org.example.collectfocep.repositories.CompteClientRepository;
+import org.example.collectfocep.services.CompteIdCache;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -18,6 +19,7 @@ public class ClientAccountInitializationService {
 
     private final CompteClientRepository compteClientRepository;
     private final ClientRepository clientRepository;
+    private final CompteIdCache compteIdCache;
 
     @Transactional
     public CompteClient ensureClientAccountExists(Client client) {
@@ -57,7 +59,9 @@ public class ClientAccountInitializationService {
                 .typeCompte("EPARGNE")
                 .build();
 
-        return compteClientRepository.save(compteClient);
+        CompteClient compteSauvegarde = compteClientRepository.save(compteClient);
+        compteIdCache.invaliderClient(client.getId());
+        return compteSauvegarde;
     }
 
     private String generateAccountNumber(Client client) {
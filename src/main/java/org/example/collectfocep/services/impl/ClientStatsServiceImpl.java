@@ -8,8 +8,10 @@ import org.example.collectfocep.dto.MouvementDTO;
 import org.example.collectfocep.entities.Client;
 import org.example.collectfocep.entities.Mouvement;
 import org.example.collectfocep.mappers.MouvementMapperV2;
+import org.example.collectfocep.repositories.ClientRepository;
 import org.example.collectfocep.repositories.MouvementRepository;
 import org.example.collectfocep.services.ClientStatsService;
+import org.example.collectfocep.services.ReglesCommissionCache;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
@@ -30,6 +32,8 @@ public class ClientStatsServiceImpl implements ClientStatsService {
 
     private final MouvementRepository mouvementRepository;
     private final MouvementMapperV2 mouvementMapper;
+    private final ClientRepository clientRepository;
+    private final ReglesCommissionCache reglesCommissionCache;
 
     @Override
     @Transactional(readOnly = true)
@@ -39,7 +43,7 @@ public class ClientStatsServiceImpl implements ClientStatsService {
         ClientSummaryDTO dto = ClientSummaryDTO.fromClient(client);
         
         // 🔥 ENRICHISSEMENT AVEC TOUTES LES STATS
-        enrichWithAllStats(dto, client.getId());
+        enrichWithAllStats(dto, client);
         
         return dto;
     }
@@ -140,7 +144,7 @@ public class ClientStatsServiceImpl implements ClientStatsService {
         }
         
         // Compte client et paramètres commission
-        enrichWithAccountAndCommission(dto, client.getId());
+        enrichWithAccountAndCommission(dto, client);
         
         return dto;
     }
@@ -148,16 +152,16 @@ public class ClientStatsServiceImpl implements ClientStatsService {
     /**
      * Enrichit avec compte et commission (garde l'ancien comportement)
      */
-    private void enrichWithAccountAndCommission(ClientSummaryDTO dto, Long clientId) {
+    private void enrichWithAccountAndCommission(ClientSummaryDTO dto, Client client) {
         try {
-            // Paramètres de commission (utilise la méthode existante)
-            dto.setCommissionParameter(getCommissionParameters(clientId));
+            // Paramètres de commission résolus sur les règles en cache de l'agence (aucune requête)
+            dto.setCommissionParameter(resoudreCommissionParameters(client));
             
             // Note: CompteClient sera défini au niveau du mapping initial du client
             
         } catch (Exception e) {
             log.warn("⚠️ Erreur enrichissement commission pour client {}: {}", 
-                    clientId, e.getMessage());
+                    client.getId(), e.getMessage());
             // Continuer sans bloquer
         }
     }
@@ -209,17 +213,29 @@ public class ClientStatsServiceImpl implements ClientStatsService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public ClientSummaryDTO.CommissionParameterDTO getCommissionParameters(Long clientId) {
-        // 🔥 TODO: Implémenter quand la table commission_parameters sera créée
-        // Pour l'instant, retourner des paramètres par défaut selon le profil client
-        
-        return createDefaultCommissionParameters(clientId);
+        return clientRepository.findById(clientId)
+                .map(this::resoudreCommissionParameters)
+                .orElse(null);
+    }
+
+    /**
+     * Paramètre applicable selon la hiérarchie client → collecteur → agence ; null si aucun
+     */
+    private ClientSummaryDTO.CommissionParameterDTO resoudreCommissionParameters(Client client) {
+        Long agenceId = client.getAgence() != null ? client.getAgence().getId() : null;
+        Long collecteurId = client.getCollecteur() != null ? client.getCollecteur().getId() : null;
+        return reglesCommissionCache.resoudre(agenceId, collecteurId, client.getId())
+                .map(ClientSummaryDTO.CommissionParameterDTO::fromCommissionParameter)
+                .orElse(null);
     }
 
     /**
      * 🔥 MÉTHODE OPTIMISÉE : Enrichit toutes les stats en une seule fois
      */
-    private void enrichWithAllStats(ClientSummaryDTO dto, Long clientId) {
+    private void enrichWithAllStats(ClientSummaryDTO dto, Client client) {
+        Long clientId = client.getId();
         try {
             // Récupérer les transactions récentes
             dto.setTransactions(getRecentTransactions(clientId, 20));
@@ -238,7 +254,7 @@ public class ClientStatsServiceImpl implements ClientStatsService {
             }
             
             // Paramètres de commission
-            dto.setCommissionParameter(getCommissionParameters(clientId));
+            dto.setCommissionParameter(resoudreCommissionParameters(client));
             
         } catch (Exception e) {
             log.error("❌ Erreur enrichissement stats pour client {}: {}", clientId, e.getMessage());
@@ -284,15 +300,4 @@ public class ClientStatsServiceImpl implements ClientStatsService {
             return 0.0;
         }
     }
-    
-    /**
-     * Crée des paramètres de commission par défaut
-     * 🔥 TODO: Remplacer par la vraie logique métier
-     */
-    private ClientSummaryDTO.CommissionParameterDTO createDefaultCommissionParameters(Long clientId) {
-        return ClientSummaryDTO.CommissionParameterDTO.builder()
-            .typeCommission("POURCENTAGE")
-            .pourcentage(2.0) // 2% par défaut
-            .build();
-    }
 }
\ No newline at end of file
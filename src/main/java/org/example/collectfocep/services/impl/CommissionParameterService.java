@@ -14,6 +14,7 @@ import org.example.collectfocep.repositories.AgenceRepository;
 import org.example.collectfocep.repositories.ClientRepository;
 import org.example.collectfocep.repositories.CollecteurRepository;
 import org.example.collectfocep.repositories.CommissionParameterRepository;
+import org.example.collectfocep.services.ReglesCommissionCache;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -33,6 +34,7 @@ public class CommissionParameterService {
     private final ClientRepository clientRepository;
     private final CollecteurRepository collecteurRepository;
     private final AgenceRepository agenceRepository;
+    private final ReglesCommissionCache reglesCommissionCache;
 
     /**
      * Créer un nouveau paramètre de commission
@@ -69,6 +71,7 @@ public class CommissionParameterService {
         }
 
         CommissionParameter saved = repository.save(entity);
+        reglesCommissionCache.invaliderTout();
         log.info("Paramètre commission créé: id={}", saved.getId());
         return saved;
     }
@@ -86,6 +89,7 @@ public class CommissionParameterService {
         existing.setActive(false);
         existing.setValidTo(LocalDate.now().minusDays(1));
         repository.save(existing);
+        reglesCommissionCache.invaliderTout();
 
         // Créer le nouveau paramètre
         dto.setId(null); // Force la création d'un nouveau
@@ -96,39 +100,23 @@ public class CommissionParameterService {
     }
 
     /**
-     * Récupérer le paramètre actif selon la hiérarchie
+     * Récupérer le paramètre actif selon la hiérarchie, résolue sur les règles en cache de
+     * l'agence du client (paramètre détaché, voir ReglesCommissionCache#resoudre)
      */
     public Optional<CommissionParameter> getEffectiveCommissionParameter(Long clientId) {
         log.debug("Recherche paramètre effectif pour client: {}", clientId);
 
-        // 1. Niveau client
-        Optional<CommissionParameter> clientParam = repository.findActiveCommissionParameter(clientId);
-        if (clientParam.isPresent()) {
-            log.debug("Paramètre trouvé au niveau client");
-            return clientParam;
-        }
-
-        // 2. Niveau collecteur
         Client client = clientRepository.findById(clientId)
                 .orElseThrow(() -> new ResourceNotFoundException("Client", "id", clientId));
 
-        Optional<CommissionParameter> collecteurParam = repository
-                .findActiveCommissionParameterByCollecteur(client.getCollecteur().getId());
-        if (collecteurParam.isPresent()) {
-            log.debug("Paramètre trouvé au niveau collecteur");
-            return collecteurParam;
+        Optional<CommissionParameter> parametre = reglesCommissionCache.resoudre(
+                client.getAgence() != null ? client.getAgence().getId() : null,
+                client.getCollecteur() != null ? client.getCollecteur().getId() : null,
+                clientId);
+        if (parametre.isEmpty()) {
+            log.warn("Aucun paramètre de commission trouvé pour client: {}", clientId);
         }
-
-        // 3. Niveau agence
-        Optional<CommissionParameter> agenceParam = repository
-                .findActiveCommissionParameterByAgence(client.getAgence().getId());
-        if (agenceParam.isPresent()) {
-            log.debug("Paramètre trouvé au niveau agence");
-            return agenceParam;
-        }
-
-        log.warn("Aucun paramètre de commission trouvé pour client: {}", clientId);
-        return Optional.empty();
+        return parametre;
     }
 
     /**
@@ -150,6 +138,7 @@ public class CommissionParameterService {
         param.setActive(false);
         param.setValidTo(LocalDate.now());
         repository.save(param);
+        reglesCommissionCache.invaliderTout();
     }
 
     /**
@@ -170,6 +159,7 @@ public class CommissionParameterService {
                 .agence(agence)
                 .build();
 
+        reglesCommissionCache.invaliderAgence(agenceId);
         return repository.save(defaultParam);
     }
 
@@ -191,6 +181,7 @@ public class CommissionParameterService {
                 .collecteur(collecteur)
                 .build();
 
+        reglesCommissionCache.invaliderTout();
         return repository.save(defaultParam);
     }
 
@@ -225,6 +216,7 @@ public class CommissionParameterService {
             builder.agence(agence);
         }
 
+        reglesCommissionCache.invaliderTout();
         return repository.save(builder.build());
     }
 
@@ -5,6 +5,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.example.collectfocep.entities.*;
 import org.example.collectfocep.exceptions.ResourceNotFoundException;
 import org.example.collectfocep.repositories.*;
+import org.example.collectfocep.services.CompteIdCache;
 import org.example.collectfocep.services.interfaces.CompteService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
@@ -38,6 +39,7 @@ public class CompteServiceImpl implements CompteService {
     private final CollecteurRepository collecteurRepository;
     private final CompteClientRepository compteClientRepository;
     private final ClientRepository clientRepository;
+    private final CompteIdCache compteIdCache;
     private final AgenceRepository agenceRepository;
 
     @Override
@@ -66,6 +68,7 @@ public class CompteServiceImpl implements CompteService {
 
         // Force la synchronisation avec la base
         entityManager.flush();
+        compteIdCache.invaliderCollecteur(collecteur.getId());
 
         log.info("Fin de la création des comptes pour le collecteur: {}", collecteur.getId());
     }
@@ -346,6 +349,7 @@ public class CompteServiceImpl implements CompteService {
         }
 
         compteRepository.deleteById(id);
+        compteIdCache.vider();
         log.info("Compte {} supprimé avec succès", id);
     }
 
@@ -3,9 +3,11 @@ package org.example.collectfocep.services.impl;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.collectfocep.dto.ClientDTO;
+import org.example.collectfocep.dto.CollecteurTotauxProjection;
 import org.example.collectfocep.dto.DashboardDTO;
 import org.example.collectfocep.entities.Client;
 import org.example.collectfocep.entities.Collecteur;
+import org.example.collectfocep.entities.CollecteurDailyTotal;
 import org.example.collectfocep.entities.Journal;
 import org.example.collectfocep.entities.Mouvement;
 import org.example.collectfocep.entities.CompteClient;
@@ -13,6 +15,7 @@ import org.example.collectfocep.mappers.ClientMapper;
 import org.example.collectfocep.repositories.ClientRepository;
 import org.example.collectfocep.repositories.JournalRepository;
 import org.example.collectfocep.repositories.MouvementRepository;
+import org.example.collectfocep.services.CollecteurDailyTotalsService;
 import org.example.collectfocep.services.interfaces.DashboardService;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
@@ -23,7 +26,6 @@ import java.time.LocalDateTime;
 import java.time.temporal.WeekFields;
 import java.util.List;
 import java.util.Locale;
-import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
@@ -36,6 +38,7 @@ public class DashboardServiceImpl implements DashboardService {
     private final MouvementRepository mouvementRepository;
     private final JournalRepository journalRepository;
     private final ClientMapper clientMapper;
+    private final CollecteurDailyTotalsService collecteurDailyTotalsService;
 
     @Override
     public DashboardDTO buildDashboard(Collecteur collecteur) {
@@ -48,61 +51,35 @@ public class DashboardServiceImpl implements DashboardService {
         // Statistiques générales
         Long totalClients = clientRepository.countByCollecteur(collecteur);
 
-        // ✅ UTILISATION DES MÉTHODES EXISTANTES DANS LE REPOSITORY
-        Double totalEpargne = Optional.ofNullable(
-                mouvementRepository.sumMontantByCollecteurAndType(collecteur.getId(), "EPARGNE")
-        ).orElse(0.0);
-
-        Double totalRetraits = Optional.ofNullable(
-                mouvementRepository.sumMontantByCollecteurAndType(collecteur.getId(), "RETRAIT")
-        ).orElse(0.0);
+        // Totaux lus dans collecteur_daily_totals (une ligne par jour) au lieu d'agréger les mouvements
+        CollecteurTotauxProjection totauxGlobaux = collecteurDailyTotalsService.getTotauxGlobaux(collecteur.getId());
+        Double totalEpargne = totauxGlobaux.getTotalEpargne().doubleValue();
+        Double totalRetraits = totauxGlobaux.getTotalRetrait().doubleValue();
 
         Double soldeTotal = totalEpargne - totalRetraits;
 
         // Statistiques du jour
-        Long transactionsAujourdhui = mouvementRepository.countByCollecteurAndDate(
-                collecteur.getId(), aujourdhui);
-
-        Double montantEpargneAujourdhui = Optional.ofNullable(
-                mouvementRepository.sumMontantByCollecteurAndTypeAndDate(
-                        collecteur.getId(), "EPARGNE", aujourdhui)
-        ).orElse(0.0);
-
-        Double montantRetraitAujourdhui = Optional.ofNullable(
-                mouvementRepository.sumMontantByCollecteurAndTypeAndDate(
-                        collecteur.getId(), "RETRAIT", aujourdhui)
-        ).orElse(0.0);
+        CollecteurDailyTotal totauxJour = collecteurDailyTotalsService.getTotauxJour(collecteur.getId(), aujourdhui);
+        Long transactionsAujourdhui = totauxJour.getNombreMouvements();
+        Double montantEpargneAujourdhui = totauxJour.getTotalEpargne().toDouble();
+        Double montantRetraitAujourdhui = totauxJour.getTotalRetrait().toDouble();
 
         Long nouveauxClientsAujourdhui = clientRepository.countByCollecteurAndDateCreation(
                 collecteur, aujourdhui);
 
         // Statistiques de la semaine
-        Double montantEpargneSemaine = Optional.ofNullable(
-                mouvementRepository.sumMontantByCollecteurAndTypeAndDateRange(
-                        collecteur.getId(), "EPARGNE", debutSemaine, aujourdhui)
-        ).orElse(0.0);
-
-        Double montantRetraitSemaine = Optional.ofNullable(
-                mouvementRepository.sumMontantByCollecteurAndTypeAndDateRange(
-                        collecteur.getId(), "RETRAIT", debutSemaine, aujourdhui)
-        ).orElse(0.0);
-
-        Long transactionsSemaine = mouvementRepository.countByCollecteurAndDateRange(
+        CollecteurTotauxProjection totauxSemaine = collecteurDailyTotalsService.getTotauxPeriode(
                 collecteur.getId(), debutSemaine, aujourdhui);
+        Double montantEpargneSemaine = totauxSemaine.getTotalEpargne().doubleValue();
+        Double montantRetraitSemaine = totauxSemaine.getTotalRetrait().doubleValue();
+        Long transactionsSemaine = totauxSemaine.getNombreMouvements();
 
         // Statistiques du mois
-        Double montantEpargneMois = Optional.ofNullable(
-                mouvementRepository.sumMontantByCollecteurAndTypeAndDateRange(
-                        collecteur.getId(), "EPARGNE", debutMois, aujourdhui)
-        ).orElse(0.0);
-
-        Double montantRetraitMois = Optional.ofNullable(
-                mouvementRepository.sumMontantByCollecteurAndTypeAndDateRange(
-                        collecteur.getId(), "RETRAIT", debutMois, aujourdhui)
-        ).orElse(0.0);
-
-        Long transactionsMois = mouvementRepository.countByCollecteurAndDateRange(
+        CollecteurTotauxProjection totauxMois = collecteurDailyTotalsService.getTotauxPeriode(
                 collecteur.getId(), debutMois, aujourdhui);
+        Double montantEpargneMois = totauxMois.getTotalEpargne().doubleValue();
+        Double montantRetraitMois = totauxMois.getTotalRetrait().doubleValue();
+        Long transactionsMois = totauxMois.getNombreMouvements();
 
         // Journal actuel
         Journal journalActuel = journalRepository.findActiveJournalByCollecteur(collecteur)
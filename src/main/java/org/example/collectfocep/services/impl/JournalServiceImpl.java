@@ -9,6 +9,7 @@ import org.example.collectfocep.exceptions.ResourceNotFoundException;
 import org.example.collectfocep.repositories.CollecteurRepository;
 import org.example.collectfocep.repositories.JournalRepository;
 import org.example.collectfocep.repositories.MouvementRepository;
+import org.example.collectfocep.services.CollecteurDailyTotalsService;
 import org.example.collectfocep.services.interfaces.JournalService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CacheEvict;
@@ -35,6 +36,9 @@ public class JournalServiceImpl implements JournalService {
     private final MouvementRepository mouvementRepository;
     private final CollecteurRepository collecteurRepository;
 
+    @Autowired
+    private CollecteurDailyTotalsService collecteurDailyTotalsService;
+
     @Autowired
     public JournalServiceImpl(JournalRepository journalRepository,
                               MouvementRepository mouvementRepository,
@@ -313,7 +317,9 @@ public class JournalServiceImpl implements JournalService {
         }
 
         mouvement.setJournal(journal);
-        return mouvementRepository.save(mouvement);
+        Mouvement mouvementSauvegarde = mouvementRepository.save(mouvement);
+        collecteurDailyTotalsService.enregistrer(mouvementSauvegarde);
+        return mouvementSauvegarde;
     }
 
     @Override
@@ -4,6 +4,8 @@ import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Timer;
 import org.example.collectfocep.constants.ErrorMessages;
 import org.example.collectfocep.dto.BalanceVerificationDTO;
+import org.example.collectfocep.dto.EpargneBatchResultDTO;
+import org.example.collectfocep.dto.EpargneRequest;
 import org.example.collectfocep.dto.MouvementCommissionDTO;
 import org.example.collectfocep.dto.MouvementProjection;
 import org.example.collectfocep.entities.*;
@@ -12,6 +14,12 @@ import org.example.collectfocep.exceptions.SoldeInsuffisantException;
 import org.example.collectfocep.exceptions.ResourceNotFoundException;
 import org.example.collectfocep.mappers.MouvementMapperV2;
 import org.example.collectfocep.repositories.*;
+import org.example.collectfocep.services.CollecteurDailyTotalsService;
+import org.example.collectfocep.services.CompteIdCache;
+import org.example.collectfocep.services.CompteLockManager;
+import org.example.collectfocep.services.EcrituresDiffereesService;
+import org.example.collectfocep.services.EpargnePipeline;
+import org.example.collectfocep.services.JournalDuJourRegistry;
 import org.example.collectfocep.exceptions.MontantMaxRetraitException;
 import org.example.collectfocep.services.interfaces.CompteService;
 import org.example.collectfocep.services.interfaces.DateTimeService;
@@ -24,13 +32,25 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
 import org.example.collectfocep.exceptions.BusinessException;
+import org.example.collectfocep.util.Money;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -38,6 +58,10 @@ import java.util.stream.Collectors;
 @Slf4j
 public class MouvementServiceImpl implements MouvementService {
 
+    private static final Set<String> SENS_RECONNUS = Set.of("debit", "credit", "epargne", "retrait", "versement");
+
+    /** Lot JDBC des insertions et nombre de comptes par UPDATE … CASE en mode ensembliste */
+    private static final int TAILLE_LOT_ENSEMBLISTE = 500;
 
     private final DateTimeService dateTimeService;
     private final CompteRepository compteRepository;
@@ -63,6 +87,30 @@ public class MouvementServiceImpl implements MouvementService {
     @Autowired
     private MouvementMapperV2 mouvementMapper;
 
+    @Autowired
+    private CollecteurRepository collecteurRepository;
+
+    @Autowired
+    private CompteLockManager compteLockManager;
+
+    @Autowired
+    private EcrituresDiffereesService ecrituresDiffereesService;
+
+    @Autowired
+    private CollecteurDailyTotalsService collecteurDailyTotalsService;
+
+    @Autowired
+    private JournalDuJourRegistry journalDuJourRegistry;
+
+    @Autowired
+    private CompteIdCache compteIdCache;
+
+    @Autowired
+    private EpargnePipeline epargnePipeline;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     @Autowired
     public MouvementServiceImpl(
             DateTimeService dateTimeService,
@@ -129,6 +177,18 @@ public class MouvementServiceImpl implements MouvementService {
         }
     }
 
+    /**
+     * ID du compte service via CompteIdCache ; repli sur la recherche/création complète si absent
+     */
+    private Long getCompteServiceId(Collecteur collecteur) {
+        Long compteServiceId = compteIdCache.getComptesCollecteur(collecteur.getId()).serviceId();
+        if (compteServiceId == null) {
+            compteServiceId = getCompteServiceCollecteur(collecteur).getId();
+            compteIdCache.invaliderCollecteur(collecteur.getId());
+        }
+        return compteServiceId;
+    }
+
     /**
      * S'assurer que les comptes du collecteur existent
      */
@@ -167,6 +227,8 @@ public class MouvementServiceImpl implements MouvementService {
             try {
                 log.debug("Démarrage de la transaction pour le mouvement entre comptes");
 
+                verrouillerComptes(mouvement.getCompteSource().getId(), mouvement.getCompteDestination().getId());
+
                 // Validation des comptes
                 Compte compteSource = validateAndGetCompte(mouvement.getCompteSource().getId());
                 Compte compteDestination = validateAndGetCompte(mouvement.getCompteDestination().getId());
@@ -195,6 +257,7 @@ public class MouvementServiceImpl implements MouvementService {
 
                 mouvement.setDateOperation(dateTimeService.getCurrentDateTime());
                 Mouvement mouvementSauvegarde = mouvementRepository.save(mouvement);
+                collecteurDailyTotalsService.enregistrer(mouvementSauvegarde);
 
                 log.info("Mouvement réussi: ID={}, Montant={}, Source={} (Solde={}), Destination={} (Solde={})",
                         mouvementSauvegarde.getId(), mouvementSauvegarde.getMontant(),
@@ -212,6 +275,220 @@ public class MouvementServiceImpl implements MouvementService {
         });
     }
 
+    /**
+     * Mode agrégé pour les comptes de passage partagés (C.P.C.C / C.P.T) : chaque jambe
+     * est enregistrée comme Mouvement et les comptes sources sont mis à jour un par un,
+     * mais le total crédité à chaque compte destination est appliqué en un seul UPDATE.
+     * Les soldes finaux sont identiques à des appels successifs à effectuerMouvement.
+     */
+    @Transactional(
+            propagation = Propagation.REQUIRED,
+            isolation = Isolation.READ_COMMITTED,
+            rollbackFor = {BusinessException.class, Exception.class},
+            timeout = 120
+    )
+    public List<Mouvement> effectuerMouvementsAgreges(List<Mouvement> mouvements) {
+        if (mouvements.isEmpty()) {
+            return mouvements;
+        }
+        log.info("DÉBUT MOUVEMENTS AGRÉGÉS: {} mouvements", mouvements.size());
+
+        List<Long> compteIds = new ArrayList<>();
+        for (Mouvement mouvement : mouvements) {
+            compteIds.add(mouvement.getCompteSource().getId());
+            compteIds.add(mouvement.getCompteDestination().getId());
+        }
+        verrouillerComptes(compteIds.toArray(Long[]::new));
+
+        LocalDateTime dateOperation = dateTimeService.getCurrentDateTime();
+        Map<Long, Long> deltasDestination = new LinkedHashMap<>();
+
+        for (Mouvement mouvement : mouvements) {
+            Compte compteSource = validateAndGetCompte(mouvement.getCompteSource().getId());
+            verifierSoldeDisponible(compteSource, mouvement.getMontant(), mouvement.getSens());
+
+            if (mouvement.getSens() == null || !SENS_RECONNUS.contains(mouvement.getSens().toLowerCase())) {
+                throw new IllegalArgumentException("Sens d'opération non reconnu: " + mouvement.getSens());
+            }
+            // Même convention que mettreAJourSoldes : "credit" inverse le sens du transfert
+            long francs = Money.arrondir(mouvement.getMontant());
+            // Montant enregistré = francs réellement portés aux soldes
+            mouvement.setMontant(francs);
+            long delta = "credit".equalsIgnoreCase(mouvement.getSens()) ? -francs : francs;
+            compteSource.setSolde(Money.soustraire(Money.arrondir(compteSource.getSolde()), delta));
+            deltasDestination.merge(mouvement.getCompteDestination().getId(), delta, Money::ajouter);
+
+            mouvement.setDateOperation(dateOperation);
+        }
+
+        List<Mouvement> mouvementsEnregistres = mouvementRepository.saveAll(mouvements);
+        collecteurDailyTotalsService.enregistrer(mouvementsEnregistres);
+
+        deltasDestination.forEach((compteId, delta) -> {
+            compteRepository.incrementerSolde(compteId, delta);
+            // L'UPDATE contourne le contexte de persistance : relecture de l'instance gérée
+            entityManager.refresh(validateAndGetCompte(compteId));
+            log.debug("Solde agrégé appliqué: Compte={}, Delta={}", compteId, delta);
+        });
+
+        log.info("✅ Mouvements agrégés: {} mouvements, {} compte(s) destination mis à jour",
+                mouvementsEnregistres.size(), deltasDestination.size());
+        return mouvementsEnregistres;
+    }
+
+    /**
+     * Mode ensembliste pour les gros lots (commissions et TVA de fin de période) : les comptes
+     * ne sont pas chargés, les Mouvements sont insérés par lots JDBC et chaque compte touché
+     * (clients comme C.P.C.C / C.P.T) est mis à jour une seule fois par un UPDATE … CASE.
+     * Les comptes des mouvements peuvent donc être de simples références (getReferenceById).
+     * Les soldes finaux sont identiques à des appels successifs à effectuerMouvement.
+     */
+    @Transactional(
+            propagation = Propagation.REQUIRED,
+            isolation = Isolation.READ_COMMITTED,
+            rollbackFor = {BusinessException.class, Exception.class},
+            timeout = 120
+    )
+    public List<Mouvement> effectuerMouvementsEnsemblistes(List<Mouvement> mouvements) {
+        return effectuerMouvementsEnsemblistes(mouvements, Set.of());
+    }
+
+    /**
+     * Variante où les comptes partagés de l'agence ({@code comptesDifferes}) ne sont ni verrouillés
+     * ni mis à jour dans la transaction courante : leur variation est enregistrée et appliquée après
+     * le commit (EcrituresDiffereesService). Un compte dont un débit doit être contrôlé reste
+     * verrouillé et mis à jour immédiatement.
+     */
+    @Transactional(
+            propagation = Propagation.REQUIRED,
+            isolation = Isolation.READ_COMMITTED,
+            rollbackFor = {BusinessException.class, Exception.class},
+            timeout = 120
+    )
+    public List<Mouvement> effectuerMouvementsEnsemblistes(List<Mouvement> mouvements, Set<Long> comptesDifferes) {
+        if (mouvements.isEmpty()) {
+            return mouvements;
+        }
+        log.info("DÉBUT MOUVEMENTS ENSEMBLISTES: {} mouvements", mouvements.size());
+
+        LocalDateTime dateOperation = dateTimeService.getCurrentDateTime();
+        Map<Long, Long> deltas = new LinkedHashMap<>();
+        Map<Long, Long> debitsControles = new HashMap<>();
+
+        for (Mouvement mouvement : mouvements) {
+            if (mouvement.getSens() == null || !SENS_RECONNUS.contains(mouvement.getSens().toLowerCase())) {
+                throw new IllegalArgumentException("Sens d'opération non reconnu: " + mouvement.getSens());
+            }
+            Long sourceId = mouvement.getCompteSource().getId();
+            // Même convention que mettreAJourSoldes : "credit" inverse le sens du transfert
+            long francs = Money.arrondir(mouvement.getMontant());
+            // Montant enregistré = francs réellement portés aux soldes
+            mouvement.setMontant(francs);
+            long delta = "credit".equalsIgnoreCase(mouvement.getSens()) ? -francs : francs;
+            deltas.merge(sourceId, -delta, Money::ajouter);
+            deltas.merge(mouvement.getCompteDestination().getId(), delta, Money::ajouter);
+            // Mêmes sens soumis au contrôle que verifierSoldeDisponible
+            if ("debit".equals(mouvement.getSens()) || "retrait".equals(mouvement.getSens())
+                    || "versement".equals(mouvement.getSens())) {
+                debitsControles.merge(sourceId, francs, Money::ajouter);
+            }
+            mouvement.setDateOperation(dateOperation);
+        }
+
+        Map<Long, Long> deltasDifferes = new LinkedHashMap<>();
+        for (Long compteId : comptesDifferes) {
+            if (deltas.containsKey(compteId) && !debitsControles.containsKey(compteId)) {
+                deltasDifferes.put(compteId, deltas.remove(compteId));
+            }
+        }
+
+        compteLockManager.verrouiller(deltas.keySet());
+        verifierSoldesDisponibles(debitsControles);
+
+        // Soldes d'abord : un compte inconnu est signalé (CompteNotFoundException) avant toute insertion
+        List<Long> compteIds = new ArrayList<>(deltas.keySet());
+        for (int debut = 0; debut < compteIds.size(); debut += TAILLE_LOT_ENSEMBLISTE) {
+            appliquerDeltas(compteIds.subList(debut, Math.min(debut + TAILLE_LOT_ENSEMBLISTE, compteIds.size())), deltas);
+        }
+
+        Session session = entityManager.unwrap(Session.class);
+        Integer tailleLotPrecedente = session.getJdbcBatchSize();
+        session.setJdbcBatchSize(TAILLE_LOT_ENSEMBLISTE);
+        List<Mouvement> mouvementsEnregistres;
+        try {
+            mouvementsEnregistres = mouvementRepository.saveAll(mouvements);
+            entityManager.flush();
+        } finally {
+            session.setJdbcBatchSize(tailleLotPrecedente);
+        }
+        collecteurDailyTotalsService.enregistrer(mouvementsEnregistres);
+        ecrituresDiffereesService.differer(deltasDifferes);
+
+        log.info("✅ Mouvements ensemblistes: {} mouvements, {} compte(s) mis à jour, {} différé(s)",
+                mouvementsEnregistres.size(), compteIds.size(), deltasDifferes.size());
+        return mouvementsEnregistres;
+    }
+
+    /**
+     * UPDATE comptes SET solde = solde + CASE id WHEN … END pour une tranche de comptes
+     */
+    private void appliquerDeltas(List<Long> compteIds, Map<Long, Long> deltas) {
+        StringBuilder sql = new StringBuilder("UPDATE comptes SET solde = solde + CASE id");
+        StringBuilder ids = new StringBuilder();
+        // Paramètres : couples (id, delta) du CASE, puis les ids du IN
+        int position = 1;
+        for (int i = 0; i < compteIds.size(); i++) {
+            sql.append(" WHEN ?").append(position++).append(" THEN ?").append(position++);
+        }
+        for (int i = 0; i < compteIds.size(); i++) {
+            ids.append(i == 0 ? "?" : ", ?").append(position++);
+        }
+        sql.append(" END, version = version + 1 WHERE id IN (").append(ids).append(')');
+
+        Query update = entityManager.createNativeQuery(sql.toString());
+        position = 1;
+        for (Long compteId : compteIds) {
+            update.setParameter(position++, compteId);
+            update.setParameter(position++, deltas.get(compteId));
+        }
+        for (Long compteId : compteIds) {
+            update.setParameter(position++, compteId);
+        }
+
+        int misAJour = update.executeUpdate();
+        if (misAJour != compteIds.size()) {
+            throw new CompteNotFoundException(String.format(ErrorMessages.RESOURCE_NOT_FOUND,
+                    "Compte (" + (compteIds.size() - misAJour) + " sur " + compteIds.size() + ")"));
+        }
+
+        // L'UPDATE contourne le contexte de persistance : seules les instances déjà chargées sont relues
+        for (Long compteId : compteIds) {
+            Compte compte = entityManager.getReference(Compte.class, compteId);
+            if (Hibernate.isInitialized(compte)) {
+                entityManager.refresh(compte);
+            }
+        }
+    }
+
+    /**
+     * Contrôle de solde groupé : une requête pour tous les comptes débités
+     */
+    private void verifierSoldesDisponibles(Map<Long, Long> debitsParCompte) {
+        if (debitsParCompte.isEmpty()) {
+            return;
+        }
+        for (Object[] ligne : compteRepository.findSoldesByIdIn(debitsParCompte.keySet())) {
+            Long compteId = (Long) ligne[0];
+            double solde = ((Number) ligne[1]).doubleValue();
+            long debit = debitsParCompte.get(compteId);
+            if (solde < debit) {
+                log.warn("Solde insuffisant: Compte={}, Solde={}, Débits={}", compteId, solde, debit);
+                throw new SoldeInsuffisantException("Solde insuffisant sur le compte " + compteId +
+                        " : " + solde + " < " + debit);
+            }
+        }
+    }
+
     /**
      * Traitement asynchrone des commissions dans une nouvelle transaction
      */
@@ -234,6 +511,44 @@ public class MouvementServiceImpl implements MouvementService {
         });
     }
 
+    /**
+     * Journal du jour via le registre en mémoire : getOrCreateJournalDuJour (et sa transaction
+     * REQUIRES_NEW) n'est appelé qu'au premier mouvement du collecteur dans la journée.
+     * Le journal est rattaché par référence, sans requête.
+     */
+    private Journal getJournalDuJour(Long collecteurId) {
+        LocalDate date = dateTimeService.getCurrentDate();
+        JournalDuJourRegistry.JournalDuJour journalDuJour = journalDuJourRegistry.resoudre(collecteurId, date,
+                () -> journalService.getOrCreateJournalDuJour(collecteurId, date));
+        return journalRepository.getReferenceById(journalDuJour.journalId());
+    }
+
+    /**
+     * Verrouille en un seul appel tous les comptes d'une série de mouvements passés ensuite un
+     * par un (effectuerMouvement) dans la même transaction : CompteLockManager n'attend que
+     * des comptes pris dans l'ordre croissant des IDs.
+     */
+    public void verrouillerComptesMouvements(List<Mouvement> mouvements) {
+        List<Long> compteIds = new ArrayList<>(mouvements.size() * 2);
+        for (Mouvement mouvement : mouvements) {
+            compteIds.add(mouvement.getCompteSource().getId());
+            compteIds.add(mouvement.getCompteDestination().getId());
+        }
+        verrouillerComptes(compteIds.toArray(Long[]::new));
+    }
+
+    /**
+     * Verrouille les comptes jusqu'à la fin de la transaction (voir CompteLockManager).
+     * Les comptes pris pour la première fois sont relus : l'instance du contexte de
+     * persistance peut dater d'avant le commit du précédent détenteur du verrou.
+     */
+    private void verrouillerComptes(Long... compteIds) {
+        Set<Long> nouveaux = compteLockManager.verrouiller(compteIds);
+        for (Long compteId : nouveaux) {
+            entityManager.refresh(validateAndGetCompte(compteId));
+        }
+    }
+
     /**
      * Validation et récupération d'un compte avec verrouillage
      */
@@ -281,7 +596,8 @@ public class MouvementServiceImpl implements MouvementService {
                 client.getNom() + " " + client.getPrenom(), montant, journal != null ? journal.getId() : "null");
 
         Mouvement mouvement = new Mouvement();
-        mouvement.setMontant(montant);
+        // Même arrondi que mettreAJourSoldes
+        mouvement.setMontant(Money.arrondir(montant));
         mouvement.setLibelle(String.format("Epargne client : %s %s", client.getNom(), client.getPrenom()));
         mouvement.setSens("epargne");
         // UTILISATION DU DateTimeService
@@ -305,29 +621,27 @@ public class MouvementServiceImpl implements MouvementService {
                 compteDestination.getNumeroCompte(), compteDestination.getSolde(),
                 montant, sens);
 
+        // Arithmétique en francs entiers : pas de dérive d'arrondi sur les soldes
+        long francs = Money.arrondir(montant);
+
         switch(sens.toLowerCase()) {
             case "debit":
-                compteSource.setSolde(compteSource.getSolde() - montant);
-                compteDestination.setSolde(compteDestination.getSolde() + montant);
+                transfererFrancs(compteSource, compteDestination, francs);
                 break;
             case "credit":
-                compteSource.setSolde(compteSource.getSolde() + montant);
-                compteDestination.setSolde(compteDestination.getSolde() - montant);
+                transfererFrancs(compteDestination, compteSource, francs);
                 break;
             case "epargne":
                 // Pour l'épargne, on débite le compte service du collecteur et on crédite le compte client
-                compteSource.setSolde(compteSource.getSolde() - montant);
-                compteDestination.setSolde(compteDestination.getSolde() + montant);
+                transfererFrancs(compteSource, compteDestination, francs);
                 break;
             case "retrait":
                 // Pour le retrait, on débite le compte client et on crédite le compte service
-                compteSource.setSolde(compteSource.getSolde() - montant);
-                compteDestination.setSolde(compteDestination.getSolde() + montant);
+                transfererFrancs(compteSource, compteDestination, francs);
                 break;
             case "versement":
                 // Pour le versement en agence, on débite le compte liaison et on crédite le compte service
-                compteSource.setSolde(compteSource.getSolde() - montant);
-                compteDestination.setSolde(compteDestination.getSolde() + montant);
+                transfererFrancs(compteSource, compteDestination, francs);
                 break;
             default:
                 log.error("Type d'opération non reconnu: {}", sens);
@@ -339,72 +653,153 @@ public class MouvementServiceImpl implements MouvementService {
                 compteDestination.getNumeroCompte(), compteDestination.getSolde());
     }
 
+    private static void transfererFrancs(Compte debite, Compte credite, long francs) {
+        debite.setSolde(Money.soustraire(Money.arrondir(debite.getSolde()), francs));
+        credite.setSolde(Money.ajouter(Money.arrondir(credite.getSolde()), francs));
+    }
+
+    @Override
+    public Mouvement enregistrerEpargne(Client client, double montant, Journal journal) {
+        log.info("Début enregistrement épargne: Client={} (ID={}), Montant={}",
+                client.getNom() + " " + client.getPrenom(), client.getId(), montant);
+
+        // Chaîne mono-transaction (autorisation → résolution → validation → écriture → audit)
+        return epargnePipeline.poster(client.getId(), null, montant, journal);
+    }
+
+    /**
+     * Enregistre un lot d'épargnes d'un même collecteur (remontée de fin de tournée).
+     * Le journal du jour, le compte service et les comptes clients sont résolus une seule fois,
+     * les soldes sont cumulés en mémoire et les mouvements insérés en lot dans une seule transaction.
+     * Une opération invalide est rejetée individuellement sans bloquer le reste du lot.
+     */
     @Override
     @Transactional(
             propagation = Propagation.REQUIRED,
             isolation = Isolation.READ_COMMITTED,
             rollbackFor = {BusinessException.class, Exception.class},
-            timeout = 30
+            timeout = 60
     )
-    public Mouvement enregistrerEpargne(Client client, double montant, Journal journal) {
-        log.info("Début enregistrement épargne: Client={} (ID={}), Montant={}",
-                client.getNom() + " " + client.getPrenom(), client.getId(), montant);
+    public EpargneBatchResultDTO enregistrerEpargnesBatch(Long collecteurId, List<EpargneRequest> operations) {
+        log.info("Début enregistrement lot d'épargnes: Collecteur={}, Opérations={}", collecteurId, operations.size());
+
+        // 1. Résolutions communes à tout le lot
+        Collecteur collecteur = collecteurRepository.findById(collecteurId)
+                .orElseThrow(() -> new ResourceNotFoundException("Collecteur non trouvé: " + collecteurId));
+
+        Journal journalDuJour = getJournalDuJour(collecteurId);
+        Long compteServiceId = getCompteServiceId(collecteur);
+
+        List<Long> clientIds = operations.stream()
+                .map(EpargneRequest::getClientId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+
+        // 2. Verrou unique sur le compte service et tous les comptes clients du lot,
+        //    pris avant le chargement des comptes clients pour lire des soldes à jour
+        List<Long> compteIds = new ArrayList<>();
+        compteIds.add(compteServiceId);
+        if (!clientIds.isEmpty()) {
+            compteIds.addAll(compteClientRepository.findIdsByClientIdIn(clientIds));
+        }
+        Set<Long> nouveaux = compteLockManager.verrouiller(compteIds);
 
-        return transactionService.executeInTransaction(status -> {
-            try {
-                // 1. Recharger le client avec toutes ses relations
-                Client clientWithRelations = clientRepository.findByIdWithAllRelations(client.getId())
-                        .orElseThrow(() -> new ResourceNotFoundException("Client non trouvé"));
-
-                // 2. ✅ RÉCUPÉRATION AUTOMATIQUE DU JOURNAL DU JOUR avec DateTimeService
-                Journal journalDuJour;
-                if (journal != null) {
-                    journalDuJour = journal;
-                } else {
-                    journalDuJour = journalService.getOrCreateJournalDuJour(
-                            clientWithRelations.getCollecteur().getId(),
-                            dateTimeService.getCurrentDate() // ✅ UTILISATION DU SERVICE
-                    );
-                    log.info("📅 Journal automatique: ID={}, Date={}",
-                            journalDuJour.getId(), journalDuJour.getDateDebut());
-                }
+        Compte compteService = validateAndGetCompte(compteServiceId);
+        if (nouveaux.contains(compteServiceId)) {
+            entityManager.refresh(compteService);
+        }
+
+        // 3. Chargement groupé des clients et de leurs comptes (2 requêtes pour tout le lot)
+        Map<Long, Client> clientsParId = new HashMap<>();
+        Map<Long, CompteClient> comptesParClient = new HashMap<>();
+        if (!clientIds.isEmpty()) {
+            clientRepository.findByIdInWithCollecteur(clientIds)
+                    .forEach(c -> clientsParId.put(c.getId(), c));
+            compteClientRepository.findByClientIdIn(clientIds)
+                    .forEach(cc -> comptesParClient.put(cc.getClient().getId(), cc));
+        }
 
-                // 3. Récupérer les comptes
-                CompteClient compteClient = compteClientRepository.findByClient(clientWithRelations)
-                        .orElseGet(() -> clientAccountInitializationService.ensureClientAccountExists(clientWithRelations));
+        // 4. Validation et application en mémoire de chaque opération
+        LocalDateTime dateOperation = dateTimeService.getCurrentDateTime();
+        List<EpargneBatchResultDTO.EpargneItemResultDTO> resultats = new ArrayList<>(operations.size());
+        List<Mouvement> mouvements = new ArrayList<>();
+        Map<Mouvement, EpargneBatchResultDTO.EpargneItemResultDTO> resultatParMouvement = new HashMap<>();
+        double montantTotal = 0.0;
+
+        for (int i = 0; i < operations.size(); i++) {
+            EpargneRequest operation = operations.get(i);
+            EpargneBatchResultDTO.EpargneItemResultDTO resultat = EpargneBatchResultDTO.EpargneItemResultDTO.builder()
+                    .index(i)
+                    .clientId(operation.getClientId())
+                    .montant(operation.getMontant())
+                    .success(false)
+                    .build();
+            resultats.add(resultat);
 
-                CompteCollecteur compteService = getCompteServiceCollecteur(clientWithRelations.getCollecteur());
+            if (operation.getClientId() == null || operation.getMontant() <= 0) {
+                rejeterOperation(resultat, "OPERATION_INVALIDE", "Client et montant positif obligatoires");
+                continue;
+            }
 
-                // 4. Créer le mouvement avec le journal du jour
-                Mouvement mouvement = creerMouvementEpargne(
-                        compteService,
-                        compteClient,
-                        montant,
-                        clientWithRelations,
-                        journalDuJour
-                );
+            Client client = clientsParId.get(operation.getClientId());
+            if (client == null) {
+                rejeterOperation(resultat, "CLIENT_NOT_FOUND", "Client non trouvé: " + operation.getClientId());
+                continue;
+            }
+            if (client.getCollecteur() == null || !collecteurId.equals(client.getCollecteur().getId())) {
+                rejeterOperation(resultat, "CLIENT_HORS_PORTEFEUILLE",
+                        "Le client n'appartient pas au collecteur " + collecteurId);
+                continue;
+            }
 
-                // 5. Définir le type de mouvement
-                mouvement.setTypeMouvement("EPARGNE");
-                mouvement.setCollecteur(clientWithRelations.getCollecteur());
-                mouvement.setClient(clientWithRelations);
+            CompteClient compteClient = comptesParClient.computeIfAbsent(client.getId(),
+                    id -> clientAccountInitializationService.ensureClientAccountExists(client));
 
-                // 6. Exécuter le mouvement
-                Mouvement mouvementEnregistre = effectuerMouvement(mouvement);
+            Mouvement mouvement = creerMouvementEpargne(compteService, compteClient, operation.getMontant(),
+                    client, journalDuJour);
+            mouvement.setTypeMouvement("EPARGNE");
+            mouvement.setCollecteur(collecteur);
+            mouvement.setClient(client);
+            mouvement.setDateOperation(dateOperation);
 
-                log.info("✅ Épargne enregistrée: ID={}, Journal={}, Client={}",
-                        mouvementEnregistre.getId(), journalDuJour.getId(),
-                        clientWithRelations.getNom());
+            mettreAJourSoldes(compteService, compteClient, operation.getMontant(), mouvement.getSens());
 
-                return mouvementEnregistre;
+            mouvements.add(mouvement);
+            resultatParMouvement.put(mouvement, resultat);
+            montantTotal += mouvement.getMontant();
+        }
 
-            } catch (Exception e) {
-                log.error("❌ Erreur épargne: {}", e.getMessage(), e);
-                status.setRollbackOnly();
-                throw new BusinessException("Erreur lors de l'enregistrement de l'épargne",
-                        "EPARGNE_ERROR", e.getMessage());
-            }
-        });
+        // 5. Insertion groupée; les soldes modifiés sont flushés une fois par compte au commit
+        List<Mouvement> mouvementsEnregistres = mouvementRepository.saveAll(mouvements);
+        collecteurDailyTotalsService.enregistrer(mouvementsEnregistres);
+        for (Mouvement mouvement : mouvementsEnregistres) {
+            EpargneBatchResultDTO.EpargneItemResultDTO resultat = resultatParMouvement.get(mouvement);
+            resultat.setSuccess(true);
+            resultat.setMouvementId(mouvement.getId());
+            resultat.setMouvement(mouvementMapper.toCommissionDto(mouvement));
+        }
+        epargneCounter.increment(mouvementsEnregistres.size());
+
+        int nombreSucces = mouvementsEnregistres.size();
+        log.info("✅ Lot d'épargnes enregistré: Collecteur={}, Journal={}, Succès={}/{}, Montant={}",
+                collecteurId, journalDuJour.getId(), nombreSucces, operations.size(), montantTotal);
+
+        return EpargneBatchResultDTO.builder()
+                .collecteurId(collecteurId)
+                .journalId(journalDuJour.getId())
+                .nombreOperations(operations.size())
+                .nombreSucces(nombreSucces)
+                .nombreEchecs(operations.size() - nombreSucces)
+                .montantTotal(montantTotal)
+                .resultats(resultats)
+                .build();
+    }
+
+    private void rejeterOperation(EpargneBatchResultDTO.EpargneItemResultDTO resultat, String errorCode, String message) {
+        log.warn("Opération {} du lot rejetée: {} - {}", resultat.getIndex(), errorCode, message);
+        resultat.setErrorCode(errorCode);
+        resultat.setMessage(message);
     }
 
     @Override
@@ -428,19 +823,21 @@ public class MouvementServiceImpl implements MouvementService {
             if (journal != null) {
                 journalDuJour = journal;
             } else {
-                journalDuJour = journalService.getOrCreateJournalDuJour(
-                        clientRecharge.getCollecteur().getId(),
-                        dateTimeService.getCurrentDate() // ✅ UTILISATION DU SERVICE
-                );
-                log.info("📅 Journal automatique retrait: ID={}, Date={}",
-                        journalDuJour.getId(), journalDuJour.getDateDebut());
+                journalDuJour = getJournalDuJour(clientRecharge.getCollecteur().getId());
+                log.info("📅 Journal automatique retrait: ID={}", journalDuJour.getId());
             }
 
             // 3. Récupération des comptes et validations
-            CompteClient compteClient = compteClientRepository.findByClient(clientRecharge)
+            Long compteClientId = compteIdCache.getCompteClientId(clientRecharge.getId())
                     .orElseThrow(() -> new CompteNotFoundException("Compte client non trouvé"));
+            Long compteServiceId = getCompteServiceId(clientRecharge.getCollecteur());
 
-            CompteCollecteur compteService = getCompteServiceCollecteur(clientRecharge.getCollecteur());
+            // Solde relu sous verrou : deux retraits simultanés ne valident pas le même solde
+            verrouillerComptes(compteClientId, compteServiceId);
+
+            CompteClient compteClient = compteClientRepository.findById(compteClientId)
+                    .orElseThrow(() -> new CompteNotFoundException("Compte client non trouvé"));
+            Compte compteService = validateAndGetCompte(compteServiceId);
 
             validateRetrait(compteClient, clientRecharge.getCollecteur(), montant);
 
@@ -475,6 +872,7 @@ public class MouvementServiceImpl implements MouvementService {
             // ✅ UTILISATION DU DateTimeService
             mouvement.setDateOperation(dateTimeService.getCurrentDateTime());
             Mouvement mouvementEnregistre = mouvementRepository.save(mouvement);
+            collecteurDailyTotalsService.enregistrer(mouvementEnregistre);
 
             log.info("✅ Retrait enregistré: ID={}, Journal={}, Client={}",
                     mouvementEnregistre.getId(), journalDuJour.getId(),
@@ -855,6 +1253,8 @@ public class MouvementServiceImpl implements MouvementService {
             try {
                 log.debug("Démarrage de la transaction pour le mouvement de versement");
 
+                verrouillerComptes(mouvement.getCompteSource().getId(), mouvement.getCompteDestination().getId());
+
                 // Validation des comptes (sans vérification de solde)
                 Compte compteSource = validateAndGetCompte(mouvement.getCompteSource().getId());
                 Compte compteDestination = validateAndGetCompte(mouvement.getCompteDestination().getId());
@@ -879,6 +1279,7 @@ public class MouvementServiceImpl implements MouvementService {
 
                 mouvement.setDateOperation(dateTimeService.getCurrentDateTime());
                 Mouvement mouvementSauvegarde = mouvementRepository.save(mouvement);
+                collecteurDailyTotalsService.enregistrer(mouvementSauvegarde);
 
                 log.info("Mouvement de versement réussi: ID={}, Montant={}, Source={} (Solde={}), Destination={} (Solde={})",
                         mouvementSauvegarde.getId(), mouvementSauvegarde.getMontant(),
@@ -15,6 +15,7 @@ import java.time.LocalDateTime;
 @Slf4j
 public class TransactionService {
 
+    private final PlatformTransactionManager transactionManager;
     private final TransactionTemplate transactionTemplate;
     private final DateTimeService dateTimeService;
 
@@ -22,10 +23,19 @@ public class TransactionService {
     public TransactionService(
             PlatformTransactionManager transactionManager,
             DateTimeService dateTimeService) {
+        this.transactionManager = transactionManager;
         this.transactionTemplate = new TransactionTemplate(transactionManager);
         this.dateTimeService = dateTimeService;
     }
 
+    /**
+     * Copie du template partagé : les variantes (REQUIRES_NEW, timeout, lecture seule) ne doivent
+     * pas modifier le template utilisé au même moment par d'autres threads
+     */
+    private TransactionTemplate copieTemplate() {
+        return new TransactionTemplate(transactionManager, transactionTemplate);
+    }
+
     /**
      * ✅ CORRECTION: Exécute une action dans une transaction avec logging amélioré
      */
@@ -65,12 +75,12 @@ public class TransactionService {
 
         log.info("🔄 [{}] Début nouvelle transaction à {}", transactionId, startTime);
 
-        int originalPropagation = transactionTemplate.getPropagationBehavior();
         try {
             // Configurer pour une nouvelle transaction
-            transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            TransactionTemplate template = copieTemplate();
+            template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
 
-            T result = transactionTemplate.execute(action);
+            T result = template.execute(action);
 
             LocalDateTime endTime = dateTimeService.getCurrentDateTime();
             long durationMs = java.time.Duration.between(startTime, endTime).toMillis();
@@ -86,9 +96,6 @@ public class TransactionService {
             log.error("❌ [{}] Erreur nouvelle transaction après {}ms: {}",
                     transactionId, durationMs, e.getMessage(), e);
             throw e;
-        } finally {
-            // Restaurer la propagation d'origine
-            transactionTemplate.setPropagationBehavior(originalPropagation);
         }
     }
 
@@ -102,11 +109,11 @@ public class TransactionService {
         log.info("🔄 [{}] Début transaction avec timeout {}s à {}",
                 transactionId, timeoutSeconds, startTime);
 
-        int originalTimeout = transactionTemplate.getTimeout();
         try {
-            transactionTemplate.setTimeout(timeoutSeconds);
+            TransactionTemplate template = copieTemplate();
+            template.setTimeout(timeoutSeconds);
 
-            T result = transactionTemplate.execute(action);
+            T result = template.execute(action);
 
             LocalDateTime endTime = dateTimeService.getCurrentDateTime();
             long durationMs = java.time.Duration.between(startTime, endTime).toMillis();
@@ -122,9 +129,6 @@ public class TransactionService {
             log.error("❌ [{}] Erreur transaction avec timeout après {}ms: {}",
                     transactionId, durationMs, e.getMessage(), e);
             throw e;
-        } finally {
-            // Restaurer le timeout d'origine
-            transactionTemplate.setTimeout(originalTimeout);
         }
     }
 
@@ -137,11 +141,11 @@ public class TransactionService {
 
         log.info("🔄 [{}] Début transaction lecture seule à {}", transactionId, startTime);
 
-        boolean originalReadOnly = transactionTemplate.isReadOnly();
         try {
-            transactionTemplate.setReadOnly(true);
+            TransactionTemplate template = copieTemplate();
+            template.setReadOnly(true);
 
-            T result = transactionTemplate.execute(action);
+            T result = template.execute(action);
 
             LocalDateTime endTime = dateTimeService.getCurrentDateTime();
             long durationMs = java.time.Duration.between(startTime, endTime).toMillis();
@@ -157,9 +161,6 @@ public class TransactionService {
             log.error("❌ [{}] Erreur transaction lecture seule après {}ms: {}",
                     transactionId, durationMs, e.getMessage(), e);
             throw e;
-        } finally {
-            // Restaurer le mode lecture/écriture d'origine
-            transactionTemplate.setReadOnly(originalReadOnly);
         }
     }
 
@@ -1,6 +1,8 @@
 package org.example.collectfocep.services.interfaces;
 
 import org.example.collectfocep.dto.BalanceVerificationDTO;
+import org.example.collectfocep.dto.EpargneBatchResultDTO;
+import org.example.collectfocep.dto.EpargneRequest;
 import org.example.collectfocep.dto.MouvementCommissionDTO;
 import org.example.collectfocep.entities.*;
 import org.springframework.data.domain.Page;
@@ -15,6 +17,11 @@ public interface MouvementService {
      */
     Mouvement enregistrerEpargne(Client client, double montant, Journal journal);
 
+    /**
+     * Enregistre un lot d'épargnes d'un collecteur dans une seule transaction
+     */
+    EpargneBatchResultDTO enregistrerEpargnesBatch(Long collecteurId, List<EpargneRequest> operations);
+
     /**
      * Enregistre une opération de retrait
      */
@@ -0,0 +1,175 @@
+package org.example.collectfocep.util;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Montant en francs CFA entiers (le FCFA n'a pas de sous-unité).
+ *
+ * Les chemins chauds (mise à jour des soldes, calcul des commissions, totaux de rapports)
+ * utilisent directement les méthodes statiques sur des {@code long} : aucune allocation et
+ * aucun arrondi cumulé. L'instance {@link Money} sert aux colonnes JPA ({@link MoneyConverter})
+ * et à la sérialisation JSON ({@link MoneySerializer}).
+ *
+ * Les taux sont exprimés en millionièmes du montant : 5 % = 50 000, TVA 19,25 % = 192 500.
+ * Les dépassements de capacité lèvent une {@link ArithmeticException}.
+ */
+@JsonSerialize(using = MoneySerializer.class)
+public final class Money implements Comparable<Money> {
+
+    public static final Money ZERO = new Money(0L);
+
+    /** Dénominateur des taux : 1 000 000 = 100 % */
+    public static final long ECHELLE_TAUX = 1_000_000L;
+
+    /** TVA FOCEP : 19,25 % */
+    public static final long TAUX_TVA = 192_500L;
+
+    private final long francs;
+
+    private Money(long francs) {
+        this.francs = francs;
+    }
+
+    @JsonCreator
+    public static Money of(long francs) {
+        return francs == 0L ? ZERO : new Money(francs);
+    }
+
+    public static Money ofDouble(double montant) {
+        return of(arrondir(montant));
+    }
+
+    public static Money ofBigDecimal(BigDecimal montant) {
+        return of(arrondir(montant));
+    }
+
+    // ===== OPÉRATIONS PRIMITIVES (sans allocation) =====
+
+    /**
+     * Arrondi au franc, demi vers l'extérieur (équivalent à RoundingMode.HALF_UP)
+     */
+    public static long arrondir(double montant) {
+        if (Double.isNaN(montant) || Double.isInfinite(montant)) {
+            throw new ArithmeticException("Montant invalide: " + montant);
+        }
+        double arrondi = montant >= 0 ? Math.floor(montant + 0.5) : -Math.floor(-montant + 0.5);
+        if (arrondi > Long.MAX_VALUE || arrondi < Long.MIN_VALUE) {
+            throw new ArithmeticException("Montant hors capacité: " + montant);
+        }
+        return (long) arrondi;
+    }
+
+    public static long arrondir(BigDecimal montant) {
+        if (montant == null) {
+            return 0L;
+        }
+        return montant.setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    public static long ajouter(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public static long soustraire(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    /**
+     * Applique un taux (en millionièmes) avec arrondi HALF_UP au franc
+     */
+    public static long appliquerTaux(long montant, long tauxMillioniemes) {
+        long produit = Math.multiplyExact(montant, tauxMillioniemes);
+        long quotient = produit / ECHELLE_TAUX;
+        long reste = produit % ECHELLE_TAUX;
+        if (Math.abs(reste) * 2 >= ECHELLE_TAUX) {
+            quotient += Long.signum(produit);
+        }
+        return quotient;
+    }
+
+    public static long tva(long montantHT) {
+        return appliquerTaux(montantHT, TAUX_TVA);
+    }
+
+    /**
+     * Convertit un pourcentage (ex. 4.5 pour 4,5 %) en millionièmes
+     */
+    public static long tauxDepuisPourcentage(double pourcentage) {
+        return Math.round(pourcentage * (ECHELLE_TAUX / 100));
+    }
+
+    public static long tauxDepuisPourcentage(BigDecimal pourcentage) {
+        return pourcentage.movePointRight(4).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    /**
+     * Convertit une fraction (ex. 0.1925) en millionièmes
+     */
+    public static long tauxDepuisFraction(BigDecimal fraction) {
+        return fraction.movePointRight(6).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    public static BigDecimal versBigDecimal(long francs) {
+        return BigDecimal.valueOf(francs);
+    }
+
+    // ===== INSTANCE =====
+
+    public long francs() {
+        return francs;
+    }
+
+    public double toDouble() {
+        return francs;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(francs);
+    }
+
+    public Money plus(Money autre) {
+        return of(ajouter(francs, autre.francs));
+    }
+
+    public Money plus(long autre) {
+        return of(ajouter(francs, autre));
+    }
+
+    public Money minus(Money autre) {
+        return of(soustraire(francs, autre.francs));
+    }
+
+    public boolean isZero() {
+        return francs == 0L;
+    }
+
+    public boolean isNegative() {
+        return francs < 0L;
+    }
+
+    @Override
+    public int compareTo(Money autre) {
+        return Long.compare(francs, autre.francs);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Money money)) return false;
+        return francs == money.francs;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(francs);
+    }
+
+    @Override
+    public String toString() {
+        return francs + " FCFA";
+    }
+}
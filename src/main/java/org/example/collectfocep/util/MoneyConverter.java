@@ -0,0 +1,21 @@
+package org.example.collectfocep.util;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Stocke un {@link Money} dans une colonne BIGINT (francs entiers)
+ */
+@Converter
+public class MoneyConverter implements AttributeConverter<Money, Long> {
+
+    @Override
+    public Long convertToDatabaseColumn(Money money) {
+        return money != null ? money.francs() : null;
+    }
+
+    @Override
+    public Money convertToEntityAttribute(Long francs) {
+        return francs != null ? Money.of(francs) : null;
+    }
+}
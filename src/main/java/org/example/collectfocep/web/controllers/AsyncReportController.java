@@ -2,7 +2,10 @@ package org.example.collectfocep.web.controllers;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.collectfocep.entities.ReportJob;
+import org.example.collectfocep.services.ReportJobQueue;
 import org.example.collectfocep.services.impl.AsyncReportService;
+import org.example.collectfocep.security.config.RoleConfig;
 import org.example.collectfocep.security.service.SecurityService;
 import org.example.collectfocep.util.ApiResponse;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -11,6 +14,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.YearMonth;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
@@ -22,6 +26,7 @@ public class AsyncReportController {
 
     private final AsyncReportService asyncReportService;
     private final SecurityService securityService;
+    private final ReportJobQueue reportJobQueue;
 
     /**
      * ✅ GÉNÉRATION ASYNCHRONE DE RAPPORT MENSUEL
@@ -48,20 +53,9 @@ public class AsyncReportController {
                         .body(ApiResponse.error("Service de génération de rapports temporairement indisponible"));
             }
 
-            // ✅ GÉNÉRER UN ID DE SUIVI UNIQUE
-            String trackingId = UUID.randomUUID().toString();
-
-            // ✅ DÉMARRER LA GÉNÉRATION ASYNCHRONE
-            CompletableFuture<String> futureReport = asyncReportService.generateMonthlyReport(collecteurId, month);
-
-            // ✅ GÉRER LE RÉSULTAT DE MANIÈRE ASYNCHRONE
-            futureReport.whenComplete((result, throwable) -> {
-                if (throwable != null) {
-                    log.error("❌ Erreur génération rapport {}: {}", trackingId, throwable.getMessage());
-                } else {
-                    log.info("✅ Rapport {} généré avec succès: {}", trackingId, result);
-                }
-            });
+            // ✅ MISE EN FILE PERSISTANTE, ID DE SUIVI = JOB
+            String trackingId = reportJobQueue.soumettreRapportCollecteur(ReportJob.TypeJob.MENSUEL,
+                    collecteurId, month, month, securityService.getCurrentUsername());
 
             // ✅ RETOURNER IMMÉDIATEMENT AVEC L'ID DE SUIVI
             return ResponseEntity.accepted()
@@ -93,22 +87,13 @@ public class AsyncReportController {
                         .body(ApiResponse.error("Année invalide: " + year + " (autorisée: 2020-" + (currentYear + 1) + ")"));
             }
 
-            String trackingId = UUID.randomUUID().toString();
-
-            // ✅ DÉMARRER LA GÉNÉRATION ASYNCHRONE
-            CompletableFuture<String> futureReport = asyncReportService.generateAnnualReport(collecteurId, year);
-
-            futureReport.whenComplete((result, throwable) -> {
-                if (throwable != null) {
-                    log.error("❌ Erreur génération rapport annuel {}: {}", trackingId, throwable.getMessage());
-                } else {
-                    log.info("✅ Rapport annuel {} généré: {}", trackingId, result);
-                }
-            });
+            // ✅ MISE EN FILE PERSISTANTE
+            String trackingId = reportJobQueue.soumettreRapportCollecteur(ReportJob.TypeJob.ANNUEL,
+                    collecteurId, YearMonth.of(year, 1), YearMonth.of(year, 12), securityService.getCurrentUsername());
 
             return ResponseEntity.accepted()
                     .body(ApiResponse.success(trackingId,
-                            String.format("Génération rapport annuel %d démarrée (12 mois)", year)));
+                            String.format("Génération rapport annuel %d en file (12 mois)", year)));
 
         } catch (Exception e) {
             log.error("❌ Erreur démarrage génération rapport annuel", e);
@@ -144,23 +129,13 @@ public class AsyncReportController {
                         .body(ApiResponse.error("Période trop longue (maximum 24 mois, demandé: " + (monthsBetween + 1) + " mois)"));
             }
 
-            String trackingId = UUID.randomUUID().toString();
-
-            // ✅ DÉMARRER LA GÉNÉRATION ASYNCHRONE
-            CompletableFuture<String> futureReport = asyncReportService.generateCustomReport(
-                    collecteurId, startMonth, endMonth);
-
-            futureReport.whenComplete((result, throwable) -> {
-                if (throwable != null) {
-                    log.error("❌ Erreur génération rapport personnalisé {}: {}", trackingId, throwable.getMessage());
-                } else {
-                    log.info("✅ Rapport personnalisé {} généré: {}", trackingId, result);
-                }
-            });
+            // ✅ MISE EN FILE PERSISTANTE
+            String trackingId = reportJobQueue.soumettreRapportCollecteur(ReportJob.TypeJob.PERIODE,
+                    collecteurId, startMonth, endMonth, securityService.getCurrentUsername());
 
             return ResponseEntity.accepted()
                     .body(ApiResponse.success(trackingId,
-                            String.format("Génération rapport personnalisé démarrée (%d mois)", monthsBetween + 1)));
+                            String.format("Génération rapport personnalisé en file (%d mois)", monthsBetween + 1)));
 
         } catch (Exception e) {
             log.error("❌ Erreur démarrage génération rapport personnalisé", e);
@@ -195,7 +170,7 @@ public class AsyncReportController {
     }
 
     /**
-     * ✅ VÉRIFICATION DU STATUT D'UN RAPPORT - CORRIGÉ
+     * ✅ VÉRIFICATION DU STATUT D'UN RAPPORT (file persistante report_jobs)
      */
     @GetMapping("/status/{trackingId}")
     @PreAuthorize("hasAnyRole('SUPER_ADMIN', 'ADMIN', 'COLLECTEUR')")
@@ -205,6 +180,12 @@ public class AsyncReportController {
         log.info("📊 Vérification statut rapport: {}", trackingId);
 
         try {
+            Optional<ReportJob> job = reportJobQueue.trouver(trackingId);
+            if (job.isPresent() && !peutSuivre(job.get())) {
+                return ResponseEntity.status(403)
+                        .body(ApiResponse.error("Accès non autorisé"));
+            }
+
             // ✅ UTILISER LA BONNE CLASSE AsyncReportStatus
             CompletableFuture<AsyncReportService.AsyncReportStatus> futureStatus =
                     asyncReportService.getReportStatus(trackingId);
@@ -228,6 +209,46 @@ public class AsyncReportController {
         }
     }
 
+    /**
+     * ✅ ANNULATION D'UN RAPPORT EN FILE OU EN COURS
+     */
+    @DeleteMapping("/{trackingId}")
+    @PreAuthorize("hasAnyRole('SUPER_ADMIN', 'ADMIN', 'COLLECTEUR')")
+    public ResponseEntity<ApiResponse<String>> cancelReport(@PathVariable String trackingId) {
+        log.info("🛑 Demande d'annulation rapport: {}", trackingId);
+
+        try {
+            Optional<ReportJob> job = reportJobQueue.trouver(trackingId);
+            if (job.isEmpty()) {
+                return ResponseEntity.status(404)
+                        .body(ApiResponse.error("Aucun rapport pour cet identifiant de suivi"));
+            }
+            if (!peutSuivre(job.get())) {
+                return ResponseEntity.status(403)
+                        .body(ApiResponse.error("Accès non autorisé"));
+            }
+
+            if (!reportJobQueue.annuler(trackingId)) {
+                return ResponseEntity.status(409)
+                        .body(ApiResponse.error("Rapport déjà terminé (" + job.get().getStatut() + ")"));
+            }
+
+            return ResponseEntity.ok(ApiResponse.success(trackingId, "Rapport annulé"));
+
+        } catch (Exception e) {
+            log.error("❌ Erreur annulation rapport {}", trackingId, e);
+            return ResponseEntity.internalServerError()
+                    .body(ApiResponse.error("Erreur annulation: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * SuperAdmin : tous les jobs ; sinon seulement ceux de son agence
+     */
+    private boolean peutSuivre(ReportJob job) {
+        return securityService.hasRole(RoleConfig.SUPER_ADMIN) || securityService.isUserFromAgence(job.getAgenceId());
+    }
+
     /**
      * ✅ NETTOYAGE DES ANCIENS RAPPORTS
      */
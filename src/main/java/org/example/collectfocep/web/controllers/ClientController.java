@@ -18,6 +18,7 @@ import org.example.collectfocep.repositories.*;
 import org.example.collectfocep.security.annotations.Audited;
 import org.example.collectfocep.security.service.SecurityService;
 import org.example.collectfocep.services.GeolocationService;
+import org.example.collectfocep.services.ReglesCommissionCache;
 import org.example.collectfocep.services.interfaces.ClientService;
 import org.example.collectfocep.services.interfaces.CompteService;
 import org.example.collectfocep.util.ApiResponse;
@@ -63,6 +64,7 @@ public class ClientController {
     private final CommissionTierRepository commissionTierRepository;
     private final AdminRepository adminRepository;
     private final CollecteurRepository collecteurRepository;
+    private final ReglesCommissionCache reglesCommissionCache;
     
     // 🔥 NOUVEAU SERVICE POUR ENRICHISSEMENT DES DONNÉES CLIENT
     private final org.example.collectfocep.services.ClientStatsService clientStatsService;
@@ -170,6 +172,7 @@ public class ClientController {
 
                 createCommissionTiers(savedParameter, commissionDTO.getPaliersCommission());
             }
+            invaliderReglesCommission(client);
 
         } catch (Exception e) {
             log.error("❌ Erreur création paramètre commission: {}", e.getMessage(), e);
@@ -421,6 +424,7 @@ public class ClientController {
                 commissionDTO.getPaliersCommission() != null && !commissionDTO.getPaliersCommission().isEmpty()) {
                 createCommissionTiers(savedParameter, commissionDTO.getPaliersCommission());
             }
+            invaliderReglesCommission(client);
 
             CommissionParameterDTO responseDTO = commissionParameterMapper.toDTO(savedParameter);
 
@@ -702,6 +706,7 @@ public class ClientController {
                 createCommissionTiers(savedParameter, commissionDTO.getPaliersCommission());
                 log.info("📊 Paliers de commission créés pour client {}", client.getId());
             }
+            invaliderReglesCommission(client);
 
         } catch (Exception e) {
             log.error("❌ Erreur mise à jour paramètres commission: {}", e.getMessage(), e);
@@ -939,47 +944,34 @@ public class ClientController {
     }
 
     // IMPLÉMENTATION DE LA HIÉRARCHIE DE COMMISSION
+    // Résolue sur les règles en cache de l'agence : aucune requête par client d'une liste
     private CommissionParameterDTO getEffectiveCommissionParameter(Client client) {
-        // 🔥 OPTIMISATION: D'abord vérifier les paramètres déjà chargés par JPA
-        if (client.hasCommissionParameters()) {
-            List<CommissionParameter> activeParams = client.getActiveCommissionParameters();
-            if (!activeParams.isEmpty()) {
-                log.debug("✅ Commission trouvée dans les relations JPA pour client: {}", client.getId());
-                return commissionParameterMapper.toDTO(activeParams.get(0));
-            }
-        }
-        
-        // 1. Si pas trouvé, chercher au niveau client via repository
-        Optional<CommissionParameter> clientCommission =
-                commissionParameterRepository.findActiveCommissionParameter(client.getId());
-
-        if (clientCommission.isPresent()) {
-            log.debug("Commission trouvée au niveau client via repository: {}", client.getId());
-            return commissionParameterMapper.toDTO(clientCommission.get());
-        }
+        Long agenceId = client.getAgence() != null ? client.getAgence().getId() : null;
+        Long collecteurId = client.getCollecteur() != null ? client.getCollecteur().getId() : null;
 
-        // 2. Chercher au niveau collecteur
-        Optional<CommissionParameter> collecteurCommission =
-                commissionParameterRepository.findActiveCommissionParameterByCollecteur(
-                        client.getCollecteur().getId());
-
-        if (collecteurCommission.isPresent()) {
-            log.debug("Commission trouvée au niveau collecteur: {}", client.getCollecteur().getId());
-            return commissionParameterMapper.toDTO(collecteurCommission.get());
+        Optional<CommissionParameter> parametre = reglesCommissionCache.resoudre(agenceId, collecteurId, client.getId());
+        if (parametre.isEmpty()) {
+            log.warn("Aucune commission trouvée pour le client: {}", client.getId());
+            return null;
         }
 
-        // 3. Chercher au niveau agence
-        Optional<CommissionParameter> agenceCommission =
-                commissionParameterRepository.findActiveCommissionParameterByAgence(
-                        client.getAgence().getId());
-
-        if (agenceCommission.isPresent()) {
-            log.debug("Commission trouvée au niveau agence: {}", client.getAgence().getId());
-            return commissionParameterMapper.toDTO(agenceCommission.get());
+        CommissionParameterDTO dto = commissionParameterMapper.toDTOSansNoms(parametre.get());
+        if (client.getId().equals(dto.getClientId())) {
+            dto.setClientNom(client.getNom());
         }
+        return dto;
+    }
 
-        log.warn("Aucune commission trouvée pour le client: {}", client.getId());
-        return null;
+    /**
+     * Les paramètres d'un client sont écrits directement ici : les règles en cache de son agence
+     * sont invalidées après chaque écriture
+     */
+    private void invaliderReglesCommission(Client client) {
+        if (client.getAgence() != null) {
+            reglesCommissionCache.invaliderAgence(client.getAgence().getId());
+        } else {
+            reglesCommissionCache.invaliderTout();
+        }
     }
 
     private Double calculateClientBalance(List<Mouvement> transactions) {
@@ -4,6 +4,7 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.collectfocep.dto.CommissionParameterDTO;
+import org.example.collectfocep.dto.SimulationGrillesRequest;
 import org.example.collectfocep.entities.*;
 import org.example.collectfocep.exceptions.ResourceNotFoundException;
 import org.example.collectfocep.mappers.CommissionParameterMapper;
@@ -12,6 +13,8 @@ import org.example.collectfocep.repositories.ClientRepository;
 import org.example.collectfocep.repositories.CollecteurRepository;
 import org.example.collectfocep.repositories.CommissionParameterRepository;
 import org.example.collectfocep.security.annotations.AgenceAccess;
+import org.example.collectfocep.services.ReglesCommissionCache;
+import org.example.collectfocep.services.SimulateurCommissionService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
@@ -33,6 +36,9 @@ public class CommissionParameterController {
     private final AgenceRepository agenceRepository;
     private final ClientRepository clientRepository;
     private final CommissionParameterMapper parameterMapper;
+    private final SimulateurCommissionService simulateurCommissionService;
+    // Écritures directes sur le repository : règles compilées et hiérarchie résolue à invalider
+    private final ReglesCommissionCache reglesCommissionCache;
 
     /**
      * Créer un nouveau paramètre de commission
@@ -79,6 +85,7 @@ public class CommissionParameterController {
 
             // Sauvegarde
             CommissionParameter saved = commissionParameterRepository.save(parameter);
+            reglesCommissionCache.invaliderTout();
             CommissionParameterDTO result = parameterMapper.toDTO(saved);
 
             log.info("Paramètre créé avec succès - ID: {}", saved.getId());
@@ -156,6 +163,7 @@ public class CommissionParameterController {
 
             // Sauvegarde
             CommissionParameter saved = commissionParameterRepository.save(parameter);
+            reglesCommissionCache.invaliderTout();
             CommissionParameterDTO result = parameterMapper.toDTO(saved);
 
             log.info("Paramètre mis à jour avec succès - ID: {}", id);
@@ -186,6 +194,7 @@ public class CommissionParameterController {
             // TODO: Ajouter vérification si des commissions utilisent ce paramètre
 
             commissionParameterRepository.delete(parameter);
+            reglesCommissionCache.invaliderTout();
 
             log.info("Paramètre supprimé avec succès - ID: {}", id);
             return ResponseEntity.noContent().build();
@@ -216,6 +225,7 @@ public class CommissionParameterController {
 
             parameter.setActive(active);
             CommissionParameter saved = commissionParameterRepository.save(parameter);
+            reglesCommissionCache.invaliderTout();
 
             return ResponseEntity.ok(parameterMapper.toDTO(saved));
 
@@ -269,6 +279,26 @@ public class CommissionParameterController {
         return ResponseEntity.ok().build(); // Placeholder
     }
 
+    /**
+     * Simule des grilles candidates sur les volumes réels de l'agence (aucune écriture)
+     */
+    @PostMapping("/agence/{agenceId}/simulation")
+    @AgenceAccess
+    public ResponseEntity<?> simulerGrillesAgence(@PathVariable Long agenceId,
+                                                  @Valid @RequestBody SimulationGrillesRequest request) {
+        log.info("Simulation grilles commission - Agence: {}, {} grille(s)", agenceId, request.getGrilles().size());
+
+        try {
+            return ResponseEntity.ok(simulateurCommissionService.simuler(agenceId, request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Erreur simulation grilles agence {}: {}", agenceId, e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Erreur lors de la simulation"));
+        }
+    }
+
     /**
      * Ajouter un tier à un paramètre (existant - amélioré)
      */
@@ -312,6 +342,7 @@ public class CommissionParameterController {
             tier.setCommissionParameter(parameter);
             parameter.getTiers().add(tier);
             CommissionParameter saved = commissionParameterRepository.save(parameter);
+            reglesCommissionCache.invaliderTout();
 
             log.info("Tier ajouté avec succès au paramètre {}", id);
             return ResponseEntity.ok(parameterMapper.toDTO(saved));
@@ -344,6 +375,7 @@ public class CommissionParameterController {
             }
 
             CommissionParameter saved = commissionParameterRepository.save(parameter);
+            reglesCommissionCache.invaliderTout();
             return ResponseEntity.ok(parameterMapper.toDTO(saved));
 
         } catch (ResourceNotFoundException e) {
@@ -3,16 +3,24 @@ package org.example.collectfocep.web.controllers;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.collectfocep.dto.CommissionBatchJobDTO;
+import org.example.collectfocep.dto.RemunerationAgenceDTO;
 import org.example.collectfocep.entities.HistoriqueCalculCommission;
 import org.example.collectfocep.repositories.HistoriqueCalculCommissionRepository;
+import org.example.collectfocep.security.service.SecurityService;
+import org.example.collectfocep.services.CommissionAccrualService;
+import org.example.collectfocep.services.CommissionBatchJob;
 import org.example.collectfocep.services.CommissionOrchestrator;
 import org.example.collectfocep.services.ExcelReportGenerator;
 import org.example.collectfocep.services.RemunerationProcessor;
 import org.example.collectfocep.util.ApiResponse;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
@@ -35,6 +43,9 @@ public class CommissionRemunerationController {
     private final RemunerationProcessor remunerationProcessor;
     private final ExcelReportGenerator excelReportGenerator;
     private final HistoriqueCalculCommissionRepository historiqueCalculCommissionRepository;
+    private final CommissionBatchJob commissionBatchJob;
+    private final CommissionAccrualService commissionAccrualService;
+    private final SecurityService securityService;
 
     /**
      * Lance le calcul de commission complet pour un collecteur
@@ -210,6 +221,101 @@ public class CommissionRemunerationController {
         }
     }
 
+    /**
+     * Processus complet commission + rémunération pour tous les collecteurs d'une ou plusieurs agences.
+     * Traitement en arrière-plan (un collecteur par transaction) : suivre via GET /jobs/{jobId}.
+     * Relancer avec les mêmes paramètres reprend là où un traitement interrompu s'est arrêté.
+     */
+    @PostMapping("/agences/processus-complet")
+    @PreAuthorize("hasAnyRole('ADMIN', 'SUPER_ADMIN')")
+    public ResponseEntity<?> processusCompletAgences(
+            @RequestParam List<Long> agenceIds,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateDebut,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateFin) {
+
+        log.info("Processus complet agences - Agences: {}, Période: {} à {}", agenceIds, dateDebut, dateFin);
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        for (Long agenceId : agenceIds) {
+            if (!securityService.canAccessAgence(authentication, agenceId)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                        .body(ErrorResponse.of("ACCES_REFUSE", "Accès refusé à l'agence " + agenceId));
+            }
+        }
+
+        try {
+            CommissionBatchJobDTO job = commissionBatchJob.demarrer(
+                    agenceIds, dateDebut, dateFin, authentication.getName());
+            return ResponseEntity.accepted().body(job);
+        } catch (Exception e) {
+            log.error("Erreur lancement processus complet agences: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError()
+                    .body(ErrorResponse.of("INTERNAL_ERROR", "Erreur système lors du lancement du traitement"));
+        }
+    }
+
+    /**
+     * Progression et résultat consolidé d'un traitement par agences
+     */
+    @GetMapping("/jobs/{jobId}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'SUPER_ADMIN')")
+    public ResponseEntity<?> getEtatJob(@PathVariable String jobId) {
+        return commissionBatchJob.getEtat(jobId)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(ErrorResponse.of("JOB_NOT_FOUND", "Traitement introuvable ou expiré: " + jobId)));
+    }
+
+    /**
+     * Rémunération groupée de tous les collecteurs d'une agence dont la commission
+     * de la période est calculée et pas encore rémunérée
+     */
+    @PostMapping("/agence/{agenceId}/remunerer")
+    @PreAuthorize("hasAnyRole('ADMIN', 'SUPER_ADMIN')")
+    public ResponseEntity<?> remunererAgence(
+            @PathVariable Long agenceId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateDebut,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateFin) {
+
+        log.info("Rémunération agence - Agence: {}, Période: {} à {}", agenceId, dateDebut, dateFin);
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (!securityService.canAccessAgence(authentication, agenceId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(ErrorResponse.of("ACCES_REFUSE", "Accès refusé à l'agence " + agenceId));
+        }
+
+        try {
+            RemunerationAgenceDTO resultat = remunerationProcessor.processRemunerationAgence(
+                    agenceId, dateDebut, dateFin, authentication.getName());
+            return ResponseEntity.ok(resultat);
+        } catch (Exception e) {
+            log.error("Erreur rémunération agence {}: {}", agenceId, e.getMessage(), e);
+            return ResponseEntity.internalServerError()
+                    .body(ErrorResponse.of("INTERNAL_ERROR", "Erreur système lors de la rémunération de l'agence"));
+        }
+    }
+
+    /**
+     * Aperçu des commissions du mois en cours (accruals journaliers, sans recalcul)
+     */
+    @GetMapping("/collecteur/{collecteurId}/apercu-commissions")
+    public ResponseEntity<?> getApercuCommissions(@PathVariable Long collecteurId) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (!securityService.canAccessCollecteur(authentication, collecteurId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(ErrorResponse.of("ACCES_REFUSE", "Accès refusé au collecteur " + collecteurId));
+        }
+
+        try {
+            return ResponseEntity.ok(commissionAccrualService.apercuMoisEnCours(collecteurId));
+        } catch (Exception e) {
+            log.error("Erreur aperçu commissions collecteur {}: {}", collecteurId, e.getMessage(), e);
+            return ResponseEntity.internalServerError()
+                    .body(ErrorResponse.of("INTERNAL_ERROR", "Erreur système lors de l'aperçu"));
+        }
+    }
+
     /**
      * Génère le rapport Excel de commission
      */
@@ -3,12 +3,15 @@ package org.example.collectfocep.web.controllers;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.collectfocep.security.service.SecurityService;
+import org.example.collectfocep.entities.Report;
+import org.example.collectfocep.services.ReportArtifactStore;
 import org.example.collectfocep.services.ReportsService;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/reports")
@@ -17,6 +20,7 @@ import org.springframework.web.bind.annotation.*;
 public class EnhancedReportController {
 
     private final ReportsService reportService;
+    private final ReportArtifactStore reportArtifactStore;
     private final SecurityService securityService;
 
     /**
@@ -25,7 +29,7 @@ public class EnhancedReportController {
      */
     @GetMapping("/collecteur/{collecteurId}/monthly")
     @PreAuthorize("@securityService.canAccessCollecteur(authentication, #collecteurId)")
-    public ResponseEntity<byte[]> getMonthlyCollecteurReport(
+    public ResponseEntity<StreamingResponseBody> getMonthlyCollecteurReport(
             @PathVariable Long collecteurId,
             @RequestParam int month,
             @RequestParam int year) {
@@ -34,12 +38,15 @@ public class EnhancedReportController {
                 collecteurId, month, year);
 
         try {
-            byte[] report = reportService.generateCollecteurMonthlyReport(collecteurId, month, year);
+            // Fichier du stockage, régénéré seulement si les mouvements du mois ont changé
+            Report report = reportService.rapportMensuelDetaille(collecteurId, month, year);
+            StreamingResponseBody body = out -> reportArtifactStore.transferer(report, out);
             return ResponseEntity.ok()
                     .header(HttpHeaders.CONTENT_DISPOSITION,
                             "attachment; filename=rapport_collecteur_" + collecteurId + "_" + month + "_" + year + ".xlsx")
                     .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .body(report);
+                    .contentLength(report.getFileSize())
+                    .body(body);
         } catch (Exception e) {
             log.error("Erreur lors de la génération du rapport mensuel", e);
             throw new RuntimeException("Erreur lors de la génération du rapport", e);
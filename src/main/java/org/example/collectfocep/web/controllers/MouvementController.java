@@ -7,13 +7,21 @@ import org.example.collectfocep.dto.*;
 import org.example.collectfocep.entities.Client;
 import org.example.collectfocep.entities.Journal;
 import org.example.collectfocep.entities.Mouvement;
+import org.example.collectfocep.exceptions.BusinessException;
+import org.example.collectfocep.exceptions.CompteNotFoundException;
+import org.example.collectfocep.exceptions.DuplicateResourceException;
+import org.example.collectfocep.exceptions.IdempotencyKeyMismatchException;
+import org.example.collectfocep.exceptions.InvalidOperationException;
 import org.example.collectfocep.exceptions.ResourceNotFoundException;
 import org.example.collectfocep.exceptions.UnauthorizedAgencyAccessException;
 import org.example.collectfocep.exceptions.UnauthorizedException;
+import org.example.collectfocep.exceptions.ValidationException;
 import org.example.collectfocep.mappers.MouvementMapperV2;
 import org.example.collectfocep.repositories.ClientRepository;
 import org.example.collectfocep.repositories.JournalRepository;
 import org.example.collectfocep.repositories.MouvementRepository;
+import org.example.collectfocep.services.EpargnePipeline;
+import org.example.collectfocep.services.IdempotencyService;
 import org.example.collectfocep.services.SoldeCollecteurValidationService;
 import org.example.collectfocep.services.TransactionValidationService;
 import org.example.collectfocep.services.impl.AuditService;
@@ -61,10 +69,14 @@ public class MouvementController {
     private final AuditService auditService;
     private final SoldeCollecteurValidationService soldeValidationService;
     private final TransactionValidationService transactionValidationService;
+    private final IdempotencyService idempotencyService;
 
     @Autowired
     private MouvementServiceImpl mouvementServiceImpl;
 
+    @Autowired
+    private EpargnePipeline epargnePipeline;
+
     @Value("${app.mouvement.use-projection:true}")
     private boolean useProjection;
 
@@ -82,7 +94,8 @@ public class MouvementController {
             JournalServiceImpl journalServiceImpl,
             AuditService auditService,
             SoldeCollecteurValidationService soldeValidationService,
-            TransactionValidationService transactionValidationService) {
+            TransactionValidationService transactionValidationService,
+            IdempotencyService idempotencyService) {
 
         this.dateTimeService = dateTimeService;
         this.transactionService = transactionService;
@@ -97,6 +110,7 @@ public class MouvementController {
         this.auditService = auditService;
         this.soldeValidationService = soldeValidationService;
         this.transactionValidationService = transactionValidationService;
+        this.idempotencyService = idempotencyService;
     }
 
     @GetMapping("/{transactionId}")
@@ -219,52 +233,126 @@ public class MouvementController {
     @PostMapping("/epargne")
     @PreAuthorize("@securityService.canManageClient(authentication, #request.clientId)")
     @LogActivity(action = "TRANSACTION_EPARGNE", entityType = "MOUVEMENT")
-    public ResponseEntity<ApiResponse<MouvementCommissionDTO>> effectuerEpargne(@Valid @RequestBody EpargneRequest request) {
+    public ResponseEntity<ApiResponse<MouvementCommissionDTO>> effectuerEpargne(
+            @Valid @RequestBody EpargneRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
         log.info("💰 Traitement d'une opération d'épargne pour le client: {} - Montant: {}",
                 request.getClientId(), request.getMontant());
 
-        return transactionService.executeInTransaction(status -> {
-            try {
-                if (!securityService.canManageClient(SecurityContextHolder.getContext().getAuthentication(),
-                        request.getClientId())) {
-                    throw new UnauthorizedException("Non autorisé à gérer ce client");
-                }
+        IdempotencyService.Cle cle;
+        Optional<ResponseEntity<ApiResponse<MouvementCommissionDTO>>> rejeu;
+        try {
+            cle = idempotencyService.cle(idempotencyKey, "EPARGNE", request.getClientId(),
+                    request.getCollecteurId(), request.getMontant());
+            rejeu = rejouerOperation(cle);
+        } catch (IdempotencyKeyMismatchException e) {
+            return cleReutilisee(e);
+        }
+        if (rejeu.isPresent()) {
+            return rejeu.get();
+        }
+        if (cle != null && !idempotencyService.reserver(cle)) {
+            return attendreOperationEnCours(cle);
+        }
 
-                Client client = clientRepository.findById(request.getClientId())
-                        .orElseThrow(() -> new ResourceNotFoundException("Client non trouvé"));
+        try {
+            // Une seule transaction : autorisation, résolution, validation, écriture, audit (voir EpargnePipeline)
+            MouvementCommissionDTO responseDto = epargnePipeline.executer(request, cle);
 
-                if (!securityService.isClientInCollecteurAgence(request.getClientId(), request.getCollecteurId())) {
-                    throw new UnauthorizedAgencyAccessException("Client n'appartient pas à votre agence");
-                }
+            log.info("✅ Épargne enregistrée avec succès: Client={}, Montant={}",
+                    request.getClientId(), request.getMontant());
 
-                Mouvement mouvement = mouvementServiceImpl.enregistrerEpargne(client, request.getMontant(), null);
-                MouvementCommissionDTO responseDto = mouvementMapper.toCommissionDto(mouvement);
+            return ResponseEntity.ok(
+                    ApiResponse.success(responseDto, "Opération d'épargne enregistrée avec succès")
+            );
+        } catch (DuplicateResourceException e) {
+            // Clé enregistrée entre-temps par une autre instance : sa réponse est rejouée
+            return rejouerApresConflit(cle);
+        } catch (Exception e) {
+            log.error("❌ Erreur lors de l'enregistrement de l'épargne", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.<MouvementCommissionDTO>error("EPARGNE_ERROR",
+                            "Erreur lors de l'enregistrement de l'épargne: " + e.getMessage()));
+        } finally {
+            if (cle != null) {
+                idempotencyService.liberer(cle);
+            }
+        }
+    }
 
-                log.info("✅ Épargne enregistrée avec succès: ID={}, Client={}, Montant={}",
-                        mouvement.getId(), client.getNom(), request.getMontant());
 
+    /**
+     * Remontée groupée des épargnes collectées hors ligne (fin de tournée)
+     */
+    @PostMapping("/epargne/batch")
+    @PreAuthorize("@securityService.canManageCollecteur(authentication, #request.collecteurId)")
+    @LogActivity(action = "TRANSACTION_EPARGNE_BATCH", entityType = "MOUVEMENT")
+    public ResponseEntity<ApiResponse<EpargneBatchResultDTO>> effectuerEpargnesBatch(
+            @Valid @RequestBody EpargneBatchRequest request) {
+        log.info("💰 Traitement d'un lot d'épargnes pour le collecteur: {} - {} opérations",
+                request.getCollecteurId(), request.getOperations().size());
 
-                return ResponseEntity.ok(
-                        ApiResponse.success(responseDto, "Opération d'épargne enregistrée avec succès")
-                );
-            } catch (Exception e) {
-                log.error("❌ Erreur lors de l'enregistrement de l'épargne", e);
-                status.setRollbackOnly();
-                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                        .body(ApiResponse.<MouvementCommissionDTO>error("EPARGNE_ERROR",
-                                "Erreur lors de l'enregistrement de l'épargne: " + e.getMessage()));
-            }
-        });
-    }
+        try {
+            EpargneBatchResultDTO result = mouvementServiceImpl.enregistrerEpargnesBatch(
+                    request.getCollecteurId(), request.getOperations());
 
+            ApiResponse<EpargneBatchResultDTO> response = ApiResponse.success(result,
+                    String.format("Lot traité: %d/%d opérations enregistrées",
+                            result.getNombreSucces(), result.getNombreOperations()));
+            response.addMeta("nombreEchecs", result.getNombreEchecs());
+
+            return ResponseEntity.ok(response);
+        } catch (ResourceNotFoundException | CompteNotFoundException e) {
+            // Le lot entier est annulé : aucune opération n'a été enregistrée
+            log.warn("⚠️ Lot d'épargnes du collecteur {} rejeté: {}", request.getCollecteurId(), e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(ApiResponse.<EpargneBatchResultDTO>error("RESOURCE_NOT_FOUND", e.getMessage()));
+        } catch (UnauthorizedException | UnauthorizedAgencyAccessException e) {
+            log.warn("⚠️ Lot d'épargnes du collecteur {} refusé: {}", request.getCollecteurId(), e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(ApiResponse.<EpargneBatchResultDTO>error("UNAUTHORIZED", e.getMessage()));
+        } catch (BusinessException e) {
+            log.warn("⚠️ Lot d'épargnes du collecteur {} rejeté: {} - {}",
+                    request.getCollecteurId(), e.getCode(), e.getMessage());
+            HttpStatus statut = "COMPTE_VERROUILLE".equals(e.getCode()) ? HttpStatus.CONFLICT : HttpStatus.BAD_REQUEST;
+            return ResponseEntity.status(statut)
+                    .body(ApiResponse.<EpargneBatchResultDTO>error(e.getCode(), e.getMessage()));
+        } catch (ValidationException | InvalidOperationException | IllegalArgumentException e) {
+            log.warn("⚠️ Lot d'épargnes du collecteur {} invalide: {}", request.getCollecteurId(), e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.<EpargneBatchResultDTO>error("VALIDATION_ERROR", e.getMessage()));
+        } catch (Exception e) {
+            log.error("❌ Erreur lors de l'enregistrement du lot d'épargnes du collecteur {}",
+                    request.getCollecteurId(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.<EpargneBatchResultDTO>error("EPARGNE_BATCH_ERROR",
+                            "Erreur interne lors de l'enregistrement du lot d'épargnes"));
+        }
+    }
 
     @PostMapping("/retrait")
     @PreAuthorize("@securityService.canManageClient(authentication, #request.clientId)")
     @LogActivity(action = "TRANSACTION_RETRAIT", entityType = "MOUVEMENT")
-    public ResponseEntity<ApiResponse<MouvementCommissionDTO>> effectuerRetrait(@Valid @RequestBody RetraitRequest request) {
+    public ResponseEntity<ApiResponse<MouvementCommissionDTO>> effectuerRetrait(
+            @Valid @RequestBody RetraitRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
         log.info("💸 Traitement d'une opération de retrait pour le client: {} - Montant: {}",
                 request.getClientId(), request.getMontant());
 
+        // Un retrait rejoué renvoie la réponse d'origine, avant toute validation de solde
+        IdempotencyService.Cle cle;
+        Optional<ResponseEntity<ApiResponse<MouvementCommissionDTO>>> rejeu;
+        try {
+            cle = idempotencyService.cle(idempotencyKey, "RETRAIT", request.getClientId(),
+                    request.getCollecteurId(), request.getMontant());
+            rejeu = rejouerOperation(cle);
+        } catch (IdempotencyKeyMismatchException e) {
+            return cleReutilisee(e);
+        }
+        if (rejeu.isPresent()) {
+            return rejeu.get();
+        }
+
         // Validation du solde collecteur
         ValidationResult validation = soldeValidationService.validateRetraitPossible(
                 request.getCollecteurId(),
@@ -285,37 +373,100 @@ public class MouvementController {
                             validation.getMessage()));
         }
 
-        return transactionService.executeInTransaction(status -> {
-            try {
-                if (!securityService.canManageClient(SecurityContextHolder.getContext().getAuthentication(),
-                        request.getClientId())) {
-                    throw new UnauthorizedException("Non autorisé à gérer ce client");
+        if (cle != null && !idempotencyService.reserver(cle)) {
+            return attendreOperationEnCours(cle);
+        }
+
+        try {
+            ResponseEntity<ApiResponse<MouvementCommissionDTO>> reponse = transactionService.executeInTransaction(status -> {
+                try {
+                    if (!securityService.canManageClient(SecurityContextHolder.getContext().getAuthentication(),
+                            request.getClientId())) {
+                        throw new UnauthorizedException("Non autorisé à gérer ce client");
+                    }
+
+                    Client client = clientRepository.findById(request.getClientId())
+                            .orElseThrow(() -> new ResourceNotFoundException("Client non trouvé"));
+
+                    if (!securityService.isClientInCollecteurAgence(request.getClientId(), request.getCollecteurId())) {
+                        throw new UnauthorizedAgencyAccessException("Client n'appartient pas à votre agence");
+                    }
+
+                    Mouvement mouvement = mouvementServiceImpl.enregistrerRetrait(client, request.getMontant(), null);
+                    MouvementCommissionDTO responseDto = mouvementMapper.toCommissionDto(mouvement);
+                    if (cle != null) {
+                        idempotencyService.enregistrer(cle, "RETRAIT", mouvement.getId(), responseDto);
+                    }
+
+                    log.info("✅ Retrait effectué avec succès: ID={}, Client={}, Montant={}",
+                            mouvement.getId(), client.getNom(), request.getMontant());
+
+                    return ResponseEntity.ok(
+                            ApiResponse.success(responseDto, "Retrait effectué avec succès")
+                    );
+                } catch (DuplicateResourceException e) {
+                    status.setRollbackOnly();
+                    return null;
+                } catch (Exception e) {
+                    log.error("❌ Erreur lors de l'enregistrement du retrait", e);
+                    status.setRollbackOnly();
+                    return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                            .body(ApiResponse.<MouvementCommissionDTO>error("RETRAIT_ERROR",
+                                    "Erreur lors de l'enregistrement du retrait: " + e.getMessage()));
                 }
+            });
+            // null : clé enregistrée entre-temps par une autre instance, rejouée après l'annulation
+            return reponse != null ? reponse : rejouerApresConflit(cle);
+        } finally {
+            if (cle != null) {
+                idempotencyService.liberer(cle);
+            }
+        }
+    }
 
-                Client client = clientRepository.findById(request.getClientId())
-                        .orElseThrow(() -> new ResourceNotFoundException("Client non trouvé"));
+    /**
+     * Réponse d'origine si la clé d'idempotence a déjà été traitée
+     */
+    private Optional<ResponseEntity<ApiResponse<MouvementCommissionDTO>>> rejouerOperation(IdempotencyService.Cle cle) {
+        return idempotencyService.findReponse(cle).map(dto -> {
+            log.info("🔁 Opération rejouée pour la clé d'idempotence {}", cle);
+            ApiResponse<MouvementCommissionDTO> response =
+                    ApiResponse.success(dto, "Opération déjà enregistrée (rejeu)");
+            response.addMeta("idempotentReplay", true);
+            return ResponseEntity.ok(response);
+        });
+    }
 
-                if (!securityService.isClientInCollecteurAgence(request.getClientId(), request.getCollecteurId())) {
-                    throw new UnauthorizedAgencyAccessException("Client n'appartient pas à votre agence");
-                }
+    /**
+     * Requête concurrente avec la même clé : attend la fin de la première et rejoue sa réponse.
+     * 409 seulement si la première n'a rien enregistré (échec) ou dépasse le délai d'attente.
+     */
+    private ResponseEntity<ApiResponse<MouvementCommissionDTO>> attendreOperationEnCours(IdempotencyService.Cle cle) {
+        log.info("⏳ Requête concurrente pour la clé d'idempotence {}, attente de la première", cle);
+        if (idempotencyService.attendre(cle)) {
+            return rejouerApresConflit(cle);
+        }
+        return operationEnCours(cle);
+    }
 
-                Mouvement mouvement = mouvementServiceImpl.enregistrerRetrait(client, request.getMontant(), null);
-                MouvementCommissionDTO responseDto = mouvementMapper.toCommissionDto(mouvement);
+    private ResponseEntity<ApiResponse<MouvementCommissionDTO>> rejouerApresConflit(IdempotencyService.Cle cle) {
+        try {
+            return rejouerOperation(cle).orElseGet(() -> operationEnCours(cle));
+        } catch (IdempotencyKeyMismatchException e) {
+            return cleReutilisee(e);
+        }
+    }
 
-                log.info("✅ Retrait effectué avec succès: ID={}, Client={}, Montant={}",
-                        mouvement.getId(), client.getNom(), request.getMontant());
+    private ResponseEntity<ApiResponse<MouvementCommissionDTO>> operationEnCours(IdempotencyService.Cle cle) {
+        log.warn("⚠️ Requête concurrente pour la clé d'idempotence {}", cle);
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(ApiResponse.<MouvementCommissionDTO>error("IDEMPOTENCY_CONFLICT",
+                        "Une opération avec la même clé est déjà en cours de traitement"));
+    }
 
-                return ResponseEntity.ok(
-                        ApiResponse.success(responseDto, "Retrait effectué avec succès")
-                );
-            } catch (Exception e) {
-                log.error("❌ Erreur lors de l'enregistrement du retrait", e);
-                status.setRollbackOnly();
-                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                        .body(ApiResponse.<MouvementCommissionDTO>error("RETRAIT_ERROR",
-                                "Erreur lors de l'enregistrement du retrait: " + e.getMessage()));
-            }
-        });
+    private ResponseEntity<ApiResponse<MouvementCommissionDTO>> cleReutilisee(IdempotencyKeyMismatchException e) {
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                .body(ApiResponse.<MouvementCommissionDTO>error("IDEMPOTENCY_KEY_MISMATCH", e.getMessage()));
     }
 
     @GetMapping("/journal/{journalId}")
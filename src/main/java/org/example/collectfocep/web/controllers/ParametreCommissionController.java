@@ -8,6 +8,7 @@ import org.example.collectfocep.dto.CreateParametreCommissionRequest;
 import org.example.collectfocep.dto.ParametreCommissionDTO;
 import org.example.collectfocep.entities.ParametreCommission;
 import org.example.collectfocep.services.ParametreCommissionService;
+import org.example.collectfocep.services.ReglesCommissionCache;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -24,6 +25,8 @@ import java.util.List;
 public class ParametreCommissionController {
 
     private final ParametreCommissionService parametreCommissionService;
+    // Un changement de paramétrage d'agence recharge aussi ses règles de commission en cache
+    private final ReglesCommissionCache reglesCommissionCache;
 
     @GetMapping
     @PreAuthorize("hasRole('SUPER_ADMIN')")
@@ -86,6 +89,7 @@ public class ParametreCommissionController {
         try {
             String currentUser = authentication.getName();
             ParametreCommissionDTO parametre = parametreCommissionService.createParametre(request, currentUser);
+            reglesCommissionCache.invaliderAgence(request.getAgenceId());
             
             return ResponseEntity.status(HttpStatus.CREATED)
                     .body(ApiResponse.success(parametre, "Paramètre de commission créé avec succès"));
@@ -111,6 +115,7 @@ public class ParametreCommissionController {
         try {
             String currentUser = authentication.getName();
             ParametreCommissionDTO parametre = parametreCommissionService.updateParametre(id, request, currentUser);
+            reglesCommissionCache.invaliderAgence(request.getAgenceId());
             
             return ResponseEntity.ok(ApiResponse.success(parametre, "Paramètre de commission mis à jour avec succès"));
         } catch (RuntimeException e) {
@@ -131,6 +136,7 @@ public class ParametreCommissionController {
         
         try {
             parametreCommissionService.deleteParametre(id);
+            reglesCommissionCache.invaliderTout();
             
             return ResponseEntity.ok(ApiResponse.success(null, "Paramètre de commission supprimé avec succès"));
         } catch (RuntimeException e) {
@@ -151,6 +157,7 @@ public class ParametreCommissionController {
         
         try {
             parametreCommissionService.activerParametre(id);
+            reglesCommissionCache.invaliderTout();
             
             return ResponseEntity.ok(ApiResponse.success(null, "Paramètre de commission activé avec succès"));
         } catch (RuntimeException e) {
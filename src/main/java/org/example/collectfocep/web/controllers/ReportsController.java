@@ -5,6 +5,8 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.collectfocep.dto.*;
 import org.example.collectfocep.security.service.SecurityService;
+import org.example.collectfocep.entities.Report;
+import org.example.collectfocep.services.ReportArtifactStore;
 import org.example.collectfocep.services.ReportsService;
 import org.example.collectfocep.util.ApiResponse;
 import org.springframework.core.io.ByteArrayResource;
@@ -15,10 +17,12 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
 
 @Slf4j
 @RestController
@@ -29,6 +33,7 @@ public class ReportsController {
 
     private final ReportsService reportsService;
     private final SecurityService securityService;
+    private final ReportArtifactStore reportArtifactStore;
 
     /**
      * Générer un rapport
@@ -115,9 +120,22 @@ public class ReportsController {
                         .body(ApiResponse.error("Accès non autorisé à ce rapport"));
             }
 
-            byte[] reportData = reportsService.getReportData(reportId);
             String filename = reportsService.getReportFilename(reportId);
 
+            // Fichier stocké : copié du disque vers la réponse, sans tableau intermédiaire
+            Optional<Report> artefact = reportsService.findArtefact(reportId);
+            if (artefact.isPresent()) {
+                Report report = artefact.get();
+                StreamingResponseBody body = out -> reportArtifactStore.transferer(report, out);
+                return ResponseEntity.ok()
+                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .contentLength(report.getFileSize())
+                        .body(body);
+            }
+
+            byte[] reportData = reportsService.getReportData(reportId);
+
             return ResponseEntity.ok()
                     .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
                     .contentType(MediaType.APPLICATION_OCTET_STREAM)
@@ -16,6 +16,8 @@ import org.example.collectfocep.security.service.SecurityService;
 import org.example.collectfocep.services.SuperAdminAgenceService;
 import org.example.collectfocep.services.SuperAdminValidationService;
 import org.example.collectfocep.services.ExportExcelService;
+import org.example.collectfocep.services.ReportArtifactStore;
+import org.example.collectfocep.services.ReportJobQueue;
 import org.example.collectfocep.util.ApiResponse;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -26,6 +28,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.MediaType;
 
@@ -56,6 +59,8 @@ public class SuperAdminController {
     private final SuperAdminAgenceService superAdminAgenceService;
     private final SuperAdminValidationService superAdminValidationService;
     private final ExportExcelService exportExcelService;
+    private final ReportJobQueue reportJobQueue;
+    private final ReportArtifactStore reportArtifactStore;
 
     /**
      * 📊 DASHBOARD SUPER ADMIN GLOBAL
@@ -942,47 +947,86 @@ public class SuperAdminController {
      * 📊 EXPORT EXCEL COMPLET MULTI-ONGLETS
      */
     @PostMapping("/export/excel")
-    public ResponseEntity<ByteArrayResource> exportExcelComplete(@RequestBody ExportExcelRequest request) {
+    public ResponseEntity<StreamingResponseBody> exportExcelComplete(@RequestBody ExportExcelRequest request) {
         log.info("📊 SuperAdmin - Export Excel complet: {}", request);
 
-        try {
-            // Validation des paramètres
-            if (request.getDateDebut() != null && request.getDateFin() != null) {
-                if (request.getDateDebut().isAfter(request.getDateFin())) {
-                    return ResponseEntity.badRequest()
-                            .body(null);
-                }
+        // Validation des paramètres
+        if (request.getDateDebut() != null && request.getDateFin() != null) {
+            if (request.getDateDebut().isAfter(request.getDateFin())) {
+                return ResponseEntity.badRequest().build();
             }
+        }
 
-            // Configuration des filtres
-            ExportExcelService.ExportFilters filters = new ExportExcelService.ExportFilters();
-            filters.setAgenceId(request.getAgenceId());
-            filters.setDateDebut(request.getDateDebut());
-            filters.setDateFin(request.getDateFin());
-            filters.setIncludeInactifs(request.getIncludeInactifs());
-            filters.setMaxRecords(request.getMaxRecords());
-
-            // Génération du fichier Excel
-            byte[] excelData = exportExcelService.exportCompleteData(filters);
+        // Configuration des filtres
+        ExportExcelService.ExportFilters filters = new ExportExcelService.ExportFilters();
+        filters.setAgenceId(request.getAgenceId());
+        filters.setDateDebut(request.getDateDebut());
+        filters.setDateFin(request.getDateFin());
+        filters.setIncludeInactifs(request.getIncludeInactifs());
+        filters.setMaxRecords(request.getMaxRecords());
+
+        // Nom du fichier avec timestamp
+        String timestamp = LocalDateTime.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyyMMdd_HHmm"));
+        String fileName = String.format("FOCEP_Export_Complet_%s.xlsx", timestamp);
+
+        // Le classeur est écrit directement dans la réponse : taille inconnue à l'avance,
+        // une erreur en cours d'écriture interrompt le téléchargement
+        StreamingResponseBody body = outputStream -> exportExcelService.exportCompleteData(filters, outputStream);
+
+        return ResponseEntity.ok()
+                .header("Content-Disposition", "attachment; filename=\"" + fileName + "\"")
+                .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
+                .body(body);
+    }
 
-            // Nom du fichier avec timestamp
-            String timestamp = LocalDateTime.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyyMMdd_HHmm"));
-            String fileName = String.format("FOCEP_Export_Complet_%s.xlsx", timestamp);
+    /**
+     * 📊 EXPORT EXCEL COMPLET EN FILE (priorité MASSE, derrière les rapports interactifs)
+     * Suivi et annulation via /api/async-reports/status/{trackingId} et DELETE /api/async-reports/{trackingId}
+     */
+    @PostMapping("/export/excel/jobs")
+    public ResponseEntity<ApiResponse<String>> exportExcelEnFile(@RequestBody ExportExcelRequest request) {
+        log.info("📊 SuperAdmin - Export Excel complet mis en file: {}", request);
+
+        if (request.getDateDebut() != null && request.getDateFin() != null
+                && request.getDateDebut().isAfter(request.getDateFin())) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("La date de début doit être antérieure à la date de fin"));
+        }
 
-            // Configuration de la réponse
-            ByteArrayResource resource = new ByteArrayResource(excelData);
+        ExportExcelService.ExportFilters filters = new ExportExcelService.ExportFilters();
+        filters.setAgenceId(request.getAgenceId());
+        filters.setDateDebut(request.getDateDebut());
+        filters.setDateFin(request.getDateFin());
+        filters.setIncludeInactifs(request.getIncludeInactifs());
+        filters.setMaxRecords(request.getMaxRecords());
 
-            return ResponseEntity.ok()
-                    .header("Content-Disposition", "attachment; filename=\"" + fileName + "\"")
-                    .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                    .contentLength(excelData.length)
-                    .body(resource);
+        String trackingId = reportJobQueue.soumettreExport(filters, securityService.getCurrentUsername());
+        return ResponseEntity.accepted()
+                .body(ApiResponse.success(trackingId, "Export mis en file. Utilisez l'ID pour suivre le progrès."));
+    }
 
-        } catch (Exception e) {
-            log.error("❌ Erreur export Excel: {}", e.getMessage(), e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(null);
+    /**
+     * 📊 TÉLÉCHARGEMENT D'UN EXPORT EN FILE TERMINÉ
+     */
+    @GetMapping("/export/excel/jobs/{trackingId}/fichier")
+    public ResponseEntity<StreamingResponseBody> telechargerExportEnFile(@PathVariable String trackingId) {
+        ReportJob job = reportJobQueue.trouver(trackingId)
+                .filter(j -> j.getType() == ReportJob.TypeJob.EXPORT_EXCEL)
+                .orElseThrow(() -> new ResourceNotFoundException("Export non trouvé: " + trackingId));
+        Long taille = reportJobQueue.tailleResultat(job);
+        if (job.getStatut() != ReportJob.Statut.COMPLETED || taille == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         }
+
+        String fileName = String.format("FOCEP_Export_Complet_%s.xlsx",
+                job.getDateCreation().format(java.time.format.DateTimeFormatter.ofPattern("yyyyMMdd_HHmm")));
+        StreamingResponseBody body = out -> reportArtifactStore.transferer(job.getResultat(), out);
+
+        return ResponseEntity.ok()
+                .header("Content-Disposition", "attachment; filename=\"" + fileName + "\"")
+                .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
+                .contentLength(taille)
+                .body(body);
     }
 
     /**
@@ -0,0 +1,28 @@
+-- V003__Pooled_Id_Generators.sql
+-- Générateur d'identifiants par table (pooled, allocationSize = 50) pour les tables à fort volume
+-- d'insertion : l'IDENTITY MySQL désactive le batch JDBC de Hibernate (hibernate.jdbc.batch_size).
+
+CREATE TABLE IF NOT EXISTS id_generators (
+    sequence_name VARCHAR(255) NOT NULL PRIMARY KEY,
+    next_val BIGINT NOT NULL
+);
+
+-- Amorcer chaque compteur au-delà des identifiants existants (à exécuter AVANT le démarrage
+-- de la nouvelle version, sinon Hibernate insère la valeur initiale 1 et réutilise des IDs).
+-- L'optimiseur pooled lit next_val comme borne HAUTE du bloc : il alloue next_val - 49 .. next_val.
+-- Le compteur vaut donc MAX(id) + allocationSize pour que le premier ID soit MAX(id) + 1.
+INSERT INTO id_generators (sequence_name, next_val)
+SELECT 'mouvements', COALESCE(MAX(id), 0) + 50 FROM mouvements
+ON DUPLICATE KEY UPDATE next_val = GREATEST(next_val, VALUES(next_val));
+
+INSERT INTO id_generators (sequence_name, next_val)
+SELECT 'journal_activite', COALESCE(MAX(id), 0) + 50 FROM journal_activite
+ON DUPLICATE KEY UPDATE next_val = GREATEST(next_val, VALUES(next_val));
+
+INSERT INTO id_generators (sequence_name, next_val)
+SELECT 'admin_notifications', COALESCE(MAX(id), 0) + 50 FROM admin_notifications
+ON DUPLICATE KEY UPDATE next_val = GREATEST(next_val, VALUES(next_val));
+
+INSERT INTO id_generators (sequence_name, next_val)
+SELECT 'historique_calcul_commission', COALESCE(MAX(id), 0) + 50 FROM historique_calcul_commission
+ON DUPLICATE KEY UPDATE next_val = GREATEST(next_val, VALUES(next_val));
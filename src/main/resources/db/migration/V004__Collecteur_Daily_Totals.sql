@@ -0,0 +1,38 @@
+-- V004__Collecteur_Daily_Totals.sql
+-- Totaux journaliers par collecteur, maintenus à chaque mouvement (CollecteurDailyTotalsService)
+-- et lus par la validation des retraits et le dashboard collecteur.
+
+CREATE TABLE IF NOT EXISTS collecteur_daily_totals (
+    id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    collecteur_id BIGINT NOT NULL,
+    date_jour DATE NOT NULL,
+    total_epargne DOUBLE NOT NULL DEFAULT 0,
+    total_retrait DOUBLE NOT NULL DEFAULT 0,
+    nombre_epargnes BIGINT NOT NULL DEFAULT 0,
+    nombre_retraits BIGINT NOT NULL DEFAULT 0,
+    nombre_mouvements BIGINT NOT NULL DEFAULT 0,
+    derniere_maj DATETIME,
+    CONSTRAINT uk_collecteur_daily_totals UNIQUE (collecteur_id, date_jour)
+);
+
+-- Reprise de l'historique (à exécuter avant la mise en service, application arrêtée)
+INSERT INTO collecteur_daily_totals
+    (collecteur_id, date_jour, total_epargne, total_retrait, nombre_epargnes, nombre_retraits, nombre_mouvements, derniere_maj)
+SELECT m.collecteur_id,
+       DATE(m.date_operation),
+       COALESCE(SUM(CASE WHEN LOWER(m.sens) = 'epargne' THEN m.montant END), 0),
+       COALESCE(SUM(CASE WHEN LOWER(m.sens) = 'retrait' THEN m.montant END), 0),
+       SUM(CASE WHEN LOWER(m.sens) = 'epargne' THEN 1 ELSE 0 END),
+       SUM(CASE WHEN LOWER(m.sens) = 'retrait' THEN 1 ELSE 0 END),
+       COUNT(*),
+       NOW()
+FROM mouvements m
+WHERE m.collecteur_id IS NOT NULL
+GROUP BY m.collecteur_id, DATE(m.date_operation)
+ON DUPLICATE KEY UPDATE
+    total_epargne = VALUES(total_epargne),
+    total_retrait = VALUES(total_retrait),
+    nombre_epargnes = VALUES(nombre_epargnes),
+    nombre_retraits = VALUES(nombre_retraits),
+    nombre_mouvements = VALUES(nombre_mouvements),
+    derniere_maj = VALUES(derniere_maj);
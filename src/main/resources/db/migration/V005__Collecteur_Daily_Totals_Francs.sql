@@ -0,0 +1,7 @@
+-- V005__Collecteur_Daily_Totals_Francs.sql
+-- Les totaux journaliers sont désormais des francs entiers (type Money, MoneyConverter).
+-- MySQL arrondit les valeurs DOUBLE existantes lors de la conversion.
+
+ALTER TABLE collecteur_daily_totals
+    MODIFY total_epargne BIGINT NOT NULL DEFAULT 0,
+    MODIFY total_retrait BIGINT NOT NULL DEFAULT 0;
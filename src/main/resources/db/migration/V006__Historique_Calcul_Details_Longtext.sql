@@ -0,0 +1,6 @@
+-- V006__Historique_Calcul_Details_Longtext.sql
+-- Les détails du calcul en flux sont ajoutés lot par lot (CONCAT) : TEXT (64 Ko) ne suffit
+-- plus pour les portefeuilles de plusieurs milliers de clients.
+
+ALTER TABLE historique_calcul_commission
+    MODIFY details_calcul LONGTEXT;
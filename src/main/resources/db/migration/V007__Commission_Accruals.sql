@@ -0,0 +1,22 @@
+-- V007__Commission_Accruals.sql
+-- Accrual journalier des commissions (CommissionAccrualService, chaque nuit) : épargne du jour,
+-- cumul du mois et commission provisoire par client. Le calcul de fin de mois lit ces lignes
+-- pour les jours présents dans commission_accrual_jours.
+
+CREATE TABLE IF NOT EXISTS commission_accruals (
+    id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    client_id BIGINT NOT NULL,
+    date_jour DATE NOT NULL,
+    montant_epargne BIGINT NOT NULL DEFAULT 0,
+    cumul_mois BIGINT NOT NULL DEFAULT 0,
+    commission_provisoire BIGINT NOT NULL DEFAULT 0,
+    derniere_maj DATETIME,
+    CONSTRAINT uk_commission_accruals UNIQUE (client_id, date_jour),
+    INDEX idx_commission_accruals_jour (date_jour)
+);
+
+CREATE TABLE IF NOT EXISTS commission_accrual_jours (
+    date_jour DATE NOT NULL PRIMARY KEY,
+    nombre_clients INT NOT NULL DEFAULT 0,
+    date_execution DATETIME NOT NULL
+);
@@ -0,0 +1,32 @@
+-- V008__Mouvement_Categorie.sql
+-- Catégorie typée des mouvements (CategorieMouvement), renseignée à l'écriture par l'entité.
+-- Remplace les LIKE sur le libellé dans le calcul des commissions ; l'index couvrant
+-- (compte_destination, date_operation, categorie, montant) permet un parcours par plage.
+
+ALTER TABLE mouvements
+    ADD COLUMN categorie VARCHAR(20) NULL;
+
+-- Reprise de l'historique (à exécuter avant la mise en service, application arrêtée) : mêmes règles que CategorieMouvement.classer
+-- (type de mouvement, puis sens, puis libellé sans accents ni casse)
+UPDATE mouvements m
+SET m.categorie = CASE
+    WHEN UPPER(m.type_mouvement) IN ('EPARGNE', 'DEPOT_EPARGNE', 'VERSEMENT_EPARGNE') THEN 'EPARGNE'
+    WHEN UPPER(m.type_mouvement) = 'RETRAIT' THEN 'RETRAIT'
+    WHEN UPPER(m.type_mouvement) IN ('VERSEMENT_NORMAL', 'VERSEMENT_EXCEDENT', 'VERSEMENT_MANQUANT',
+                                     'EXCEDENT_AJUSTEMENT', 'MANQUANT_DETTE') THEN 'VERSEMENT'
+    WHEN LOWER(m.sens) = 'epargne' THEN 'EPARGNE'
+    WHEN LOWER(m.sens) = 'retrait' THEN 'RETRAIT'
+    WHEN LOWER(m.sens) = 'transfert' THEN 'TRANSFERT'
+    WHEN LOWER(m.sens) LIKE 'versement%' OR LOWER(m.sens) LIKE 'ajustement%' THEN 'VERSEMENT'
+    WHEN m.libelle COLLATE utf8mb4_general_ci LIKE '%commission%'
+      OR m.libelle COLLATE utf8mb4_general_ci LIKE '%tva%' THEN 'COMMISSION'
+    WHEN m.libelle COLLATE utf8mb4_general_ci LIKE '%epargne%'
+      OR m.libelle COLLATE utf8mb4_general_ci LIKE '%versement%'
+      OR m.libelle COLLATE utf8mb4_general_ci LIKE '%depot%' THEN 'EPARGNE'
+    WHEN m.libelle COLLATE utf8mb4_general_ci LIKE '%retrait%' THEN 'RETRAIT'
+    ELSE 'AUTRE'
+END
+WHERE m.categorie IS NULL;
+
+CREATE INDEX idx_mouvement_dest_date_categorie
+    ON mouvements (compte_destination, date_operation, categorie, montant);
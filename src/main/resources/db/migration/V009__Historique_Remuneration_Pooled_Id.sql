@@ -0,0 +1,8 @@
+-- V009__Historique_Remuneration_Pooled_Id.sql
+-- historique_remuneration passe au générateur par table (voir V003) : la rémunération par agence
+-- enregistre l'historique de tous les collecteurs en lots JDBC.
+
+-- À exécuter AVANT le démarrage de la nouvelle version ; compteur = MAX(id) + allocationSize (voir V003)
+INSERT INTO id_generators (sequence_name, next_val)
+SELECT 'historique_remuneration', COALESCE(MAX(id), 0) + 50 FROM historique_remuneration
+ON DUPLICATE KEY UPDATE next_val = GREATEST(next_val, VALUES(next_val));
@@ -0,0 +1,28 @@
+-- V010__Report_Jobs.sql
+-- File persistante des générations de rapports (ReportJobQueue) : priorité INTERACTIF (0) avant
+-- MASSE (1), équité entre agences, progression, annulation, reprise après redémarrage.
+
+CREATE TABLE IF NOT EXISTS report_jobs (
+    id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    tracking_id VARCHAR(36) NOT NULL,
+    type VARCHAR(20) NOT NULL,
+    priorite INT NOT NULL,
+    statut VARCHAR(20) NOT NULL,
+    agence_id BIGINT,
+    collecteur_id BIGINT,
+    periode_debut DATETIME,
+    periode_fin DATETIME,
+    limite INT,
+    progression INT NOT NULL DEFAULT 0,
+    message VARCHAR(500),
+    resultat VARCHAR(500),
+    tentatives INT NOT NULL DEFAULT 0,
+    demande_par VARCHAR(100),
+    date_creation DATETIME NOT NULL,
+    date_debut DATETIME,
+    date_fin DATETIME,
+    date_heartbeat DATETIME,
+    CONSTRAINT uk_report_jobs_tracking UNIQUE (tracking_id),
+    INDEX idx_report_jobs_file (statut, priorite, date_creation),
+    INDEX idx_report_jobs_agence (agence_id, statut)
+);
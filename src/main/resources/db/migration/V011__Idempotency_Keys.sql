@@ -0,0 +1,38 @@
+-- V011__Idempotency_Keys.sql
+-- Clés Idempotency-Key des épargnes/retraits (IdempotencyService) : une clé est unique par
+-- utilisateur (scope) et porte l'empreinte SHA-256 de la requête (request_hash).
+
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    scope VARCHAR(100) NOT NULL,
+    idempotency_key VARCHAR(100) NOT NULL,
+    request_hash CHAR(64),
+    operation VARCHAR(20) NOT NULL,
+    mouvement_id BIGINT NOT NULL,
+    type_operation VARCHAR(255),
+    montant DOUBLE NOT NULL,
+    compte_source VARCHAR(255),
+    compte_destination VARCHAR(255),
+    libelle VARCHAR(255),
+    date_operation DATETIME,
+    date_creation DATETIME NOT NULL,
+    CONSTRAINT uk_idempotency_scope_key UNIQUE (scope, idempotency_key),
+    INDEX idx_idempotency_date_creation (date_creation)
+);
+
+-- Table créée par ddl-auto avant cette migration : ajout de la portée et de l'empreinte.
+-- Les clés existantes gardent la portée vide ; elles sont rejouées sans comparaison
+-- d'empreinte jusqu'à leur purge (app.idempotency.retention-days).
+SET @migration = (
+    SELECT IF(COUNT(*) = 0,
+              'ALTER TABLE idempotency_keys
+                   ADD COLUMN scope VARCHAR(100) NOT NULL DEFAULT '''' AFTER id,
+                   ADD COLUMN request_hash CHAR(64) NULL AFTER idempotency_key,
+                   DROP INDEX uk_idempotency_key,
+                   ADD CONSTRAINT uk_idempotency_scope_key UNIQUE (scope, idempotency_key)',
+              'SELECT 1')
+    FROM information_schema.columns
+    WHERE table_schema = DATABASE() AND table_name = 'idempotency_keys' AND column_name = 'scope');
+PREPARE migration FROM @migration;
+EXECUTE migration;
+DEALLOCATE PREPARE migration;
@@ -0,0 +1,12 @@
+-- V012__Ecritures_Comptes_Differees.sql
+-- Variations de solde des comptes partagés de l'agence (C.P.C.C, C.P.T, C.C.C, C.P.C, C.T)
+-- enregistrées par les transactions collecteur et appliquées après commit
+-- (EcrituresDiffereesService) : la transaction d'un collecteur ne verrouille plus ces comptes.
+
+CREATE TABLE IF NOT EXISTS ecritures_comptes_differees (
+    id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    compte_id BIGINT NOT NULL,
+    montant BIGINT NOT NULL,
+    date_creation DATETIME NOT NULL,
+    INDEX idx_ecritures_differees_compte (compte_id, id)
+);
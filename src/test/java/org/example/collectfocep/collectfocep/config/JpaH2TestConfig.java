@@ -0,0 +1,67 @@
+package org.example.collectfocep.collectfocep.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.collectfocep.services.JournalDuJourRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.hibernate5.SpringBeanContainer;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+
+import javax.sql.DataSource;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * Contexte JPA minimal sur H2 (mode MySQL) : entités et repositories réels, sans le reste de
+ * l'application. Les tests importent cette configuration et déclarent eux-mêmes les services testés
+ * (proxies par classe, comme Spring Boot).
+ */
+@Configuration
+@EnableTransactionManagement(proxyTargetClass = true)
+@EnableJpaRepositories(basePackages = "org.example.collectfocep.repositories")
+public class JpaH2TestConfig {
+
+    @Bean
+    public DataSource dataSource() {
+        return new DriverManagerDataSource("jdbc:h2:mem:jpa-" + UUID.randomUUID()
+                + ";DB_CLOSE_DELAY=-1;MODE=MySQL;DATABASE_TO_LOWER=TRUE", "sa", "");
+    }
+
+    @Bean
+    public JournalDuJourRegistry journalDuJourRegistry() {
+        return new JournalDuJourRegistry(100, 10);
+    }
+
+    @Bean
+    public LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource,
+                                                                       ConfigurableListableBeanFactory beanFactory) {
+        LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+        factory.setDataSource(dataSource);
+        factory.setPackagesToScan("org.example.collectfocep.entities");
+        factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        Properties proprietes = new Properties();
+        // SQL de production (MySQL) sur H2 en mode MySQL
+        proprietes.put("hibernate.dialect", "org.hibernate.dialect.MySQLDialect");
+        proprietes.put("hibernate.hbm2ddl.auto", "create-drop");
+        proprietes.put("hibernate.physical_naming_strategy",
+                "org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy");
+        proprietes.put("hibernate.generate_statistics", "true");
+        factory.setJpaProperties(proprietes);
+        // Listeners d'entités à dépendances (JournalDuJourListener) instanciés par Spring, comme en production
+        factory.getJpaPropertyMap().put(AvailableSettings.BEAN_CONTAINER, new SpringBeanContainer(beanFactory));
+        return factory;
+    }
+
+    @Bean
+    public PlatformTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+        return new JpaTransactionManager(entityManagerFactory);
+    }
+}
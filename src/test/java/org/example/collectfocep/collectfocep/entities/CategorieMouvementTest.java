@@ -0,0 +1,34 @@
+package org.example.collectfocep.collectfocep.entities;
+
+import org.example.collectfocep.entities.CategorieMouvement;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CategorieMouvementTest {
+
+    @Test
+    void typeMouvementPrioritaire() {
+        assertEquals(CategorieMouvement.EPARGNE, CategorieMouvement.classer("DEPOT_EPARGNE", "debit", "Retrait"));
+        assertEquals(CategorieMouvement.VERSEMENT,
+                CategorieMouvement.classer("VERSEMENT_NORMAL", "versement_normal", "Versement normal - Clôture journal"));
+    }
+
+    @Test
+    void sensPuisLibelleSansAccentsNiCasse() {
+        assertEquals(CategorieMouvement.EPARGNE, CategorieMouvement.classer(null, "epargne", "Epargne client : A B"));
+        assertEquals(CategorieMouvement.VERSEMENT,
+                CategorieMouvement.classer(null, "versement", "Versement en agence pour collecteur : A"));
+        assertEquals(CategorieMouvement.EPARGNE, CategorieMouvement.classer(null, "credit", "ÉPARGNE du jour"));
+        assertEquals(CategorieMouvement.EPARGNE, CategorieMouvement.classer(null, "CREDIT", "Dépôt guichet"));
+        assertEquals(CategorieMouvement.RETRAIT, CategorieMouvement.classer(null, "debit", "retrait espèces"));
+    }
+
+    @Test
+    void commissionAvantEpargneEtAutreParDefaut() {
+        assertEquals(CategorieMouvement.COMMISSION,
+                CategorieMouvement.classer(null, "DEBIT", "Commission sur épargne client 12"));
+        assertEquals(CategorieMouvement.AUTRE, CategorieMouvement.classer(null, "DEBIT", "Régularisation"));
+        assertEquals(CategorieMouvement.AUTRE, CategorieMouvement.classer(null, null, null));
+    }
+}
@@ -0,0 +1,202 @@
+package org.example.collectfocep.collectfocep.entities;
+
+import jakarta.persistence.*;
+import org.example.collectfocep.entities.HistoriqueRemuneration;
+import org.example.collectfocep.entities.Mouvement;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Amorçage des générateurs pooled (V003, V009) : les premiers IDs alloués par Hibernate après
+ * la migration ne doivent pas recouvrir les lignes existantes.
+ */
+public class PooledIdGeneratorMigrationTest {
+
+    private static final int LIGNES_EXISTANTES = 120;
+
+    private String url;
+    private Connection connexion;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        url = "jdbc:h2:mem:migration-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;MODE=MySQL";
+        connexion = DriverManager.getConnection(url, "sa", "");
+        try (Statement statement = connexion.createStatement()) {
+            for (String table : List.of("mouvements", "journal_activite", "admin_notifications",
+                    "historique_calcul_commission", "historique_remuneration")) {
+                statement.execute("CREATE TABLE " + table + " (id BIGINT PRIMARY KEY)");
+            }
+            statement.execute("INSERT INTO mouvements (id) SELECT X FROM SYSTEM_RANGE(1, " + LIGNES_EXISTANTES + ")");
+            statement.execute("INSERT INTO historique_remuneration (id) SELECT X FROM SYSTEM_RANGE(1, "
+                    + LIGNES_EXISTANTES + ")");
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        try (Statement statement = connexion.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+        connexion.close();
+    }
+
+    @Test
+    void generateursDuTestIdentiquesAuxEntites() throws NoSuchFieldException {
+        verifierGenerateur(Mouvement.class, MouvementSeed.class);
+        verifierGenerateur(HistoriqueRemuneration.class, HistoriqueRemunerationSeed.class);
+    }
+
+    @Test
+    void insertionsApresAmorcage_NeReutilisentPasLesIdsExistants() throws Exception {
+        executerMigration("db/migration/V003__Pooled_Id_Generators.sql");
+
+        List<Long> ids = inserer(MouvementSeed::new, 2 * LIGNES_EXISTANTES);
+
+        assertEquals(2 * LIGNES_EXISTANTES, new HashSet<>(ids).size());
+        assertTrue(ids.stream().allMatch(id -> id > LIGNES_EXISTANTES), "IDs alloués: " + ids);
+        assertEquals(3 * LIGNES_EXISTANTES, compter("mouvements"));
+    }
+
+    @Test
+    void migrationRejouee_NeFaitPasReculerLeCompteur() throws Exception {
+        executerMigration("db/migration/V003__Pooled_Id_Generators.sql");
+        List<Long> premiers = inserer(MouvementSeed::new, 10);
+        executerMigration("db/migration/V003__Pooled_Id_Generators.sql");
+
+        Set<Long> ids = new HashSet<>(premiers);
+        ids.addAll(inserer(MouvementSeed::new, 10));
+        assertEquals(20, ids.size());
+    }
+
+    @Test
+    void historiqueRemuneration_InsertionsApresAmorcage_NeReutilisentPasLesIdsExistants() throws Exception {
+        executerMigration("db/migration/V003__Pooled_Id_Generators.sql");
+        executerMigration("db/migration/V009__Historique_Remuneration_Pooled_Id.sql");
+
+        List<Long> ids = inserer(HistoriqueRemunerationSeed::new, LIGNES_EXISTANTES);
+
+        assertEquals(LIGNES_EXISTANTES, new HashSet<>(ids).size());
+        assertTrue(ids.stream().allMatch(id -> id > LIGNES_EXISTANTES), "IDs alloués: " + ids);
+    }
+
+    private static void verifierGenerateur(Class<?> entite, Class<?> seed) throws NoSuchFieldException {
+        TableGenerator production = entite.getDeclaredField("id").getAnnotation(TableGenerator.class);
+        TableGenerator test = seed.getDeclaredField("id").getAnnotation(TableGenerator.class);
+
+        assertEquals(production.table(), test.table());
+        assertEquals(production.pkColumnValue(), test.pkColumnValue());
+        assertEquals(production.allocationSize(), test.allocationSize());
+    }
+
+    private List<Long> inserer(Supplier<? extends Seed> fabrique, int nombre) {
+        try (SessionFactory sessionFactory = new MetadataSources(new StandardServiceRegistryBuilder()
+                .applySetting("hibernate.connection.url", url)
+                .applySetting("hibernate.connection.username", "sa")
+                .applySetting("hibernate.connection.password", "")
+                .applySetting("hibernate.hbm2ddl.auto", "none")
+                .build())
+                .addAnnotatedClass(MouvementSeed.class)
+                .addAnnotatedClass(HistoriqueRemunerationSeed.class)
+                .buildMetadata()
+                .buildSessionFactory();
+             Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            List<Long> ids = new ArrayList<>(nombre);
+            for (int i = 0; i < nombre; i++) {
+                Seed entite = fabrique.get();
+                session.persist(entite);
+                ids.add(entite.id());
+            }
+            session.getTransaction().commit();
+            return ids;
+        }
+    }
+
+    private void executerMigration(String ressource) throws IOException, SQLException {
+        String script;
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(ressource)) {
+            assertNotNull(in, ressource);
+            script = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        StringBuilder sansCommentaires = new StringBuilder();
+        for (String ligne : script.split("\n")) {
+            if (!ligne.trim().startsWith("--")) {
+                sansCommentaires.append(ligne).append('\n');
+            }
+        }
+        try (Statement statement = connexion.createStatement()) {
+            for (String instruction : sansCommentaires.toString().split(";")) {
+                if (!instruction.isBlank()) {
+                    statement.execute(instruction);
+                }
+            }
+        }
+    }
+
+    private long compter(String table) throws SQLException {
+        try (Statement statement = connexion.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    abstract static class Seed {
+        abstract Long id();
+    }
+
+    @Entity
+    @Table(name = "mouvements")
+    @Access(AccessType.FIELD)
+    static class MouvementSeed extends Seed {
+        @Id
+        @GeneratedValue(strategy = GenerationType.TABLE, generator = "mouvement_id_gen")
+        @TableGenerator(name = "mouvement_id_gen", table = "id_generators", pkColumnName = "sequence_name",
+                valueColumnName = "next_val", pkColumnValue = "mouvements", allocationSize = 50)
+        Long id;
+
+        @Override
+        Long id() {
+            return id;
+        }
+    }
+
+    @Entity
+    @Table(name = "historique_remuneration")
+    @Access(AccessType.FIELD)
+    static class HistoriqueRemunerationSeed extends Seed {
+        @Id
+        @GeneratedValue(strategy = GenerationType.TABLE, generator = "historique_remuneration_id_gen")
+        @TableGenerator(name = "historique_remuneration_id_gen", table = "id_generators",
+                pkColumnName = "sequence_name", valueColumnName = "next_val",
+                pkColumnValue = "historique_remuneration", allocationSize = 50)
+        Long id;
+
+        @Override
+        Long id() {
+            return id;
+        }
+    }
+}
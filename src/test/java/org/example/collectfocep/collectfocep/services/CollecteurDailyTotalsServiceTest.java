@@ -0,0 +1,71 @@
+package org.example.collectfocep.collectfocep.services;
+
+import org.example.collectfocep.entities.Collecteur;
+import org.example.collectfocep.entities.Mouvement;
+import org.example.collectfocep.repositories.CollecteurDailyTotalRepository;
+import org.example.collectfocep.services.CollecteurDailyTotalsService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CollecteurDailyTotalsServiceTest {
+
+    @Mock
+    private CollecteurDailyTotalRepository dailyTotalRepository;
+
+    @InjectMocks
+    private CollecteurDailyTotalsService service;
+
+    @Test
+    void enregistrer_LotCumuleUneFoisParCollecteurEtJour() {
+        LocalDateTime jour = LocalDateTime.of(2025, 3, 10, 9, 0);
+        Collecteur collecteur = new Collecteur();
+        collecteur.setId(7L);
+
+        service.enregistrer(List.of(
+                mouvement(collecteur, "epargne", 1000, jour),
+                mouvement(collecteur, "epargne", 500, jour.plusHours(2)),
+                mouvement(collecteur, "retrait", 300, jour.plusHours(3)),
+                mouvement(collecteur, "debit", 50, jour.plusHours(4)),
+                mouvement(null, "epargne", 999, jour)));
+
+        verify(dailyTotalRepository).cumuler(eq(7L), eq(LocalDate.of(2025, 3, 10)),
+                eq(1500L), eq(300L), eq(2L), eq(1L), eq(4L), any(LocalDateTime.class));
+        verifyNoMoreInteractions(dailyTotalRepository);
+    }
+
+    @Test
+    void enregistrer_JoursDifferents_UneLigneParJour() {
+        LocalDateTime jour = LocalDateTime.of(2025, 3, 10, 23, 30);
+        Collecteur collecteur = new Collecteur();
+        collecteur.setId(7L);
+
+        service.enregistrer(List.of(
+                mouvement(collecteur, "EPARGNE", 1000, jour),
+                mouvement(collecteur, "epargne", 200, jour.plusHours(1))));
+
+        verify(dailyTotalRepository).cumuler(eq(7L), eq(LocalDate.of(2025, 3, 10)),
+                eq(1000L), eq(0L), eq(1L), eq(0L), eq(1L), any(LocalDateTime.class));
+        verify(dailyTotalRepository).cumuler(eq(7L), eq(LocalDate.of(2025, 3, 11)),
+                eq(200L), eq(0L), eq(1L), eq(0L), eq(1L), any(LocalDateTime.class));
+    }
+
+    private Mouvement mouvement(Collecteur collecteur, String sens, double montant, LocalDateTime date) {
+        Mouvement mouvement = new Mouvement();
+        mouvement.setCollecteur(collecteur);
+        mouvement.setSens(sens);
+        mouvement.setMontant(montant);
+        mouvement.setDateOperation(date);
+        return mouvement;
+    }
+}
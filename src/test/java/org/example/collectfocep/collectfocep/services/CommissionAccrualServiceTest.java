@@ -0,0 +1,118 @@
+package org.example.collectfocep.collectfocep.services;
+
+import org.example.collectfocep.repositories.CommissionAccrualJourRepository;
+import org.example.collectfocep.repositories.CommissionAccrualRepository;
+import org.example.collectfocep.repositories.MouvementRepository;
+import org.example.collectfocep.services.CommissionAccrualService;
+import org.example.collectfocep.services.ReglesCommissionCache;
+import org.example.collectfocep.services.TableReglesCommission;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CommissionAccrualServiceTest {
+
+    private static final LocalDate DEBUT = LocalDate.of(2025, 3, 1);
+    private static final LocalDate FIN = LocalDate.of(2025, 3, 31);
+
+    @Mock
+    private CommissionAccrualRepository accrualRepository;
+    @Mock
+    private CommissionAccrualJourRepository jourRepository;
+    @Mock
+    private MouvementRepository mouvementRepository;
+    @Mock
+    private ReglesCommissionCache reglesCommissionCache;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private CommissionAccrualService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new CommissionAccrualService(accrualRepository, jourRepository, mouvementRepository,
+                reglesCommissionCache, jdbcTemplate, transactionManager, 3);
+    }
+
+    @Test
+    void joursAccrusLusDansLesAccrualsEtResteDepuisLesMouvements() {
+        // 1er, 2 et 4 mars accrus : seuls les jours contigus depuis le début comptent
+        when(jourRepository.findJoursBetween(DEBUT, FIN)).thenReturn(List.of(
+                DEBUT, DEBUT.plusDays(1), DEBUT.plusDays(3)));
+        when(accrualRepository.sumEpargneByClients(List.of(1L, 2L), DEBUT, DEBUT.plusDays(1)))
+                .thenReturn(List.<Object[]>of(new Object[]{1L, 10_000L}));
+        when(mouvementRepository.sumAmountByClientsAndPeriod(eq(List.of(1L, 2L)),
+                eq(DEBUT.plusDays(2).atStartOfDay()), eq(FIN.atTime(23, 59, 59))))
+                .thenReturn(List.<Object[]>of(new Object[]{1L, 2_500.0}, new Object[]{2L, 700.0}));
+
+        Map<Long, BigDecimal> sommes = service.sommesEpargne(List.of(1L, 2L), DEBUT, FIN);
+
+        assertEquals(0, new BigDecimal("12500").compareTo(sommes.get(1L)));
+        assertEquals(0, new BigDecimal("700").compareTo(sommes.get(2L)));
+    }
+
+    @Test
+    void sansJourAccruToutVientDesMouvements() {
+        when(jourRepository.findJoursBetween(DEBUT, FIN)).thenReturn(List.of());
+        when(mouvementRepository.sumAmountByClientsAndPeriod(eq(List.of(1L, 3L)),
+                eq(DEBUT.atStartOfDay()), eq(FIN.atTime(23, 59, 59))))
+                .thenReturn(List.<Object[]>of(new Object[]{1L, 5_000.0}));
+
+        Map<Long, BigDecimal> sommes = service.sommesEpargne(List.of(1L, 3L), DEBUT, FIN);
+
+        assertEquals(0, new BigDecimal("5000").compareTo(sommes.get(1L)));
+        assertEquals(BigDecimal.ZERO, sommes.get(3L));
+        verify(accrualRepository, never()).sumEpargneByClients(any(), any(), any());
+    }
+
+    @Test
+    void periodeEntierementAccrueNeLitPasLesMouvements() {
+        LocalDate fin = DEBUT.plusDays(2);
+        when(jourRepository.findJoursBetween(DEBUT, fin)).thenReturn(List.of(DEBUT, DEBUT.plusDays(1), fin));
+        when(accrualRepository.sumEpargneByClients(List.of(1L), DEBUT, fin))
+                .thenReturn(List.<Object[]>of(new Object[]{1L, 3_000L}));
+
+        Map<Long, BigDecimal> sommes = service.sommesEpargne(List.of(1L), DEBUT, fin);
+
+        assertEquals(0, new BigDecimal("3000").compareTo(sommes.get(1L)));
+        verifyNoInteractions(mouvementRepository);
+    }
+
+    @Test
+    void accruerJour_ClientSansAgence_IgnoreSaLigneEtCalculeLesAutres() {
+        TableReglesCommission regles = mock(TableReglesCommission.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(accrualRepository.insererJour(eq(DEBUT), any(), any(), any())).thenReturn(2);
+        when(accrualRepository.findLignesJour(DEBUT)).thenReturn(List.of(
+                new Object[]{1L, 7L, 1L, 10_000L},
+                new Object[]{2L, 7L, null, 4_000L}));
+        when(reglesCommissionCache.getTable(1L)).thenReturn(regles);
+        when(regles.commission(1L, 7L, 10_000L)).thenReturn(300L);
+
+        assertEquals(2, service.accruerJour(DEBUT));
+
+        ArgumentCaptor<List<Object[]>> parametres = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), parametres.capture());
+        assertEquals(1, parametres.getValue().size());
+        assertArrayEquals(new Object[]{300L, 1L, Date.valueOf(DEBUT)}, parametres.getValue().get(0));
+    }
+}
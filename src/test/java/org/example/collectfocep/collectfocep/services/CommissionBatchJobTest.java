@@ -0,0 +1,145 @@
+package org.example.collectfocep.collectfocep.services;
+
+import org.example.collectfocep.dto.CommissionBatchJobDTO;
+import org.example.collectfocep.entities.ComptePassageCommissionCollecte;
+import org.example.collectfocep.entities.ComptePassageTaxe;
+import org.example.collectfocep.entities.CompteChargeCollecte;
+import org.example.collectfocep.entities.CompteProduitCollecte;
+import org.example.collectfocep.entities.CompteTaxe;
+import org.example.collectfocep.entities.HistoriqueCalculCommission;
+import org.example.collectfocep.repositories.CollecteurRepository;
+import org.example.collectfocep.repositories.HistoriqueCalculCommissionRepository;
+import org.example.collectfocep.services.CommissionBatchJob;
+import org.example.collectfocep.services.CommissionOrchestrator;
+import org.example.collectfocep.services.CompteSpecialiseService;
+import org.example.collectfocep.services.EcrituresDiffereesService;
+import org.example.collectfocep.services.RemunerationProcessor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CommissionBatchJobTest {
+
+    private static final LocalDate DEBUT = LocalDate.of(2025, 3, 1);
+    private static final LocalDate FIN = LocalDate.of(2025, 3, 31);
+
+    @Mock
+    private CommissionOrchestrator commissionOrchestrator;
+    @Mock
+    private RemunerationProcessor remunerationProcessor;
+    @Mock
+    private CompteSpecialiseService compteSpecialiseService;
+    @Mock
+    private EcrituresDiffereesService ecrituresDiffereesService;
+    @Mock
+    private CollecteurRepository collecteurRepository;
+    @Mock
+    private HistoriqueCalculCommissionRepository historiqueRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private CommissionBatchJob job;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionManager.getTransaction(any())).thenAnswer(inv -> new SimpleTransactionStatus());
+        lenient().when(ecrituresDiffereesService.grouperApplication(any()))
+                .thenAnswer(inv -> inv.<Supplier<?>>getArgument(0).get());
+        lenient().when(compteSpecialiseService.getOrCreateCPCC(1L))
+                .thenReturn(ComptePassageCommissionCollecte.builder().id(1L).build());
+        lenient().when(compteSpecialiseService.getOrCreateCPT(1L)).thenReturn(ComptePassageTaxe.builder().id(2L).build());
+        lenient().when(compteSpecialiseService.getOrCreateCCC(1L)).thenReturn(CompteChargeCollecte.builder().id(3L).build());
+        lenient().when(compteSpecialiseService.getOrCreateCPC(1L)).thenReturn(CompteProduitCollecte.builder().id(4L).build());
+        lenient().when(compteSpecialiseService.getOrCreateCT(1L)).thenReturn(CompteTaxe.builder().id(5L).build());
+        // Exécuteur synchrone : le job est terminé au retour de executer()
+        job = new CommissionBatchJob(commissionOrchestrator, remunerationProcessor, compteSpecialiseService,
+                ecrituresDiffereesService, collecteurRepository, historiqueRepository, Runnable::run, transactionManager, 300);
+    }
+
+    @Test
+    void repriseIgnoreLesCollecteursRemuneresEtRejoueLaRemunerationSeule() {
+        when(collecteurRepository.findIdsByAgenceId(1L)).thenReturn(List.of(10L, 20L, 30L));
+
+        // 10 : rien de fait → commission + rémunération
+        when(historiqueRepository.findByCollecteurAndPeriod(10L, DEBUT, FIN)).thenReturn(Optional.empty());
+        when(commissionOrchestrator.processCommissions(10L, DEBUT, FIN)).thenReturn(
+                CommissionOrchestrator.CommissionResult.builder().success(true).agenceId(1L).historiqueId(100L)
+                        .montantSCollecteur(new BigDecimal("1000")).totalTVA(new BigDecimal("193")).build());
+        HistoriqueCalculCommission calcul10 = HistoriqueCalculCommission.builder().id(100L).agenceId(1L)
+                .remunere(false).build();
+        when(historiqueRepository.findById(100L)).thenReturn(Optional.of(calcul10));
+
+        // 20 : commission déjà calculée, pas rémunérée → rémunération seule
+        HistoriqueCalculCommission calcul20 = HistoriqueCalculCommission.builder().id(200L).agenceId(1L)
+                .montantCommissionTotal(new BigDecimal("500")).montantTvaTotal(new BigDecimal("96"))
+                .remunere(false).build();
+        when(historiqueRepository.findByCollecteurAndPeriod(20L, DEBUT, FIN)).thenReturn(Optional.of(calcul20));
+        when(historiqueRepository.findById(200L)).thenReturn(Optional.of(calcul20));
+
+        // 30 : déjà rémunéré → ignoré
+        when(historiqueRepository.findByCollecteurAndPeriod(30L, DEBUT, FIN)).thenReturn(Optional.of(
+                HistoriqueCalculCommission.builder().id(300L).agenceId(1L).remunere(true).build()));
+
+        when(remunerationProcessor.processRemunerationWithPeriod(anyLong(), any(), eq(DEBUT), eq(FIN), eq("admin")))
+                .thenAnswer(inv -> RemunerationProcessor.RemunerationResult.builder()
+                        .collecteurId(inv.getArgument(0)).success(true).historiqueRemunerationId(900L)
+                        .totalRubriqueVi(BigDecimal.TEN).montantEMF(BigDecimal.ONE).build());
+
+        CommissionBatchJobDTO resultat = job.executer(List.of(1L), DEBUT, FIN, "admin");
+
+        assertEquals("TERMINE", resultat.getStatut());
+        assertEquals(3, resultat.getNombreTraites());
+        assertEquals(2, resultat.getNombreSucces());
+        assertEquals(1, resultat.getNombreIgnores());
+        assertEquals(0, new BigDecimal("1500").compareTo(resultat.getMontantSTotal()));
+        assertEquals(100.0, resultat.getProgression());
+
+        verify(commissionOrchestrator, never()).processCommissions(eq(20L), any(), any());
+        verify(commissionOrchestrator, never()).processCommissions(eq(30L), any(), any());
+        assertTrue(calcul10.getRemunere());
+        assertTrue(calcul20.getRemunere());
+        assertEquals(900L, calcul20.getRemunerationId());
+        assertTrue(resultat.getResultats().get(1).isReprise());
+
+        // Comptes d'agence : une seule application, après tous les collecteurs
+        verify(ecrituresDiffereesService, times(3)).grouperApplication(any());
+        verify(ecrituresDiffereesService).appliquer(List.of(1L, 2L, 3L, 4L, 5L));
+    }
+
+    @Test
+    void echecDeRemunerationAnnuleLaTransactionDuCollecteur() {
+        when(collecteurRepository.findIdsByAgenceId(1L)).thenReturn(List.of(10L));
+        when(historiqueRepository.findByCollecteurAndPeriod(10L, DEBUT, FIN)).thenReturn(Optional.empty());
+        when(commissionOrchestrator.processCommissions(10L, DEBUT, FIN)).thenReturn(
+                CommissionOrchestrator.CommissionResult.builder().success(true).agenceId(1L).historiqueId(100L)
+                        .montantSCollecteur(new BigDecimal("1000")).build());
+        when(remunerationProcessor.processRemunerationWithPeriod(eq(10L), any(), any(), any(), any()))
+                .thenReturn(RemunerationProcessor.RemunerationResult.failure(10L, "Période déjà rémunérée"));
+
+        CommissionBatchJobDTO resultat = job.executer(List.of(1L), DEBUT, FIN, "admin");
+
+        assertEquals("TERMINE_AVEC_ERREURS", resultat.getStatut());
+        assertEquals(1, resultat.getNombreEchecs());
+        assertEquals(0, BigDecimal.ZERO.compareTo(resultat.getMontantSTotal()));
+        ArgumentCaptor<TransactionStatus> status = ArgumentCaptor.forClass(TransactionStatus.class);
+        verify(transactionManager).commit(status.capture());
+        assertTrue(status.getValue().isRollbackOnly());
+    }
+}
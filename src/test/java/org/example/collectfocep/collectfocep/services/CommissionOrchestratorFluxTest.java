@@ -0,0 +1,358 @@
+package org.example.collectfocep.collectfocep.services;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import org.example.collectfocep.collectfocep.config.JpaH2TestConfig;
+import org.example.collectfocep.entities.Agence;
+import org.example.collectfocep.entities.Client;
+import org.example.collectfocep.entities.Collecteur;
+import org.example.collectfocep.entities.CommissionParameter;
+import org.example.collectfocep.entities.CommissionType;
+import org.example.collectfocep.entities.CompteClient;
+import org.example.collectfocep.entities.HistoriqueCalculCommission;
+import org.example.collectfocep.entities.Mouvement;
+import org.example.collectfocep.mappers.MouvementMapperV2;
+import org.example.collectfocep.repositories.AgenceRepository;
+import org.example.collectfocep.repositories.ClientRepository;
+import org.example.collectfocep.repositories.CollecteurRepository;
+import org.example.collectfocep.repositories.CompteClientRepository;
+import org.example.collectfocep.repositories.CompteRepository;
+import org.example.collectfocep.repositories.HistoriqueCalculCommissionRepository;
+import org.example.collectfocep.repositories.MouvementRepository;
+import org.example.collectfocep.services.CollecteurDailyTotalsService;
+import org.example.collectfocep.services.CommissionAccrualService;
+import org.example.collectfocep.services.CommissionCalculatorService;
+import org.example.collectfocep.services.CommissionOrchestrator;
+import org.example.collectfocep.services.CompteIdCache;
+import org.example.collectfocep.services.CompteLockManager;
+import org.example.collectfocep.services.CompteSpecialiseService;
+import org.example.collectfocep.services.EcrituresDiffereesService;
+import org.example.collectfocep.services.EpargnePipeline;
+import org.example.collectfocep.services.ReglesCommissionCache;
+import org.example.collectfocep.services.TableReglesCommission;
+import org.example.collectfocep.services.impl.ClientAccountInitializationService;
+import org.example.collectfocep.services.impl.CollecteurAccountService;
+import org.example.collectfocep.services.impl.DateTimeServiceImpl;
+import org.example.collectfocep.services.impl.MouvementServiceImpl;
+import org.example.collectfocep.services.impl.SystemAccountService;
+import org.example.collectfocep.services.impl.TransactionService;
+import org.example.collectfocep.services.interfaces.CompteService;
+import org.example.collectfocep.services.interfaces.DateTimeService;
+import org.example.collectfocep.services.interfaces.JournalService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+/**
+ * Mode flux de CommissionOrchestrator sur une vraie base : mêmes totaux, soldes et historique que
+ * le calcul en mémoire, et un lot en échec annule les lots déjà comptabilisés.
+ */
+@SpringJUnitConfig(CommissionOrchestratorFluxTest.Config.class)
+@TestPropertySource(properties = {
+        "app.commission.flux.seuil-clients=5",
+        "app.commission.flux.taille-lot=2",
+        "spring.datasource.hikari.maximum-pool-size=15",
+        "app.commission.batch.workers=8"
+})
+public class CommissionOrchestratorFluxTest {
+
+    private static final LocalDate DEBUT = LocalDate.of(2026, 9, 1);
+    private static final LocalDate FIN = LocalDate.of(2026, 9, 30);
+
+    // Épargne du mois par client : le troisième n'a rien épargné, les six autres forment trois lots de 2
+    private static final double[] EPARGNES = {12_000, 25_000, 0, 40_003, 7_777, 18_500, 9_000};
+
+    @Configuration
+    @Import({JpaH2TestConfig.class, CommissionOrchestrator.class, CommissionCalculatorService.class,
+            CompteSpecialiseService.class, CommissionAccrualService.class})
+    static class Config {
+
+        @Bean
+        DateTimeService dateTimeService() {
+            return new DateTimeServiceImpl();
+        }
+
+        @Bean
+        TransactionService transactionService(PlatformTransactionManager transactionManager,
+                                              DateTimeService dateTimeService) {
+            return new TransactionService(transactionManager, dateTimeService);
+        }
+
+        @Bean
+        CompteLockManager compteLockManager() {
+            return new CompteLockManager(1_000);
+        }
+
+        @Bean
+        JdbcTemplate jdbcTemplate(DataSource dataSource) {
+            return new JdbcTemplate(dataSource);
+        }
+
+        @Bean
+        CompteIdCache compteIdCache(CompteClientRepository compteClientRepository,
+                                    org.example.collectfocep.repositories.CompteServiceRepository compteServiceRepository,
+                                    org.example.collectfocep.repositories.CompteManquantRepository compteManquantRepository,
+                                    org.example.collectfocep.repositories.CompteAttenteRepository compteAttenteRepository,
+                                    org.example.collectfocep.repositories.CompteSalaireCollecteurRepository compteSalaireCollecteurRepository) {
+            return new CompteIdCache(compteClientRepository, compteServiceRepository, compteManquantRepository,
+                    compteAttenteRepository, compteSalaireCollecteurRepository, 1_000);
+        }
+
+        @Bean ReglesCommissionCache reglesCommissionCache() { return mock(ReglesCommissionCache.class); }
+        @Bean MouvementMapperV2 mouvementMapper() { return mock(MouvementMapperV2.class); }
+        @Bean EcrituresDiffereesService ecrituresDiffereesService() { return mock(EcrituresDiffereesService.class); }
+        @Bean CollecteurDailyTotalsService collecteurDailyTotalsService() { return mock(CollecteurDailyTotalsService.class); }
+        @Bean EpargnePipeline epargnePipeline() { return mock(EpargnePipeline.class); }
+        @Bean SystemAccountService systemAccountService() { return mock(SystemAccountService.class); }
+        @Bean CollecteurAccountService collecteurAccountService() { return mock(CollecteurAccountService.class); }
+        @Bean JournalService journalService() { return mock(JournalService.class); }
+        @Bean CompteService compteService() { return mock(CompteService.class); }
+        @Bean ClientAccountInitializationService clientAccountInitializationService() {
+            return mock(ClientAccountInitializationService.class);
+        }
+        @Bean Counter epargneCounter() { return mock(Counter.class); }
+        @Bean Timer mouvementTimer() { return mock(Timer.class); }
+
+        @Bean
+        MouvementServiceImpl mouvementService(DateTimeService dateTimeService, SystemAccountService systemAccountService,
+                                              CollecteurAccountService collecteurAccountService,
+                                              MouvementRepository mouvementRepository, CompteRepository compteRepository,
+                                              CompteClientRepository compteClientRepository,
+                                              org.example.collectfocep.repositories.CompteCollecteurRepository compteCollecteurRepository,
+                                              org.example.collectfocep.repositories.CompteLiaisonRepository compteLiaisonRepository,
+                                              ClientRepository clientRepository,
+                                              JournalService journalService,
+                                              org.example.collectfocep.repositories.JournalRepository journalRepository,
+                                              CompteService compteService, TransactionService transactionService,
+                                              ClientAccountInitializationService clientAccountInitializationService,
+                                              Counter epargneCounter, Timer mouvementTimer) {
+            return new MouvementServiceImpl(dateTimeService, systemAccountService, collecteurAccountService,
+                    mouvementRepository, compteRepository, compteClientRepository, compteCollecteurRepository,
+                    compteLiaisonRepository, clientRepository, journalService, journalRepository, compteService,
+                    transactionService, clientAccountInitializationService, epargneCounter, mouvementTimer);
+        }
+    }
+
+    @Autowired private CommissionOrchestrator orchestrator;
+    @Autowired private ReglesCommissionCache reglesCommissionCache;
+    @Autowired private EcrituresDiffereesService ecrituresDiffereesService;
+    @Autowired private AgenceRepository agenceRepository;
+    @Autowired private CollecteurRepository collecteurRepository;
+    @Autowired private ClientRepository clientRepository;
+    @Autowired private CompteClientRepository compteClientRepository;
+    @Autowired private CompteRepository compteRepository;
+    @Autowired private MouvementRepository mouvementRepository;
+    @Autowired private HistoriqueCalculCommissionRepository historiqueRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transaction;
+    private CommissionOrchestrator cible;
+
+    @BeforeEach
+    void setUp() {
+        transaction = new TransactionTemplate(transactionManager);
+        cible = AopTestUtils.getTargetObject(orchestrator);
+        // 5 % de l'épargne au niveau de l'agence
+        when(reglesCommissionCache.getTable(anyLong())).thenAnswer(invocation -> {
+            Long agenceId = invocation.getArgument(0);
+            return TableReglesCommission.compiler(agenceId, List.of(CommissionParameter.builder()
+                    .type(CommissionType.PERCENTAGE)
+                    .valeur(BigDecimal.valueOf(5))
+                    .agence(Agence.builder().id(agenceId).build())
+                    .build()));
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.setField(cible, "seuilClientsFlux", 5L);
+        reset(ecrituresDiffereesService);
+    }
+
+    @Test
+    void modeFlux_MemesTotauxSoldesEtHistoriqueQueLeCalculEnMemoire() throws Exception {
+        Portefeuille enMemoire = portefeuille(100_000);
+        Portefeuille enFlux = portefeuille(100_000);
+
+        ReflectionTestUtils.setField(cible, "seuilClientsFlux", 0L);
+        CommissionOrchestrator.CommissionResult resultatMemoire =
+                orchestrator.processCommissions(enMemoire.collecteurId(), DEBUT, FIN);
+        ReflectionTestUtils.setField(cible, "seuilClientsFlux", 5L);
+        CommissionOrchestrator.CommissionResult resultatFlux =
+                orchestrator.processCommissions(enFlux.collecteurId(), DEBUT, FIN);
+
+        assertTrue(resultatMemoire.isSuccess(), resultatMemoire.getErrorMessage());
+        assertTrue(resultatFlux.isSuccess(), resultatFlux.getErrorMessage());
+        assertEquals(6, resultatMemoire.getCommissionsClients().size());
+        assertTrue(resultatFlux.getCommissionsClients().isEmpty(), "détails dans l'historique en mode flux");
+
+        assertEquals(0, resultatMemoire.getMontantSCollecteur().compareTo(resultatFlux.getMontantSCollecteur()));
+        assertEquals(0, resultatMemoire.getTotalTVA().compareTo(resultatFlux.getTotalTVA()));
+        assertEquals(soldes(enMemoire), soldes(enFlux));
+        assertEquals(debits(enMemoire), debits(enFlux));
+
+        HistoriqueCalculCommission historiqueMemoire = historique(enMemoire);
+        HistoriqueCalculCommission historiqueFlux = historique(enFlux);
+        assertEquals(HistoriqueCalculCommission.StatutCalcul.CALCULE, historiqueFlux.getStatut());
+        assertEquals(historiqueMemoire.getNombreClients(), historiqueFlux.getNombreClients());
+        assertEquals(0, historiqueMemoire.getMontantCommissionTotal().compareTo(historiqueFlux.getMontantCommissionTotal()));
+        assertEquals(0, historiqueMemoire.getMontantTvaTotal().compareTo(historiqueFlux.getMontantTvaTotal()));
+        assertEquals(details(historiqueMemoire), details(historiqueFlux));
+    }
+
+    @Test
+    void modeFlux_LotDuMilieuEnEchec_AnnuleTousLesLots() {
+        Portefeuille portefeuille = portefeuille(100_000);
+        List<Double> soldesAvant = soldes(portefeuille);
+        // Le deuxième lot échoue après avoir mis à jour ses soldes clients
+        doNothing().doThrow(new IllegalStateException("panne au deuxième lot"))
+                .when(ecrituresDiffereesService).differer(anyMap());
+
+        CommissionOrchestrator.CommissionResult resultat =
+                orchestrator.processCommissions(portefeuille.collecteurId(), DEBUT, FIN);
+
+        assertFalse(resultat.isSuccess());
+        assertEquals("panne au deuxième lot", resultat.getErrorMessage());
+        verify(ecrituresDiffereesService, times(2)).differer(anyMap());
+        assertEquals(soldesAvant, soldes(portefeuille));
+        assertTrue(debits(portefeuille).isEmpty(), "les mouvements du premier lot sont annulés");
+        assertFalse(historiqueRepository.existsCalculForPeriod(portefeuille.collecteurId(), DEBUT, FIN));
+    }
+
+    @Test
+    void curseursFlux_BornesParLePoolMoinsLesWorkers() {
+        Semaphore curseurs = (Semaphore) ReflectionTestUtils.getField(cible, "curseursFlux");
+
+        // 8 transactions + 7 curseurs = 15 connexions
+        assertEquals(7, curseurs.availablePermits());
+    }
+
+    private record Portefeuille(Long collecteurId, List<Long> comptes) {
+    }
+
+    /**
+     * Agence, collecteur et un client par entrée de EPARGNES, avec son compte (soldes donnés, le
+     * dernier répété) et son épargne de septembre
+     */
+    private Portefeuille portefeuille(double... soldes) {
+        return transaction.execute(status -> {
+            String cle = UUID.randomUUID().toString().substring(0, 8);
+            Agence agence = agenceRepository.save(Agence.builder()
+                    .codeAgence("AG-" + cle)
+                    .nomAgence("Agence " + cle)
+                    .ville("Douala")
+                    .quartier("Akwa")
+                    .build());
+            Collecteur collecteur = collecteurRepository.save(Collecteur.builder()
+                    .nom("Collecteur")
+                    .prenom(cle)
+                    .password("secret")
+                    .numeroCni("CNI-COL-" + cle)
+                    .adresseMail(cle + "@collecte.cm")
+                    .telephone("690000000")
+                    .role("COLLECTEUR")
+                    .agenceId(agence.getId())
+                    .active(true)
+                    .build());
+
+            List<Long> comptes = new ArrayList<>();
+            for (int i = 0; i < EPARGNES.length; i++) {
+                Client client = clientRepository.save(Client.builder()
+                        .nom("Client " + i)
+                        .prenom(cle)
+                        .numeroCni("CNI-" + cle + "-" + i)
+                        .collecteur(collecteur)
+                        .agence(agence)
+                        .build());
+                CompteClient compte = compteClientRepository.save(CompteClient.builder()
+                        .client(client)
+                        .nomCompte("Compte " + client.getNom())
+                        .numeroCompte("CLI-" + cle + "-" + i)
+                        .typeCompte("EPARGNE")
+                        .solde(soldes[Math.min(i, soldes.length - 1)])
+                        .build());
+                comptes.add(compte.getId());
+                if (EPARGNES[i] > 0) {
+                    mouvementRepository.save(Mouvement.builder()
+                            .montant(EPARGNES[i])
+                            .libelle("Epargne client : " + client.getNom())
+                            .sens("epargne")
+                            .typeMouvement("EPARGNE")
+                            .dateOperation(LocalDateTime.of(2026, 9, 15, 10, 0))
+                            .client(client)
+                            .collecteur(collecteur)
+                            .compteDestination(compte)
+                            .build());
+                }
+            }
+            return new Portefeuille(collecteur.getId(), comptes);
+        });
+    }
+
+    private List<Double> soldes(Portefeuille portefeuille) {
+        return transaction.execute(status -> portefeuille.comptes().stream()
+                .map(id -> compteRepository.findById(id).orElseThrow().getSolde())
+                .toList());
+    }
+
+    /**
+     * Montants débités des comptes clients, dans l'ordre des comptes
+     */
+    private List<Double> debits(Portefeuille portefeuille) {
+        return transaction.execute(status -> mouvementRepository.findAll().stream()
+                .filter(m -> m.getCompteSource() != null && portefeuille.comptes().contains(m.getCompteSource().getId()))
+                .sorted(Comparator.comparing((Mouvement m) -> m.getCompteSource().getId())
+                        .thenComparing(Mouvement::getMontant))
+                .map(Mouvement::getMontant)
+                .toList());
+    }
+
+    private HistoriqueCalculCommission historique(Portefeuille portefeuille) {
+        return transaction.execute(status -> historiqueRepository
+                .findByCollecteurAndPeriod(portefeuille.collecteurId(), DEBUT, FIN)
+                .orElseThrow());
+    }
+
+    /**
+     * Détails par client sans les identifiants (propres à chaque portefeuille), dans l'ordre des clients
+     */
+    private List<List<Double>> details(HistoriqueCalculCommission historique) throws Exception {
+        List<Map<String, Object>> details = new ObjectMapper().readValue(historique.getDetailsCalcul(),
+                new TypeReference<>() { });
+        return details.stream()
+                .sorted(Comparator.comparing(detail -> ((Number) detail.get("clientId")).longValue()))
+                .map(detail -> List.of("montantEpargne", "commissionX", "tva", "ancienSolde", "nouveauSolde").stream()
+                        .map(champ -> ((Number) detail.get(champ)).doubleValue())
+                        .toList())
+                .toList();
+    }
+}
@@ -0,0 +1,119 @@
+package org.example.collectfocep.collectfocep.services;
+
+import org.example.collectfocep.exceptions.BusinessException;
+import org.example.collectfocep.services.CompteLockManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompteLockManagerTest {
+
+    private CompteLockManager lockManager;
+
+    @BeforeEach
+    void setUp() {
+        lockManager = new CompteLockManager(100);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            terminerTransaction();
+        }
+    }
+
+    @Test
+    void verrouiller_RetourneSeulementLesNouveauxComptes() {
+        assertEquals(Set.of(1L, 2L), lockManager.verrouiller(1L, 2L, null, 1L));
+        assertEquals(Set.of(3L), lockManager.verrouiller(2L, 3L));
+    }
+
+    @Test
+    void verrouiller_CompteTenuParUneAutreTransaction_LeveCompteVerrouille() throws Exception {
+        lockManager.verrouiller(42L);
+
+        Throwable erreur = autreTransaction(42L);
+        assertInstanceOf(BusinessException.class, erreur);
+        assertEquals("COMPTE_VERROUILLE", ((BusinessException) erreur).getCode());
+
+        terminerTransaction();
+        assertNull(autreTransaction(42L));
+    }
+
+    @Test
+    void verrouiller_ComptesDifferents_NeSeBloquentPas() throws Exception {
+        lockManager.verrouiller(1L);
+
+        assertNull(autreTransaction(2L));
+    }
+
+    @Test
+    void verrouiller_CompteInferieurAuxComptesTenus_EchoueSansAttendre() throws Exception {
+        lockManager = new CompteLockManager(5_000);
+        lockManager.verrouiller(10L);
+
+        long debut = System.nanoTime();
+        Throwable erreur = CompletableFuture.supplyAsync(() -> {
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                lockManager.verrouiller(20L);
+                // 10 < 20 déjà tenu : attendre pourrait croiser l'ordre d'une autre transaction
+                lockManager.verrouiller(10L);
+                return (Throwable) null;
+            } catch (BusinessException e) {
+                return e;
+            } finally {
+                terminerTransaction();
+            }
+        }).get();
+
+        assertInstanceOf(BusinessException.class, erreur);
+        assertTrue(System.nanoTime() - debut < 2_000_000_000L, "le second appel ne doit pas attendre le timeout");
+        // Le compte 20 a été rendu avec la transaction en échec
+        assertEquals(1, lockManager.nombreComptesVerrouilles());
+    }
+
+    @Test
+    void verrouiller_FinDeTransaction_VideLaTableDesVerrous() {
+        lockManager.verrouiller(3L, 1L, 2L);
+        assertEquals(3, lockManager.nombreComptesVerrouilles());
+
+        terminerTransaction();
+        assertEquals(0, lockManager.nombreComptesVerrouilles());
+    }
+
+    @Test
+    void verrouiller_SansTransaction_Refuse() {
+        terminerTransaction();
+        assertThrows(IllegalStateException.class, () -> lockManager.verrouiller(1L));
+    }
+
+    private Throwable autreTransaction(Long compteId) throws ExecutionException, InterruptedException {
+        return CompletableFuture.supplyAsync(() -> {
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                lockManager.verrouiller(compteId);
+                return (Throwable) null;
+            } catch (BusinessException e) {
+                return e;
+            } finally {
+                terminerTransaction();
+            }
+        }).get();
+    }
+
+    private static void terminerTransaction() {
+        var synchronisations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronisations.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+    }
+}
@@ -3,6 +3,7 @@ package org.example.collectfocep.collectfocep.services;
 import org.example.collectfocep.entities.*;
 import org.example.collectfocep.exceptions.ResourceNotFoundException;
 import org.example.collectfocep.repositories.*;
+import org.example.collectfocep.services.CompteIdCache;
 import org.example.collectfocep.services.impl.CompteServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -37,6 +38,9 @@ public class CompteServiceEntityTest {
     @Mock
     private CompteLiaisonRepository compteLiaisonRepository;
 
+    @Mock
+    private CompteIdCache compteIdCache;
+
     @InjectMocks
     private CompteServiceImpl compteService;
 
@@ -4,6 +4,7 @@ import org.example.collectfocep.dto.TransferDetailDTO;
 import org.example.collectfocep.entities.*;
 import org.example.collectfocep.exceptions.ResourceNotFoundException;
 import org.example.collectfocep.repositories.*;
+import org.example.collectfocep.services.CompteIdCache;
 import org.example.collectfocep.services.CompteTransferService;
 import org.example.collectfocep.services.impl.MouvementServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
@@ -52,6 +53,9 @@ public class CompteTransferServiceTest {
     @Mock
     private AuditLogRepository auditLogRepository;
 
+    @Mock
+    private CompteIdCache compteIdCache;
+
     @InjectMocks
     private CompteTransferService compteTransferService;
 
@@ -0,0 +1,237 @@
+package org.example.collectfocep.collectfocep.services;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.collectfocep.collectfocep.config.JpaH2TestConfig;
+import org.example.collectfocep.entities.Admin;
+import org.example.collectfocep.entities.Agence;
+import org.example.collectfocep.entities.Client;
+import org.example.collectfocep.entities.Collecteur;
+import org.example.collectfocep.entities.CompteClient;
+import org.example.collectfocep.entities.Mouvement;
+import org.example.collectfocep.repositories.AdminRepository;
+import org.example.collectfocep.repositories.AgenceRepository;
+import org.example.collectfocep.repositories.ClientRepository;
+import org.example.collectfocep.repositories.CollecteurRepository;
+import org.example.collectfocep.repositories.CompteClientRepository;
+import org.example.collectfocep.repositories.MouvementRepository;
+import org.example.collectfocep.services.ExportExcelService;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Export Excel sur une vraie base : nombre de requêtes indépendant du volume exporté, et classeur
+ * relu après écriture (onglets, en-têtes, lignes, limite maxRecords).
+ */
+@SpringJUnitConfig(ExportExcelServiceTest.Config.class)
+public class ExportExcelServiceTest {
+
+    @Configuration
+    @Import({JpaH2TestConfig.class, ExportExcelService.class})
+    static class Config {
+    }
+
+    @Autowired private ExportExcelService exportExcelService;
+    @Autowired private AgenceRepository agenceRepository;
+    @Autowired private AdminRepository adminRepository;
+    @Autowired private CollecteurRepository collecteurRepository;
+    @Autowired private ClientRepository clientRepository;
+    @Autowired private CompteClientRepository compteClientRepository;
+    @Autowired private MouvementRepository mouvementRepository;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transaction;
+
+    @BeforeEach
+    void setUp() {
+        transaction = new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    void exportComplet_NombreDeRequetesIndependantDuVolume() throws Exception {
+        peupler(1, 1, 2, LocalDateTime.of(2026, 1, 10, 9, 0));
+        long requetesPetitExport = requetesExport();
+
+        peupler(4, 3, 5, LocalDateTime.of(2026, 1, 10, 9, 0));
+
+        // Statistiques Hibernate : les curseurs JDBC des onglets Clients et Transactions n'y figurent pas (2 de plus)
+        assertEquals(requetesPetitExport, requetesExport());
+    }
+
+    @Test
+    void exportEnFlux_ClasseurRelu_OngletsEnTetesLignesEtLimite() throws Exception {
+        Long agenceId = peupler(1, 2, 3, LocalDateTime.of(2026, 3, 10, 9, 0)).get(0);
+        ExportExcelService.ExportFilters filtres = new ExportExcelService.ExportFilters();
+        filtres.setAgenceId(agenceId);
+        filtres.setDateDebut(LocalDateTime.of(2026, 3, 1, 0, 0));
+        filtres.setDateFin(LocalDateTime.of(2026, 3, 31, 23, 59));
+        filtres.setMaxRecords(4);
+
+        assertEquals(true, ReflectionTestUtils.getField(exportExcelService, "streaming"));
+        try (Workbook classeur = relire(filtres)) {
+            assertEquals(List.of("Agences", "Admins", "Collecteurs", "Clients", "Transactions", "Résumé"),
+                    IntStream.range(0, classeur.getNumberOfSheets()).mapToObj(classeur::getSheetName).toList());
+            assertEquals(List.of("ID", "Code Agence", "Nom Agence", "Ville", "Quartier", "Adresse",
+                    "Téléphone", "Responsable", "Statut", "Date Création",
+                    "Nb Admins", "Nb Collecteurs", "Nb Clients", "Montant Total Épargnes"), ligne(classeur, "Agences", 0));
+            assertEquals(List.of("ID", "Nom", "Prénom", "CNI", "Email", "Téléphone",
+                    "Agence", "Date Création", "Nb Collecteurs Supervisés"), ligne(classeur, "Admins", 0));
+            assertEquals(List.of("ID", "Nom", "Prénom", "CNI", "Email", "Téléphone", "Agence",
+                    "Statut", "Ancienneté (mois)", "Montant Max Retrait", "Date Création",
+                    "Nb Clients", "Nb Clients Actifs", "Total Épargnes Collectées"), ligne(classeur, "Collecteurs", 0));
+            assertEquals(List.of("ID", "Nom", "Prénom", "CNI", "Téléphone", "Collecteur", "Agence",
+                    "Statut", "Date Création", "Solde Total", "Nb Transactions", "Dernière Transaction"),
+                    ligne(classeur, "Clients", 0));
+            assertEquals(List.of("Date", "Type", "Agence", "Collecteur", "Client", "Montant", "Solde Après"),
+                    ligne(classeur, "Transactions", 0));
+            assertEquals("FOCEP - Export Données Système", ligne(classeur, "Résumé", 0).get(0));
+
+            assertEquals(1, lignesDeDonnees(classeur, "Agences"));
+            assertEquals(1, lignesDeDonnees(classeur, "Admins"));
+            assertEquals(2, lignesDeDonnees(classeur, "Collecteurs"));
+            assertEquals("3", ligne(classeur, "Collecteurs", 1).get(11));
+            // 6 clients et 6 épargnes en mars : maxRecords = 4 coupe les deux onglets lus par curseur
+            assertEquals(4, lignesDeDonnees(classeur, "Clients"));
+            assertEquals(4, lignesDeDonnees(classeur, "Transactions"));
+            assertEquals("5000", ligne(classeur, "Transactions", 1).get(5));
+        }
+
+        filtres.setMaxRecords(null);
+        try (Workbook classeur = relire(filtres)) {
+            assertEquals(6, lignesDeDonnees(classeur, "Clients"));
+            assertEquals(6, lignesDeDonnees(classeur, "Transactions"));
+        }
+    }
+
+    private Workbook relire(ExportExcelService.ExportFilters filtres) throws Exception {
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+        exportExcelService.exportCompleteData(filtres, sortie);
+        return new XSSFWorkbook(new ByteArrayInputStream(sortie.toByteArray()));
+    }
+
+    /**
+     * Valeurs affichées d'une ligne (nombres sans décimales)
+     */
+    private static List<String> ligne(Workbook classeur, String onglet, int numero) {
+        DataFormatter format = new DataFormatter();
+        Row row = classeur.getSheet(onglet).getRow(numero);
+        return IntStream.range(0, row.getLastCellNum())
+                .mapToObj(i -> row.getCell(i).getCellType() == CellType.NUMERIC
+                        ? String.valueOf((long) row.getCell(i).getNumericCellValue())
+                        : format.formatCellValue(row.getCell(i)))
+                .toList();
+    }
+
+    private static int lignesDeDonnees(Workbook classeur, String onglet) {
+        return classeur.getSheet(onglet).getPhysicalNumberOfRows() - 1;
+    }
+
+    /**
+     * Requêtes préparées par Hibernate pendant un export complet sans filtre
+     */
+    private long requetesExport() throws Exception {
+        Statistics statistiques = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistiques.clear();
+        exportExcelService.exportCompleteData(new ExportExcelService.ExportFilters(), OutputStream.nullOutputStream());
+        return statistiques.getPrepareStatementCount();
+    }
+
+    /**
+     * Agences avec un admin chacune, collecteurs et clients, et une épargne par client à la date donnée ;
+     * renvoie les agences créées
+     */
+    private List<Long> peupler(int agences, int collecteursParAgence, int clientsParCollecteur,
+                               LocalDateTime dateEpargne) {
+        return transaction.execute(status -> {
+            List<Long> agenceIds = new ArrayList<>();
+            for (int a = 0; a < agences; a++) {
+                String cle = UUID.randomUUID().toString().substring(0, 8);
+                Agence agence = agenceRepository.save(Agence.builder()
+                        .codeAgence("AG-" + cle)
+                        .nomAgence("Agence " + cle)
+                        .ville("Douala")
+                        .quartier("Akwa")
+                        .build());
+                agenceIds.add(agence.getId());
+                adminRepository.save(Admin.builder()
+                        .nom("Admin")
+                        .prenom(cle)
+                        .password("secret")
+                        .numeroCni("CNI-ADM-" + cle)
+                        .adresseMail("admin-" + cle + "@collecte.cm")
+                        .telephone("690000000")
+                        .role("ADMIN")
+                        .agence(agence)
+                        .build());
+
+                for (int c = 0; c < collecteursParAgence; c++) {
+                    Collecteur collecteur = collecteurRepository.save(Collecteur.builder()
+                            .nom("Collecteur " + c)
+                            .prenom(cle)
+                            .password("secret")
+                            .numeroCni("CNI-COL-" + cle + "-" + c)
+                            .adresseMail("col-" + cle + "-" + c + "@collecte.cm")
+                            .telephone("690000000")
+                            .role("COLLECTEUR")
+                            .agenceId(agence.getId())
+                            .active(true)
+                            .build());
+
+                    for (int i = 0; i < clientsParCollecteur; i++) {
+                        String suffixe = cle + "-" + c + "-" + i;
+                        Client client = clientRepository.save(Client.builder()
+                                .nom("Client " + i)
+                                .prenom(cle)
+                                .numeroCni("CNI-" + suffixe)
+                                .collecteur(collecteur)
+                                .agence(agence)
+                                .build());
+                        CompteClient compte = compteClientRepository.save(CompteClient.builder()
+                                .client(client)
+                                .nomCompte("Compte " + suffixe)
+                                .numeroCompte("CLI-" + suffixe)
+                                .typeCompte("EPARGNE")
+                                .solde(5_000)
+                                .build());
+                        mouvementRepository.save(Mouvement.builder()
+                                .montant(5_000)
+                                .libelle("Epargne client : " + client.getNom())
+                                .sens("epargne")
+                                .typeMouvement("EPARGNE")
+                                .dateOperation(dateEpargne)
+                                .client(client)
+                                .collecteur(collecteur)
+                                .compteDestination(compte)
+                                .build());
+                    }
+                }
+            }
+            return agenceIds;
+        });
+    }
+}
@@ -0,0 +1,62 @@
+package org.example.collectfocep.collectfocep.services;
+
+import org.example.collectfocep.entities.Journal;
+import org.example.collectfocep.services.JournalDuJourRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JournalDuJourRegistryTest {
+
+    private static final LocalDate AUJOURDHUI = LocalDate.of(2025, 3, 10);
+
+    private JournalDuJourRegistry registry;
+    private AtomicInteger chargements;
+
+    @BeforeEach
+    void setUp() {
+        registry = new JournalDuJourRegistry(100, 10);
+        chargements = new AtomicInteger();
+    }
+
+    @Test
+    void resoudre_ChargeUneSeuleFoisParCollecteurEtDate() {
+        JournalDuJourRegistry.JournalDuJour premier = registry.resoudre(1L, AUJOURDHUI, chargeur(10L));
+        JournalDuJourRegistry.JournalDuJour second = registry.resoudre(1L, AUJOURDHUI, chargeur(10L));
+
+        assertEquals(10L, premier.journalId());
+        assertEquals("OUVERT", premier.statut());
+        assertSame(premier, second);
+        assertEquals(1, chargements.get());
+
+        registry.resoudre(1L, AUJOURDHUI.plusDays(1), chargeur(11L));
+        assertEquals(2, chargements.get());
+    }
+
+    @Test
+    void invalider_ForceUnNouveauChargement() {
+        registry.resoudre(1L, AUJOURDHUI, chargeur(10L));
+        registry.resoudre(2L, AUJOURDHUI, chargeur(20L));
+
+        registry.invalider(10L);
+
+        registry.resoudre(1L, AUJOURDHUI, chargeur(10L));
+        registry.resoudre(2L, AUJOURDHUI, chargeur(20L));
+        assertEquals(3, chargements.get());
+    }
+
+    private Supplier<Journal> chargeur(Long journalId) {
+        return () -> {
+            chargements.incrementAndGet();
+            Journal journal = new Journal();
+            journal.setId(journalId);
+            journal.setStatut("OUVERT");
+            return journal;
+        };
+    }
+}
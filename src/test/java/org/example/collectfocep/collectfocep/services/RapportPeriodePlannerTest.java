@@ -0,0 +1,137 @@
+package org.example.collectfocep.collectfocep.services;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.example.collectfocep.config.AsyncConfig;
+import org.example.collectfocep.entities.CategorieMouvement;
+import org.example.collectfocep.entities.Client;
+import org.example.collectfocep.entities.Collecteur;
+import org.example.collectfocep.entities.Report;
+import org.example.collectfocep.repositories.ClientRepository;
+import org.example.collectfocep.repositories.CollecteurRepository;
+import org.example.collectfocep.repositories.MouvementRepository;
+import org.example.collectfocep.services.RapportPeriodePlanner;
+import org.example.collectfocep.services.ReportArtifactStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class RapportPeriodePlannerTest {
+
+    @Mock
+    private MouvementRepository mouvementRepository;
+    @Mock
+    private ClientRepository clientRepository;
+    @Mock
+    private CollecteurRepository collecteurRepository;
+    @Mock
+    private ReportArtifactStore reportArtifactStore;
+
+    private RapportPeriodePlanner planner;
+    private final ByteArrayOutputStream classeur = new ByteArrayOutputStream();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        planner = new RapportPeriodePlanner(mouvementRepository, clientRepository, collecteurRepository,
+                reportArtifactStore, Runnable::run);
+
+        // Partagés par les tests ; le cas d'échec n'en utilise aucun
+        lenient().when(collecteurRepository.findById(7L)).thenReturn(Optional.of(
+                Collecteur.builder().id(7L).nom("Mbarga").prenom("Paul").build()));
+        lenient().when(reportArtifactStore.filigrane(eq(7L), any(), any())).thenReturn("f");
+        lenient().when(reportArtifactStore.obtenirRapportCollecteur(anyString(), any(), any(), any(), eq("f"), anyString(), any()))
+                .thenAnswer(i -> {
+                    ReportArtifactStore.Generateur generateur = i.getArgument(6);
+                    generateur.ecrire(classeur);
+                    return Report.builder().filePath("annuel_collecteur/ab/ab.xlsx").build();
+                });
+        lenient().when(clientRepository.findByCollecteurId(7L)).thenReturn(List.of(
+                Client.builder().id(1L).nom("Ngo").prenom("Alice").build()));
+    }
+
+    @Test
+    void rapportAnnuelFusionneLesDouzeMois() throws Exception {
+        // Chaque mois : 10 000 d'épargne et 2 000 de retrait pour le client 1
+        when(mouvementRepository.totauxParClientEtCategorie(eq(7L), any(LocalDateTime.class), any(LocalDateTime.class)))
+                .thenAnswer(i -> lignes(
+                        new Object[]{1L, CategorieMouvement.EPARGNE, 10_000.0, 4L},
+                        new Object[]{1L, CategorieMouvement.RETRAIT, 2_000.0, 1L}));
+
+        CompletableFuture<String> chemin = planner.rapportAnnuel(7L, 2025);
+
+        assertEquals("annuel_collecteur/ab/ab.xlsx", chemin.get());
+        verify(mouvementRepository, times(12)).totauxParClientEtCategorie(eq(7L), any(), any());
+
+        try (Workbook workbook = new XSSFWorkbook(new ByteArrayInputStream(classeur.toByteArray()))) {
+            Sheet synthese = workbook.getSheet("Synthèse");
+            Row total = synthese.getRow(3 + 12);
+            assertEquals("TOTAL", total.getCell(0).getStringCellValue());
+            assertEquals(120_000.0, total.getCell(1).getNumericCellValue());
+            assertEquals(24_000.0, total.getCell(2).getNumericCellValue());
+            assertEquals(60.0, total.getCell(4).getNumericCellValue());
+
+            Row client = workbook.getSheet("Clients").getRow(1);
+            assertEquals("Ngo Alice", client.getCell(1).getStringCellValue());
+            assertEquals(96_000.0, client.getCell(2 + 12 + 2).getNumericCellValue());
+        }
+    }
+
+    @Test
+    void poolDesMoisLitAutantDeMoisQueDeWorkers() throws Exception {
+        ThreadPoolTaskExecutor poolMois = new AsyncConfig().rapportMoisExecutor(6, 500);
+        planner = new RapportPeriodePlanner(mouvementRepository, clientRepository, collecteurRepository,
+                reportArtifactStore, poolMois);
+        // Chaque lecture attend que 6 mois soient en cours : passe seulement si le pool en exécute 6 à la fois
+        CyclicBarrier sixMois = new CyclicBarrier(6);
+        AtomicInteger enCours = new AtomicInteger();
+        AtomicInteger maximum = new AtomicInteger();
+        when(mouvementRepository.totauxParClientEtCategorie(eq(7L), any(LocalDateTime.class), any(LocalDateTime.class)))
+                .thenAnswer(i -> {
+                    maximum.accumulateAndGet(enCours.incrementAndGet(), Math::max);
+                    sixMois.await(5, TimeUnit.SECONDS);
+                    enCours.decrementAndGet();
+                    return lignes();
+                });
+
+        try {
+            assertEquals("annuel_collecteur/ab/ab.xlsx", planner.rapportAnnuel(7L, 2025).get(10, TimeUnit.SECONDS));
+            assertEquals(6, maximum.get());
+        } finally {
+            poolMois.shutdown();
+        }
+    }
+
+    @Test
+    void collecteurInconnuEchoueAvantToutLancement() {
+        when(collecteurRepository.findById(8L)).thenReturn(Optional.empty());
+
+        assertThrows(RuntimeException.class, () -> planner.rapportPeriode(8L,
+                java.time.YearMonth.of(2025, 1), java.time.YearMonth.of(2025, 3)));
+        verifyNoInteractions(mouvementRepository);
+    }
+
+    private static List<Object[]> lignes(Object[]... lignes) {
+        return new ArrayList<>(List.of(lignes));
+    }
+}
@@ -0,0 +1,81 @@
+package org.example.collectfocep.collectfocep.services;
+
+import org.example.collectfocep.entities.Agence;
+import org.example.collectfocep.entities.Client;
+import org.example.collectfocep.entities.Collecteur;
+import org.example.collectfocep.entities.CommissionParameter;
+import org.example.collectfocep.entities.CommissionType;
+import org.example.collectfocep.repositories.CommissionParameterRepository;
+import org.example.collectfocep.services.ReglesCommissionCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ReglesCommissionCacheTest {
+
+    @Mock
+    private CommissionParameterRepository parameterRepository;
+
+    private ReglesCommissionCache cache;
+    private CommissionParameter agence;
+    private CommissionParameter collecteur;
+    private CommissionParameter client;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ReglesCommissionCache(parameterRepository, 30);
+
+        agence = parametre(CommissionType.PERCENTAGE, "5");
+        agence.setAgence(Agence.builder().id(1L).build());
+        collecteur = parametre(CommissionType.PERCENTAGE, "4");
+        collecteur.setCollecteur(Collecteur.builder().id(10L).build());
+        client = parametre(CommissionType.FIXED, "300");
+        client.setClient(Client.builder().id(100L).build());
+    }
+
+    @Test
+    void hierarchieResolueSurUneSeuleLectureParAgence() {
+        when(parameterRepository.findActifsByAgenceIdWithTiers(1L)).thenReturn(List.of(agence, collecteur, client));
+
+        assertSame(client, cache.resoudre(1L, 10L, 100L).orElseThrow());
+        assertSame(collecteur, cache.resoudre(1L, 10L, 101L).orElseThrow());
+        assertSame(agence, cache.resoudre(1L, 20L, 102L).orElseThrow());
+        assertSame(agence, cache.resoudre(1L, null, 103L).orElseThrow());
+
+        verify(parameterRepository, times(1)).findActifsByAgenceIdWithTiers(1L);
+    }
+
+    @Test
+    void invalidationRelitLesParametresDeLAgence() {
+        when(parameterRepository.findActifsByAgenceIdWithTiers(1L))
+                .thenReturn(List.of(agence))
+                .thenReturn(List.of(agence, client));
+
+        assertSame(agence, cache.resoudre(1L, 10L, 100L).orElseThrow());
+        cache.invaliderAgence(1L);
+        assertSame(client, cache.resoudre(1L, 10L, 100L).orElseThrow());
+    }
+
+    @Test
+    void sansAgenceNiParametreAucuneResolution() {
+        when(parameterRepository.findActifsByAgenceIdWithTiers(2L)).thenReturn(List.of());
+
+        assertEquals(Optional.empty(), cache.resoudre(null, 10L, 100L));
+        assertEquals(Optional.empty(), cache.resoudre(2L, 10L, 100L));
+        verify(parameterRepository, never()).findActifsByAgenceIdWithTiers(null);
+    }
+
+    private static CommissionParameter parametre(CommissionType type, String valeur) {
+        return CommissionParameter.builder().type(type).valeur(new BigDecimal(valeur)).build();
+    }
+}
@@ -0,0 +1,134 @@
+package org.example.collectfocep.collectfocep.services;
+
+import org.example.collectfocep.dto.CommissionBatchJobDTO.CollecteurResultat;
+import org.example.collectfocep.dto.RemunerationAgenceDTO;
+import org.example.collectfocep.entities.*;
+import org.example.collectfocep.repositories.CollecteurRepository;
+import org.example.collectfocep.repositories.HistoriqueCalculCommissionRepository;
+import org.example.collectfocep.repositories.HistoriqueRemunerationRepository;
+import org.example.collectfocep.repositories.RubriqueRemunerationRepository;
+import org.example.collectfocep.services.CompteSpecialiseService;
+import org.example.collectfocep.services.RemunerationProcessor;
+import org.example.collectfocep.services.impl.MouvementServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class RemunerationProcessorTest {
+
+    private static final LocalDate DEBUT = LocalDate.of(2025, 3, 1);
+    private static final LocalDate FIN = LocalDate.of(2025, 3, 31);
+
+    @Mock
+    private RubriqueRemunerationRepository rubriqueRepository;
+    @Mock
+    private CompteSpecialiseService compteSpecialiseService;
+    @Mock
+    private MouvementServiceImpl mouvementService;
+    @Mock
+    private HistoriqueRemunerationRepository historiqueRemunerationRepository;
+    @Mock
+    private CollecteurRepository collecteurRepository;
+    @Mock
+    private HistoriqueCalculCommissionRepository historiqueCalculRepository;
+
+    private RemunerationProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        processor = new RemunerationProcessor(rubriqueRepository, compteSpecialiseService, mouvementService,
+                historiqueRemunerationRepository, collecteurRepository, historiqueCalculRepository);
+    }
+
+    @Test
+    void agenceRemunereeEnUnPassageEtIgnoreLesPeriodesDejaRemunerees() {
+        HistoriqueCalculCommission calcul10 = calcul(10L, "1000");
+        HistoriqueCalculCommission calcul20 = calcul(20L, "500");
+        HistoriqueCalculCommission calcul30 = calcul(30L, "2000");
+        when(historiqueCalculRepository.findNonRemuneresByAgenceAndPeriod(1L, DEBUT, FIN))
+                .thenReturn(List.of(calcul10, calcul20, calcul30));
+        when(historiqueRemunerationRepository.findCollecteurIdsWithOverlappingPeriod(any(), eq(DEBUT), eq(FIN)))
+                .thenReturn(List.of(20L));
+
+        when(compteSpecialiseService.getOrCreateCPCC(1L)).thenReturn(mock(ComptePassageCommissionCollecte.class));
+        when(compteSpecialiseService.getOrCreateCCC(1L)).thenReturn(mock(CompteChargeCollecte.class));
+        when(compteSpecialiseService.getOrCreateCPC(1L)).thenReturn(mock(CompteProduitCollecte.class));
+        when(compteSpecialiseService.getOrCreateCPT(1L)).thenReturn(mock(ComptePassageTaxe.class));
+        when(compteSpecialiseService.getOrCreateCT(1L)).thenReturn(mock(CompteTaxe.class));
+        when(compteSpecialiseService.getOrCreateCSCs(List.of(10L, 30L))).thenReturn(Map.of(
+                10L, mock(CompteSalaireCollecteur.class), 30L, mock(CompteSalaireCollecteur.class)));
+
+        // Rubrique fixe de 600 pour 10 et 30 uniquement
+        when(rubriqueRepository.findActiveRubriquesWithCollecteurs(any())).thenReturn(List.of(
+                RubriqueRemuneration.builder().nom("Fixe").type(RubriqueRemuneration.TypeRubrique.CONSTANT)
+                        .valeur(new BigDecimal("600")).dateApplication(DEBUT).active(true)
+                        .collecteurIds(List.of(10L, 30L)).build()));
+
+        when(historiqueRemunerationRepository.saveAll(anyList())).thenAnswer(inv -> {
+            List<HistoriqueRemuneration> historiques = inv.getArgument(0);
+            long id = 500L;
+            for (HistoriqueRemuneration historique : historiques) {
+                historique.setId(id++);
+            }
+            return historiques;
+        });
+
+        RemunerationAgenceDTO resultat = processor.processRemunerationAgence(1L, DEBUT, FIN, "admin");
+
+        assertEquals(2, resultat.getNombreRemuneres());
+        assertEquals(1, resultat.getNombreIgnores());
+        assertEquals(0, resultat.getNombreEchecs());
+        // Par collecteur : Vi (C.P.C.C → C.S.C), surplus EMF, TVA
+        assertEquals(6, resultat.getNombreMouvements());
+        assertEquals(0, new BigDecimal("1200").compareTo(resultat.getTotalRubriquesVi()));
+        assertEquals(0, new BigDecimal("1800").compareTo(resultat.getTotalEMF()));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Mouvement>> mouvements = ArgumentCaptor.forClass(List.class);
+        verify(mouvementService).effectuerMouvementsEnsemblistes(mouvements.capture(), anySet());
+        assertEquals(6, mouvements.getValue().size());
+        verify(mouvementService, never()).effectuerMouvement(any());
+        verify(rubriqueRepository, never()).findActiveRubriquesByCollecteur(any(), any());
+
+        // TVA postée = TVA de l'historique, en francs (S = 1000 → 193, S = 2000 → 385)
+        List<Double> tvaPostees = mouvements.getValue().stream()
+                .filter(m -> m.getLibelle().startsWith("TVA")).map(Mouvement::getMontant).toList();
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<HistoriqueRemuneration>> historiques = ArgumentCaptor.forClass(List.class);
+        verify(historiqueRemunerationRepository).saveAll(historiques.capture());
+        assertEquals(List.of(193.0, 385.0), tvaPostees);
+        assertEquals(historiques.getValue().stream().map(h -> h.getMontantTva().doubleValue()).toList(), tvaPostees);
+
+        assertTrue(calcul10.getRemunere());
+        assertEquals(500L, calcul10.getRemunerationId());
+        assertFalse(calcul20.getRemunere());
+        CollecteurResultat ligne30 = resultat.getResultats().get(2);
+        assertEquals(30L, ligne30.getCollecteurId());
+        assertEquals(501L, ligne30.getHistoriqueRemunerationId());
+    }
+
+    private static HistoriqueCalculCommission calcul(Long collecteurId, String montantS) {
+        return HistoriqueCalculCommission.builder()
+                .id(collecteurId * 10)
+                .collecteur(Collecteur.builder().id(collecteurId).build())
+                .agenceId(1L)
+                .dateDebut(DEBUT)
+                .dateFin(FIN)
+                .montantCommissionTotal(new BigDecimal(montantS))
+                .remunere(false)
+                .build();
+    }
+}
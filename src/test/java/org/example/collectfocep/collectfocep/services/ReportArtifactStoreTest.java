@@ -0,0 +1,152 @@
+package org.example.collectfocep.collectfocep.services;
+
+import org.example.collectfocep.entities.Agence;
+import org.example.collectfocep.entities.Collecteur;
+import org.example.collectfocep.entities.Report;
+import org.example.collectfocep.repositories.MouvementRepository;
+import org.example.collectfocep.repositories.ReportRepository;
+import org.example.collectfocep.services.ReportArtifactStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ReportArtifactStoreTest {
+
+    private static final LocalDateTime DEBUT = LocalDateTime.of(2025, 3, 1, 0, 0);
+    private static final LocalDateTime FIN = LocalDateTime.of(2025, 3, 31, 23, 59, 59);
+
+    @Mock
+    private ReportRepository reportRepository;
+    @Mock
+    private MouvementRepository mouvementRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path repertoire;
+
+    private ReportArtifactStore store;
+    private Collecteur collecteur;
+    private final List<Report> enregistres = new ArrayList<>();
+    private final AtomicInteger generations = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        store = new ReportArtifactStore(reportRepository, mouvementRepository, transactionManager, repertoire.toString());
+        collecteur = Collecteur.builder().id(7L).agence(Agence.builder().id(1L).build()).build();
+
+        when(reportRepository.findArtefactsCollecteur("MENSUEL", 7L, DEBUT, FIN)).thenAnswer(i -> List.copyOf(enregistres));
+        when(reportRepository.save(any(Report.class))).thenAnswer(i -> {
+            Report report = i.getArgument(0);
+            if (!enregistres.contains(report)) {
+                enregistres.add(report);
+            }
+            return report;
+        });
+
+        // Transaction courte simulée : synchronisations déclenchées au commit ou au rollback
+        lenient().when(transactionManager.getTransaction(any())).thenAnswer(i -> {
+            TransactionSynchronizationManager.initSynchronization();
+            return new SimpleTransactionStatus();
+        });
+        lenient().doAnswer(i -> terminer(true)).when(transactionManager).commit(any());
+        lenient().doAnswer(i -> terminer(false)).when(transactionManager).rollback(any());
+    }
+
+    @Test
+    void rapportResserviTantQueLesMouvementsNeChangentPas() throws Exception {
+        filigrane(12L, 340L, 15L, 98_000.0);
+
+        Report premier = obtenir("v1");
+        Report second = obtenir("v2");
+
+        assertEquals(1, generations.get());
+        assertSame(premier, second);
+        assertEquals(Report.ReportStatus.COMPLETED, second.getStatus());
+        assertEquals(2L, second.getFileSize());
+        assertEquals("v1", contenu(second));
+    }
+
+    @Test
+    void mouvementModifieRegenereEtRemplaceLArtefact() throws Exception {
+        filigrane(12L, 340L, 15L, 98_000.0);
+        Report report = obtenir("v1");
+        Path ancien = repertoire.resolve(report.getFilePath());
+
+        // Même nombre de mouvements, une version incrémentée
+        filigrane(12L, 340L, 16L, 98_000.0);
+        obtenir("v2");
+
+        assertEquals(2, generations.get());
+        assertEquals(1, enregistres.size());
+        assertFalse(Files.exists(ancien));
+        assertEquals("v2", contenu(report));
+    }
+
+    @Test
+    void echecDEnregistrement_ConserveLAncienArtefact() throws Exception {
+        filigrane(12L, 340L, 15L, 98_000.0);
+        Report report = obtenir("v1");
+        Path ancien = repertoire.resolve(report.getFilePath());
+
+        filigrane(12L, 340L, 16L, 98_000.0);
+        when(reportRepository.save(any(Report.class))).thenThrow(new IllegalStateException("base indisponible"));
+
+        assertThrows(IllegalStateException.class, () -> obtenir("v2"));
+        // Le Report en base pointe toujours vers l'ancien fichier : il ne doit pas être supprimé
+        assertTrue(Files.exists(ancien));
+        verify(transactionManager).rollback(any());
+    }
+
+    private static Object terminer(boolean commit) {
+        List<TransactionSynchronization> synchronisations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        if (commit) {
+            synchronisations.forEach(TransactionSynchronization::afterCommit);
+        }
+        synchronisations.forEach(s -> s.afterCompletion(commit
+                ? TransactionSynchronization.STATUS_COMMITTED : TransactionSynchronization.STATUS_ROLLED_BACK));
+        return null;
+    }
+
+    private Report obtenir(String contenu) throws Exception {
+        return store.obtenirRapportCollecteur("MENSUEL", collecteur, DEBUT, FIN, "Rapport", out -> {
+            generations.incrementAndGet();
+            out.write(contenu.getBytes(StandardCharsets.UTF_8));
+        });
+    }
+
+    private String contenu(Report report) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(report.getFileSize(), store.transferer(report, out));
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private void filigrane(long nombre, long idMax, long versions, double montants) {
+        List<Object[]> lignes = new ArrayList<>();
+        lignes.add(new Object[]{nombre, idMax, versions, montants});
+        when(mouvementRepository.filigraneCollecteurPeriode(eq(7L), eq(DEBUT), eq(FIN))).thenReturn(lignes);
+    }
+}
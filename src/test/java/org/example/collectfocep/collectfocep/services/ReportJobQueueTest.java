@@ -0,0 +1,204 @@
+package org.example.collectfocep.collectfocep.services;
+
+import org.example.collectfocep.entities.ReportJob;
+import org.example.collectfocep.entities.ReportJob.Priorite;
+import org.example.collectfocep.entities.ReportJob.Statut;
+import org.example.collectfocep.entities.ReportJob.TypeJob;
+import org.example.collectfocep.repositories.CollecteurRepository;
+import org.example.collectfocep.repositories.ReportJobRepository;
+import org.example.collectfocep.services.ExportExcelService;
+import org.example.collectfocep.services.RapportPeriodePlanner;
+import org.example.collectfocep.services.ReportArtifactStore;
+import org.example.collectfocep.services.ReportJobQueue;
+import org.example.collectfocep.services.ReportsService;
+import org.example.collectfocep.services.interfaces.JournalService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ReportJobQueueTest {
+
+    @Mock
+    private ReportJobRepository jobRepository;
+    @Mock
+    private CollecteurRepository collecteurRepository;
+    @Mock
+    private JournalService journalService;
+    @Mock
+    private ReportsService reportsService;
+    @Mock
+    private RapportPeriodePlanner rapportPeriodePlanner;
+    @Mock
+    private ExportExcelService exportExcelService;
+    @Mock
+    private ReportArtifactStore reportArtifactStore;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    // Tâches soumises au pool des jobs, exécutées à la main par les tests
+    private final List<Runnable> taches = new ArrayList<>();
+    private ReportJobQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        queue = new ReportJobQueue(jobRepository, collecteurRepository, journalService, reportsService,
+                rapportPeriodePlanner, exportExcelService, reportArtifactStore, taches::add,
+                transactionManager, 2, 120, 3);
+        lenient().when(jobRepository.compterParAgence(Statut.PROCESSING)).thenReturn(List.of());
+        lenient().when(jobRepository.reserver(anyLong(), eq(Statut.PENDING), eq(Statut.PROCESSING), any()))
+                .thenReturn(1);
+    }
+
+    @Test
+    void interactifAvantMasseEtAgenceLaMoinsServieDAbord() {
+        List<Object[]> parAgence = new ArrayList<>();
+        parAgence.add(new Object[]{1L, 2L});
+        when(jobRepository.compterParAgence(Statut.PROCESSING)).thenReturn(parAgence);
+        when(jobRepository.findTetesDeFile(Statut.PENDING))
+                .thenReturn(List.of(job(1L, Priorite.MASSE, 2L, TypeJob.EXPORT_EXCEL),
+                        job(2L, Priorite.INTERACTIF, 1L, TypeJob.MENSUEL),
+                        job(3L, Priorite.INTERACTIF, 2L, TypeJob.MENSUEL)))
+                .thenReturn(List.of(job(1L, Priorite.MASSE, 2L, TypeJob.EXPORT_EXCEL),
+                        job(2L, Priorite.INTERACTIF, 1L, TypeJob.MENSUEL)));
+
+        queue.distribuer();
+
+        // Agence 2 n'a rien en cours : sa demande passe avant celle, plus ancienne, de l'agence 1
+        var ordre = inOrder(jobRepository);
+        ordre.verify(jobRepository).reserver(eq(3L), any(), any(), any());
+        ordre.verify(jobRepository).reserver(eq(2L), any(), any(), any());
+        verify(jobRepository, never()).reserver(eq(1L), any(), any(), any());
+        assertEquals(2, taches.size());
+    }
+
+    @Test
+    void lesExportsLaissentToujoursUnCreneauAuxRapportsInteractifs() {
+        when(jobRepository.findTetesDeFile(Statut.PENDING))
+                .thenReturn(List.of(job(1L, Priorite.MASSE, null, TypeJob.EXPORT_EXCEL),
+                        job(2L, Priorite.MASSE, 4L, TypeJob.EXPORT_EXCEL)))
+                .thenReturn(List.of(job(2L, Priorite.MASSE, 4L, TypeJob.EXPORT_EXCEL)));
+
+        queue.distribuer();
+
+        verify(jobRepository).reserver(eq(1L), any(), any(), any());
+        verify(jobRepository, never()).reserver(eq(2L), any(), any(), any());
+        assertEquals(1, taches.size());
+    }
+
+    @Test
+    void unExportNePrendPasLeDernierCreneauLaisseParUnRapportInteractif() {
+        when(jobRepository.findTetesDeFile(Statut.PENDING))
+                .thenReturn(List.of(job(1L, Priorite.INTERACTIF, 1L, TypeJob.MENSUEL),
+                        job(2L, Priorite.MASSE, 4L, TypeJob.EXPORT_EXCEL)))
+                .thenReturn(List.of(job(2L, Priorite.MASSE, 4L, TypeJob.EXPORT_EXCEL)));
+
+        queue.distribuer();
+
+        // Un créneau sur deux occupé par un rapport interactif : le dernier reste à l'interactif
+        verify(jobRepository).reserver(eq(1L), any(), any(), any());
+        verify(jobRepository, never()).reserver(eq(2L), any(), any(), any());
+        assertEquals(1, taches.size());
+    }
+
+    @Test
+    void jobRefuseParLePool_RemisEnFileSansNouvelEssaiAvantLePassageSuivant() {
+        queue = new ReportJobQueue(jobRepository, collecteurRepository, journalService, reportsService,
+                rapportPeriodePlanner, exportExcelService, reportArtifactStore, tache -> {
+                    throw new RejectedExecutionException("pool plein");
+                }, transactionManager, 2, 120, 3);
+        when(jobRepository.findTetesDeFile(Statut.PENDING))
+                .thenReturn(List.of(job(5L, Priorite.INTERACTIF, 1L, TypeJob.MENSUEL)));
+
+        queue.distribuer();
+        queue.distribuer();
+
+        verify(jobRepository, times(1)).reserver(eq(5L), any(), any(), any());
+        verify(jobRepository).remettreEnFile(5L, Statut.PROCESSING, Statut.PENDING, "Remis en file: génération saturée");
+        verify(jobRepository, never()).terminer(anyLong(), any(), any(), anyInt(), any(), any(), any());
+
+        // Le passage planifié lève la pause
+        queue.entretenir();
+        verify(jobRepository, times(2)).reserver(eq(5L), any(), any(), any());
+    }
+
+    @Test
+    void poolDesJobsPlein_AucuneReservation() {
+        ThreadPoolTaskExecutor pool = new ThreadPoolTaskExecutor();
+        pool.setCorePoolSize(1);
+        pool.setMaxPoolSize(1);
+        pool.setQueueCapacity(1);
+        pool.initialize();
+        CountDownLatch liberation = new CountDownLatch(1);
+        try {
+            pool.execute(() -> attendre(liberation));
+            pool.execute(() -> attendre(liberation));
+            queue = new ReportJobQueue(jobRepository, collecteurRepository, journalService, reportsService,
+                    rapportPeriodePlanner, exportExcelService, reportArtifactStore, pool,
+                    transactionManager, 2, 120, 3);
+
+            queue.distribuer();
+
+            verify(jobRepository, never()).findTetesDeFile(any());
+            verify(jobRepository, never()).reserver(anyLong(), any(), any(), any());
+        } finally {
+            liberation.countDown();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void jobAnnuleEnCoursSArreteAuPointDeProgression() {
+        ReportJob mensuel = job(5L, Priorite.INTERACTIF, 1L, TypeJob.MENSUEL);
+        when(jobRepository.findTetesDeFile(Statut.PENDING)).thenReturn(List.of(mensuel)).thenReturn(List.of());
+        when(jobRepository.annuler(eq("job-5"), anyCollection(), eq(Statut.CANCELLED), anyString(), any()))
+                .thenReturn(1);
+
+        queue.distribuer();
+        assertTrue(queue.annuler("job-5"));
+        taches.get(0).run();
+
+        verify(journalService).getMonthlyEntries(7L, YearMonth.of(2025, 3));
+        verifyNoInteractions(reportsService);
+        // Le statut CANCELLED posé par l'annulation n'est pas écrasé
+        verify(jobRepository, never()).terminer(anyLong(), any(), any(), anyInt(), any(), any(), any());
+    }
+
+    private static void attendre(CountDownLatch liberation) {
+        try {
+            liberation.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ReportJob job(Long id, Priorite priorite, Long agenceId, TypeJob type) {
+        return ReportJob.builder()
+                .id(id)
+                .trackingId("job-" + id)
+                .type(type)
+                .priorite(priorite)
+                .agenceId(agenceId)
+                .collecteurId(7L)
+                .periodeDebut(LocalDateTime.of(2025, 3, 1, 0, 0))
+                .periodeFin(LocalDateTime.of(2025, 3, 31, 23, 59, 59))
+                .dateCreation(LocalDateTime.of(2025, 4, 1, 8, 0))
+                .build();
+    }
+}
@@ -0,0 +1,115 @@
+package org.example.collectfocep.collectfocep.services;
+
+import org.example.collectfocep.dto.CommissionTierDTO;
+import org.example.collectfocep.dto.SimulationGrillesRequest;
+import org.example.collectfocep.dto.SimulationGrillesRequest.GrilleCandidate;
+import org.example.collectfocep.dto.SimulationGrillesResponse;
+import org.example.collectfocep.dto.SimulationGrillesResponse.ResultatGrille;
+import org.example.collectfocep.entities.Agence;
+import org.example.collectfocep.entities.CommissionParameter;
+import org.example.collectfocep.entities.CommissionType;
+import org.example.collectfocep.repositories.MouvementRepository;
+import org.example.collectfocep.services.ReglesCommissionCache;
+import org.example.collectfocep.services.SimulateurCommissionService;
+import org.example.collectfocep.services.TableReglesCommission;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class SimulateurCommissionServiceTest {
+
+    private static final LocalDate DEBUT = LocalDate.of(2025, 3, 1);
+    private static final LocalDate FIN = LocalDate.of(2025, 3, 31);
+
+    @Mock
+    private MouvementRepository mouvementRepository;
+    @Mock
+    private ReglesCommissionCache reglesCommissionCache;
+
+    private SimulateurCommissionService simulateur;
+
+    @BeforeEach
+    void setUp() {
+        simulateur = new SimulateurCommissionService(mouvementRepository, reglesCommissionCache, 15);
+
+        // Règle actuelle : 5 % pour toute l'agence
+        CommissionParameter agence = CommissionParameter.builder()
+                .type(CommissionType.PERCENTAGE).valeur(new BigDecimal("5")).build();
+        agence.setAgence(Agence.builder().id(1L).build());
+        lenient().when(reglesCommissionCache.getTable(1L)).thenReturn(TableReglesCommission.compiler(1L, List.of(agence)));
+
+        lenient().when(mouvementRepository.sumEpargneParClientByAgence(eq(1L), any(), any())).thenReturn(List.of(
+                new Object[]{1L, 10L, 50_000L},
+                new Object[]{2L, 10L, 200_000L},
+                new Object[]{3L, 20L, 1_000_000L}));
+    }
+
+    @Test
+    void grillesEvalueesContreLesReglesActuelles() {
+        SimulationGrillesResponse reponse = simulateur.simuler(1L, SimulationGrillesRequest.builder()
+                .dateDebut(DEBUT).dateFin(FIN)
+                .grilles(List.of(
+                        GrilleCandidate.builder().nom("Fixe").type(CommissionType.FIXED).valeur(new BigDecimal("5000")).build(),
+                        GrilleCandidate.builder().type(CommissionType.TIER).paliers(List.of(
+                                palier(0, 100_000, 5.0),
+                                palier(100_001, Double.MAX_VALUE, 3.0))).build()))
+                .nombreMaxEcarts(2)
+                .build());
+
+        assertEquals(3, reponse.getNombreClients());
+        assertEquals(0, new BigDecimal("1250000").compareTo(reponse.getVolumeTotal()));
+        assertEquals(0, new BigDecimal("62500").compareTo(reponse.getCommissionActuelleTotale()));
+
+        ResultatGrille fixe = reponse.getGrilles().get(0);
+        assertEquals("Fixe", fixe.getNom());
+        assertEquals(0, new BigDecimal("15000").compareTo(fixe.getCommissionTotale()));
+        assertEquals(0, new BigDecimal("-47500").compareTo(fixe.getEcartTotal()));
+        assertEquals(1, fixe.getNombreHausses());   // 2 500 → 5 000
+        assertEquals(2, fixe.getNombreBaisses());
+        assertEquals(2, fixe.getEcarts().size());
+        assertEquals(3L, fixe.getEcarts().get(0).getClientId()); // 50 000 → 5 000, plus fort écart
+
+        ResultatGrille paliers = reponse.getGrilles().get(1);
+        assertEquals("Grille 2", paliers.getNom());
+        assertEquals(0, new BigDecimal("38500").compareTo(paliers.getCommissionTotale()));
+        assertEquals(0, paliers.getNombreHausses());
+    }
+
+    @Test
+    void volumesChargesUneSeuleFoisParPeriode() {
+        SimulationGrillesRequest request = SimulationGrillesRequest.builder()
+                .dateDebut(DEBUT).dateFin(FIN)
+                .grilles(List.of(GrilleCandidate.builder().type(CommissionType.PERCENTAGE).valeur(new BigDecimal("4")).build()))
+                .build();
+
+        simulateur.simuler(1L, request);
+        simulateur.simuler(1L, request);
+
+        verify(mouvementRepository, times(1)).sumEpargneParClientByAgence(eq(1L), any(), any());
+    }
+
+    @Test
+    void grilleIncompleteRefusee() {
+        SimulationGrillesRequest request = SimulationGrillesRequest.builder()
+                .dateDebut(DEBUT).dateFin(FIN)
+                .grilles(List.of(GrilleCandidate.builder().type(CommissionType.TIER).build()))
+                .build();
+
+        assertThrows(IllegalArgumentException.class, () -> simulateur.simuler(1L, request));
+    }
+
+    private static CommissionTierDTO palier(double min, double max, double taux) {
+        return CommissionTierDTO.builder().montantMin(min).montantMax(max).taux(taux).build();
+    }
+}
@@ -0,0 +1,109 @@
+package org.example.collectfocep.collectfocep.services;
+
+import org.example.collectfocep.entities.Agence;
+import org.example.collectfocep.entities.Client;
+import org.example.collectfocep.entities.Collecteur;
+import org.example.collectfocep.entities.CommissionParameter;
+import org.example.collectfocep.entities.CommissionTier;
+import org.example.collectfocep.entities.CommissionType;
+import org.example.collectfocep.services.TableReglesCommission;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TableReglesCommissionTest {
+
+    @Test
+    void paliersSpecFocep() {
+        TableReglesCommission.Regle regle = TableReglesCommission.Regle.compiler(paliers(
+                palier(0, 100_000, 5.0),
+                palier(100_001, 500_000, 4.0),
+                palier(500_001, Double.MAX_VALUE, 3.0)));
+
+        assertEquals(2_500L, regle.commission(50_000L));
+        assertEquals(5_000L, regle.commission(100_000L));
+        assertEquals(18_000L, regle.commission(450_000L));
+        assertEquals(30_000L, regle.commission(1_000_000L));
+        assertEquals(0L, regle.commission(0L));
+    }
+
+    @Test
+    void paliersNonTriesEtChevauchantsGardentLePremierDansLOrdreDeTri() {
+        TableReglesCommission.Regle regle = TableReglesCommission.Regle.compiler(paliers(
+                palier(50_000, 200_000, 2.0),
+                palier(0, 100_000, 5.0)));
+
+        assertEquals(5_000L, regle.commission(100_000L)); // couvert par [0-100K] trié en premier
+        assertEquals(3_000L, regle.commission(150_000L));
+        assertEquals(0L, regle.commission(300_000L));     // hors paliers
+    }
+
+    @Test
+    void trouEntrePaliersDonneZero() {
+        TableReglesCommission.Regle regle = TableReglesCommission.Regle.compiler(paliers(
+                palier(0, 1_000, 5.0),
+                palier(2_000, 3_000, 4.0)));
+
+        assertEquals(0L, regle.commission(1_500L));
+        assertEquals(80L, regle.commission(2_000L));
+    }
+
+    @Test
+    void compilationNeModifiePasLesPaliersDeLEntite() {
+        CommissionTier haut = palier(100_001, 500_000, 4.0);
+        CommissionTier bas = palier(0, 100_000, 5.0);
+        CommissionParameter parametre = paliers(haut, bas);
+
+        TableReglesCommission.Regle.compiler(parametre);
+
+        assertSame(haut, parametre.getTiers().get(0));
+    }
+
+    @Test
+    void valeursInvalidesDonnentZero() {
+        assertEquals(0L, TableReglesCommission.Regle.compiler(parametre(CommissionType.PERCENTAGE, "150")).commission(10_000L));
+        assertEquals(0L, TableReglesCommission.Regle.compiler(parametre(CommissionType.FIXED, "-1")).commission(10_000L));
+        assertEquals(500L, TableReglesCommission.Regle.compiler(parametre(CommissionType.FIXED, "500")).commission(10_000L));
+    }
+
+    @Test
+    void hierarchieClientCollecteurAgence() {
+        CommissionParameter agence = parametre(CommissionType.PERCENTAGE, "5");
+        agence.setAgence(Agence.builder().id(1L).build());
+
+        CommissionParameter collecteur = parametre(CommissionType.PERCENTAGE, "4");
+        collecteur.setCollecteur(Collecteur.builder().id(10L).build());
+
+        CommissionParameter ancienClient = parametre(CommissionType.FIXED, "100");
+        ancienClient.setClient(Client.builder().id(100L).build());
+        ancienClient.setValidFrom(LocalDate.of(2024, 1, 1));
+        CommissionParameter client = parametre(CommissionType.FIXED, "300");
+        client.setClient(Client.builder().id(100L).build());
+        client.setValidFrom(LocalDate.of(2025, 1, 1));
+
+        TableReglesCommission table = TableReglesCommission.compiler(1L,
+                List.of(agence, collecteur, ancienClient, client));
+
+        assertEquals(300L, table.commission(100L, 10L, 10_000L));  // client, paramètre le plus récent
+        assertEquals(400L, table.commission(101L, 10L, 10_000L));  // collecteur
+        assertEquals(500L, table.commission(102L, 20L, 10_000L));  // agence
+        assertNull(TableReglesCommission.compiler(2L, List.of()).regle(1L, 1L));
+    }
+
+    private static CommissionParameter parametre(CommissionType type, String valeur) {
+        return CommissionParameter.builder().type(type).valeur(new BigDecimal(valeur)).build();
+    }
+
+    private static CommissionParameter paliers(CommissionTier... tiers) {
+        return CommissionParameter.builder().type(CommissionType.TIER).tiers(new ArrayList<>(List.of(tiers))).build();
+    }
+
+    private static CommissionTier palier(double min, double max, double taux) {
+        return CommissionTier.builder().montantMin(min).montantMax(max).taux(taux).build();
+    }
+}
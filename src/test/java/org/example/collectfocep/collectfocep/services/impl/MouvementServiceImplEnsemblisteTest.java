@@ -0,0 +1,268 @@
+package org.example.collectfocep.collectfocep.services.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import org.example.collectfocep.collectfocep.config.JpaH2TestConfig;
+import org.example.collectfocep.entities.Compte;
+import org.example.collectfocep.entities.CompteClient;
+import org.example.collectfocep.entities.Mouvement;
+import org.example.collectfocep.exceptions.CompteNotFoundException;
+import org.example.collectfocep.exceptions.SoldeInsuffisantException;
+import org.example.collectfocep.mappers.MouvementMapperV2;
+import org.example.collectfocep.repositories.CompteRepository;
+import org.example.collectfocep.repositories.MouvementRepository;
+import org.example.collectfocep.services.CollecteurDailyTotalsService;
+import org.example.collectfocep.services.CompteIdCache;
+import org.example.collectfocep.services.CompteLockManager;
+import org.example.collectfocep.services.EcrituresDiffereesService;
+import org.example.collectfocep.services.EpargnePipeline;
+import org.example.collectfocep.services.impl.ClientAccountInitializationService;
+import org.example.collectfocep.services.impl.CollecteurAccountService;
+import org.example.collectfocep.services.impl.DateTimeServiceImpl;
+import org.example.collectfocep.services.impl.MouvementServiceImpl;
+import org.example.collectfocep.services.impl.SystemAccountService;
+import org.example.collectfocep.services.impl.TransactionService;
+import org.example.collectfocep.services.interfaces.CompteService;
+import org.example.collectfocep.services.interfaces.DateTimeService;
+import org.example.collectfocep.services.interfaces.JournalService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Écritures groupées sur une vraie base : ensembliste (UPDATE … CASE) et agrégée (C.P.C.C / C.P.T)
+ * donnent les mêmes soldes qu'effectuerMouvement, et rien n'est écrit quand le lot est refusé.
+ */
+@SpringJUnitConfig(MouvementServiceImplEnsemblisteTest.Config.class)
+public class MouvementServiceImplEnsemblisteTest {
+
+    @Configuration
+    @Import(JpaH2TestConfig.class)
+    static class Config {
+
+        @Bean
+        DateTimeService dateTimeService() {
+            return new DateTimeServiceImpl();
+        }
+
+        @Bean
+        TransactionService transactionService(PlatformTransactionManager transactionManager,
+                                              DateTimeService dateTimeService) {
+            return new TransactionService(transactionManager, dateTimeService);
+        }
+
+        @Bean
+        CompteLockManager compteLockManager() {
+            return new CompteLockManager(1_000);
+        }
+
+        @Bean MouvementMapperV2 mouvementMapper() { return mock(MouvementMapperV2.class); }
+        @Bean EcrituresDiffereesService ecrituresDiffereesService() { return mock(EcrituresDiffereesService.class); }
+        @Bean CollecteurDailyTotalsService collecteurDailyTotalsService() { return mock(CollecteurDailyTotalsService.class); }
+        @Bean CompteIdCache compteIdCache() { return mock(CompteIdCache.class); }
+        @Bean EpargnePipeline epargnePipeline() { return mock(EpargnePipeline.class); }
+        @Bean SystemAccountService systemAccountService() { return mock(SystemAccountService.class); }
+        @Bean CollecteurAccountService collecteurAccountService() { return mock(CollecteurAccountService.class); }
+        @Bean JournalService journalService() { return mock(JournalService.class); }
+        @Bean CompteService compteService() { return mock(CompteService.class); }
+        @Bean ClientAccountInitializationService clientAccountInitializationService() {
+            return mock(ClientAccountInitializationService.class);
+        }
+        @Bean Counter epargneCounter() { return mock(Counter.class); }
+        @Bean Timer mouvementTimer() { return mock(Timer.class); }
+
+        @Bean
+        MouvementServiceImpl mouvementService(DateTimeService dateTimeService, SystemAccountService systemAccountService,
+                                              CollecteurAccountService collecteurAccountService,
+                                              MouvementRepository mouvementRepository, CompteRepository compteRepository,
+                                              org.example.collectfocep.repositories.CompteClientRepository compteClientRepository,
+                                              org.example.collectfocep.repositories.CompteCollecteurRepository compteCollecteurRepository,
+                                              org.example.collectfocep.repositories.CompteLiaisonRepository compteLiaisonRepository,
+                                              org.example.collectfocep.repositories.ClientRepository clientRepository,
+                                              JournalService journalService,
+                                              org.example.collectfocep.repositories.JournalRepository journalRepository,
+                                              CompteService compteService, TransactionService transactionService,
+                                              ClientAccountInitializationService clientAccountInitializationService,
+                                              Counter epargneCounter, Timer mouvementTimer) {
+            return new MouvementServiceImpl(dateTimeService, systemAccountService, collecteurAccountService,
+                    mouvementRepository, compteRepository, compteClientRepository, compteCollecteurRepository,
+                    compteLiaisonRepository, clientRepository, journalService, journalRepository, compteService,
+                    transactionService, clientAccountInitializationService, epargneCounter, mouvementTimer);
+        }
+    }
+
+    @Autowired private MouvementServiceImpl mouvementService;
+    @Autowired private CompteRepository compteRepository;
+    @Autowired private MouvementRepository mouvementRepository;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transaction;
+
+    @BeforeEach
+    void setUp() {
+        transaction = new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    void memesSoldesEtVersionsQueLesMouvementsUnParUn() {
+        List<Long> unParUn = creerComptes(10_000, 5_000, 0);
+        List<Long> ensemble = creerComptes(10_000, 5_000, 0);
+
+        transaction.executeWithoutResult(status ->
+                mouvements(unParUn).forEach(mouvementService::effectuerMouvement));
+        transaction.executeWithoutResult(status ->
+                mouvementService.effectuerMouvementsEnsemblistes(mouvements(ensemble)));
+
+        for (int i = 0; i < 3; i++) {
+            Compte attendu = compteRepository.findById(unParUn.get(i)).orElseThrow();
+            Compte obtenu = compteRepository.findById(ensemble.get(i)).orElseThrow();
+            assertEquals(attendu.getSolde(), obtenu.getSolde(), "solde du compte " + i);
+            assertEquals(attendu.getVersion(), obtenu.getVersion(), "version du compte " + i);
+        }
+        // 200,6 porté pour 201 ; crédit de 300 inversé : C débité, B crédité
+        assertEquals(List.of(8_799.0, 6_800.0, -599.0), soldes(ensemble));
+        assertEquals(List.of(1_000.0, 300.0, 201.0, 500.0), montants(ensemble));
+    }
+
+    @Test
+    void compteInconnu_LeveCompteNotFoundEtAnnuleLeLot() {
+        List<Long> comptes = creerComptes(10_000, 5_000, 0);
+        long mouvementsAvant = mouvementRepository.count();
+
+        assertThrows(CompteNotFoundException.class, () -> transaction.executeWithoutResult(status -> {
+            List<Mouvement> lot = mouvements(comptes);
+            lot.add(mouvement(comptes.get(0), 999_999L, 100, "debit"));
+            mouvementService.effectuerMouvementsEnsemblistes(lot);
+        }));
+
+        assertEquals(List.of(10_000.0, 5_000.0, 0.0), soldes(comptes));
+        assertEquals(mouvementsAvant, mouvementRepository.count());
+    }
+
+    @Test
+    void debitSuperieurAuSolde_RefuseAvantToutEcriture() {
+        List<Long> comptes = creerComptes(1_000, 0, 0);
+        long mouvementsAvant = mouvementRepository.count();
+
+        // Deux débits de 600 sur un solde de 1 000 : contrôlés ensemble
+        SoldeInsuffisantException erreur = assertThrows(SoldeInsuffisantException.class, () ->
+                transaction.executeWithoutResult(status -> mouvementService.effectuerMouvementsEnsemblistes(List.of(
+                        mouvement(comptes.get(0), comptes.get(1), 600, "debit"),
+                        mouvement(comptes.get(0), comptes.get(2), 600, "debit")))));
+
+        assertTrue(erreur.getMessage().contains(String.valueOf(comptes.get(0))));
+        assertEquals(List.of(1_000.0, 0.0, 0.0), soldes(comptes));
+        assertEquals(mouvementsAvant, mouvementRepository.count());
+    }
+
+    @Test
+    void comptesDifferes_NonMisAJourDansLaTransaction() {
+        List<Long> comptes = creerComptes(10_000, 5_000, 0);
+
+        transaction.executeWithoutResult(status -> mouvementService.effectuerMouvementsEnsemblistes(
+                List.of(mouvement(comptes.get(0), comptes.get(2), 400, "epargne")), Set.of(comptes.get(2))));
+
+        // Le compte différé est laissé à EcrituresDiffereesService (simulé ici)
+        assertEquals(List.of(9_600.0, 5_000.0, 0.0), soldes(comptes));
+    }
+
+    @Test
+    void mouvementsAgreges_MemeResultatNetQueLesMouvementsUnParUn() {
+        // Trois comptes clients, puis C.P.C.C et C.P.T
+        List<Long> unParUn = creerComptes(10_000, 8_000, 6_000, 0, 0);
+        List<Long> agreges = creerComptes(10_000, 8_000, 6_000, 0, 0);
+
+        transaction.executeWithoutResult(status ->
+                commissions(unParUn).forEach(mouvementService::effectuerMouvement));
+        transaction.executeWithoutResult(status ->
+                mouvementService.effectuerMouvementsAgreges(commissions(agreges)));
+
+        assertEquals(soldes(unParUn), soldes(agreges));
+        // Commission 300,4 → 300 ; extourne "credit" de 50 : C.P.C.C débité, client crédité
+        assertEquals(List.of(9_692.0, 7_761.0, 5_880.0, 550.0, 117.0), soldes(agreges));
+        // Montant enregistré = montant effectivement passé sur les soldes, en francs
+        assertEquals(montants(unParUn).stream().map(m -> (double) Math.round(m)).toList(), montants(agreges));
+    }
+
+    /**
+     * Jambes d'un calcul de commission (sens "DEBIT" comme CommissionOrchestrator) et une extourne en "credit"
+     */
+    private List<Mouvement> commissions(List<Long> comptes) {
+        Long pccc = comptes.get(3);
+        Long pt = comptes.get(4);
+        return List.of(
+                mouvement(comptes.get(0), pccc, 300.4, "DEBIT"),
+                mouvement(comptes.get(0), pt, 58, "DEBIT"),
+                mouvement(comptes.get(1), pccc, 200, "DEBIT"),
+                mouvement(comptes.get(1), pt, 39, "DEBIT"),
+                mouvement(comptes.get(2), pccc, 100, "DEBIT"),
+                mouvement(comptes.get(2), pt, 20, "DEBIT"),
+                mouvement(comptes.get(0), pccc, 50, "credit"));
+    }
+
+    /**
+     * A → B débit 1 000, B → C crédit 300 (sens inversé), A → C épargne 200,6, C → B épargne 500
+     */
+    private List<Mouvement> mouvements(List<Long> comptes) {
+        Long a = comptes.get(0);
+        Long b = comptes.get(1);
+        Long c = comptes.get(2);
+        return new ArrayList<>(List.of(
+                mouvement(a, b, 1_000, "debit"),
+                mouvement(b, c, 300, "credit"),
+                mouvement(a, c, 200.6, "epargne"),
+                mouvement(c, b, 500, "epargne")));
+    }
+
+    private Mouvement mouvement(Long source, Long destination, double montant, String sens) {
+        Mouvement mouvement = new Mouvement();
+        mouvement.setMontant(montant);
+        mouvement.setLibelle("Test " + sens);
+        mouvement.setSens(sens);
+        mouvement.setCompteSource(compteRepository.getReferenceById(source));
+        mouvement.setCompteDestination(compteRepository.getReferenceById(destination));
+        return mouvement;
+    }
+
+    private List<Long> creerComptes(double... soldes) {
+        return transaction.execute(status -> {
+            List<Long> ids = new ArrayList<>();
+            for (double solde : soldes) {
+                String numero = "TEST-" + UUID.randomUUID();
+                ids.add(compteRepository.save(CompteClient.builder()
+                        .nomCompte(numero).numeroCompte(numero).typeCompte("EPARGNE").solde(solde).build()).getId());
+            }
+            return ids;
+        });
+    }
+
+    private List<Double> soldes(List<Long> comptes) {
+        return lire(comptes, id -> compteRepository.findById(id).orElseThrow().getSolde());
+    }
+
+    private List<Double> montants(List<Long> comptes) {
+        return transaction.execute(status -> mouvementRepository.findAll().stream()
+                .filter(m -> comptes.contains(m.getCompteSource().getId()))
+                .map(Mouvement::getMontant)
+                .toList());
+    }
+
+    private <T> List<T> lire(List<Long> comptes, Function<Long, T> lecture) {
+        return transaction.execute(status -> comptes.stream().map(lecture).toList());
+    }
+}
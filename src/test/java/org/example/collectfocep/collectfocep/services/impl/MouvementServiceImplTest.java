@@ -0,0 +1,197 @@
+package org.example.collectfocep.collectfocep.services.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import org.example.collectfocep.dto.EpargneBatchResultDTO;
+import org.example.collectfocep.dto.EpargneRequest;
+import org.example.collectfocep.entities.*;
+import org.example.collectfocep.exceptions.ResourceNotFoundException;
+import org.example.collectfocep.mappers.MouvementMapperV2;
+import org.example.collectfocep.repositories.*;
+import org.example.collectfocep.services.CollecteurDailyTotalsService;
+import org.example.collectfocep.services.CompteIdCache;
+import org.example.collectfocep.services.CompteLockManager;
+import org.example.collectfocep.services.JournalDuJourRegistry;
+import org.example.collectfocep.services.impl.ClientAccountInitializationService;
+import org.example.collectfocep.services.impl.CollecteurAccountService;
+import org.example.collectfocep.services.impl.MouvementServiceImpl;
+import org.example.collectfocep.services.impl.SystemAccountService;
+import org.example.collectfocep.services.impl.TransactionService;
+import org.example.collectfocep.services.interfaces.CompteService;
+import org.example.collectfocep.services.interfaces.DateTimeService;
+import org.example.collectfocep.services.interfaces.JournalService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class MouvementServiceImplTest {
+
+    private static final Long COLLECTEUR_ID = 7L;
+    private static final Long COMPTE_SERVICE_ID = 70L;
+
+    @Mock private DateTimeService dateTimeService;
+    @Mock private SystemAccountService systemAccountService;
+    @Mock private CollecteurAccountService collecteurAccountService;
+    @Mock private MouvementRepository mouvementRepository;
+    @Mock private CompteRepository compteRepository;
+    @Mock private CompteClientRepository compteClientRepository;
+    @Mock private CompteCollecteurRepository compteCollecteurRepository;
+    @Mock private CompteLiaisonRepository compteLiaisonRepository;
+    @Mock private ClientRepository clientRepository;
+    @Mock private JournalService journalService;
+    @Mock private JournalRepository journalRepository;
+    @Mock private CompteService compteService;
+    @Mock private TransactionService transactionService;
+    @Mock private ClientAccountInitializationService clientAccountInitializationService;
+    @Mock private Counter epargneCounter;
+    @Mock private Timer mouvementTimer;
+    @Mock private CollecteurRepository collecteurRepository;
+    @Mock private CompteLockManager compteLockManager;
+    @Mock private CollecteurDailyTotalsService collecteurDailyTotalsService;
+    @Mock private JournalDuJourRegistry journalDuJourRegistry;
+    @Mock private CompteIdCache compteIdCache;
+    @Mock private MouvementMapperV2 mouvementMapper;
+
+    private MouvementServiceImpl service;
+    private Collecteur collecteur;
+    private CompteCollecteur compteServiceCollecteur;
+
+    @BeforeEach
+    void setUp() {
+        service = new MouvementServiceImpl(dateTimeService, systemAccountService, collecteurAccountService,
+                mouvementRepository, compteRepository, compteClientRepository, compteCollecteurRepository,
+                compteLiaisonRepository, clientRepository, journalService, journalRepository, compteService,
+                transactionService, clientAccountInitializationService, epargneCounter, mouvementTimer);
+        ReflectionTestUtils.setField(service, "collecteurRepository", collecteurRepository);
+        ReflectionTestUtils.setField(service, "compteLockManager", compteLockManager);
+        ReflectionTestUtils.setField(service, "collecteurDailyTotalsService", collecteurDailyTotalsService);
+        ReflectionTestUtils.setField(service, "journalDuJourRegistry", journalDuJourRegistry);
+        ReflectionTestUtils.setField(service, "compteIdCache", compteIdCache);
+        ReflectionTestUtils.setField(service, "mouvementMapper", mouvementMapper);
+
+        collecteur = Collecteur.builder().id(COLLECTEUR_ID).build();
+        compteServiceCollecteur = CompteCollecteur.builder().id(COMPTE_SERVICE_ID).numeroCompte("SRV-7").solde(0).build();
+
+        lenient().when(dateTimeService.getCurrentDate()).thenReturn(LocalDate.of(2025, 3, 10));
+        lenient().when(dateTimeService.getCurrentDateTime()).thenReturn(LocalDateTime.of(2025, 3, 10, 17, 0));
+        lenient().when(journalDuJourRegistry.resoudre(eq(COLLECTEUR_ID), any(), any()))
+                .thenReturn(new JournalDuJourRegistry.JournalDuJour(5L, "OUVERT", false));
+        lenient().when(journalRepository.getReferenceById(5L)).thenReturn(Journal.builder().id(5L).build());
+        lenient().when(compteIdCache.getComptesCollecteur(COLLECTEUR_ID))
+                .thenReturn(new CompteIdCache.ComptesCollecteur(COMPTE_SERVICE_ID, null, null, null));
+        lenient().when(compteLockManager.verrouiller(anyCollection())).thenReturn(Set.of());
+        lenient().when(compteRepository.findById(COMPTE_SERVICE_ID)).thenReturn(Optional.of(compteServiceCollecteur));
+    }
+
+    @Test
+    void enregistrerEpargnesBatch_RejetteLesOperationsInvalidesEtEnregistreLesAutres() {
+        Client client1 = client(1L, collecteur);
+        Client horsPortefeuille = client(2L, Collecteur.builder().id(99L).build());
+        CompteClient compte1 = CompteClient.builder().id(11L).numeroCompte("CLI-1").solde(1_000).client(client1).build();
+
+        when(collecteurRepository.findById(COLLECTEUR_ID)).thenReturn(Optional.of(collecteur));
+        when(compteClientRepository.findIdsByClientIdIn(anyList())).thenReturn(List.of(11L));
+        when(clientRepository.findByIdInWithCollecteur(anyList())).thenReturn(List.of(client1, horsPortefeuille));
+        when(compteClientRepository.findByClientIdIn(anyList())).thenReturn(List.of(compte1));
+        when(mouvementRepository.saveAll(anyList())).thenAnswer(inv -> inv.getArgument(0));
+
+        EpargneBatchResultDTO resultat = service.enregistrerEpargnesBatch(COLLECTEUR_ID, List.of(
+                operation(1L, 2_500),
+                operation(1L, 0),
+                operation(2L, 1_000),
+                operation(3L, 1_000)));
+
+        assertEquals(4, resultat.getNombreOperations());
+        assertEquals(1, resultat.getNombreSucces());
+        assertEquals(3, resultat.getNombreEchecs());
+        assertEquals(2_500.0, resultat.getMontantTotal());
+        assertTrue(resultat.getResultats().get(0).getSuccess());
+        assertEquals("OPERATION_INVALIDE", resultat.getResultats().get(1).getErrorCode());
+        assertEquals("CLIENT_HORS_PORTEFEUILLE", resultat.getResultats().get(2).getErrorCode());
+        assertEquals("CLIENT_NOT_FOUND", resultat.getResultats().get(3).getErrorCode());
+
+        // Seule l'opération valide touche les soldes et est insérée
+        assertEquals(3_500.0, compte1.getSolde());
+        assertEquals(-2_500.0, compteServiceCollecteur.getSolde());
+        ArgumentCaptor<List<Mouvement>> inseres = ArgumentCaptor.forClass(List.class);
+        verify(mouvementRepository).saveAll(inseres.capture());
+        assertEquals(1, inseres.getValue().size());
+        verify(collecteurDailyTotalsService).enregistrer(inseres.getValue());
+    }
+
+    @Test
+    void enregistrerEpargnesBatch_EchecDInsertion_PropageLErreurPourAnnulerToutLeLot() {
+        Client client1 = client(1L, collecteur);
+        CompteClient compte1 = CompteClient.builder().id(11L).numeroCompte("CLI-1").solde(0).client(client1).build();
+
+        when(collecteurRepository.findById(COLLECTEUR_ID)).thenReturn(Optional.of(collecteur));
+        when(compteClientRepository.findIdsByClientIdIn(anyList())).thenReturn(List.of(11L));
+        when(clientRepository.findByIdInWithCollecteur(anyList())).thenReturn(List.of(client1));
+        when(compteClientRepository.findByClientIdIn(anyList())).thenReturn(List.of(compte1));
+        when(mouvementRepository.saveAll(anyList())).thenThrow(new DataIntegrityViolationException("duplicate"));
+
+        // L'exception sort de la méthode @Transactional : le lot entier est annulé, aucun total n'est publié
+        assertThrows(DataIntegrityViolationException.class, () -> service.enregistrerEpargnesBatch(COLLECTEUR_ID,
+                List.of(operation(1L, 1_000), operation(1L, 500))));
+        verifyNoInteractions(collecteurDailyTotalsService, epargneCounter);
+    }
+
+    @Test
+    void enregistrerEpargnesBatch_MontantDecimal_EnregistreLesFrancsPortesAuxSoldes() {
+        Client client1 = client(1L, collecteur);
+        CompteClient compte1 = CompteClient.builder().id(11L).numeroCompte("CLI-1").solde(0).client(client1).build();
+
+        when(collecteurRepository.findById(COLLECTEUR_ID)).thenReturn(Optional.of(collecteur));
+        when(compteClientRepository.findIdsByClientIdIn(anyList())).thenReturn(List.of(11L));
+        when(clientRepository.findByIdInWithCollecteur(anyList())).thenReturn(List.of(client1));
+        when(compteClientRepository.findByClientIdIn(anyList())).thenReturn(List.of(compte1));
+        when(mouvementRepository.saveAll(anyList())).thenAnswer(inv -> inv.getArgument(0));
+
+        EpargneBatchResultDTO resultat = service.enregistrerEpargnesBatch(COLLECTEUR_ID,
+                List.of(operation(1L, 1_000.6), operation(1L, 499.4)));
+
+        ArgumentCaptor<List<Mouvement>> inseres = ArgumentCaptor.forClass(List.class);
+        verify(mouvementRepository).saveAll(inseres.capture());
+        assertEquals(1_001.0, inseres.getValue().get(0).getMontant());
+        assertEquals(499.0, inseres.getValue().get(1).getMontant());
+        // Somme des mouvements = variation des soldes = total du lot
+        assertEquals(1_500.0, compte1.getSolde());
+        assertEquals(1_500.0, resultat.getMontantTotal());
+    }
+
+    @Test
+    void enregistrerEpargnesBatch_CollecteurInconnu_LeveResourceNotFound() {
+        when(collecteurRepository.findById(COLLECTEUR_ID)).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class,
+                () -> service.enregistrerEpargnesBatch(COLLECTEUR_ID, List.of(operation(1L, 1_000))));
+        verifyNoInteractions(mouvementRepository, compteLockManager);
+    }
+
+    private static Client client(Long id, Collecteur collecteur) {
+        return Client.builder().id(id).nom("Client").prenom(String.valueOf(id)).collecteur(collecteur).build();
+    }
+
+    private static EpargneRequest operation(Long clientId, double montant) {
+        EpargneRequest request = new EpargneRequest();
+        request.setClientId(clientId);
+        request.setMontant(montant);
+        return request;
+    }
+}
@@ -1,6 +1,7 @@
 package org.example.collectfocep.collectfocep.services.impl;
 
 import org.example.collectfocep.services.impl.TransactionService;
+import org.example.collectfocep.services.interfaces.DateTimeService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -9,12 +10,16 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionTemplate;
 
 import static org.junit.jupiter.api.Assertions.*;
+import java.time.LocalDateTime;
+
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -29,6 +34,9 @@ public class TransactionServiceTest {
     @Mock
     private TransactionStatus transactionStatus;
 
+    @Mock
+    private DateTimeService dateTimeService;
+
     @InjectMocks
     private TransactionService transactionService;
 
@@ -38,13 +46,15 @@ public class TransactionServiceTest {
         ReflectionTestUtils.setField(transactionService, "transactionTemplate", transactionTemplate);
 
         // Configurer le comportement du mock
-        when(transactionTemplate.execute(any())).thenAnswer(invocation -> {
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation -> {
             TransactionCallback<?> callback = invocation.getArgument(0);
             return callback.doInTransaction(transactionStatus);
         });
-
-        // Pour éviter l'erreur sur setPropagationBehavior
-        doNothing().when(transactionTemplate).setPropagationBehavior(anyInt());
+        lenient().when(transactionTemplate.getPropagationBehavior()).thenReturn(TransactionDefinition.PROPAGATION_REQUIRED);
+        lenient().when(transactionTemplate.getIsolationLevel()).thenReturn(TransactionDefinition.ISOLATION_DEFAULT);
+        lenient().when(transactionTemplate.getTimeout()).thenReturn(TransactionDefinition.TIMEOUT_DEFAULT);
+        lenient().when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        lenient().when(dateTimeService.getCurrentDateTime()).thenAnswer(invocation -> LocalDateTime.now());
     }
 
     @Test
@@ -80,16 +90,15 @@ public class TransactionServiceTest {
         String expectedResult = "New transaction successful";
         TransactionCallback<String> action = status -> expectedResult;
 
-        // Mock additional behavior for new transaction
-        when(transactionTemplate.getPropagationBehavior()).thenReturn(0); // Initial value
-        doNothing().when(transactionTemplate).setPropagationBehavior(anyInt());
-
         // Act
         String result = transactionService.executeInNewTransaction(action);
 
-        // Assert
+        // Assert : REQUIRES_NEW sur une copie, le template partagé n'est jamais modifié
         assertEquals(expectedResult, result);
-        verify(transactionTemplate).setPropagationBehavior(anyInt());
+        verify(transactionManager).getTransaction(argThat(definition ->
+                definition.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+        verify(transactionManager).commit(transactionStatus);
+        verify(transactionTemplate, never()).setPropagationBehavior(anyInt());
     }
 
     @Test
@@ -100,14 +109,11 @@ public class TransactionServiceTest {
             throw exception;
         };
 
-        // Mock additional behavior for new transaction
-        when(transactionTemplate.getPropagationBehavior()).thenReturn(0); // Initial value
-        doNothing().when(transactionTemplate).setPropagationBehavior(anyInt());
-
         // Act & Assert
         assertThrows(RuntimeException.class, () -> {
             transactionService.executeInNewTransaction(action);
         });
-        verify(transactionTemplate).setPropagationBehavior(anyInt());
+        verify(transactionManager).rollback(transactionStatus);
+        verify(transactionTemplate, never()).setPropagationBehavior(anyInt());
     }
 }
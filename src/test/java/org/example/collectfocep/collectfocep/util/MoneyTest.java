@@ -0,0 +1,52 @@
+package org.example.collectfocep.collectfocep.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.collectfocep.util.Money;
+import org.example.collectfocep.util.MoneyConverter;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoneyTest {
+
+    @Test
+    void arrondirAuFrancDemiVersExterieur() {
+        assertEquals(1001L, Money.arrondir(1000.5));
+        assertEquals(1000L, Money.arrondir(1000.49));
+        assertEquals(-1001L, Money.arrondir(-1000.5));
+        assertEquals(1001L, Money.arrondir(new BigDecimal("1000.50")));
+        assertEquals(0L, Money.arrondir((BigDecimal) null));
+    }
+
+    @Test
+    void appliquerTauxArrondiHalfUp() {
+        // 4 % de 450 000 = 18 000 (exemple spec FOCEP)
+        assertEquals(18_000L, Money.appliquerTaux(450_000L, Money.tauxDepuisPourcentage(4.0)));
+        // TVA 19,25 % de 1 000 = 192,5 → 193
+        assertEquals(193L, Money.tva(1_000L));
+        assertEquals(-193L, Money.appliquerTaux(-1_000L, Money.TAUX_TVA));
+        assertEquals(Money.TAUX_TVA, Money.tauxDepuisFraction(new BigDecimal("0.1925")));
+        assertEquals(45_000L, Money.tauxDepuisPourcentage(new BigDecimal("4.5")));
+    }
+
+    @Test
+    void depassementDeCapaciteDetecte() {
+        assertThrows(ArithmeticException.class, () -> Money.ajouter(Long.MAX_VALUE, 1L));
+        assertThrows(ArithmeticException.class, () -> Money.appliquerTaux(Long.MAX_VALUE / 10, Money.TAUX_TVA));
+        assertThrows(ArithmeticException.class, () -> Money.arrondir(Double.NaN));
+    }
+
+    @Test
+    void conversionJpaEtJson() throws Exception {
+        MoneyConverter converter = new MoneyConverter();
+        assertEquals(15_000L, converter.convertToDatabaseColumn(Money.of(15_000L)));
+        assertEquals(Money.of(15_000L), converter.convertToEntityAttribute(15_000L));
+        assertNull(converter.convertToEntityAttribute(null));
+
+        ObjectMapper mapper = new ObjectMapper();
+        assertEquals("15000", mapper.writeValueAsString(Money.of(15_000L)));
+        assertEquals(Money.of(15_000L), mapper.readValue("15000", Money.class));
+    }
+}
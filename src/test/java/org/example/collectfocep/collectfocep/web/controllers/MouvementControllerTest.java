@@ -0,0 +1,325 @@
+package org.example.collectfocep.collectfocep.web.controllers;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.collectfocep.dto.EpargneBatchRequest;
+import org.example.collectfocep.dto.EpargneBatchResultDTO;
+import org.example.collectfocep.dto.EpargneRequest;
+import org.example.collectfocep.dto.MouvementCommissionDTO;
+import org.example.collectfocep.entities.Agence;
+import org.example.collectfocep.entities.Client;
+import org.example.collectfocep.entities.Collecteur;
+import org.example.collectfocep.entities.IdempotencyKey;
+import org.example.collectfocep.exceptions.BusinessException;
+import org.example.collectfocep.exceptions.ResourceNotFoundException;
+import org.example.collectfocep.mappers.MouvementMapperV2;
+import org.example.collectfocep.repositories.ClientRepository;
+import org.example.collectfocep.repositories.CollecteurRepository;
+import org.example.collectfocep.repositories.CompteRepository;
+import org.example.collectfocep.repositories.IdempotencyKeyRepository;
+import org.example.collectfocep.repositories.JournalRepository;
+import org.example.collectfocep.repositories.MouvementRepository;
+import org.example.collectfocep.security.service.SecurityService;
+import org.example.collectfocep.services.CollecteurDailyTotalsService;
+import org.example.collectfocep.services.CompteIdCache;
+import org.example.collectfocep.services.CompteLockManager;
+import org.example.collectfocep.services.EpargnePipeline;
+import org.example.collectfocep.services.IdempotencyService;
+import org.example.collectfocep.services.JournalDuJourRegistry;
+import org.example.collectfocep.services.SoldeCollecteurValidationService;
+import org.example.collectfocep.services.TransactionValidationService;
+import org.example.collectfocep.services.impl.AuditService;
+import org.example.collectfocep.services.impl.ClientAccountInitializationService;
+import org.example.collectfocep.services.impl.JournalServiceImpl;
+import org.example.collectfocep.services.impl.MouvementServiceImpl;
+import org.example.collectfocep.services.impl.TransactionService;
+import org.example.collectfocep.services.interfaces.CompteService;
+import org.example.collectfocep.services.interfaces.DateTimeService;
+import org.example.collectfocep.services.interfaces.JournalService;
+import org.example.collectfocep.util.ApiResponse;
+import org.example.collectfocep.web.controllers.MouvementController;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class MouvementControllerTest {
+
+    @Mock private DateTimeService dateTimeService;
+    @Mock private TransactionService transactionService;
+    @Mock private MouvementServiceImpl mouvementService;
+    @Mock private SecurityService securityService;
+    @Mock private ClientRepository clientRepository;
+    @Mock private JournalRepository journalRepository;
+    @Mock private MouvementRepository mouvementRepository;
+    @Mock private MouvementMapperV2 mouvementMapper;
+    @Mock private JournalService journalService;
+    @Mock private JournalServiceImpl journalServiceImpl;
+    @Mock private AuditService auditService;
+    @Mock private SoldeCollecteurValidationService soldeValidationService;
+    @Mock private TransactionValidationService transactionValidationService;
+    @Mock private IdempotencyKeyRepository idempotencyKeyRepository;
+    @Mock private EpargnePipeline epargnePipeline;
+    @Mock private CollecteurRepository collecteurRepository;
+    @Mock private CompteRepository compteRepository;
+    @Mock private CompteService compteService;
+    @Mock private ClientAccountInitializationService clientAccountInitializationService;
+    @Mock private CompteIdCache compteIdCache;
+    @Mock private CompteLockManager compteLockManager;
+    @Mock private JournalDuJourRegistry journalDuJourRegistry;
+    @Mock private CollecteurDailyTotalsService collecteurDailyTotalsService;
+    @Mock private Counter epargneCounter;
+    @Mock private Timer epargneTimer;
+
+    private IdempotencyService idempotencyService;
+    private MouvementController controller;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService = new IdempotencyService(idempotencyKeyRepository, 1000, 1);
+        controller = new MouvementController(dateTimeService, transactionService, mouvementService, securityService,
+                clientRepository, journalRepository, mouvementRepository, mouvementMapper, journalService,
+                journalServiceImpl, auditService, soldeValidationService, transactionValidationService,
+                idempotencyService);
+        ReflectionTestUtils.setField(controller, "epargnePipeline", epargnePipeline);
+        connecter("collecteur7");
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void epargnesBatch_EchecsPartiels_Renvoie200AvecLeDetailParOperation() {
+        EpargneBatchResultDTO resultat = EpargneBatchResultDTO.builder()
+                .collecteurId(7L).nombreOperations(2).nombreSucces(1).nombreEchecs(1).montantTotal(1_000.0)
+                .resultats(List.of(
+                        EpargneBatchResultDTO.EpargneItemResultDTO.builder().index(0).success(true).build(),
+                        EpargneBatchResultDTO.EpargneItemResultDTO.builder().index(1).success(false)
+                                .errorCode("CLIENT_NOT_FOUND").build()))
+                .build();
+        when(mouvementService.enregistrerEpargnesBatch(eq(7L), anyList())).thenReturn(resultat);
+
+        ResponseEntity<ApiResponse<EpargneBatchResultDTO>> reponse = controller.effectuerEpargnesBatch(lot());
+
+        assertEquals(HttpStatus.OK, reponse.getStatusCode());
+        assertSame(resultat, reponse.getBody().getData());
+        assertEquals(1, reponse.getBody().getMeta().get("nombreEchecs"));
+    }
+
+    @Test
+    void epargnesBatch_CollecteurInconnu_Renvoie404() {
+        when(mouvementService.enregistrerEpargnesBatch(eq(7L), anyList()))
+                .thenThrow(new ResourceNotFoundException("Collecteur non trouvé: 7"));
+
+        ResponseEntity<ApiResponse<EpargneBatchResultDTO>> reponse = controller.effectuerEpargnesBatch(lot());
+
+        assertEquals(HttpStatus.NOT_FOUND, reponse.getStatusCode());
+        assertFalse(reponse.getBody().isSuccess());
+    }
+
+    @Test
+    void epargnesBatch_CompteVerrouille_Renvoie409EtLotAnnule() {
+        when(mouvementService.enregistrerEpargnesBatch(eq(7L), anyList()))
+                .thenThrow(new BusinessException("Compte occupé, veuillez réessayer", "COMPTE_VERROUILLE"));
+
+        ResponseEntity<ApiResponse<EpargneBatchResultDTO>> reponse = controller.effectuerEpargnesBatch(lot());
+
+        assertEquals(HttpStatus.CONFLICT, reponse.getStatusCode());
+        assertEquals("COMPTE_VERROUILLE", reponse.getBody().getMeta().get("errorCode"));
+        assertNull(reponse.getBody().getData());
+    }
+
+    @Test
+    void epargnesBatch_ErreurMetier_Renvoie400() {
+        when(mouvementService.enregistrerEpargnesBatch(eq(7L), anyList()))
+                .thenThrow(new BusinessException("Journal clôturé", "JOURNAL_CLOTURE"));
+
+        ResponseEntity<ApiResponse<EpargneBatchResultDTO>> reponse = controller.effectuerEpargnesBatch(lot());
+
+        assertEquals(HttpStatus.BAD_REQUEST, reponse.getStatusCode());
+        assertEquals("JOURNAL_CLOTURE", reponse.getBody().getMeta().get("errorCode"));
+    }
+
+    @Test
+    void epargnesBatch_ErreurTechnique_Renvoie500SansExposerLeMessage() {
+        when(mouvementService.enregistrerEpargnesBatch(eq(7L), anyList()))
+                .thenThrow(new IllegalStateException("Deadlock found when trying to get lock; table mouvements"));
+
+        ResponseEntity<ApiResponse<EpargneBatchResultDTO>> reponse = controller.effectuerEpargnesBatch(lot());
+
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, reponse.getStatusCode());
+        assertFalse(reponse.getBody().getMessage().contains("Deadlock"));
+    }
+
+    @Test
+    void epargne_MemeCleMemeRequete_RejoueLaReponseDOrigine() {
+        lenient().when(idempotencyKeyRepository.findByScopeAndIdempotencyKey(any(), any())).thenReturn(Optional.empty());
+        when(epargnePipeline.executer(any(), any())).thenAnswer(this::enregistrerReponse);
+
+        ResponseEntity<ApiResponse<MouvementCommissionDTO>> premiere = controller.effectuerEpargne(epargne(1_000), "cle-1");
+        ResponseEntity<ApiResponse<MouvementCommissionDTO>> rejeu = controller.effectuerEpargne(epargne(1_000), "cle-1");
+
+        assertEquals(HttpStatus.OK, rejeu.getStatusCode());
+        assertEquals(premiere.getBody().getData(), rejeu.getBody().getData());
+        assertEquals(true, rejeu.getBody().getMeta().get("idempotentReplay"));
+        verify(epargnePipeline, times(1)).executer(any(), any());
+    }
+
+    @Test
+    void epargne_MemeCleAutreMontant_Renvoie422SansRejouer() {
+        lenient().when(idempotencyKeyRepository.findByScopeAndIdempotencyKey(any(), any())).thenReturn(Optional.empty());
+        when(epargnePipeline.executer(any(), any())).thenAnswer(this::enregistrerReponse);
+
+        controller.effectuerEpargne(epargne(1_000), "cle-1");
+        ResponseEntity<ApiResponse<MouvementCommissionDTO>> reponse = controller.effectuerEpargne(epargne(5_000), "cle-1");
+
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, reponse.getStatusCode());
+        assertEquals("IDEMPOTENCY_KEY_MISMATCH", reponse.getBody().getMeta().get("errorCode"));
+        verify(epargnePipeline, times(1)).executer(any(), any());
+    }
+
+    @Test
+    void epargne_CleEnBaseAvecAutreEmpreinte_Renvoie422() {
+        when(idempotencyKeyRepository.findByScopeAndIdempotencyKey("collecteur7", "cle-1")).thenReturn(Optional.of(
+                IdempotencyKey.builder().scope("collecteur7").idempotencyKey("cle-1").requestHash("autre")
+                        .montant(1_000).build()));
+
+        ResponseEntity<ApiResponse<MouvementCommissionDTO>> reponse = controller.effectuerEpargne(epargne(1_000), "cle-1");
+
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, reponse.getStatusCode());
+        verifyNoInteractions(epargnePipeline);
+    }
+
+    @Test
+    void epargne_MemeCleAutreUtilisateur_EstUneNouvelleOperation() {
+        lenient().when(idempotencyKeyRepository.findByScopeAndIdempotencyKey(any(), any())).thenReturn(Optional.empty());
+        when(epargnePipeline.executer(any(), any())).thenAnswer(this::enregistrerReponse);
+
+        controller.effectuerEpargne(epargne(1_000), "cle-1");
+        connecter("collecteur8");
+        ResponseEntity<ApiResponse<MouvementCommissionDTO>> reponse = controller.effectuerEpargne(epargne(1_000), "cle-1");
+
+        assertEquals(HttpStatus.OK, reponse.getStatusCode());
+        assertNull(reponse.getBody().getMeta().get("idempotentReplay"));
+        verify(epargnePipeline, times(2)).executer(any(), any());
+    }
+
+    @Test
+    void epargne_RejeuPendantLeTraitementDOrigine_AttendEtRejoueLaReponse() throws Exception {
+        lenient().when(idempotencyKeyRepository.findByScopeAndIdempotencyKey(any(), any())).thenReturn(Optional.empty());
+        CountDownLatch origineDemarree = new CountDownLatch(1);
+        CountDownLatch terminerOrigine = new CountDownLatch(1);
+        when(epargnePipeline.executer(any(), any())).thenAnswer(inv -> {
+            origineDemarree.countDown();
+            assertTrue(terminerOrigine.await(5, TimeUnit.SECONDS));
+            return enregistrerReponse(inv);
+        });
+
+        CompletableFuture<ResponseEntity<ApiResponse<MouvementCommissionDTO>>> origine = CompletableFuture.supplyAsync(() -> {
+            connecter("collecteur7");
+            return controller.effectuerEpargne(epargne(1_000), "cle-1");
+        });
+        assertTrue(origineDemarree.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<ResponseEntity<ApiResponse<MouvementCommissionDTO>>> rejeu = CompletableFuture.supplyAsync(() -> {
+            connecter("collecteur7");
+            return controller.effectuerEpargne(epargne(1_000), "cle-1");
+        });
+        Thread.sleep(100);
+        assertFalse(rejeu.isDone());
+        terminerOrigine.countDown();
+
+        assertEquals(HttpStatus.OK, origine.get(5, TimeUnit.SECONDS).getStatusCode());
+        ResponseEntity<ApiResponse<MouvementCommissionDTO>> reponse = rejeu.get(5, TimeUnit.SECONDS);
+        assertEquals(HttpStatus.OK, reponse.getStatusCode());
+        assertEquals(true, reponse.getBody().getMeta().get("idempotentReplay"));
+        verify(epargnePipeline, times(1)).executer(any(), any());
+    }
+
+    @Test
+    void epargne_SansCollecteur_RefuseeSansEcriture() {
+        ReflectionTestUtils.setField(controller, "epargnePipeline", pipelineReel());
+        EpargneRequest request = epargne(1_000);
+        request.setCollecteurId(null);
+
+        ResponseEntity<ApiResponse<MouvementCommissionDTO>> reponse = controller.effectuerEpargne(request, null);
+
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, reponse.getStatusCode());
+        assertTrue(reponse.getBody().getMessage().contains("agence"));
+        verifyNoInteractions(clientRepository, mouvementRepository, compteLockManager);
+    }
+
+    @Test
+    void epargne_ClientSansAgence_RefuseeSansEcriture() {
+        ReflectionTestUtils.setField(controller, "epargnePipeline", pipelineReel());
+        Agence agence = Agence.builder().id(3L).build();
+        Client client = Client.builder().id(1L)
+                .collecteur(Collecteur.builder().id(7L).agence(agence).build()).build();
+        when(clientRepository.findByIdWithAllRelations(1L)).thenReturn(Optional.of(client));
+
+        ResponseEntity<ApiResponse<MouvementCommissionDTO>> reponse = controller.effectuerEpargne(epargne(1_000), null);
+
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, reponse.getStatusCode());
+        assertTrue(reponse.getBody().getMessage().contains("agence"));
+        verifyNoInteractions(mouvementRepository, compteLockManager);
+    }
+
+    private EpargnePipeline pipelineReel() {
+        return new EpargnePipeline(clientRepository, collecteurRepository, compteRepository, mouvementRepository,
+                journalRepository, journalService, compteService, clientAccountInitializationService, compteIdCache,
+                compteLockManager, journalDuJourRegistry, collecteurDailyTotalsService, idempotencyService,
+                mouvementMapper, dateTimeService, epargneCounter, epargneTimer, new SimpleMeterRegistry());
+    }
+
+    private Object enregistrerReponse(InvocationOnMock inv) {
+        EpargneRequest request = inv.getArgument(0);
+        IdempotencyService.Cle cle = inv.getArgument(1);
+        MouvementCommissionDTO dto = new MouvementCommissionDTO("EPARGNE", request.getMontant(), "SRV-7", "CLI-1",
+                "Epargne client", LocalDateTime.of(2025, 3, 10, 9, 0));
+        idempotencyService.enregistrer(cle, "EPARGNE", 42L, dto);
+        return dto;
+    }
+
+    private static void connecter(String utilisateur) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(utilisateur, null, List.of()));
+    }
+
+    private static EpargneRequest epargne(double montant) {
+        EpargneRequest request = new EpargneRequest();
+        request.setClientId(1L);
+        request.setCollecteurId(7L);
+        request.setMontant(montant);
+        return request;
+    }
+
+    private static EpargneBatchRequest lot() {
+        EpargneRequest operation = new EpargneRequest();
+        operation.setClientId(1L);
+        operation.setMontant(1_000);
+        return new EpargneBatchRequest(7L, List.of(operation, operation));
+    }
+}